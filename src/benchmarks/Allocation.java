@@ -0,0 +1,32 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures heap allocation by the current thread, where the JVM supports it.
+ */
+class Allocation {
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Checks whether per-thread allocation can be measured on this JVM.
+	 * @return True if allocation is measured.
+	 */
+	static boolean isSupported() {
+		return threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported();
+	}
+
+	/**
+	 * Gets the number of bytes allocated by the current thread so far.
+	 * @return The allocated bytes, or 0 if allocation cannot be measured.
+	 */
+	static long currentThreadAllocatedBytes() {
+		if (!isSupported()) {
+			return 0;
+		}
+		return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+/**
+ * Base class for all benchmarks. A benchmark is run as a number of untimed warm-up iterations followed by a number of
+ * timed measurement iterations, each of which performs a fixed number of operations.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+
+	/**
+	 * Constructor.
+	 * @param name The benchmark name, including any parameter values.
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the benchmark name.
+	 * @return The benchmark name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepares state shared by all iterations. Not timed.
+	 */
+	public void setup() {
+	}
+
+	/**
+	 * Prepares state for the next iteration. Not timed.
+	 */
+	public void setupIteration() {
+	}
+
+	/**
+	 * Releases any state held by the benchmark. Not timed.
+	 */
+	public void teardown() {
+	}
+
+	/**
+	 * Gets the number of warm-up iterations to run before measuring.
+	 * @return The number of warm-up iterations.
+	 */
+	public int warmupIterations() {
+		return 5;
+	}
+
+	/**
+	 * Gets the number of measured iterations.
+	 * @return The number of measured iterations.
+	 */
+	public int measurementIterations() {
+		return 10;
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	public abstract int operationsPerIteration();
+
+	/**
+	 * Performs a single operation. The result is consumed by the runner so the work cannot be optimised away.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	public abstract Object operation(int i);
+}
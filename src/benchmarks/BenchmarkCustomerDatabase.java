@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.acmetelecom.IIndexedCustomerDatabase;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+import com.acmetelecom.customer.TariffLibrary;
+
+/**
+ * An in-memory customer and tariff database of generated customers, cycling through the tariffs.
+ */
+class BenchmarkCustomerDatabase implements IIndexedCustomerDatabase, TariffLibrary {
+
+	private static final long FirstPhoneNumber = 447000000000L;
+
+	private final List<Customer> customers;
+
+	/**
+	 * Constructor.
+	 * @param customerCount The number of customers to generate.
+	 */
+	BenchmarkCustomerDatabase(int customerCount) {
+		Tariff[] tariffs = Tariff.values();
+		List<Customer> generated = new ArrayList<Customer>(customerCount);
+		for (int i = 0; i < customerCount; i++) {
+			Tariff tariff = tariffs[i % tariffs.length];
+			generated.add(new Customer("Customer " + i, String.valueOf(FirstPhoneNumber + i), tariff.name()));
+		}
+		this.customers = Collections.unmodifiableList(generated);
+	}
+
+	/**
+	 * Gets all customers.
+	 * @return The list of all customers.
+	 */
+	@Override
+	public List<Customer> getCustomers() {
+		return customers;
+	}
+
+	/**
+	 * Gets the customer with a phone number, worked out from the number the customers were generated with.
+	 * @param phoneNumber The phone number.
+	 * @return The customer with the phone number, or null if no customer has it.
+	 */
+	@Override
+	public Customer getCustomer(String phoneNumber) {
+		long index;
+		try {
+			index = Long.parseLong(phoneNumber) - FirstPhoneNumber;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return index >= 0 && index < customers.size() ? customers.get((int)index) : null;
+	}
+
+	/**
+	 * Gets the tariff for a specified customer, as named by their price plan.
+	 * @param customer The customer to get the tariff for.
+	 * @return The customer's tariff.
+	 */
+	@Override
+	public Tariff tarriffFor(Customer customer) {
+		return Tariff.valueOf(customer.getPricePlan());
+	}
+}
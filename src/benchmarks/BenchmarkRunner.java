@@ -0,0 +1,154 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acmetelecom.FileLogger;
+
+/**
+ * Entry point for the benchmark suite. Runs every benchmark whose name contains one of the command line arguments
+ * (or all benchmarks if there are none) and reports the time, allocation and garbage collection cost per operation.
+ * Allocation is measured on the benchmarking thread only, so excludes work done by worker threads.
+ */
+public class BenchmarkRunner {
+
+	// Sink for operation results, so that the JIT cannot eliminate the benchmarked work.
+	private static volatile int sink;
+
+	/**
+	 * Main entry point to the benchmark suite.
+	 * @param args Optional name filters.
+	 */
+	public static void main(String[] args) {
+		FileLogger.create();
+		FileLogger.setActive(false);
+
+		System.out.println(String.format("%-64s %14s %14s %12s %8s %8s",
+				"Benchmark", "ns/op", "ops/s", "B/op", "GCs", "GC ms"));
+		for (Benchmark benchmark : allBenchmarks()) {
+			if (matches(benchmark.getName(), args)) {
+				run(benchmark);
+			}
+		}
+	}
+
+	/**
+	 * Gets the full benchmark suite.
+	 * @return The list of all benchmarks.
+	 */
+	private static List<Benchmark> allBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(CallCostCalculatorBenchmark.all());
+		benchmarks.addAll(CallEventManagerBenchmark.all());
+		benchmarks.addAll(EventIngestionBenchmark.all());
+		benchmarks.addAll(MoneyFormatterBenchmark.all());
+		benchmarks.addAll(LineItemFormattingBenchmark.all());
+		benchmarks.addAll(BillRunBenchmark.all());
+		return benchmarks;
+	}
+
+	/**
+	 * Runs a single benchmark and prints its results.
+	 * @param benchmark The benchmark to run.
+	 */
+	private static void run(Benchmark benchmark) {
+		benchmark.setup();
+		try {
+			for (int i = 0; i < benchmark.warmupIterations(); i++) {
+				benchmark.setupIteration();
+				runIteration(benchmark);
+			}
+
+			long elapsedNanos = 0;
+			long allocatedBytes = 0;
+			long gcCount = 0;
+			long gcMillis = 0;
+			long operations = 0;
+			for (int i = 0; i < benchmark.measurementIterations(); i++) {
+				benchmark.setupIteration();
+				long allocatedBefore = Allocation.currentThreadAllocatedBytes();
+				long gcCountBefore = gcCount();
+				long gcMillisBefore = gcMillis();
+
+				elapsedNanos += runIteration(benchmark);
+
+				allocatedBytes += Allocation.currentThreadAllocatedBytes() - allocatedBefore;
+				gcCount += gcCount() - gcCountBefore;
+				gcMillis += gcMillis() - gcMillisBefore;
+				operations += benchmark.operationsPerIteration();
+			}
+
+			double nanosPerOperation = (double)elapsedNanos / operations;
+			System.out.println(String.format("%-64s %14.1f %14.0f %12.1f %8d %8d",
+					benchmark.getName(),
+					nanosPerOperation,
+					1e9 / nanosPerOperation,
+					Allocation.isSupported() ? (double)allocatedBytes / operations : Double.NaN,
+					gcCount,
+					gcMillis));
+		} finally {
+			benchmark.teardown();
+		}
+	}
+
+	/**
+	 * Runs a single iteration of a benchmark.
+	 * @param benchmark The benchmark to run.
+	 * @return The time taken in nanoseconds.
+	 */
+	private static long runIteration(Benchmark benchmark) {
+		int operations = benchmark.operationsPerIteration();
+		int result = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			result += System.identityHashCode(benchmark.operation(i));
+		}
+		long elapsed = System.nanoTime() - start;
+		sink += result;
+		return elapsed;
+	}
+
+	/**
+	 * Gets the total number of garbage collections so far.
+	 * @return The number of collections across all collectors.
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the total time spent in garbage collection so far.
+	 * @return The collection time in milliseconds across all collectors.
+	 */
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * Checks whether a benchmark name matches any of the filters.
+	 * @param name The benchmark name.
+	 * @param filters The name filters.
+	 * @return True if there are no filters or the name contains one of them.
+	 */
+	private static boolean matches(String name, String[] filters) {
+		if (filters.length == 0) {
+			return true;
+		}
+		for (String filter : filters) {
+			if (name.contains(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,161 @@
+package benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.acmetelecom.BillingMetrics;
+import com.acmetelecom.BillingSystem;
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ClosedFormCallCostCalculator;
+import com.acmetelecom.Clock;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.ICallEventManager;
+import com.acmetelecom.RatingCallEventManager;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Measures a full bill run over a customer base in which every customer has made a few calls. Bills are rendered
+ * to a stream which discards them. Each operation is a whole bill run; when calls are rated as they complete, the
+ * rating is done while the calls are set up rather than during the measured bill run. One bill run is also
+ * measured with BillingMetrics turned off, to show what recording them costs.
+ */
+public class BillRunBenchmark extends Benchmark {
+
+	private static final int CallsPerCustomer = 3;
+
+	private final int customerCount;
+	private final int parallelism;
+	private final boolean ratedAtCompletion;
+	private final boolean metrics;
+	private BenchmarkCustomerDatabase customerDatabase;
+	private ICallEventManager callEventManager;
+	private BillingSystem billingSystem;
+
+	/**
+	 * Constructor.
+	 * @param customerCount The number of customers to bill.
+	 * @param parallelism The number of threads to create bills with.
+	 * @param ratedAtCompletion Whether calls are rated as they complete rather than during the bill run.
+	 * @param metrics Whether billing metrics are recorded.
+	 */
+	public BillRunBenchmark(int customerCount, int parallelism, boolean ratedAtCompletion, boolean metrics) {
+		super("BillingSystem.createCustomerBills[customers=" + customerCount + ",threads=" + parallelism
+				+ (ratedAtCompletion ? ",ratedAtCompletion" : "") + (metrics ? "" : ",metrics=off") + "]");
+		this.customerCount = customerCount;
+		this.parallelism = parallelism;
+		this.ratedAtCompletion = ratedAtCompletion;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Gets the bill run benchmarks for every customer base size, run sequentially and on all processors, and with
+	 * calls rated as they complete, and a sequential run over 100000 customers without metrics.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int customers : new int[] { 1000, 100000, 1000000 }) {
+			benchmarks.add(new BillRunBenchmark(customers, 1, false, true));
+			if (customers == 100000) {
+				benchmarks.add(new BillRunBenchmark(customers, 1, false, false));
+			}
+			if (processors > 1) {
+				benchmarks.add(new BillRunBenchmark(customers, processors, false, true));
+			}
+			benchmarks.add(new BillRunBenchmark(customers, 1, true, true));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares the state used by all iterations.
+	 */
+	@Override
+	public void setup() {
+		BillingMetrics.getDefault().setActive(metrics);
+		customerDatabase = new BenchmarkCustomerDatabase(customerCount);
+		ClosedFormCallCostCalculator callCostCalculator = new ClosedFormCallCostCalculator(customerDatabase, new DaytimePeakPeriod());
+		callEventManager = ratedAtCompletion
+				? new RatingCallEventManager(callCostCalculator, customerDatabase)
+				: new CallEventManager();
+		billingSystem = new BillingSystem(
+				callEventManager,
+				callCostCalculator,
+				new HtmlBillGenerator(new BufferedHtmlBillPrinter(new NullOutputStream(), Charset.defaultCharset())),
+				customerDatabase,
+				new Clock(),
+				parallelism);
+	}
+
+	/**
+	 * Prepares the state for the next iteration.
+	 */
+	@Override
+	public void setupIteration() {
+		// The previous bill run cleared the call logs.
+		DateTime time = new DateTime(2013, 11, 4, 6, 50);
+		List<Customer> customers = customerDatabase.getCustomers();
+		for (int call = 0; call < CallsPerCustomer; call++) {
+			for (int i = 0; i < customers.size(); i++) {
+				String caller = customers.get(i).getPhoneNumber();
+				String callee = customers.get((i + call + 1) % customers.size()).getPhoneNumber();
+				DateTime start = time.plusHours(call * 7);
+				callEventManager.handleEvent(new CallStart(caller, callee, start));
+				callEventManager.handleEvent(new CallEnd(caller, callee, start.plusMinutes(15 + i % 45)));
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of warm-up iterations to run before measuring.
+	 * @return The number of warm-up iterations.
+	 */
+	@Override
+	public int warmupIterations() {
+		return customerCount >= 1000000 ? 1 : 3;
+	}
+
+	/**
+	 * Gets the number of measured iterations.
+	 * @return The number of measured iterations.
+	 */
+	@Override
+	public int measurementIterations() {
+		return customerCount >= 1000000 ? 2 : 5;
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 1;
+	}
+
+	/**
+	 * Runs a whole bill run.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		return billingSystem.createCustomerBills();
+	}
+
+	/**
+	 * Turns billing metrics back on.
+	 */
+	@Override
+	public void teardown() {
+		BillingMetrics.getDefault().setActive(true);
+	}
+}
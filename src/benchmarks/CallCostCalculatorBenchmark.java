@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.acmetelecom.CalendarCallCostCalculator;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ClosedFormCallCostCalculator;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.ICallCostCalculator;
+import com.acmetelecom.TimeBandCalendar;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Measures the cost of rating a single call, for short, day-spanning and multi-day calls.
+ */
+public class CallCostCalculatorBenchmark extends Benchmark {
+
+	private static final int CallCount = 1024;
+
+	private final String calculatorName;
+	private final int callLengthMinutes;
+	private ICallCostCalculator calculator;
+	private Customer customer;
+	private Call[] calls;
+
+	/**
+	 * Constructor.
+	 * @param calculatorName The calculator implementation to measure.
+	 * @param callName A description of the call length.
+	 * @param callLengthMinutes The length of the rated calls in minutes.
+	 */
+	public CallCostCalculatorBenchmark(String calculatorName, String callName, int callLengthMinutes) {
+		super("CallCostCalculator." + calculatorName + "[" + callName + "]");
+		this.calculatorName = calculatorName;
+		this.callLengthMinutes = callLengthMinutes;
+	}
+
+	/**
+	 * Gets the benchmarks for every calculator and call length.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String calculator : new String[] { "iterative", "closedForm", "calendar" }) {
+			benchmarks.add(new CallCostCalculatorBenchmark(calculator, "short", 3));
+			benchmarks.add(new CallCostCalculatorBenchmark(calculator, "daySpanning", 20 * 60));
+			benchmarks.add(new CallCostCalculatorBenchmark(calculator, "multiDay", 7 * 24 * 60));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares the state used by all iterations.
+	 */
+	@Override
+	public void setup() {
+		BenchmarkCustomerDatabase database = new BenchmarkCustomerDatabase(1);
+		customer = database.getCustomers().get(0);
+		if (calculatorName.equals("iterative")) {
+			calculator = new CallCostCalculator(database, new DaytimePeakPeriod());
+		}
+		else if (calculatorName.equals("calendar")) {
+			calculator = new CalendarCallCostCalculator(database, TimeBandCalendar.fromPeakPeriod(new DaytimePeakPeriod()));
+		}
+		else {
+			calculator = new ClosedFormCallCostCalculator(database, new DaytimePeakPeriod());
+		}
+
+		// Spread the start times across the day so every period is exercised.
+		calls = new Call[CallCount];
+		DateTime firstStart = new DateTime(2013, 11, 4, 0, 0);
+		for (int i = 0; i < CallCount; i++) {
+			DateTime start = firstStart.plusSeconds(i * 24 * 60 * 60 / CallCount);
+			calls[i] = new Call(
+					new CallStart(customer.getPhoneNumber(), "447700000000", start),
+					new CallEnd(customer.getPhoneNumber(), "447700000000", start.plusMinutes(callLengthMinutes)));
+		}
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 100000;
+	}
+
+	/**
+	 * Rates one call.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		return calculator.calculateCallCost(customer, calls[i & (CallCount - 1)]);
+	}
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.CompactCallEventManager;
+import com.acmetelecom.ConcurrentCallEventManager;
+import com.acmetelecom.ICallEventManager;
+
+/**
+ * Measures matching a call start and end event for a caller who already has a number of other calls in progress.
+ * Each operation handles two events.
+ */
+public class CallEventManagerBenchmark extends Benchmark {
+
+	private static final String Caller = "447711232343";
+
+	private final String managerName;
+	private final int callsInProgress;
+	private ICallEventManager callEventManager;
+	private CallStart[] starts;
+	private CallEnd[] ends;
+
+	/**
+	 * Constructor.
+	 * @param managerName The call event manager implementation to measure.
+	 * @param callsInProgress The number of other calls the caller has in progress.
+	 */
+	public CallEventManagerBenchmark(String managerName, int callsInProgress) {
+		super("CallEventManager." + managerName + ".handleEvent[inProgress=" + callsInProgress + "]");
+		this.managerName = managerName;
+		this.callsInProgress = callsInProgress;
+	}
+
+	/**
+	 * Gets the benchmarks for every manager and number of calls in progress.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String manager : new String[] { "sequential", "concurrent", "compact" }) {
+			for (int inProgress : new int[] { 1, 100, 10000 }) {
+				benchmarks.add(new CallEventManagerBenchmark(manager, inProgress));
+			}
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares the state used by all iterations.
+	 */
+	@Override
+	public void setup() {
+		DateTime time = new DateTime(2013, 11, 4, 12, 0);
+		starts = new CallStart[callsInProgress];
+		ends = new CallEnd[callsInProgress];
+		for (int i = 0; i < callsInProgress; i++) {
+			String callee = "4477" + (10000000 + i);
+			starts[i] = new CallStart(Caller, callee, time);
+			ends[i] = new CallEnd(Caller, callee, time.plusMinutes(1));
+		}
+	}
+
+	/**
+	 * Prepares the state for the next iteration.
+	 */
+	@Override
+	public void setupIteration() {
+		if (managerName.equals("sequential")) {
+			callEventManager = new CallEventManager();
+		}
+		else if (managerName.equals("concurrent")) {
+			callEventManager = new ConcurrentCallEventManager();
+		}
+		else {
+			callEventManager = new CompactCallEventManager();
+		}
+		for (CallStart start : starts) {
+			callEventManager.handleEvent(start);
+		}
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 100000;
+	}
+
+	/**
+	 * Ends one of the calls in progress and starts it again.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		// Hang up one of the calls in progress and immediately redial it.
+		int call = i % callsInProgress;
+		callEventManager.handleEvent(ends[call]);
+		callEventManager.handleEvent(starts[call]);
+		return callEventManager;
+	}
+}
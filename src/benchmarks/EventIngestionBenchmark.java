@@ -0,0 +1,208 @@
+package benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.acmetelecom.BillingMetrics;
+import com.acmetelecom.BillingSystem;
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.CallEventBatch;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallEventPipeline;
+import com.acmetelecom.ClosedFormCallCostCalculator;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.ICallEventManager;
+import com.acmetelecom.IClock;
+import com.acmetelecom.LatencyHistogram;
+import com.acmetelecom.RatingCallEventManager;
+
+/**
+ * Measures feeding call events into the billing system: one at a time through callInitiated and callCompleted,
+ * in batches through handleEvents, or one at a time through a CallEventPipeline. Each operation is one call, i.e. a
+ * start and an end event, with the same times in every mode. The pipelined mode waits for every event to be handled
+ * at the end of each iteration, so it is timed end to end, and reports the pipeline's latency percentiles.
+ * One at a time intake is also measured with BillingMetrics turned off, to show what recording them costs.
+ */
+public class EventIngestionBenchmark extends Benchmark {
+
+	private static final int CallerCount = 1000;
+	private static final int BatchEvents = 10000;
+	private static final int PipelineCapacity = 16 * 1024;
+
+	/**
+	 * The ways events are fed into the billing system.
+	 */
+	public enum Intake { Single, Batch, Pipeline }
+
+	private final boolean rating;
+	private final Intake intake;
+	private final boolean metrics;
+	private CallEventPipeline pipeline;
+	private BenchmarkCustomerDatabase customerDatabase;
+	private BillingSystem billingSystem;
+	private final SettableClock clock = new SettableClock();
+	private String[] callers;
+	private String[] callees;
+	private final CallEventBatch batch = new CallEventBatch(BatchEvents);
+
+	/**
+	 * Constructor.
+	 * @param rating Whether calls are rated as they complete.
+	 * @param intake How events are fed into the billing system.
+	 * @param metrics Whether billing metrics are recorded.
+	 */
+	public EventIngestionBenchmark(boolean rating, Intake intake, boolean metrics) {
+		super("BillingSystem." + nameOf(intake) + (rating ? ",rating" : "") + (metrics ? "" : ",metrics=off") + "]");
+		this.rating = rating;
+		this.intake = intake;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Gets the ingestion benchmarks for each intake, with and without rating, and for one at a time intake without
+	 * metrics.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (boolean rating : new boolean[] { false, true }) {
+			for (Intake intake : Intake.values()) {
+				benchmarks.add(new EventIngestionBenchmark(rating, intake, true));
+			}
+			benchmarks.add(new EventIngestionBenchmark(rating, Intake.Single, false));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares the state used by all iterations.
+	 */
+	@Override
+	public void setup() {
+		BillingMetrics.getDefault().setActive(metrics);
+		customerDatabase = new BenchmarkCustomerDatabase(CallerCount);
+		callers = new String[CallerCount];
+		callees = new String[CallerCount];
+		for (int i = 0; i < CallerCount; i++) {
+			callers[i] = customerDatabase.getCustomers().get(i).getPhoneNumber();
+			callees[i] = String.valueOf(448000000000L + i);
+		}
+	}
+
+	/**
+	 * Prepares an empty billing system for the next iteration.
+	 */
+	@Override
+	public void setupIteration() {
+		ClosedFormCallCostCalculator callCostCalculator = new ClosedFormCallCostCalculator(customerDatabase, new DaytimePeakPeriod());
+		ICallEventManager callEventManager = rating
+				? new RatingCallEventManager(callCostCalculator, customerDatabase)
+				: new CallEventManager();
+		if (intake == Intake.Pipeline) {
+			if (pipeline != null) {
+				pipeline.close();
+			}
+			pipeline = new CallEventPipeline(callEventManager, PipelineCapacity, false);
+			callEventManager = pipeline;
+		}
+		billingSystem = new BillingSystem(
+				callEventManager,
+				callCostCalculator,
+				new HtmlBillGenerator(new BufferedHtmlBillPrinter(new NullOutputStream(), Charset.defaultCharset())),
+				customerDatabase,
+				clock);
+		batch.clear();
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 100000;
+	}
+
+	/**
+	 * Starts and ends one call, handling the batch whenever it fills up.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		String caller = callers[i % CallerCount];
+		String callee = callees[(i / CallerCount) % CallerCount];
+		long time = 1383566400000L + i * 1000L;
+		if (intake != Intake.Batch) {
+			clock.millis = time;
+			billingSystem.callInitiated(caller, callee);
+			clock.millis = time + 60000;
+			billingSystem.callCompleted(caller, callee);
+			if (pipeline != null && i == operationsPerIteration() - 1) {
+				pipeline.awaitHandled();
+			}
+			return billingSystem;
+		}
+
+		batch.addStart(caller, callee, time);
+		batch.addEnd(caller, callee, time + 60000);
+		if (batch.size() == BatchEvents) {
+			billingSystem.handleEvents(batch);
+			batch.clear();
+		}
+		return batch;
+	}
+
+	/**
+	 * Reports the latency percentiles of the pipeline over the last iteration, and stops it. Turns billing metrics
+	 * back on.
+	 */
+	@Override
+	public void teardown() {
+		BillingMetrics.getDefault().setActive(true);
+		if (pipeline == null) {
+			return;
+		}
+		pipeline.close();
+		LatencyHistogram latency = pipeline.getLatency();
+		System.out.println(String.format("    pipeline latency (us): p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+				latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+				latency.getValueAtPercentile(99.9) / 1000.0, latency.getMax() / 1000.0));
+		pipeline = null;
+	}
+
+	/**
+	 * Gets the name of the billing system operation an intake is measured through.
+	 * @param intake The intake.
+	 * @return The operation name, followed by the start of its parameters.
+	 */
+	private static String nameOf(Intake intake) {
+		switch (intake) {
+		case Batch:
+			return "handleEvents[batch=" + BatchEvents;
+		case Pipeline:
+			return "callInitiated/callCompleted[pipeline=" + PipelineCapacity;
+		default:
+			return "callInitiated/callCompleted[single";
+		}
+	}
+
+	/**
+	 * A clock which tells the time it was last set to.
+	 */
+	private static class SettableClock implements IClock {
+		private long millis;
+
+		/**
+		 * Gets the time the clock was last set to.
+		 * @return The time.
+		 */
+		public DateTime now() {
+			return new DateTime(millis);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.format.DateTimeFormat;
+
+import com.acmetelecom.CallFormatter;
+
+/**
+ * Measures formatting the date and duration of a bill line item, either as they were formatted before
+ * CallFormatter (a new formatter per date and String.format per duration) or with CallFormatter appending into a
+ * reused buffer.
+ */
+public class LineItemFormattingBenchmark extends Benchmark {
+
+	private static final int CallCount = 1024;
+
+	private final boolean cached;
+
+	private long[] startTimes;
+	private int[] durations;
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Constructor.
+	 * @param cached Whether to format with CallFormatter.
+	 */
+	public LineItemFormattingBenchmark(boolean cached) {
+		super("LineItem.format[" + (cached ? "cached" : "legacy") + "]");
+		this.cached = cached;
+	}
+
+	/**
+	 * Gets the line item formatting benchmarks.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new LineItemFormattingBenchmark(false));
+		benchmarks.add(new LineItemFormattingBenchmark(true));
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares calls spread over a month, as on a monthly bill.
+	 */
+	@Override
+	public void setup() {
+		long monthStart = 1383264000000L; // 2013-11-01T00:00:00Z
+		startTimes = new long[CallCount];
+		durations = new int[CallCount];
+		for (int i = 0; i < CallCount; i++) {
+			startTimes[i] = monthStart + (long)i * 30 * 24 * 60 * 60 * 1000 / CallCount;
+			durations[i] = (i * 7919) % 7200;
+		}
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 100000;
+	}
+
+	/**
+	 * Formats the date and duration of one line item.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		int call = i & (CallCount - 1);
+		if (cached) {
+			buffer.setLength(0);
+			buffer.append(CallFormatter.formatDate(startTimes[call])).append(' ');
+			CallFormatter.appendDuration(buffer, durations[call]);
+			return buffer.length();
+		}
+		String date = DateTimeFormat.forPattern("dd/MM/yyyy").print(startTimes[call]);
+		String duration = "" + durations[call] / 60 + ":" + String.format("%02d", durations[call] % 60);
+		return date.length() + duration.length();
+	}
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acmetelecom.MoneyFormatter;
+
+/**
+ * Measures formatting amounts of pence as pounds: through floating point as MoneyFormatter used to, or in fixed
+ * point from a BigDecimal or a long.
+ */
+public class MoneyFormatterBenchmark extends Benchmark {
+
+	private static final int AmountCount = 1024;
+
+	/**
+	 * The ways of formatting amounts which are measured.
+	 */
+	public enum Variant { Legacy, BigDecimal, Long }
+
+	private final Variant variant;
+
+	private BigDecimal[] amounts;
+	private long[] longAmounts;
+
+	/**
+	 * Constructor.
+	 * @param variant The way of formatting amounts to measure.
+	 */
+	public MoneyFormatterBenchmark(Variant variant) {
+		super("MoneyFormatter.penceToPounds[" + variant + "]");
+		this.variant = variant;
+	}
+
+	/**
+	 * Gets the money formatting benchmarks.
+	 * @return The list of benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Variant variant : Variant.values()) {
+			benchmarks.add(new MoneyFormatterBenchmark(variant));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Prepares the state used by all iterations.
+	 */
+	@Override
+	public void setup() {
+		amounts = new BigDecimal[AmountCount];
+		longAmounts = new long[AmountCount];
+		for (int i = 0; i < AmountCount; i++) {
+			longAmounts[i] = (long)i * i * 37;
+			amounts[i] = new BigDecimal(longAmounts[i]);
+		}
+	}
+
+	/**
+	 * Gets the number of operations performed in each iteration.
+	 * @return The number of operations per iteration.
+	 */
+	@Override
+	public int operationsPerIteration() {
+		return 100000;
+	}
+
+	/**
+	 * Formats one amount.
+	 * @param i The index of the operation within the current iteration.
+	 * @return The result of the operation.
+	 */
+	@Override
+	public Object operation(int i) {
+		int amount = i & (AmountCount - 1);
+		switch (variant) {
+		case Legacy:
+			return String.format("%.2f", amounts[amount].divide(new BigDecimal(100)).doubleValue());
+		case BigDecimal:
+			return MoneyFormatter.penceToPounds(amounts[amount]);
+		default:
+			return MoneyFormatter.penceToPounds(longAmounts[amount]);
+		}
+	}
+}
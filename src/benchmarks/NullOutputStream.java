@@ -0,0 +1,27 @@
+package benchmarks;
+
+import java.io.OutputStream;
+
+/**
+ * An output stream which discards everything written to it.
+ */
+class NullOutputStream extends OutputStream {
+
+	/**
+	 * Discards a byte.
+	 * @param b The byte to discard.
+	 */
+	@Override
+	public void write(int b) {
+	}
+
+	/**
+	 * Discards an array of bytes.
+	 * @param b The bytes to discard.
+	 * @param off The offset of the first byte.
+	 * @param len The number of bytes.
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) {
+	}
+}
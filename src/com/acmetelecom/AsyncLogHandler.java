@@ -0,0 +1,165 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A logging handler which hands log records to another handler on a background thread, so that logging threads
+ * never wait for the underlying (e.g. file) handler. Records are held in a bounded ring buffer until written; what
+ * happens when the buffer is full is decided by the overflow policy.
+ * The source of a record is not inferred, which would walk the logging thread's stack for every record; callers
+ * give their source with Logger.logp, as every class logging through FileLogger does.
+ */
+public class AsyncLogHandler extends Handler {
+
+	/**
+	 * Defines what happens to a record logged while the buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/** The record is discarded and counted as dropped. */
+		Drop,
+		/** The logging thread waits until there is space in the buffer. */
+		Block
+	}
+
+	private static final int MaxBatchSize = 256;
+	private static final long PollIntervalMillis = 100;
+
+	private final Handler target;
+	private final OverflowPolicy overflowPolicy;
+	private final ArrayBlockingQueue<LogRecord> buffer;
+	private final AtomicLong droppedRecords = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor. Starts the background writer thread.
+	 * @param target The handler to pass log records on to.
+	 * @param capacity The maximum number of records waiting to be written.
+	 * @param overflowPolicy What to do with records logged while the buffer is full.
+	 * @exception IllegalArgumentException If any of arguments are null or the capacity is not positive.
+	 */
+	public AsyncLogHandler(Handler target, int capacity, OverflowPolicy overflowPolicy) {
+		AssertionHelper.NotNull(target, "target");
+		AssertionHelper.NotNull(overflowPolicy, "overflowPolicy");
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("'capacity' must be positive.");
+		}
+
+		this.target = target;
+		this.overflowPolicy = overflowPolicy;
+		this.buffer = new ArrayBlockingQueue<LogRecord>(capacity);
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				writeRecords();
+			}
+		}, "async-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Queues a log record to be written by the background thread.
+	 * @param record The log record to write.
+	 */
+	@Override
+	public void publish(LogRecord record) {
+		if (closed || !isLoggable(record)) {
+			return;
+		}
+
+		if (overflowPolicy == OverflowPolicy.Block) {
+			try {
+				while (!buffer.offer(record, PollIntervalMillis, TimeUnit.MILLISECONDS)) {
+					if (closed) {
+						droppedRecords.incrementAndGet();
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				droppedRecords.incrementAndGet();
+			}
+		}
+		else if (!buffer.offer(record)) {
+			droppedRecords.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Flushes the target handler. Records still waiting in the buffer are not flushed.
+	 */
+	@Override
+	public void flush() {
+		target.flush();
+	}
+
+	/**
+	 * Stops accepting records, waits for the buffered records to be written and closes the target handler.
+	 */
+	@Override
+	public void close() {
+		stop();
+		target.close();
+	}
+
+	/**
+	 * Stops accepting records and waits for the buffered records to be written, leaving the target handler open.
+	 */
+	public void stop() {
+		closed = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Write any records queued while the writer was stopping.
+		LogRecord record;
+		while ((record = buffer.poll()) != null) {
+			target.publish(record);
+		}
+		target.flush();
+	}
+
+	/**
+	 * Gets the number of records dropped because the buffer was full.
+	 * @return The number of dropped records.
+	 */
+	public long getDroppedRecords() {
+		return droppedRecords.get();
+	}
+
+	/**
+	 * Writes buffered records to the target handler in batches until the handler is closed and the buffer is empty.
+	 */
+	private void writeRecords() {
+		List<LogRecord> batch = new ArrayList<LogRecord>(MaxBatchSize);
+		while (!closed || !buffer.isEmpty()) {
+			try {
+				LogRecord first = buffer.poll(PollIntervalMillis, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				buffer.drainTo(batch, MaxBatchSize - 1);
+				for (LogRecord record : batch) {
+					target.publish(record);
+				}
+				target.flush();
+			} catch (InterruptedException e) {
+				// Only stops once closed and drained.
+			} catch (RuntimeException e) {
+				reportError("Failed to write log record.", e, ErrorManager.WRITE_FAILURE);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package com.acmetelecom;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and latencies of the billing pipeline: call events received, calls started, completed and in progress,
+ * events which could not be matched, calls rated and bills sent, and how long rating and sending take.
+ * Counts are kept in StripedCounters and latencies in LatencyHistograms, so recording is a few uncontended atomic
+ * adds and never locks. Timing a call costs about as much as rating it with ClosedFormCallCostCalculator, so every
+ * call rated is counted but only one in RatingSampleInterval is timed. The billing system and its components record
+ * into the shared default instance, which can be published over JMX with registerMBean and read in code with snapshot.
+ * Recording can be turned off with setActive, after which it costs only a check of a flag, except that calls started
+ * and completed are still counted: the number of calls in progress is worked out from them, so that it is still right
+ * when recording is turned back on.
+ */
+public final class BillingMetrics implements IBillingMetricsMXBean {
+
+	/**
+	 * The name the default instance is registered under with the platform MBean server.
+	 */
+	public static final String MBeanName = "com.acmetelecom:type=BillingMetrics";
+
+	/**
+	 * The number of calls rated, on each thread, for each one whose rating latency is recorded. A power of two.
+	 */
+	public static final int RatingSampleInterval = 16;
+
+	private static final BillingMetrics defaultMetrics = new BillingMetrics();
+	private static boolean registered;
+
+	private volatile boolean active = true;
+
+	private final StripedCounter eventsReceived = new StripedCounter();
+	private final StripedCounter eventsRejected = new StripedCounter();
+	private final StripedCounter callsStarted = new StripedCounter();
+	private final StripedCounter callsCompleted = new StripedCounter();
+	private final StripedCounter duplicateCallStarts = new StripedCounter();
+	private final StripedCounter unmatchedCallEnds = new StripedCounter();
+	private final StripedCounter callsCleared = new StripedCounter();
+	private final StripedCounter callsRated = new StripedCounter();
+	private final LatencyHistogram ratingLatency = new LatencyHistogram();
+	private final LatencyHistogram billSendLatency = new LatencyHistogram();
+
+	// Calls started and completed before the metrics were last reset. The counters themselves are never reset.
+	private volatile long callsStartedBeforeReset;
+	private volatile long callsCompletedBeforeReset;
+
+	/**
+	 * Gets the instance the billing system and its components record into.
+	 * @return The default metrics.
+	 */
+	public static BillingMetrics getDefault() {
+		return defaultMetrics;
+	}
+
+	/**
+	 * Publishes the default metrics over JMX by registering them with the platform MBean server under MBeanName,
+	 * unless they are already registered.
+	 * @exception IllegalStateException Thrown if the metrics could not be registered.
+	 */
+	public static synchronized void registerMBean() {
+		if (registered) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBeanName);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(defaultMetrics, name);
+			}
+			registered = true;
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to register billing metrics with the MBean server.", e);
+		}
+	}
+
+	/**
+	 * Stops publishing the default metrics over JMX, if they are registered.
+	 * @exception IllegalStateException Thrown if the metrics could not be unregistered.
+	 */
+	public static synchronized void unregisterMBean() {
+		if (!registered) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBeanName);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			registered = false;
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to unregister billing metrics from the MBean server.", e);
+		}
+	}
+
+	/**
+	 * Takes a snapshot of every count and latency.
+	 * @return The snapshot.
+	 */
+	public MetricsSnapshot snapshot() {
+		return new MetricsSnapshot(this);
+	}
+
+	/**
+	 * Gets whether counts and latencies are being recorded.
+	 * @return True if metrics are being recorded.
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Turns recording of counts and latencies on or off.
+	 * @param active Indicates whether metrics should be recorded.
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	/**
+	 * Sets every count and latency to 0, except the number of calls in progress. Values recorded while the metrics
+	 * are being reset may or may not be kept.
+	 */
+	public void reset() {
+		eventsReceived.reset();
+		eventsRejected.reset();
+		callsStartedBeforeReset = callsStarted.sum();
+		callsCompletedBeforeReset = callsCompleted.sum();
+		duplicateCallStarts.reset();
+		unmatchedCallEnds.reset();
+		callsRated.reset();
+		ratingLatency.reset();
+		billSendLatency.reset();
+	}
+
+	/**
+	 * Gets the number of call events reported to the billing system, one at a time or in batches.
+	 * @return The number of events.
+	 */
+	public long getEventsReceived() {
+		return eventsReceived.sum();
+	}
+
+	/**
+	 * Gets the number of call events in batches, or handled by a CallEventPipeline, which the call event manager
+	 * rejected.
+	 * @return The number of events.
+	 */
+	public long getEventsRejected() {
+		return eventsRejected.sum();
+	}
+
+	/**
+	 * Gets the number of calls started.
+	 * @return The number of calls.
+	 */
+	public long getCallsStarted() {
+		return callsStarted.sum() - callsStartedBeforeReset;
+	}
+
+	/**
+	 * Gets the number of calls completed, i.e. whose end was matched to their start.
+	 * @return The number of calls.
+	 */
+	public long getCallsCompleted() {
+		return callsCompleted.sum() - callsCompletedBeforeReset;
+	}
+
+	/**
+	 * Gets the number of call starts for a call already in progress.
+	 * @return The number of call starts.
+	 */
+	public long getDuplicateCallStarts() {
+		return duplicateCallStarts.sum();
+	}
+
+	/**
+	 * Gets the number of call ends which matched no call in progress.
+	 * @return The number of call ends.
+	 */
+	public long getUnmatchedCallEnds() {
+		return unmatchedCallEnds.sum();
+	}
+
+	/**
+	 * Gets the number of calls currently in progress.
+	 * @return The number of calls.
+	 */
+	public long getOpenCalls() {
+		return callsStarted.sum() - callsCompleted.sum() - callsCleared.sum();
+	}
+
+	/**
+	 * Gets the number of calls rated.
+	 * @return The number of calls.
+	 */
+	public long getCallsRated() {
+		return callsRated.sum();
+	}
+
+	/**
+	 * Gets the number of bills sent.
+	 * @return The number of bills.
+	 */
+	public long getBillsSent() {
+		return billSendLatency.getCount();
+	}
+
+	/**
+	 * Gets the latency of rating a call, in nanoseconds, sampled from one in every RatingSampleInterval calls rated.
+	 * @return The count and percentiles of rating latencies.
+	 */
+	public LatencySnapshot getRatingLatency() {
+		return ratingLatency.snapshot();
+	}
+
+	/**
+	 * Gets the latency of sending a bill, in nanoseconds.
+	 * @return The count and percentiles of bill send latencies.
+	 */
+	public LatencySnapshot getBillSendLatency() {
+		return billSendLatency.snapshot();
+	}
+
+	/**
+	 * Starts timing an operation whose latency is to be recorded.
+	 * @return The time to pass to the method recording the operation, or 0 if metrics are not being recorded.
+	 */
+	long startTimer() {
+		return active ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the rating of a call, and starts timing it if it is one of the calls sampled.
+	 * @return The time to pass to callRated when rating is done, or 0 if the rating is not to be timed.
+	 */
+	long startRating() {
+		if (!active || (callsRated.increment() & (RatingSampleInterval - 1)) != 0) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records call events reported to the billing system.
+	 * @param count The number of events.
+	 */
+	void eventsReceived(int count) {
+		if (active) {
+			eventsReceived.add(count);
+		}
+	}
+
+	/**
+	 * Records call events rejected by the call event manager.
+	 * @param count The number of events.
+	 */
+	void eventsRejected(int count) {
+		if (active && count > 0) {
+			eventsRejected.add(count);
+		}
+	}
+
+	/**
+	 * Records the start of a call, even if metrics are not being recorded.
+	 */
+	void callStarted() {
+		callsStarted.increment();
+	}
+
+	/**
+	 * Records the completion of a call in progress, even if metrics are not being recorded.
+	 */
+	void callCompleted() {
+		callsCompleted.increment();
+	}
+
+	/**
+	 * Records the start of a call which was already in progress.
+	 */
+	void duplicateCallStart() {
+		if (active) {
+			duplicateCallStarts.increment();
+		}
+	}
+
+	/**
+	 * Records the end of a call which was not in progress.
+	 */
+	void unmatchedCallEnd() {
+		if (active) {
+			unmatchedCallEnds.increment();
+		}
+	}
+
+	/**
+	 * Records calls in progress being discarded without completing, e.g. when call logs are cleared.
+	 * @param count The number of calls.
+	 */
+	void openCallsCleared(int count) {
+		callsCleared.add(count);
+	}
+
+	/**
+	 * Records how long rating a call took, if it was timed.
+	 * @param startNanos The time returned by startRating when rating started.
+	 */
+	void callRated(long startNanos) {
+		if (startNanos != 0) {
+			ratingLatency.record(System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * Records the sending of a bill.
+	 * @param startNanos The time returned by startTimer when sending started.
+	 */
+	void billSent(long startNanos) {
+		if (startNanos != 0) {
+			billSendLatency.record(System.nanoTime() - startNanos);
+		}
+	}
+}
@@ -4,35 +4,65 @@ import com.acmetelecom.customer.CentralCustomerDatabase;
 import com.acmetelecom.customer.CentralTariffDatabase;
 import com.acmetelecom.customer.Customer;
 import com.acmetelecom.customer.CustomerDatabase;
+import com.acmetelecom.customer.Tariff;
 import com.acmetelecom.customer.TariffLibrary;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * High-level billing system logic, concerned with forwarding call events and creating customer bills.
+ * Call events received and rejected are counted in the default BillingMetrics, which are logged after each bill run.
  */
 public class BillingSystem implements IBillingSystem {
 
 	private Logger log = FileLogger.create();
 	
+	// Source given with each log record, so that the logger does not walk the stack to find it.
+	private static final String SourceClass = BillingSystem.class.getName();
+	
+	private BillingMetrics metrics = BillingMetrics.getDefault();
+	
     private ICallEventManager callEventManager;
     private ICallCostCalculator callCostCalculator;
     private IBillGenerator billGenerator;
     private IClock clock;
     private CustomerDatabase customerDatabase;
     
+    // Number of customers billed together in a page of a bill run.
+    private static final int CustomerPageSize = 1024;
+    
+    // Number of threads used to create customer bills (1 creates them sequentially on the calling thread).
+    private int billRunParallelism = 1;
+    
+    // The events each thread reuses to report calls to a call event manager which does not keep events.
+    private final ThreadLocal<IntakeEvents> intakeEvents = new ThreadLocal<IntakeEvents>() {
+    	@Override
+    	protected IntakeEvents initialValue() {
+    		return new IntakeEvents();
+    	}
+    };
+    
     /**
-     * Constructor. To ensure rest of system continues to work without changes.
+     * Constructor. To ensure rest of system continues to work without changes. Publishes the default BillingMetrics
+     * over JMX.
      */
     public BillingSystem() {
-    	TariffLibrary tariffDatabase = CentralTariffDatabase.getInstance();
+    	TariffLibrary tariffDatabase = new CachingTariffLibrary(CentralTariffDatabase.getInstance());
     	this.callEventManager = new CallEventManager();
-		this.callCostCalculator = new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
-		this.billGenerator = new HtmlBillGenerator(new HtmlBillPrinter());
+		this.callCostCalculator = new ClosedFormCallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		this.billGenerator = new HtmlBillGenerator(new BufferedHtmlBillPrinter());
 		this.customerDatabase = CentralCustomerDatabase.getInstance();
 		this.clock = new Clock();
+		BillingMetrics.registerMBean();
     }
     
     /**
@@ -61,66 +91,359 @@ public class BillingSystem implements IBillingSystem {
     	this.customerDatabase = customerDatabase;
     	this.clock = clock;
     }
+    
+    /**
+     * Constructor. To be used for dependency injection when customer bills should be created in parallel.
+     * The call event manager, call cost calculator and bill generator must then be safe to use from multiple threads
+     * while bills are being created.
+     * @param callEventManager The call event manager to use when handling call events.
+     * @param callCostCalculator The call cost calculator to use when generating bills.
+     * @param billGenerator The bill generator to use to generate bills.
+     * @param customerDatabase The customer database to refer to for customer information.
+     * @param clock The clock implementation to use.
+     * @param billRunParallelism The number of threads to create customer bills with.
+     * @exception IllegalArgumentException If any of arguments are null or the parallelism is not positive.
+     */
+    public BillingSystem(
+    		ICallEventManager callEventManager,
+    		ICallCostCalculator callCostCalculator,
+    		IBillGenerator billGenerator,
+    		CustomerDatabase customerDatabase,
+    		IClock clock,
+    		int billRunParallelism) {
+    	this(callEventManager, callCostCalculator, billGenerator, customerDatabase, clock);
+    	if (billRunParallelism <= 0) {
+    		throw new IllegalArgumentException("'billRunParallelism' must be positive.");
+    	}
+    	this.billRunParallelism = billRunParallelism;
+    }
 
     /**
-     * Called when a call is started.
+     * Called when a call is started. If the call event manager is pipelined, the event is queued to be logged and
+     * handled on the pipeline's threads, and a call already in progress is rejected there rather than thrown.
      * @param caller The caller phone number.
      * @param callee The callee phone number.
      * @exception IllegalArgumentException If any of arguments are null.
      * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously
      */
     public void callInitiated(String caller, String callee) {
-    	log.info("Call from " + caller + " to " + callee + " initiated.");
+    	metrics.eventsReceived(1);
+    	if (callEventManager instanceof IPipelinedCallEventManager) {
+    		((IPipelinedCallEventManager)callEventManager).publishStart(caller, callee, clock.now().getMillis());
+    		return;
+    	}
+    	if (log.isLoggable(Level.INFO)) {
+    		log.logp(Level.INFO, SourceClass, "callInitiated", "Call from {0} to {1} initiated.", new Object[] { caller, callee });
+    	}
+    	if (callEventManager instanceof IEventCopyingCallEventManager) {
+    		CallStart start = intakeEvents.get().start;
+    		start.reset(caller, callee, clock.now().getMillis());
+    		callEventManager.handleEvent(start);
+    		return;
+    	}
     	callEventManager.handleEvent(new CallStart(caller, callee, clock.now()));
     }
 
     /**
-     * Called when a call is ended.
+     * Called when a call is ended. If the call event manager is pipelined, the event is queued to be logged and
+     * handled on the pipeline's threads.
      * @param caller The caller phone number.
      * @param callee The callee phone number.
      * @exception IllegalArgumentException If any of arguments are null.
      */
     public void callCompleted(String caller, String callee) {
-    	log.info("Call from " + caller + " to " + callee + " initiated.");
+    	metrics.eventsReceived(1);
+    	if (callEventManager instanceof IPipelinedCallEventManager) {
+    		((IPipelinedCallEventManager)callEventManager).publishEnd(caller, callee, clock.now().getMillis());
+    		return;
+    	}
+    	if (log.isLoggable(Level.INFO)) {
+    		log.logp(Level.INFO, SourceClass, "callCompleted", "Call from {0} to {1} completed.", new Object[] { caller, callee });
+    	}
+    	if (callEventManager instanceof IEventCopyingCallEventManager) {
+    		CallEnd end = intakeEvents.get().end;
+    		end.reset(caller, callee, clock.now().getMillis());
+    		callEventManager.handleEvent(end);
+    		return;
+    	}
     	callEventManager.handleEvent(new CallEnd(caller, callee, clock.now()));
     }
 
+    /**
+     * Handles a batch of call events, each with its own time stamp, in order. Events which cannot be accepted are
+     * reported in the result rather than stopping the batch, and the batch is logged once rather than per event.
+     * If the call event manager handles batches itself it is passed the whole batch; otherwise events are handled
+     * one at a time, and only events it throws on are reported.
+     * @param batch The batch of events to handle.
+     * @return Which events were rejected and why.
+     * @exception IllegalArgumentException If any of arguments are null.
+     */
+    public CallEventBatchResult handleEvents(CallEventBatch batch) {
+    	AssertionHelper.NotNull(batch, "batch");
+    	CallEventBatchResult result = new CallEventBatchResult(batch.size());
+    	
+    	batch.handleWith(callEventManager, result);
+    	metrics.eventsReceived(result.getEventCount());
+    	metrics.eventsRejected(result.getRejectedCount());
+    	
+    	if (log.isLoggable(Level.INFO)) {
+    		log.logp(Level.INFO, SourceClass, "handleEvents", "Handled batch of {0} call events, {1} rejected.",
+    				new Object[] { result.getEventCount(), result.getRejectedCount() });
+    	}
+    	return result;
+    }
+
     /**
      * Creates bills for all customers, prints them out and returns them as a list of type Bill.
+     * The bills are returned in the order the customers are listed in the customer database, even when they are
+     * created in parallel.
      * @return ArrayList<Bill> The list of created bills, one per customer.
      */
     public ArrayList<Bill> createCustomerBills() {
-        List<Customer> customers = customerDatabase.getCustomers();
-        ArrayList<Bill> customerBills = new ArrayList<Bill>();
-        log.info("About to create " + customers.size() + " customer bills.");
-        
-        for (Customer customer : customers) {
-            customerBills.add(createBillFor(customer));
-        }
-        
-        callEventManager.clearCallLogs();
-        log.info("All customer bills created and call logs cleared.");
+        final ArrayList<Bill> customerBills = new ArrayList<Bill>();
+        createCustomerBills(new IBillSink() {
+        	public void accept(Bill bill) {
+        		customerBills.add(bill);
+        	}
+        });
         return customerBills;
     }
 
+    /**
+     * Creates bills for all customers, prints them out and passes each one to a sink as soon as it is created.
+     * Customers are billed a page at a time, fetched page by page if the customer database supports it, and no
+     * bills are kept once they have been passed to the sink, so memory use does not grow with the number of
+     * customers. The sink receives the bills in the order the customers are listed in the customer database, even
+     * when they are created in parallel.
+     * @param sink The sink to pass the created bills to.
+     * @return The number of bills created.
+     * @exception IllegalArgumentException If any of arguments are null.
+     */
+    public int createCustomerBills(IBillSink sink) {
+    	AssertionHelper.NotNull(sink, "sink");
+    	log.logp(Level.INFO, SourceClass, "createCustomerBills", "About to create customer bills.");
+    	
+    	int billed = 0;
+    	ExecutorService executor = billRunParallelism > 1
+    			? Executors.newFixedThreadPool(billRunParallelism, new BillRunThreadFactory())
+    			: null;
+    	try {
+    		CustomerPages pages = new CustomerPages(customerDatabase);
+    		List<Customer> page;
+    		while (!(page = pages.next()).isEmpty()) {
+    			if (executor != null && page.size() > 1) {
+    				for (Bill bill : createBillsInParallel(executor, page)) {
+    					sink.accept(bill);
+    				}
+    			}
+    			else {
+    				for (Customer customer : page) {
+    					sink.accept(createBillFor(customer));
+    				}
+    			}
+    			billed += page.size();
+    		}
+    	} finally {
+    		if (executor != null) {
+    			executor.shutdownNow();
+    		}
+    	}
+    	
+    	callEventManager.clearCallLogs();
+    	log.logp(Level.INFO, SourceClass, "createCustomerBills", "All {0} customer bills created and call logs cleared.", billed);
+    	if (log.isLoggable(Level.INFO)) {
+    		log.logp(Level.INFO, SourceClass, "createCustomerBills", "Billing metrics: {0}.", metrics.snapshot());
+    	}
+    	return billed;
+    }
+
+    /**
+     * Creates bills for the specified customers using a pool of worker threads. Each worker repeatedly claims the next
+     * customer which has not yet been billed, so the load stays balanced however many calls each customer made.
+     * If a worker fails to create a bill, the others stop claiming customers and the failure is rethrown.
+     * @param executor The pool of worker threads.
+     * @param customers The customers to create bills for.
+     * @return The created bills, in the same order as the customers.
+     */
+    private Bill[] createBillsInParallel(ExecutorService executor, final List<Customer> customers) {
+    	final Bill[] bills = new Bill[customers.size()];
+    	final AtomicInteger nextCustomer = new AtomicInteger();
+    	int threads = Math.min(billRunParallelism, customers.size());
+    	
+    	try {
+    		List<Future<?>> workers = new ArrayList<Future<?>>();
+    		for (int i = 0; i < threads; i++) {
+    			workers.add(executor.submit(new Runnable() {
+    				public void run() {
+    					int i;
+    					try {
+    						while ((i = nextCustomer.getAndIncrement()) < bills.length) {
+    							bills[i] = createBillFor(customers.get(i));
+    						}
+    					} catch (RuntimeException e) {
+    						// Stop the other workers from picking up more customers.
+    						nextCustomer.set(bills.length);
+    						throw e;
+    					}
+    				}
+    			}));
+    		}
+    		
+    		for (Future<?> worker : workers) {
+    			worker.get();
+    		}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new IllegalStateException("Interrupted while creating customer bills.", e);
+    	} catch (ExecutionException e) {
+    		if (e.getCause() instanceof RuntimeException) {
+    			throw (RuntimeException)e.getCause();
+    		}
+    		throw new IllegalStateException("Failed to create customer bills.", e.getCause());
+    	}
+    	
+    	return bills;
+    }
+    
     /**
      * Creates a bill for a specific customer.
      * @param customer The customer to create a bill for.
      * @return Bill The customer's bill.
      */
     private Bill createBillFor(Customer customer) {
+    	List<LineItem> items = rateCallsFor(customer);
     	BigDecimal totalBill = new BigDecimal(0);
+    	for (LineItem item : items) {
+    		totalBill = totalBill.add(item.cost());
+    	}
+
+        return billGenerator.sendBill(customer, items, MoneyFormatter.penceToPounds(totalBill));
+    }
+    
+    /**
+     * Gets the total cost of the calls a customer has completed since the call logs were last cleared.
+     * If the call event manager rates calls as they complete this is its running total, otherwise the calls are rated
+     * now.
+     * @param customer The customer to get the spend for.
+     * @return The customer's current spend (in pence).
+     * @exception IllegalArgumentException If any of arguments are null.
+     */
+    public BigDecimal getCurrentSpend(Customer customer) {
+    	AssertionHelper.NotNull(customer, "customer");
+    	if (callEventManager instanceof IRatingCallEventManager) {
+    		return ((IRatingCallEventManager)callEventManager).getCurrentSpend(customer);
+    	}
+    	
+    	BigDecimal spend = new BigDecimal(0);
+    	for (LineItem item : rateCallsFor(customer)) {
+    		spend = spend.add(item.cost());
+    	}
+    	return spend;
+    }
+    
+    /**
+     * Gets the rated calls of a customer, using the calls already rated by the call event manager if it rates calls
+     * as they complete. Otherwise the customer's tariff is looked up once for all their calls, if the call cost
+     * calculator supports it.
+     * @param customer The customer to get the rated calls for.
+     * @return The line items for the customer's calls.
+     */
+    private List<LineItem> rateCallsFor(Customer customer) {
+    	if (callEventManager instanceof IRatingCallEventManager) {
+    		return ((IRatingCallEventManager)callEventManager).getLineItemsForCustomer(customer);
+    	}
+    	
         List<LineItem> items = new ArrayList<LineItem>();
         
         // Returns an empty list if no calls found for customer.
         List<Call> calls = callEventManager.getCallsForCustomer(customer.getPhoneNumber());
         
+        if (callCostCalculator instanceof ITariffCallCostCalculator && !calls.isEmpty()) {
+        	// Resolves the customer's tariff once for the whole bill rather than once per call.
+        	ITariffCallCostCalculator tariffCallCostCalculator = (ITariffCallCostCalculator)callCostCalculator;
+        	Tariff tariff = tariffCallCostCalculator.tariffFor(customer);
+        	for (Call call : calls) {
+        		items.add(new LineItem(call, tariffCallCostCalculator.calculateCallCostOnTariff(tariff, call)));
+        	}
+        	return items;
+        }
+        
         for (Call call : calls) {
-        	BigDecimal callCost = callCostCalculator.calculateCallCost(customer, call);
-            totalBill = totalBill.add(callCost);
-            items.add(new LineItem(call, callCost));
+            items.add(new LineItem(call, callCostCalculator.calculateCallCost(customer, call)));
         }
-
-        return billGenerator.sendBill(customer, items, MoneyFormatter.penceToPounds(totalBill));
+        return items;
+    }
+    
+    /**
+     * Lists the customers of a customer database a page at a time. Databases which support paging are asked for
+     * each page in turn; any other database is asked for all its customers once, which are then split into pages.
+     */
+    private static class CustomerPages {
+    	
+    	private final CustomerDatabase customerDatabase;
+    	private List<Customer> allCustomers;
+    	private int nextCustomer;
+    	private boolean done;
+    	
+    	/**
+    	 * Constructor.
+    	 * @param customerDatabase The customer database to list the customers of.
+    	 */
+    	CustomerPages(CustomerDatabase customerDatabase) {
+    		this.customerDatabase = customerDatabase;
+    	}
+    	
+    	/**
+    	 * Gets the next page of customers.
+    	 * @return The next page, or an empty list once every customer has been listed.
+    	 */
+    	List<Customer> next() {
+    		if (done) {
+    			return Collections.emptyList();
+    		}
+    		
+    		List<Customer> page;
+    		if (customerDatabase instanceof IPagedCustomerDatabase) {
+    			page = ((IPagedCustomerDatabase)customerDatabase).getCustomerPage(nextCustomer, CustomerPageSize);
+    			done = page.size() < CustomerPageSize;
+    		}
+    		else {
+    			if (allCustomers == null) {
+    				allCustomers = customerDatabase.getCustomers();
+    			}
+    			int end = Math.min(allCustomers.size(), nextCustomer + CustomerPageSize);
+    			page = nextCustomer < end ? allCustomers.subList(nextCustomer, end) : Collections.<Customer>emptyList();
+    			done = end == allCustomers.size();
+    		}
+    		nextCustomer += page.size();
+    		return page;
+    	}
+    }
+    
+    /**
+     * The call events a thread reuses when reporting calls.
+     */
+    private static class IntakeEvents {
+    	private final CallStart start = new CallStart("", "", 0);
+    	private final CallEnd end = new CallEnd("", "", 0);
+    }
+    
+    /**
+     * Creates the daemon worker threads used for parallel bill runs.
+     */
+    private static class BillRunThreadFactory implements ThreadFactory {
+    	
+    	private final AtomicInteger threadNumber = new AtomicInteger();
+    	
+    	/**
+    	 * Creates a new bill run worker thread.
+    	 * @param r The task the thread should run.
+    	 * @return The new thread.
+    	 */
+    	public Thread newThread(Runnable r) {
+    		Thread thread = new Thread(r, "bill-run-" + threadNumber.incrementAndGet());
+    		thread.setDaemon(true);
+    		return thread;
+    	}
     }
 }
\ No newline at end of file
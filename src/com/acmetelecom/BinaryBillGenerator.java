@@ -0,0 +1,247 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Responsible for exporting bills to a compact binary file, for systems which process bills without reading HTML.
+ * Each bill is appended as a length-prefixed record holding the customer, the bill total and each line item's call
+ * times, callee and cost. When the generator is closed an index of the offset of each customer's bill, sorted by
+ * phone number, is appended, so BinaryBillReader can find any customer's bill without scanning the file.
+ * Bills can be exported from several threads at once; each thread encodes bills into its own buffer.
+ */
+public class BinaryBillGenerator implements IBillGenerator, Closeable {
+
+	static final int Magic = 0x41434D42; // "ACMB"
+	static final int Version = 1;
+	static final int HeaderSize = 8;
+	static final int TrailerSize = 16;
+	static final Charset TextCharset = Charset.forName("UTF-8");
+
+	private static final int InitialBufferSize = 8 * 1024;
+
+	private final FileChannel channel;
+
+	// Offset of the last bill exported for each phone number.
+	private final TreeMap<String, Long> index = new TreeMap<String, Long>();
+	private long position;
+	private boolean closed;
+
+	// The buffer each thread encodes bills into.
+	private final ThreadLocal<RecordBuffer> recordBuffer = new ThreadLocal<RecordBuffer>() {
+		@Override
+		protected RecordBuffer initialValue() {
+			return new RecordBuffer(InitialBufferSize);
+		}
+	};
+
+	/**
+	 * Constructor. Creates the export file, replacing any existing file.
+	 * @param file The file to export bills to.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be created.
+	 */
+	public BinaryBillGenerator(Path file) {
+		AssertionHelper.NotNull(file, "file");
+		try {
+			this.channel = FileChannel.open(file,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			RecordBuffer header = new RecordBuffer(HeaderSize);
+			header.putInt(Magic);
+			header.putInt(Version);
+			write(header.flip());
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create bill export " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Exports the specified bill. If a customer is billed more than once, the last bill is the one indexed.
+	 * @param customer The customer to generate the bill for.
+	 * @param items The list of items to put in the bill.
+	 * @param totalBill The total bill charge.
+	 * @return The generated bill.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the generator has been closed or the bill cannot be written.
+	 */
+	public Bill sendBill(Customer customer, List<LineItem> items, String totalBill) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(items, "items");
+		AssertionHelper.NotNull(totalBill, "totalBill");
+
+		RecordBuffer record = recordBuffer.get();
+		record.clear();
+		record.putInt(0);
+		record.putString(customer.getPhoneNumber());
+		record.putString(customer.getFullName());
+		record.putString(customer.getPricePlan());
+		record.putString(totalBill);
+		record.putInt(items.size());
+		for (LineItem item : items) {
+			Call call = item.call();
+			BigDecimal cost = item.cost();
+			if (cost.precision() > 18) {
+				throw new IllegalArgumentException("Call cost " + cost + " is too large to export.");
+			}
+			record.putLong(call.startMillis());
+			record.putLong(call.endMillis());
+			record.putString(call.callee());
+			record.putInt(cost.scale());
+			record.putLong(cost.scale() == 0 ? cost.longValue() : cost.unscaledValue().longValue());
+		}
+		ByteBuffer bytes = record.flip();
+		bytes.putInt(0, bytes.remaining() - 4);
+
+		synchronized (this) {
+			checkNotClosed();
+			long offset = position;
+			try {
+				write(bytes);
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to write bill.", e);
+			}
+			index.put(customer.getPhoneNumber(), offset);
+		}
+		return new Bill(customer, items, totalBill);
+	}
+
+	/**
+	 * Writes the index of customers' bills and closes the export file.
+	 * @exception IllegalStateException Thrown if the index cannot be written.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			try {
+				long indexOffset = position;
+				RecordBuffer trailer = new RecordBuffer(InitialBufferSize);
+				for (Map.Entry<String, Long> entry : index.entrySet()) {
+					trailer.putString(entry.getKey());
+					trailer.putLong(entry.getValue());
+				}
+				trailer.putLong(indexOffset);
+				trailer.putInt(index.size());
+				trailer.putInt(Magic);
+				write(trailer.flip());
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write bill export index.", e);
+		}
+	}
+
+	/**
+	 * Writes bytes at the end of the export file.
+	 * @param bytes The bytes to write.
+	 * @throws IOException Thrown if the bytes cannot be written.
+	 */
+	private void write(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			position += channel.write(bytes, position);
+		}
+	}
+
+	/**
+	 * Throws if the generator has been closed.
+	 * @exception IllegalStateException Thrown if the generator has been closed.
+	 */
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("Bill export has been closed.");
+		}
+	}
+
+	/**
+	 * A byte buffer which grows as values are put into it.
+	 */
+	private static class RecordBuffer {
+		private ByteBuffer bytes;
+
+		/**
+		 * Constructor.
+		 * @param capacity The initial capacity.
+		 */
+		RecordBuffer(int capacity) {
+			bytes = ByteBuffer.allocate(capacity);
+		}
+
+		/**
+		 * Empties the buffer for reuse.
+		 */
+		void clear() {
+			bytes.clear();
+		}
+
+		/**
+		 * Flips the buffer so the values put into it can be written.
+		 * @return The underlying byte buffer.
+		 */
+		ByteBuffer flip() {
+			bytes.flip();
+			return bytes;
+		}
+
+		/**
+		 * Puts an int.
+		 * @param value The value.
+		 */
+		void putInt(int value) {
+			ensureRemaining(4);
+			bytes.putInt(value);
+		}
+
+		/**
+		 * Puts a long.
+		 * @param value The value.
+		 */
+		void putLong(long value) {
+			ensureRemaining(8);
+			bytes.putLong(value);
+		}
+
+		/**
+		 * Puts a string as its length in bytes followed by its UTF-8 encoding.
+		 * @param value The value.
+		 * @exception IllegalArgumentException If the string is too long.
+		 */
+		void putString(String value) {
+			byte[] encoded = value.getBytes(TextCharset);
+			if (encoded.length > 0xFFFF) {
+				throw new IllegalArgumentException("Text is too long to export.");
+			}
+			ensureRemaining(2 + encoded.length);
+			bytes.putShort((short)encoded.length);
+			bytes.put(encoded);
+		}
+
+		/**
+		 * Grows the buffer if needed so that the specified number of bytes can be put into it.
+		 * @param count The number of bytes.
+		 */
+		private void ensureRemaining(int count) {
+			if (bytes.remaining() < count) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(bytes.capacity() * 2, bytes.position() + count));
+				bytes.flip();
+				grown.put(bytes);
+				bytes = grown;
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Reads bills exported by BinaryBillGenerator. The index at the end of the file is read when the reader is opened,
+ * so reading a customer's bill is a binary search of the index and a single read of the bill's record.
+ * Reads do not move a shared file position, so bills can be read from several threads at once.
+ * Counts and lengths read from the file are checked against the file's size before anything is allocated for them,
+ * so a truncated or corrupt file is reported as not being a bill export.
+ */
+public class BinaryBillReader implements Closeable {
+
+	// The fewest bytes an index entry (a phone number and an offset) and a line item can take.
+	private static final int MinIndexEntrySize = 2 + 8;
+	private static final int MinLineItemSize = 8 + 8 + 2 + 4 + 8;
+
+	private final Path file;
+	private final FileChannel channel;
+
+	// The offset of the index, which is where the bill records end.
+	private final long indexOffset;
+
+	// Phone numbers of the exported bills in ascending order, and the offset of each one's bill.
+	private final String[] phoneNumbers;
+	private final long[] offsets;
+
+	/**
+	 * Constructor. Opens an export file and reads its index.
+	 * @param file The file bills were exported to.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be read or is not a complete bill export.
+	 */
+	public BinaryBillReader(Path file) {
+		AssertionHelper.NotNull(file, "file");
+		this.file = file;
+		try {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to open bill export " + file + ".", e);
+		}
+
+		try {
+			long size = channel.size();
+			if (size < BinaryBillGenerator.HeaderSize + BinaryBillGenerator.TrailerSize) {
+				throw notAnExport();
+			}
+			ByteBuffer header = read(0, BinaryBillGenerator.HeaderSize);
+			if (header.getInt() != BinaryBillGenerator.Magic || header.getInt() != BinaryBillGenerator.Version) {
+				throw notAnExport();
+			}
+
+			ByteBuffer trailer = read(size - BinaryBillGenerator.TrailerSize, BinaryBillGenerator.TrailerSize);
+			this.indexOffset = trailer.getLong();
+			int count = trailer.getInt();
+			long indexLength = size - BinaryBillGenerator.TrailerSize - indexOffset;
+			if (trailer.getInt() != BinaryBillGenerator.Magic || indexOffset < BinaryBillGenerator.HeaderSize
+					|| indexLength < 0 || indexLength > Integer.MAX_VALUE
+					|| count < 0 || count > indexLength / MinIndexEntrySize) {
+				throw notAnExport();
+			}
+
+			ByteBuffer index = read(indexOffset, (int)indexLength);
+			this.phoneNumbers = new String[count];
+			this.offsets = new long[count];
+			for (int i = 0; i < count; i++) {
+				phoneNumbers[i] = getString(index);
+				offsets[i] = index.getLong();
+				if (offsets[i] < BinaryBillGenerator.HeaderSize || offsets[i] > indexOffset - 4) {
+					throw notAnExport();
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			closeQuietly();
+			throw notAnExport();
+		} catch (IOException e) {
+			closeQuietly();
+			throw new IllegalStateException("Failed to read bill export " + file + ".", e);
+		} catch (RuntimeException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the phone numbers of the customers with exported bills.
+	 * @return The phone numbers, in ascending order.
+	 */
+	public List<String> getPhoneNumbers() {
+		return Collections.unmodifiableList(Arrays.asList(phoneNumbers));
+	}
+
+	/**
+	 * Reads the bill exported for the specified customer.
+	 * @param phoneNumber The customer's phone number.
+	 * @return The customer's bill, or null if no bill was exported for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the bill cannot be read or its record is not valid.
+	 */
+	public Bill readBill(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		int entry = Arrays.binarySearch(phoneNumbers, phoneNumber);
+		if (entry < 0) {
+			return null;
+		}
+
+		try {
+			long offset = offsets[entry];
+			int length = read(offset, 4).getInt();
+			if (length < 0 || length > indexOffset - offset - 4) {
+				throw notAnExport();
+			}
+			ByteBuffer record = read(offset + 4, length);
+
+			getString(record);
+			String fullName = getString(record);
+			String pricePlan = getString(record);
+			Customer customer = new Customer(fullName, phoneNumber, pricePlan);
+			String totalBill = getString(record);
+			int itemCount = record.getInt();
+			if (itemCount < 0 || itemCount > record.remaining() / MinLineItemSize) {
+				throw notAnExport();
+			}
+			List<LineItem> items = new ArrayList<LineItem>(itemCount);
+			for (int i = 0; i < itemCount; i++) {
+				long startMillis = record.getLong();
+				long endMillis = record.getLong();
+				String callee = getString(record);
+				int scale = record.getInt();
+				BigDecimal cost = BigDecimal.valueOf(record.getLong(), scale);
+				items.add(new LineItem(
+						new Call(
+							new CallStart(phoneNumber, callee, startMillis),
+							new CallEnd(phoneNumber, callee, endMillis)),
+						cost));
+			}
+			return new Bill(customer, items, totalBill);
+		} catch (BufferUnderflowException e) {
+			throw notAnExport();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read bill for " + phoneNumber + ".", e);
+		}
+	}
+
+	/**
+	 * Closes the export file.
+	 */
+	public void close() {
+		closeQuietly();
+	}
+
+	/**
+	 * Reads bytes from the export file.
+	 * @param offset The offset in the file to read from.
+	 * @param length The number of bytes to read.
+	 * @return A buffer holding the bytes read.
+	 * @throws IOException Thrown if the bytes cannot be read.
+	 */
+	private ByteBuffer read(long offset, int length) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(length);
+		while (bytes.hasRemaining()) {
+			if (channel.read(bytes, offset + bytes.position()) < 0) {
+				throw notAnExport();
+			}
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	/**
+	 * Gets a string stored as its length in bytes followed by its UTF-8 encoding.
+	 * @param bytes The buffer to get the string from.
+	 * @return The string.
+	 * @exception BufferUnderflowException Thrown if the buffer holds fewer bytes than the string's length.
+	 */
+	private static String getString(ByteBuffer bytes) {
+		int length = bytes.getShort() & 0xFFFF;
+		if (length > bytes.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String value = new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length, BinaryBillGenerator.TextCharset);
+		bytes.position(bytes.position() + length);
+		return value;
+	}
+
+	/**
+	 * Creates the exception thrown when the file is not a complete bill export.
+	 * @return The exception.
+	 */
+	private IllegalStateException notAnExport() {
+		return new IllegalStateException(file + " is not a complete bill export.");
+	}
+
+	/**
+	 * Closes the export file, ignoring any failure.
+	 */
+	private void closeQuietly() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Nothing was written, so there is nothing to lose.
+		}
+	}
+}
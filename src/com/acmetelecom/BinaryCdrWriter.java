@@ -0,0 +1,119 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes call detail records in the fixed-width binary layout read by CdrImporter. The file starts with an 8 byte
+ * header (magic number and version) followed by one 32 byte record per call event: the caller and callee encoded
+ * with PhoneNumberCodec, the event time in milliseconds since epoch, the event type and 4 reserved bytes.
+ * Because every record is the same size, the importer can split a file between threads at any record boundary.
+ * A writer must only be used by one thread at a time and must be closed to write its buffered records.
+ */
+public class BinaryCdrWriter implements Closeable {
+
+	static final int Magic = 0x41434452; // "ACDR"
+	static final int Version = 1;
+	static final int HeaderSize = 8;
+	static final int RecordSize = 32;
+	static final int StartType = 1;
+	static final int EndType = 2;
+
+	private static final int BufferSize = 64 * 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BufferSize);
+
+	/**
+	 * Constructor. Creates the file, replacing any existing file.
+	 * @param file The file to write records to.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be created.
+	 */
+	public BinaryCdrWriter(Path file) {
+		AssertionHelper.NotNull(file, "file");
+		try {
+			this.channel = FileChannel.open(file,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create call record file " + file + ".", e);
+		}
+		buffer.putInt(Magic).putInt(Version);
+	}
+
+	/**
+	 * Writes a call start record.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call started (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If either phone number is null or cannot be encoded.
+	 * @exception IllegalStateException Thrown if the record cannot be written.
+	 */
+	public void writeStart(String caller, String callee, long time) {
+		write(StartType, caller, callee, time);
+	}
+
+	/**
+	 * Writes a call end record.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call ended (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If either phone number is null or cannot be encoded.
+	 * @exception IllegalStateException Thrown if the record cannot be written.
+	 */
+	public void writeEnd(String caller, String callee, long time) {
+		write(EndType, caller, callee, time);
+	}
+
+	/**
+	 * Writes any buffered records and closes the file.
+	 * @exception IllegalStateException Thrown if the records cannot be written.
+	 */
+	public void close() {
+		try {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write call records.", e);
+		}
+	}
+
+	/**
+	 * Adds a record to the buffer, writing the buffer to the file first if it is full.
+	 * @param type The event type.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time of the event.
+	 */
+	private void write(int type, String caller, String callee, long time) {
+		long encodedCaller = PhoneNumberCodec.encode(caller);
+		long encodedCallee = PhoneNumberCodec.encode(callee);
+		try {
+			if (buffer.remaining() < RecordSize) {
+				flush();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write call records.", e);
+		}
+		buffer.putLong(encodedCaller).putLong(encodedCallee).putLong(time).putInt(type).putInt(0);
+	}
+
+	/**
+	 * Writes the buffered records to the file.
+	 * @throws IOException Thrown if the records cannot be written.
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
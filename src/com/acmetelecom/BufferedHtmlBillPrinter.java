@@ -0,0 +1,133 @@
+package com.acmetelecom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Responsible for printing bills in HTML form. Unlike HtmlBillPrinter, which prints every line separately, each bill
+ * is rendered into a reusable buffer and written to the output stream in a single call once its total is printed.
+ * A printer holds the bill currently being rendered, so a bill must be printed by one thread at a time.
+ */
+public class BufferedHtmlBillPrinter implements IDurationBillPrinter {
+
+	private static final int InitialBufferSize = 8 * 1024;
+
+	private final OutputStream out;
+	private final CharsetEncoder encoder;
+
+	// Buffers reused from one bill to the next.
+	private final StringBuilder html = new StringBuilder(InitialBufferSize);
+	private ByteBuffer bytes = ByteBuffer.allocate(InitialBufferSize);
+
+	/**
+	 * Constructor. Prints bills to standard output.
+	 */
+	public BufferedHtmlBillPrinter() {
+		this(System.out, Charset.defaultCharset());
+	}
+
+	/**
+	 * Constructor.
+	 * @param out The output stream to write bills to.
+	 * @param charset The character set to encode bills with.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BufferedHtmlBillPrinter(OutputStream out, Charset charset) {
+		AssertionHelper.NotNull(out, "out");
+		AssertionHelper.NotNull(charset, "charset");
+		this.out = out;
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Starts a new bill with the bill heading.
+	 * @param name The customer name to include in the heading.
+	 * @param phoneNumber The customer's phone number.
+	 * @param pricePlan The customer's price plan/tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printHeading(String name, String phoneNumber, String pricePlan) {
+		AssertionHelper.NotNull(name, "name");
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		AssertionHelper.NotNull(pricePlan, "pricePlan");
+
+		html.setLength(0);
+		HtmlBillMarkup.appendHeading(html, name, phoneNumber, pricePlan);
+	}
+
+	/**
+	 * Adds the specified call information to the bill as a HTML table entry.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param duration The call duration.
+	 * @param cost The call cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printItem(String time, String callee, String duration, String cost) {
+		AssertionHelper.NotNull(time, "time");
+		AssertionHelper.NotNull(callee, "callee");
+		AssertionHelper.NotNull(duration, "duration");
+		AssertionHelper.NotNull(cost, "cost");
+
+		HtmlBillMarkup.appendItem(html, time, callee, duration, cost);
+	}
+
+	/**
+	 * Adds the specified call information to the bill as a HTML table entry.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param durationSeconds The call duration in seconds.
+	 * @param cost The call cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printItem(String time, String callee, int durationSeconds, String cost) {
+		AssertionHelper.NotNull(time, "time");
+		AssertionHelper.NotNull(callee, "callee");
+		AssertionHelper.NotNull(cost, "cost");
+
+		HtmlBillMarkup.appendItem(html, time, callee, durationSeconds, cost);
+	}
+
+	/**
+	 * Adds the total cost to the bottom of the HTML bill and writes out the whole bill.
+	 * @param total The bill total cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the bill cannot be written to the output stream.
+	 */
+	public void printTotal(String total) {
+		AssertionHelper.NotNull(total, "total");
+
+		HtmlBillMarkup.appendTotal(html, total);
+		writeBill();
+	}
+
+	/**
+	 * Encodes the rendered bill into the reusable byte buffer and writes it to the output stream in one call.
+	 * @exception IllegalStateException Thrown if the bill cannot be written to the output stream.
+	 */
+	private void writeBill() {
+		int maxBytes = (int)Math.ceil(html.length() * (double)encoder.maxBytesPerChar());
+		if (bytes.capacity() < maxBytes) {
+			bytes = ByteBuffer.allocate(maxBytes);
+		}
+
+		bytes.clear();
+		encoder.reset();
+		encoder.encode(CharBuffer.wrap(html), bytes, true);
+		encoder.flush(bytes);
+
+		try {
+			out.write(bytes.array(), 0, bytes.position());
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write bill.", e);
+		}
+	}
+}
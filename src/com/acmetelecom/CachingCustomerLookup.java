@@ -0,0 +1,113 @@
+package com.acmetelecom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Finds customers by phone number in an indexed customer database, caching the customers found so that repeated
+ * lookups for the same number do not go back to the (possibly remote) database. Each lookup which misses the cache is
+ * a single keyed lookup in the database; the database is never scanned. The cache holds a bounded number of entries,
+ * evicting the least recently used first, and numbers which are not customers are cached too.
+ * The lookup may be used from multiple threads.
+ */
+public class CachingCustomerLookup {
+
+	/** The default maximum number of cached customers. */
+	public static final int DefaultMaxEntries = 100000;
+
+	// Cached in place of a customer for numbers which are not customers.
+	private static final Customer NotACustomer = new Customer("", "", "");
+
+	private final IIndexedCustomerDatabase customerDatabase;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	// Cached customers indexed by phone number, in least recently used order.
+	private final LinkedHashMap<String, Customer> cache;
+
+	/**
+	 * Constructor. Uses the default cache size.
+	 * @param customerDatabase The customer database to look up customers which are not cached in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public CachingCustomerLookup(IIndexedCustomerDatabase customerDatabase) {
+		this(customerDatabase, DefaultMaxEntries);
+	}
+
+	/**
+	 * Constructor.
+	 * @param customerDatabase The customer database to look up customers which are not cached in.
+	 * @param maxEntries The maximum number of customers to cache.
+	 * @exception IllegalArgumentException If any of arguments are null or the size is not positive.
+	 */
+	public CachingCustomerLookup(IIndexedCustomerDatabase customerDatabase, final int maxEntries) {
+		AssertionHelper.NotNull(customerDatabase, "customerDatabase");
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("'maxEntries' must be positive.");
+		}
+
+		this.customerDatabase = customerDatabase;
+		this.cache = new LinkedHashMap<String, Customer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Customer> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets the customer with a phone number, from the cache if it holds an entry for the number.
+	 * @param phoneNumber The phone number.
+	 * @return The customer with the phone number, or null if no customer has it.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Customer customerFor(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+
+		synchronized (cache) {
+			Customer cached = cache.get(phoneNumber);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached != NotACustomer ? cached : null;
+			}
+		}
+
+		// Looked up outside the lock so that a slow lookup does not hold up other numbers.
+		misses.incrementAndGet();
+		Customer customer = customerDatabase.getCustomer(phoneNumber);
+		synchronized (cache) {
+			cache.put(phoneNumber, customer != null ? customer : NotACustomer);
+		}
+		return customer;
+	}
+
+	/**
+	 * Discards all cached customers, so that changes to the database are picked up.
+	 */
+	public void invalidateAll() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups passed on to the customer database.
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,159 @@
+package com.acmetelecom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+import com.acmetelecom.customer.TariffLibrary;
+
+/**
+ * A tariff library which caches the tariffs looked up in another tariff library, so that repeated lookups for the
+ * same customer do not go back to the (possibly remote) underlying library. Tariffs are cached by the customer's
+ * phone number; the cache holds a bounded number of entries, evicting the least recently used first, and each entry
+ * expires a fixed time after it was looked up so that tariff changes are picked up.
+ * The library may be used from multiple threads.
+ */
+public class CachingTariffLibrary implements TariffLibrary {
+
+	/** The default maximum number of cached tariffs. */
+	public static final int DefaultMaxEntries = 100000;
+	/** The default time a cached tariff is used for. */
+	public static final long DefaultTimeToLiveMillis = 10 * 60 * 1000;
+
+	private final TariffLibrary tariffLibrary;
+	private final long timeToLiveMillis;
+	private final IClock clock;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	// Cached tariffs indexed by phone number, in least recently used order.
+	private final LinkedHashMap<String, CachedTariff> cache;
+
+	/**
+	 * Constructor. Uses the default cache size and time to live.
+	 * @param tariffLibrary The tariff library to look up tariffs which are not cached in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public CachingTariffLibrary(TariffLibrary tariffLibrary) {
+		this(tariffLibrary, DefaultMaxEntries, DefaultTimeToLiveMillis, new Clock());
+	}
+
+	/**
+	 * Constructor.
+	 * @param tariffLibrary The tariff library to look up tariffs which are not cached in.
+	 * @param maxEntries The maximum number of tariffs to cache.
+	 * @param timeToLiveMillis The time a cached tariff is used for after it was looked up.
+	 * @param clock The clock to expire cached tariffs by.
+	 * @exception IllegalArgumentException If any of arguments are null or the size or time to live is not positive.
+	 */
+	public CachingTariffLibrary(TariffLibrary tariffLibrary, final int maxEntries, long timeToLiveMillis, IClock clock) {
+		AssertionHelper.NotNull(tariffLibrary, "tariffLibrary");
+		AssertionHelper.NotNull(clock, "clock");
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("'maxEntries' must be positive.");
+		}
+		if (timeToLiveMillis <= 0) {
+			throw new IllegalArgumentException("'timeToLiveMillis' must be positive.");
+		}
+
+		this.tariffLibrary = tariffLibrary;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.clock = clock;
+		this.cache = new LinkedHashMap<String, CachedTariff>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedTariff> eldest) {
+				if (size() > maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets the tariff for a specified customer, from the cache if it holds an unexpired entry for the customer.
+	 * @param customer The customer to get the tariff for.
+	 * @return The tariff of the specified customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Tariff tarriffFor(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		String phoneNumber = customer.getPhoneNumber();
+		long now = clock.now().getMillis();
+
+		synchronized (cache) {
+			CachedTariff cached = cache.get(phoneNumber);
+			if (cached != null && now < cached.expiresAt) {
+				hits.incrementAndGet();
+				return cached.tariff;
+			}
+		}
+
+		// Looked up outside the lock so that a slow lookup does not hold up other customers.
+		misses.incrementAndGet();
+		Tariff tariff = tariffLibrary.tarriffFor(customer);
+		if (tariff != null) {
+			synchronized (cache) {
+				cache.put(phoneNumber, new CachedTariff(tariff, now + timeToLiveMillis));
+			}
+		}
+		return tariff;
+	}
+
+	/**
+	 * Discards all cached tariffs.
+	 */
+	public void invalidateAll() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups passed on to the underlying tariff library.
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of tariffs evicted to keep the cache within its maximum size.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * A cached tariff and the time it expires.
+	 */
+	private static class CachedTariff {
+		private final Tariff tariff;
+		private final long expiresAt;
+
+		/**
+		 * Constructor.
+		 * @param tariff The tariff.
+		 * @param expiresAt The time the cached tariff expires (in milliseconds since epoch).
+		 */
+		CachedTariff(Tariff tariff, long expiresAt) {
+			this.tariff = tariff;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
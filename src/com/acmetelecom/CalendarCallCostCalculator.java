@@ -0,0 +1,107 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+import com.acmetelecom.customer.TariffLibrary;
+
+/**
+ * Calculates call costs against a time band calendar, so that calls can be charged differently at weekends, on
+ * holidays and in any number of bands through the day. The seconds a call spends in each band are counted a day
+ * segment at a time, and charged using rate tables compiled for each tariff when the calculator is created.
+ * Calls are split at the default zone's offset transitions, so a call is charged for the seconds it actually lasted
+ * across daylight saving changes, each in the band of the local time it fell in.
+ * With a calendar created from a peak period, produces the same results as CallCostCalculator in zones without
+ * daylight saving.
+ */
+public class CalendarCallCostCalculator implements ITariffCallCostCalculator {
+
+	private static final long MillisPerSecond = 1000;
+
+	private TariffLibrary tariffDatabase;
+	private TimeBandCalendar calendar;
+	private final int bandCount;
+
+	// Rates of each tariff in each band of the calendar, compiled when the calculator is created.
+	private final EnumMap<Tariff, RateTable> rateTables = new EnumMap<Tariff, RateTable>(Tariff.class);
+
+	/**
+	 * Constructor.
+	 * @param tariffDatabase The tariff database to use when looking up customer's tariffs.
+	 * @param calendar The calendar of time bands to charge calls in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public CalendarCallCostCalculator(TariffLibrary tariffDatabase, TimeBandCalendar calendar) {
+		AssertionHelper.NotNull(tariffDatabase, "tariffDatabase");
+		AssertionHelper.NotNull(calendar, "calendar");
+		this.tariffDatabase = tariffDatabase;
+		this.calendar = calendar;
+
+		List<TimeBand> bands = calendar.getBands();
+		this.bandCount = bands.size();
+		for (Tariff tariff : Tariff.values()) {
+			BigDecimal[] rates = new BigDecimal[bandCount];
+			for (int i = 0; i < bandCount; i++) {
+				rates[i] = bands.get(i).getRate(tariff);
+			}
+			rateTables.put(tariff, RateTable.compile(rates));
+		}
+	}
+
+	/**
+	 * Calculates the cost of a the specified call for the specified customer.
+	 * @param customer The customer to calculate the call cost for (cost depends on which tariff they are on).
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal calculateCallCost(Customer customer, Call call) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(call, "call");
+		return calculateCallCostOnTariff(tariffFor(customer), call);
+	}
+
+	/**
+	 * Looks up the tariff of the specified customer in the tariff database.
+	 * @param customer The customer to get the tariff for.
+	 * @return The customer's tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Tariff tariffFor(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		return tariffDatabase.tarriffFor(customer);
+	}
+
+	/**
+	 * Calculates the cost of a the specified call on the specified tariff.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal calculateCallCostOnTariff(Tariff tariff, Call call) {
+		AssertionHelper.NotNull(tariff, "tariff");
+		AssertionHelper.NotNull(call, "call");
+
+		ZoneOffsetTable offsets = ZoneOffsetTable.forDefaultZone();
+		long startMillis = call.startMillis();
+		long endMillis = call.endMillis();
+		long[] secondsPerBand = new long[bandCount];
+
+		// Counts each stretch of the call between offset transitions on the local time line of that stretch.
+		long from = startMillis;
+		while (from < endMillis) {
+			long to = Math.min(endMillis, offsets.nextTransition(from));
+			int offset = offsets.offsetAt(from);
+			calendar.countSeconds(
+					TimeBandCalendar.floorDiv(from + offset, MillisPerSecond),
+					TimeBandCalendar.floorDiv(to + offset, MillisPerSecond),
+					secondsPerBand);
+			from = to;
+		}
+		return rateTables.get(tariff).cost(secondsPerBand);
+	}
+}
@@ -1,15 +1,17 @@
 package com.acmetelecom;
 
 import org.joda.time.*;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 /**
  * Contains information about a specific call.
+ * A call keeps the phone numbers and times of its events rather than the events themselves, so call event managers
+ * which share one instance of each phone number between calls (see PhoneNumberDictionary) keep no per-call copies.
  */
 public class Call {
-    private CallEvent start;
-    private CallEvent end;
+    private final String caller;
+    private final String callee;
+    private final long startMillis;
+    private final long endMillis;
 
     /**
      * Constructor.
@@ -20,8 +22,27 @@ public class Call {
     public Call(CallEvent start, CallEvent end) {
     	AssertionHelper.NotNull(start, "start");
     	AssertionHelper.NotNull(end, "end");
-        this.start = start;
-        this.end = end;
+        this.caller = start.getCaller();
+        this.callee = start.getCallee();
+        this.startMillis = start.time();
+        this.endMillis = end.time();
+    }
+
+    /**
+     * Constructor. Creates a call without start and end events.
+     * @param caller The caller's phone number.
+     * @param callee The callee's phone number.
+     * @param startMillis The time the call started (in milliseconds since the epoch).
+     * @param endMillis The time the call ended (in milliseconds since the epoch).
+     * @exception IllegalArgumentException If any of arguments are null.
+     */
+    public Call(String caller, String callee, long startMillis, long endMillis) {
+    	AssertionHelper.NotNull(caller, "caller");
+    	AssertionHelper.NotNull(callee, "callee");
+        this.caller = caller;
+        this.callee = callee;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
     }
 
     /**
@@ -29,7 +50,7 @@ public class Call {
      * @return The caller's phone number.
      */
     public String caller() {
-        return start.getCaller();
+        return caller;
     }
     
     /**
@@ -37,7 +58,7 @@ public class Call {
      * @return The callee's phone number.
      */
     public String callee() {
-        return start.getCallee();
+        return callee;
     }
 
     /**
@@ -45,7 +66,7 @@ public class Call {
      * @return The call duration in seconds.
      */
     public int durationSeconds() {
-        return (int) (((end.time() - start.time()) / 1000));
+        return (int) (((endMillis - startMillis) / 1000));
     }
 
     /**
@@ -53,8 +74,7 @@ public class Call {
      * @return The date the call was started on as a String.
      */
     public String date() {
-    	DateTimeFormatter dateFormatter = DateTimeFormat.forPattern("dd/MM/yyyy");
-    	return dateFormatter.print(start.time());
+    	return CallFormatter.formatDate(startMillis);
     }
 
     /**
@@ -62,7 +82,7 @@ public class Call {
      * @return The call start time.
      */
     public DateTime startTime() {
-        return new DateTime(start.time());
+        return new DateTime(startMillis);
     }
 
     /**
@@ -70,6 +90,22 @@ public class Call {
      * @return The call end time.
      */
     public DateTime endTime() {
-        return new DateTime(end.time());
+        return new DateTime(endMillis);
+    }
+
+    /**
+     * Gets the call start time without creating a DateTime.
+     * @return The call start time (in milliseconds since the epoch).
+     */
+    public long startMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Gets the call end time without creating a DateTime.
+     * @return The call end time (in milliseconds since the epoch).
+     */
+    public long endMillis() {
+        return endMillis;
     }
 }
@@ -13,10 +13,11 @@ import com.acmetelecom.customer.TariffLibrary;
 /**
  * Contains logic for calculating call costs according to new regulations.
  */
-public class CallCostCalculator implements ICallCostCalculator {
+public class CallCostCalculator implements ITariffCallCostCalculator {
 
 	private IPeakPeriod peakPeriod;
 	private TariffLibrary tariffDatabase;
+	private BillingMetrics metrics = BillingMetrics.getDefault();
 	
 	/**
 	 * Constructor.
@@ -40,8 +41,44 @@ public class CallCostCalculator implements ICallCostCalculator {
 	public BigDecimal calculateCallCost(Customer customer, Call call) {
 		AssertionHelper.NotNull(customer, "customer");
 		AssertionHelper.NotNull(call, "call");
-		
-		Tariff tariff = tariffDatabase.tarriffFor(customer);
+		return calculateCallCostOnTariff(tariffFor(customer), call);
+	}
+	
+	/**
+	 * Looks up the tariff of the specified customer in the tariff database.
+	 * @param customer The customer to get the tariff for.
+	 * @return The customer's tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Tariff tariffFor(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		return tariffDatabase.tarriffFor(customer);
+	}
+	
+	/**
+	 * Calculates the cost of a the specified call on the specified tariff. The call, and for a sample of calls how long it
+	 * took to rate, are recorded in the default BillingMetrics.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal calculateCallCostOnTariff(Tariff tariff, Call call) {
+		AssertionHelper.NotNull(tariff, "tariff");
+		AssertionHelper.NotNull(call, "call");
+		long startNanos = metrics.startRating();
+		BigDecimal cost = costOf(tariff, call);
+		metrics.callRated(startNanos);
+		return cost;
+	}
+	
+	/**
+	 * Calculates the cost of a call on a tariff.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 */
+	private BigDecimal costOf(Tariff tariff, Call call) {
         BigDecimal cost = new BigDecimal(0.0);
         
         DateTime start = call.startTime();
@@ -49,7 +86,7 @@ public class CallCostCalculator implements ICallCostCalculator {
         
         assert(start.isBefore(end.getMillis()));
         
-        // Assumes calls don't last more than a year.
+        int endYear = end.getYear();
         int endDay = end.getDayOfYear();
         DayPeriod endPeriod = peakPeriod.getPeriodOfDay(end);
         
@@ -59,10 +96,11 @@ public class CallCostCalculator implements ICallCostCalculator {
         
         // Goes through each period between start and end of call, summing cost progressively.
         while (!done) {
+        	int currentYear = currentTime.getYear();
         	int currentDay = currentTime.getDayOfYear();
         	currentPeriod = peakPeriod.getPeriodOfDay(currentTime);
         	BigDecimal currentPeriodRate = peakPeriod.getPeriodRate(currentPeriod, tariff);
-        	boolean callEndsThisPeriod = currentDay == endDay && currentPeriod == endPeriod;
+        	boolean callEndsThisPeriod = currentYear == endYear && currentDay == endDay && currentPeriod == endPeriod;
         	
         	// Call ends in this period -> add cost from now until call end time.
         	if (callEndsThisPeriod) {
@@ -23,6 +23,22 @@ public abstract class CallEvent {
         this.time = timeStamp;
     }
 
+    /**
+     * Reuses the event for another event of the same type, so that a caller reporting many events to a call event
+     * manager which does not keep them (see IEventCopyingCallEventManager) needs only one event object.
+     * @param caller The caller's phone number.
+     * @param callee The callee's phone number.
+     * @param timeStamp The time this event occurred (in milliseconds since epoch).
+     * @exception IllegalArgumentException If any of arguments are null.
+     */
+    void reset(String caller, String callee, long timeStamp) {
+    	AssertionHelper.NotNull(caller, "caller");
+    	AssertionHelper.NotNull(callee, "callee");
+        this.caller = caller;
+        this.callee = callee;
+        this.time = timeStamp;
+    }
+
     /**
      * Gets the caller's phone number.
      * @return The caller's phone number.
@@ -0,0 +1,188 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+
+/**
+ * A batch of call events to be handled together, such as a batch of call detail records from a mediation platform.
+ * Each event carries its own time stamp. Events are held in parallel arrays rather than as event objects, and a
+ * batch can be cleared and refilled, so batches can be reused without creating garbage.
+ * Events are not validated when they are added; invalid events are rejected when the batch is handled.
+ */
+public class CallEventBatch {
+
+	/** The default number of events a batch has room for before it grows. */
+	public static final int DefaultCapacity = 1024;
+
+	private boolean[] starts;
+	private String[] callers;
+	private String[] callees;
+	private long[] times;
+	private int size;
+
+	/**
+	 * Constructor. Creates a batch with the default capacity.
+	 */
+	public CallEventBatch() {
+		this(DefaultCapacity);
+	}
+
+	/**
+	 * Constructor.
+	 * @param capacity The number of events the batch has room for before it grows.
+	 * @exception IllegalArgumentException If the capacity is not positive.
+	 */
+	public CallEventBatch(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("'capacity' must be positive.");
+		}
+		starts = new boolean[capacity];
+		callers = new String[capacity];
+		callees = new String[capacity];
+		times = new long[capacity];
+	}
+
+	/**
+	 * Adds a call start event to the batch.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call started (in milliseconds since epoch).
+	 */
+	public void addStart(String caller, String callee, long time) {
+		add(true, caller, callee, time);
+	}
+
+	/**
+	 * Adds a call end event to the batch.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call ended (in milliseconds since epoch).
+	 */
+	public void addEnd(String caller, String callee, long time) {
+		add(false, caller, callee, time);
+	}
+
+	/**
+	 * Gets the number of events in the batch.
+	 * @return The number of events.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets whether an event is a call start event.
+	 * @param event The index of the event in the batch.
+	 * @return True if the event is a call start, false if it is a call end.
+	 */
+	public boolean isStart(int event) {
+		checkIndex(event);
+		return starts[event];
+	}
+
+	/**
+	 * Gets the caller of an event.
+	 * @param event The index of the event in the batch.
+	 * @return The caller's phone number.
+	 */
+	public String getCaller(int event) {
+		checkIndex(event);
+		return callers[event];
+	}
+
+	/**
+	 * Gets the callee of an event.
+	 * @param event The index of the event in the batch.
+	 * @return The callee's phone number.
+	 */
+	public String getCallee(int event) {
+		checkIndex(event);
+		return callees[event];
+	}
+
+	/**
+	 * Gets the time of an event.
+	 * @param event The index of the event in the batch.
+	 * @return The time the event occurred (in milliseconds since epoch).
+	 */
+	public long getTime(int event) {
+		checkIndex(event);
+		return times[event];
+	}
+
+	/**
+	 * Removes all events from the batch, keeping its capacity.
+	 */
+	public void clear() {
+		Arrays.fill(callers, 0, size, null);
+		Arrays.fill(callees, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Creates the event object for an event.
+	 * @param event The index of the event in the batch.
+	 * @return The call event.
+	 * @exception IllegalArgumentException If the event's caller or callee is null.
+	 */
+	CallEvent eventAt(int event) {
+		checkIndex(event);
+		return starts[event]
+				? new CallStart(callers[event], callees[event], times[event])
+				: new CallEnd(callers[event], callees[event], times[event]);
+	}
+
+	/**
+	 * Hands the batch to a call event manager, all at once if the manager handles batches and otherwise one event
+	 * at a time, recording each event the manager cannot accept.
+	 * @param manager The call event manager to handle the events.
+	 * @param result The result to record rejected events in.
+	 */
+	void handleWith(ICallEventManager manager, CallEventBatchResult result) {
+		if (manager instanceof IBatchCallEventManager) {
+			((IBatchCallEventManager)manager).handleEvents(this, result);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			try {
+				manager.handleEvent(eventAt(i));
+			} catch (IllegalArgumentException e) {
+				result.reject(i, e.getMessage());
+			} catch (IllegalStateException e) {
+				result.reject(i, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Adds an event to the batch, growing it if it is full.
+	 * @param start Whether the event is a call start.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the event occurred.
+	 */
+	private void add(boolean start, String caller, String callee, long time) {
+		if (size == times.length) {
+			int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			callers = Arrays.copyOf(callers, capacity);
+			callees = Arrays.copyOf(callees, capacity);
+			times = Arrays.copyOf(times, capacity);
+		}
+		starts[size] = start;
+		callers[size] = caller;
+		callees[size] = callee;
+		times[size] = time;
+		size++;
+	}
+
+	/**
+	 * Checks an event index is within the batch.
+	 * @param event The index of the event.
+	 * @exception IndexOutOfBoundsException If the index is outside the batch.
+	 */
+	private void checkIndex(int event) {
+		if (event < 0 || event >= size) {
+			throw new IndexOutOfBoundsException("Event " + event + " is outside batch of " + size + " events.");
+		}
+	}
+}
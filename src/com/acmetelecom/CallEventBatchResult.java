@@ -0,0 +1,97 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of handling a batch of call events: how many were accepted, and which were rejected and why.
+ * Rejections are listed in the order of the rejected events in the batch.
+ */
+public class CallEventBatchResult {
+
+	static final String MissingPhoneNumber = "Caller and callee are required.";
+	static final String CallAlreadyInProgress = "Caller cannot make call to same callee twice simultaneously.";
+	static final String NoMatchingCallStart = "No matching CallStart event was found.";
+
+	private final int eventCount;
+	private int[] rejectedEvents = new int[8];
+	private String[] rejectionReasons = new String[8];
+	private int rejectedCount;
+
+	/**
+	 * Constructor.
+	 * @param eventCount The number of events in the batch.
+	 */
+	public CallEventBatchResult(int eventCount) {
+		this.eventCount = eventCount;
+	}
+
+	/**
+	 * Gets the number of events in the batch.
+	 * @return The number of events.
+	 */
+	public int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * Gets the number of events which were accepted.
+	 * @return The number of accepted events.
+	 */
+	public int getAcceptedCount() {
+		return eventCount - rejectedCount;
+	}
+
+	/**
+	 * Gets the number of events which were rejected.
+	 * @return The number of rejected events.
+	 */
+	public int getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Gets the index in the batch of a rejected event.
+	 * @param rejection The index of the rejection, from 0 to the number of rejected events.
+	 * @return The index of the rejected event in the batch.
+	 */
+	public int getRejectedEvent(int rejection) {
+		checkRejection(rejection);
+		return rejectedEvents[rejection];
+	}
+
+	/**
+	 * Gets the reason an event was rejected.
+	 * @param rejection The index of the rejection, from 0 to the number of rejected events.
+	 * @return The reason the event was rejected.
+	 */
+	public String getRejectionReason(int rejection) {
+		checkRejection(rejection);
+		return rejectionReasons[rejection];
+	}
+
+	/**
+	 * Records that an event was rejected. Events must be rejected in the order they appear in the batch.
+	 * @param event The index of the rejected event in the batch.
+	 * @param reason The reason the event was rejected.
+	 */
+	void reject(int event, String reason) {
+		if (rejectedCount == rejectedEvents.length) {
+			rejectedEvents = Arrays.copyOf(rejectedEvents, rejectedCount * 2);
+			rejectionReasons = Arrays.copyOf(rejectionReasons, rejectedCount * 2);
+		}
+		rejectedEvents[rejectedCount] = event;
+		rejectionReasons[rejectedCount] = reason;
+		rejectedCount++;
+	}
+
+	/**
+	 * Checks a rejection index is within the rejections.
+	 * @param rejection The index of the rejection.
+	 * @exception IndexOutOfBoundsException If the index is outside the rejections.
+	 */
+	private void checkRejection(int rejection) {
+		if (rejection < 0 || rejection >= rejectedCount) {
+			throw new IndexOutOfBoundsException("Rejection " + rejection + " is outside " + rejectedCount + " rejections.");
+		}
+	}
+}
@@ -0,0 +1,556 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of call events, used to recover the calls which were in progress when the system stopped.
+ * Each event is appended as a checksummed record; when the journal is opened the records are replayed to find the
+ * calls still in progress, any torn record at the end is discarded, and the journal is compacted down to just those
+ * calls. Records are replayed through a bounded buffer, so the journal is never read into memory whole. While the
+ * journal is open it is compacted again whenever it grows past its compaction threshold, or twice its size after the
+ * last compaction if that is larger, so that it stays proportional to the calls actually in progress. Every appended event is written to the file before append returns, so it survives the process crashing;
+ * how often it is forced to disk, to survive the machine failing, is decided by the sync policy.
+ * Appenders waiting for their events to be forced to disk share one force: the first to wait forces everything
+ * written so far, and the others return as soon as a force covering their event has finished (group commit).
+ */
+public class CallEventJournal implements Closeable {
+
+	/**
+	 * Defines when appended events are forced to disk.
+	 */
+	public enum SyncPolicy {
+		/** Every event is forced to disk before append returns, as soon as a force can be started. */
+		Always,
+		/** Every event is forced to disk before append returns, together with the events appended with it: a force
+		 * waits for appenders still writing, until a batch fills up or the batch delay has passed. */
+		Batched,
+		/** Every event is written to the operating system before append returns, but never forced to disk. */
+		Never
+	}
+
+	/** The default maximum number of events forced to disk together by the batched sync policy. */
+	public static final int DefaultMaxBatchEvents = 256;
+	/** The default maximum time a force waits for more events to join its batch under the batched sync policy. */
+	public static final long DefaultMaxBatchDelayMillis = 10;
+	/** The default size the journal file may grow to before it is compacted while open. */
+	public static final long DefaultCompactThresholdBytes = 64L * 1024 * 1024;
+
+	private static final Charset PhoneNumberCharset = Charset.forName("UTF-8");
+	private static final byte StartRecord = 0;
+	private static final byte EndRecord = 1;
+	private static final int RecordHeaderSize = 8;
+	private static final int MinPayloadLength = 1 + 8 + 2 + 2;
+	private static final int MaxPayloadLength = MinPayloadLength + 2 * Short.MAX_VALUE;
+	private static final int InitialBufferSize = 64 * 1024;
+	private static final int ReadBufferSize = 2 * (RecordHeaderSize + MaxPayloadLength);
+
+	private final Path file;
+	private final SyncPolicy syncPolicy;
+	private final int maxBatchEvents;
+	private final long maxBatchDelayMillis;
+	private final long compactThresholdBytes;
+	private final List<CallStart> openCalls;
+	private final CRC32 checksum = new CRC32();
+
+	// Replaced when the journal is compacted while open, holding both the journal monitor and the right to force.
+	private volatile FileChannel channel;
+
+	// Buffer each record is encoded in before it is written. Guarded by the journal monitor.
+	private ByteBuffer pending = ByteBuffer.allocate(InitialBufferSize);
+
+	// Bytes in the journal file, and the size at which it is next compacted. Guarded by the journal monitor.
+	private long fileSize;
+	private long compactAtSize;
+
+	// Bytes and events written to the channel since the journal was opened. Written under the journal monitor.
+	private volatile long writtenPosition;
+	private volatile long writtenEvents;
+
+	// Threads which have started appending but not yet written their event.
+	private final AtomicInteger appending = new AtomicInteger();
+
+	// Guards the state of forcing written events to disk.
+	private final Object syncLock = new Object();
+	private long syncedPosition;
+	private long syncedEvents;
+	private boolean forcing;
+	private volatile IOException syncFailure;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor. Opens the journal with the default batch size and delay.
+	 * @param file The journal file, which is created if it does not exist.
+	 * @param syncPolicy When appended events are forced to disk.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the journal cannot be read or written.
+	 */
+	public CallEventJournal(Path file, SyncPolicy syncPolicy) {
+		this(file, syncPolicy, DefaultMaxBatchEvents, DefaultMaxBatchDelayMillis);
+	}
+
+	/**
+	 * Constructor. Opens the journal with the default compaction threshold.
+	 * @param file The journal file, which is created if it does not exist.
+	 * @param syncPolicy When appended events are forced to disk.
+	 * @param maxBatchEvents The maximum number of events forced to disk together by the batched sync policy.
+	 * @param maxBatchDelayMillis The maximum time a force waits for more events under the batched sync policy.
+	 * @exception IllegalArgumentException If any of arguments are null or the batch size or delay is not positive.
+	 * @exception IllegalStateException Thrown if the journal cannot be read or written.
+	 */
+	public CallEventJournal(Path file, SyncPolicy syncPolicy, int maxBatchEvents, long maxBatchDelayMillis) {
+		this(file, syncPolicy, maxBatchEvents, maxBatchDelayMillis, DefaultCompactThresholdBytes);
+	}
+
+	/**
+	 * Constructor. Opens the journal, recovering the calls in progress it records and compacting it.
+	 * @param file The journal file, which is created if it does not exist.
+	 * @param syncPolicy When appended events are forced to disk.
+	 * @param maxBatchEvents The maximum number of events forced to disk together by the batched sync policy.
+	 * @param maxBatchDelayMillis The maximum time a force waits for more events under the batched sync policy.
+	 * @param compactThresholdBytes The size the journal file may grow to before it is compacted while open.
+	 * @exception IllegalArgumentException If any of arguments are null or the batch size, delay or compaction
+	 * threshold is not positive.
+	 * @exception IllegalStateException Thrown if the journal cannot be read or written.
+	 */
+	public CallEventJournal(Path file, SyncPolicy syncPolicy, int maxBatchEvents, long maxBatchDelayMillis,
+			long compactThresholdBytes) {
+		AssertionHelper.NotNull(file, "file");
+		AssertionHelper.NotNull(syncPolicy, "syncPolicy");
+		if (maxBatchEvents <= 0) {
+			throw new IllegalArgumentException("'maxBatchEvents' must be positive.");
+		}
+		if (maxBatchDelayMillis <= 0) {
+			throw new IllegalArgumentException("'maxBatchDelayMillis' must be positive.");
+		}
+		if (compactThresholdBytes <= 0) {
+			throw new IllegalArgumentException("'compactThresholdBytes' must be positive.");
+		}
+
+		this.file = file;
+		this.syncPolicy = syncPolicy;
+		this.maxBatchEvents = maxBatchEvents;
+		this.maxBatchDelayMillis = maxBatchDelayMillis;
+		this.compactThresholdBytes = compactThresholdBytes;
+
+		try {
+			this.openCalls = Files.exists(file) ? readOpenCalls(file) : new ArrayList<CallStart>();
+			rewrite(openCalls);
+			this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open call event journal " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Gets the calls which were in progress when the journal was last closed, in the order they were started.
+	 * @return The recovered calls in progress.
+	 */
+	public List<CallStart> getOpenCalls() {
+		return new ArrayList<CallStart>(openCalls);
+	}
+
+	/**
+	 * Appends a call event to the journal, writing it to the file and forcing it to disk as the sync policy requires.
+	 * @param event The call event to append.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the journal is closed or cannot be written.
+	 */
+	public void append(CallEvent event) {
+		awaitSynced(write(event));
+	}
+
+	/**
+	 * Writes a call event to the journal file without waiting for it to be forced to disk. Events are recorded in
+	 * the order they are written; awaitSynced then waits for the event to be forced as the sync policy requires. If
+	 * the journal has grown past its compaction size it is compacted before returning.
+	 * @param event The call event to write.
+	 * @return The position in the journal after the event.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the journal is closed or cannot be written.
+	 */
+	long write(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+		long position;
+		boolean compact;
+		appending.incrementAndGet();
+		try {
+			synchronized (this) {
+				checkUsable();
+				encode(event);
+				int length = pending.position();
+				pending.flip();
+				try {
+					while (pending.hasRemaining()) {
+						channel.write(pending);
+					}
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot write to call event journal " + file + ".", e);
+				} finally {
+					pending.clear();
+				}
+				writtenEvents++;
+				fileSize += length;
+				compact = fileSize >= compactAtSize;
+				position = writtenPosition += length;
+			}
+		} finally {
+			appending.decrementAndGet();
+		}
+
+		if (compact) {
+			compactWhileOpen();
+		}
+		return position;
+	}
+
+	/**
+	 * Waits until the events written up to a position have been forced to disk, if the sync policy requires it.
+	 * @param position The position returned by write.
+	 * @exception IllegalStateException Thrown if the journal cannot be forced to disk.
+	 */
+	void awaitSynced(long position) {
+		if (syncPolicy != SyncPolicy.Never) {
+			syncTo(position);
+		}
+	}
+
+	/**
+	 * Forces all appended events to disk.
+	 * @exception IllegalStateException Thrown if the journal is closed or cannot be written.
+	 */
+	public void sync() {
+		checkUsable();
+		syncTo(writtenPosition);
+	}
+
+	/**
+	 * Discards all events in the journal.
+	 * @exception IllegalStateException Thrown if the journal is closed or cannot be written.
+	 */
+	public synchronized void clear() {
+		checkUsable();
+		try {
+			channel.truncate(0);
+			channel.force(true);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot clear call event journal " + file + ".", e);
+		}
+		fileSize = 0;
+		compactAtSize = compactThresholdBytes;
+		synchronized (syncLock) {
+			syncedPosition = Math.max(syncedPosition, writtenPosition);
+			syncedEvents = Math.max(syncedEvents, writtenEvents);
+			syncLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Forces all appended events to disk and closes the journal.
+	 * @exception IllegalStateException Thrown if the journal cannot be written.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+
+		// No events are written once closed, so this force covers every event.
+		try {
+			syncTo(writtenPosition);
+		} finally {
+			synchronized (this) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot close call event journal " + file + ".", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until the events written up to a position have been forced to disk. If no force is under way the calling
+	 * thread forces every event written so far, on behalf of all threads waiting; otherwise it waits for the force
+	 * under way and, if that does not cover its position, for the next one.
+	 * @param position The position to force the journal up to.
+	 * @exception IllegalStateException Thrown if the journal cannot be forced to disk.
+	 */
+	private void syncTo(long position) {
+		synchronized (syncLock) {
+			// Lets a force gathering a batch see that another event has been written.
+			syncLock.notifyAll();
+			while (true) {
+				if (syncedPosition >= position) {
+					return;
+				}
+				if (syncFailure != null) {
+					throw new IllegalStateException("Cannot write to call event journal " + file + ".", syncFailure);
+				}
+				if (!forcing) {
+					forcing = true;
+					break;
+				}
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while syncing call event journal " + file + ".", e);
+				}
+			}
+			if (syncPolicy == SyncPolicy.Batched) {
+				gatherBatch();
+			}
+		}
+
+		long targetPosition;
+		long targetEvents;
+		synchronized (this) {
+			targetPosition = writtenPosition;
+			targetEvents = writtenEvents;
+		}
+		try {
+			channel.force(false);
+		} catch (IOException e) {
+			synchronized (syncLock) {
+				syncFailure = e;
+				forcing = false;
+				syncLock.notifyAll();
+			}
+			throw new IllegalStateException("Cannot write to call event journal " + file + ".", e);
+		}
+		synchronized (syncLock) {
+			syncedPosition = Math.max(syncedPosition, targetPosition);
+			syncedEvents = Math.max(syncedEvents, targetEvents);
+			forcing = false;
+			syncLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits, holding no lock but the sync lock, while other threads are still writing events which could join the
+	 * batch, until the batch is full or the batch delay has passed.
+	 */
+	private void gatherBatch() {
+		long deadline = System.currentTimeMillis() + maxBatchDelayMillis;
+		long remaining;
+		while (appending.get() > 0 && writtenEvents - syncedEvents < maxBatchEvents
+				&& (remaining = deadline - System.currentTimeMillis()) > 0) {
+			try {
+				syncLock.wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Encodes an event as a record in the pending buffer. A record is the payload length and checksum followed by
+	 * the payload: the event type, time, and the length prefixed caller and callee phone numbers.
+	 * @param event The event to encode.
+	 */
+	private void encode(CallEvent event) {
+		byte[] caller = event.getCaller().getBytes(PhoneNumberCharset);
+		byte[] callee = event.getCallee().getBytes(PhoneNumberCharset);
+		if (caller.length > Short.MAX_VALUE || callee.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Phone numbers are too long to journal.");
+		}
+
+		int payloadLength = 1 + 8 + 2 + caller.length + 2 + callee.length;
+		if (pending.remaining() < RecordHeaderSize + payloadLength) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + RecordHeaderSize + payloadLength));
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+
+		int recordStart = pending.position();
+		pending.position(recordStart + RecordHeaderSize);
+		pending.put(event instanceof CallStart ? StartRecord : EndRecord);
+		pending.putLong(event.time());
+		pending.putShort((short)caller.length);
+		pending.put(caller);
+		pending.putShort((short)callee.length);
+		pending.put(callee);
+
+		checksum.reset();
+		checksum.update(pending.array(), recordStart + RecordHeaderSize, payloadLength);
+		pending.putInt(recordStart, payloadLength);
+		pending.putInt(recordStart + 4, (int)checksum.getValue());
+	}
+
+	/**
+	 * Compacts the journal while it is open, if it is still past its compaction size, down to the calls in progress.
+	 * The journal file is replayed to find them, so appending does not have to track them. Compaction takes the
+	 * right to force before the journal monitor, as a force does, and holds both while the file is replaced, so no
+	 * event is written or forced meanwhile; the compacted file has been forced, so every event is then synced.
+	 * @exception IllegalStateException Thrown if the journal cannot be compacted, after which it cannot be used.
+	 */
+	private void compactWhileOpen() {
+		synchronized (syncLock) {
+			while (forcing) {
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					// Left for the next write past the compaction size.
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			forcing = true;
+		}
+
+		long compactedPosition = 0;
+		long compactedEvents = 0;
+		try {
+			synchronized (this) {
+				if (closed || syncFailure != null || fileSize < compactAtSize) {
+					return;
+				}
+				try {
+					FileChannel previous = channel;
+					rewrite(readOpenCalls(file));
+					channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+					previous.close();
+				} catch (IOException e) {
+					syncFailure = e;
+					throw new IllegalStateException("Cannot compact call event journal " + file + ".", e);
+				}
+				compactedPosition = writtenPosition;
+				compactedEvents = writtenEvents;
+			}
+		} finally {
+			synchronized (syncLock) {
+				syncedPosition = Math.max(syncedPosition, compactedPosition);
+				syncedEvents = Math.max(syncedEvents, compactedEvents);
+				forcing = false;
+				syncLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Replays the records in a journal file to find the calls still in progress, stopping at the first torn or
+	 * corrupt record. The file is read through a buffer which holds at least one record of the largest size, so
+	 * memory used does not grow with the file.
+	 * @param file The journal file.
+	 * @return The calls in progress, in the order they were started.
+	 * @throws IOException Thrown if the file cannot be read.
+	 */
+	private static List<CallStart> readOpenCalls(Path file) throws IOException {
+		LinkedHashMap<CallKey, CallStart> open = new LinkedHashMap<CallKey, CallStart>();
+		CRC32 checksum = new CRC32();
+		ByteBuffer records = ByteBuffer.allocate(ReadBufferSize);
+		records.limit(0);
+
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			boolean endOfFile = false;
+			while (true) {
+				int available = records.remaining();
+				int payloadLength = available >= RecordHeaderSize ? records.getInt(records.position()) : 0;
+				if (available >= RecordHeaderSize
+						&& (payloadLength < MinPayloadLength || payloadLength > MaxPayloadLength)) {
+					break;
+				}
+				if (available < RecordHeaderSize || available < RecordHeaderSize + payloadLength) {
+					if (endOfFile) {
+						break;
+					}
+					records.compact();
+					endOfFile = in.read(records) < 0;
+					records.flip();
+					continue;
+				}
+
+				records.position(records.position() + 4);
+				int expectedChecksum = records.getInt();
+				checksum.reset();
+				checksum.update(records.array(), records.arrayOffset() + records.position(), payloadLength);
+				if ((int)checksum.getValue() != expectedChecksum) {
+					break;
+				}
+
+				byte type = records.get();
+				long time = records.getLong();
+				byte[] caller = new byte[records.getShort()];
+				records.get(caller);
+				byte[] callee = new byte[records.getShort()];
+				records.get(callee);
+
+				CallStart start = new CallStart(new String(caller, PhoneNumberCharset), new String(callee, PhoneNumberCharset), time);
+				CallKey key = CallKey.of(start);
+				if (type == StartRecord) {
+					if (!open.containsKey(key)) {
+						open.put(key, start);
+					}
+				}
+				else {
+					open.remove(key);
+				}
+			}
+		}
+		return new ArrayList<CallStart>(open.values());
+	}
+
+	/**
+	 * Replaces the journal file with one holding only the given calls in progress, forced to disk, and sets the size
+	 * at which it is next compacted.
+	 * @param calls The calls in progress.
+	 * @throws IOException Thrown if the journal cannot be written.
+	 */
+	private void rewrite(List<CallStart> calls) throws IOException {
+		long size = 0;
+		Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(compacted,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			try {
+				for (int i = 0; i <= calls.size(); i++) {
+					if (i < calls.size()) {
+						encode(calls.get(i));
+					}
+					if (i == calls.size() || pending.position() >= InitialBufferSize) {
+						pending.flip();
+						while (pending.hasRemaining()) {
+							size += out.write(pending);
+						}
+						pending.clear();
+					}
+				}
+			} finally {
+				pending.clear();
+			}
+			out.force(true);
+		}
+		Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		fileSize = size;
+		compactAtSize = Math.max(compactThresholdBytes, 2 * size);
+	}
+
+	/**
+	 * Throws if the journal is closed or forcing it to disk has failed.
+	 * @exception IllegalStateException Thrown if the journal cannot be used.
+	 */
+	private void checkUsable() {
+		if (closed) {
+			throw new IllegalStateException("Call event journal " + file + " is closed.");
+		}
+		if (syncFailure != null) {
+			throw new IllegalStateException("Cannot write to call event journal " + file + ".", syncFailure);
+		}
+	}
+}
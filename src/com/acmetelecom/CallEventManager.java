@@ -1,25 +1,50 @@
 package com.acmetelecom;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The CallEventManager is responsible for handling call events, grouping them together to make complete calls
  * and storing the call logs for all customers.
+ * Phone numbers are stored once each in a PhoneNumberDictionary, calls in progress are kept as start times keyed by
+ * the dictionary ids of their caller and callee, and no call event is kept once it has been handled.
+ * Calls started, completed and in progress, and events which could not be matched, are counted in the default
+ * BillingMetrics by the calls in progress table.
  */
-public class CallEventManager implements ICallEventManager {
+public class CallEventManager implements IBatchCallEventManager, IEventCopyingCallEventManager {
 
 	private Logger log = FileLogger.create();
-	
-	// Hash map of completed calls, indexed by caller phone number.
-	private HashMap<String, ArrayList<Call>> callLog = new HashMap<String, ArrayList<Call>>();
-	
-	// Hash map of calls in progress, indexed by caller phone number.
+
+	private static final String SourceClass = CallEventManager.class.getName();
+
+	private final PhoneNumberDictionary phoneNumbers;
+
+	// Completed calls, indexed by the dictionary id of the caller phone number.
+	private ArrayList<ArrayList<Call>> callLog = new ArrayList<ArrayList<Call>>();
+
+	// Start times of calls in progress, indexed by caller and callee phone numbers.
 	// N.B. Assumes that single caller can be making several calls at same time, but not to same callee.
-	private HashMap<String, ArrayList<CallStart>> callsInProgress = new HashMap<String, ArrayList<CallStart>>();
-	
+	private CallsInProgressTable callsInProgress = new CallsInProgressTable();
+
+	/**
+	 * Constructor. Creates a manager with its own phone number dictionary.
+	 */
+	public CallEventManager() {
+		this(new PhoneNumberDictionary());
+	}
+
+	/**
+	 * Constructor.
+	 * @param phoneNumbers The dictionary to store phone numbers in, which may be shared with other managers.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public CallEventManager(PhoneNumberDictionary phoneNumbers) {
+		AssertionHelper.NotNull(phoneNumbers, "phoneNumbers");
+		this.phoneNumbers = phoneNumbers;
+	}
+
 	/**
 	 * Handles incoming call events. If finds a start and end event for a particular call then groups them together into
 	 * a single Call object and stores it in call logs.
@@ -29,29 +54,50 @@ public class CallEventManager implements ICallEventManager {
 	 */
 	public void handleEvent(CallEvent event) {
 		AssertionHelper.NotNull(event, "event");
-		String caller = event.getCaller();
-		
+
 		if (event instanceof CallStart) {
-			addCallStartEventToCallsInProgress((CallStart)event);
+			// If caller has started call to same callee twice without hanging up first throw exception.
+			String rejection = startCall(event.getCaller(), event.getCallee(), event.time());
+			if (rejection != null) {
+				throw new IllegalStateException(rejection);
+			}
 		}
 		else if (event instanceof CallEnd) {
-			ArrayList<CallStart> callStarts = callsInProgress.get(caller);
-			
-			// Search for CallStart event which matches this CallEnd event.
-			for (CallStart startEvent : callStarts) {
-			    if (startEvent.getCallee() == event.getCallee()) {
-				    callStarts.remove(startEvent);
-				    callsInProgress.put(caller, callStarts);
-				    addCallToLog(new Call(startEvent, event));
-				    return;
-			  }
+			if (endCall(event.getCaller(), event.getCallee(), event.time()) != null) {
+				log.logp(Level.WARNING, SourceClass, "handleEvent", CallsInProgressTable.noMatchingCallStartWarning(event));
 			}
-			
-			log.warning("No matching CallStart event was found for CallEnd event with caller "
-					+ "= " + event.getCaller() + ", callee = " + event.getCallee());
 		}
 	}
-	
+
+	/**
+	 * Handles a batch of call events in order. Events with a null caller or callee, starts of calls already in
+	 * progress, and ends of calls which are not in progress are rejected. No call is created for a rejected event,
+	 * though the phone numbers of a rejected call start are still added to the dictionary.
+	 * @param batch The batch of events to handle.
+	 * @param result The result to record rejected events in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void handleEvents(CallEventBatch batch, CallEventBatchResult result) {
+		AssertionHelper.NotNull(batch, "batch");
+		AssertionHelper.NotNull(result, "result");
+
+		for (int i = 0; i < batch.size(); i++) {
+			String caller = batch.getCaller(i);
+			String callee = batch.getCallee(i);
+			if (caller == null || callee == null) {
+				result.reject(i, CallEventBatchResult.MissingPhoneNumber);
+				continue;
+			}
+
+			String rejection = batch.isStart(i)
+					? startCall(caller, callee, batch.getTime(i))
+					: endCall(caller, callee, batch.getTime(i));
+			if (rejection != null) {
+				result.reject(i, rejection);
+			}
+		}
+	}
+
 	/**
 	 * Gets the call logs for a particular customer.
 	 * @param caller The caller the get call logs for.
@@ -60,59 +106,81 @@ public class CallEventManager implements ICallEventManager {
 	 */
 	public List<Call> getCallsForCustomer(String caller) {
 		AssertionHelper.NotNull(caller, "caller");
-		List<Call> calls = callLog.get(caller);
+		int callerId = phoneNumbers.find(caller);
+		List<Call> calls = callerId >= 0 && callerId < callLog.size() ? callLog.get(callerId) : null;
 		if (calls == null) {
 			return new ArrayList<Call>();
 		}
-		
+
 		return calls;
 	}
-	
+
 	/**
-	 * Clears all call logs.
+	 * Clears all call logs. Phone numbers are kept in the dictionary.
 	 */
 	public void clearCallLogs() {
 		callLog.clear();
 		callsInProgress.clear();
 	}
-	
+
 	/**
-	 * Adds the specified CallStart event to the calls in progress log.
-	 * @param callStart The CallStart event to add.
-	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously.
+	 * Gets the dictionary the manager stores phone numbers in.
+	 * @return The manager's phone number dictionary.
 	 */
-	private void addCallStartEventToCallsInProgress(CallStart callStart) {
-		String caller = callStart.getCaller();
+	public PhoneNumberDictionary getPhoneNumbers() {
+		return phoneNumbers;
+	}
 
-    	ArrayList<CallStart> callStartEvents = callsInProgress.get(caller);
-    	if (callStartEvents == null) {
-    		callStartEvents = new ArrayList<CallStart>();
-    	}
-    	else {
-    		// If caller has started call to same callee twice without hanging up first throw exception.
-    		for (CallStart e : callStartEvents) {
-    			if (e.getCallee() == callStart.getCallee()) {
-    				throw new IllegalStateException("Caller cannot make call to same callee twice simultaneously.");
-    			}
-    		}
-    	}
-    	
-    	callStartEvents.add(callStart);
-    	callsInProgress.put(caller, callStartEvents);
-    }
-	
 	/**
-	 * Adds the specified Call to the call log.
-	 * @param call The Call to add to the call log.
+	 * Starts a call, adding it to the calls in progress.
+	 * @param caller The caller phone number.
+	 * @param callee The callee phone number.
+	 * @param startMillis The time the call started.
+	 * @return Null if the call was started, or the reason it was rejected if caller is already calling callee.
 	 */
-    private void addCallToLog(Call call) {
-    	String caller = call.caller();
-    	ArrayList<Call> calls = callLog.get(caller);
+	private String startCall(String caller, String callee, long startMillis) {
+		if (!callsInProgress.start(phoneNumbers.idOf(caller), phoneNumbers.idOf(callee), startMillis)) {
+			return CallEventBatchResult.CallAlreadyInProgress;
+		}
+		return null;
+	}
+
+	/**
+	 * Ends a call in progress, adding it to the call log.
+	 * @param caller The caller phone number.
+	 * @param callee The callee phone number.
+	 * @param endMillis The time the call ended.
+	 * @return Null if the call was ended, or the reason it was rejected if there is no call in progress to end.
+	 */
+	private String endCall(String caller, String callee, long endMillis) {
+		// Look up the start of the call this end event ends.
+		int callerId = phoneNumbers.find(caller);
+		int calleeId = phoneNumbers.find(callee);
+		long startMillis = callsInProgress.end(callerId, calleeId);
+		if (startMillis == CallsInProgressTable.NotInProgress) {
+			return CallEventBatchResult.NoMatchingCallStart;
+		}
+		addCallToLog(callerId, calleeId, startMillis, endMillis);
+		return null;
+	}
+
+	/**
+	 * Adds a completed call to the call log.
+	 * @param callerId The dictionary id of the caller.
+	 * @param calleeId The dictionary id of the callee.
+	 * @param startMillis The time the call started.
+	 * @param endMillis The time the call ended.
+	 */
+    private void addCallToLog(int callerId, int calleeId, long startMillis, long endMillis) {
+    	while (callLog.size() <= callerId) {
+    		callLog.add(null);
+    	}
+    	ArrayList<Call> calls = callLog.get(callerId);
     	if (calls == null) {
     		calls = new ArrayList<Call>();
+    		callLog.set(callerId, calls);
     	}
-    	
-    	calls.add(call);
-        callLog.put(caller, calls);
+
+    	calls.add(new Call(phoneNumbers.numberOf(callerId), phoneNumbers.numberOf(calleeId), startMillis, endMillis));
     }
 }
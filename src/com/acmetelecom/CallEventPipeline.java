@@ -0,0 +1,543 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A call event manager which decouples the threads reporting call events from logging and handling them, in the
+ * style of the LMAX Disruptor. Events are written into the pre-allocated slots of a ring buffer, so publishing an
+ * event creates no objects, and pass through two stages, each on its own thread: the first logs each event, the
+ * second hands runs of events to the underlying call event manager as a batch (so a manager which handles batches
+ * takes its lock once per run rather than once per event). Each stage follows the one before it through a sequence
+ * barrier, and publishers wait for the last stage to free a slot when the ring buffer is full. A stage with nothing
+ * to do backs off and then sleeps until it is woken by the publishers or the stage before it.
+ * The time from each event being published to it being handled is recorded, so the latency of the pipeline can be
+ * reported as percentiles, and events the underlying manager rejects are counted in the default BillingMetrics. If
+ * the manager fails while handling a run of events, every event in the run is counted as rejected, since which of
+ * them it handled is unknown.
+ * Events are only read back from the underlying call event manager once every event published before the read has
+ * been handled; if calls are read while events are still being published, the underlying manager must be safe to
+ * read from one thread while it handles events on another.
+ */
+public class CallEventPipeline implements IPipelinedCallEventManager, Closeable {
+
+	/** The default number of events the ring buffer can hold. */
+	public static final int DefaultCapacity = 64 * 1024;
+
+	// The most events a stage processes before making them available to the next stage.
+	private static final int MaxBatchSize = 1024;
+
+	// How a waiting thread backs off: spinning, then yielding, then parking for a short time.
+	private static final int SpinTries = 100;
+	private static final int YieldTries = 100;
+	private static final long ParkNanos = 50 * 1000;
+
+	// The longest a sleeping stage waits before checking for events again, in case it was not woken: events are
+	// published without a fence, so a publisher may miss that the stage has just gone to sleep.
+	private static final long MaxSleepNanos = 10 * 1000 * 1000;
+
+	// Source given with each event's log record, so that the logger does not walk the stack to find it.
+	private static final String SourceClass = CallEventPipeline.class.getName();
+
+	private Logger log = FileLogger.create();
+	private BillingMetrics metrics = BillingMetrics.getDefault();
+
+	private final ICallEventManager callEventManager;
+	private final boolean multiProducer;
+	private final int mask;
+	private final int roundShift;
+
+	// The slots of the ring buffer. The event with sequence s is held in slot s & mask.
+	private final boolean[] starts;
+	private final String[] callers;
+	private final String[] callees;
+	private final long[] times;
+	private final long[] publishNanos;
+
+	// The last sequence claimed by a publisher. Only used with multiple publishers.
+	private final Sequence claimed = new Sequence();
+
+	// The last sequence claimed and published by the single publisher.
+	private long nextSequence = -1;
+	private final Sequence published = new Sequence();
+
+	// The round of the ring buffer (sequence / capacity) last published in each slot. Only used with multiple
+	// publishers, which may publish out of order.
+	private final AtomicIntegerArray publishedRounds;
+
+	private final Stage logStage;
+	private final Stage handleStage;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor. Creates a pipeline with the default capacity for any number of publishing threads.
+	 * @param callEventManager The call event manager to hand events on to.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public CallEventPipeline(ICallEventManager callEventManager) {
+		this(callEventManager, DefaultCapacity, true);
+	}
+
+	/**
+	 * Constructor. Starts the pipeline's threads.
+	 * @param callEventManager The call event manager to hand events on to.
+	 * @param capacity The number of events the ring buffer can hold, which must be a power of two.
+	 * @param multiProducer Whether events may be published from several threads at once. A pipeline for a single
+	 * publishing thread publishes without atomic read-modify-write operations, but must only ever be published to
+	 * from one thread at a time.
+	 * @exception IllegalArgumentException If any of arguments are null or the capacity is not a power of two.
+	 */
+	public CallEventPipeline(ICallEventManager callEventManager, int capacity, boolean multiProducer) {
+		AssertionHelper.NotNull(callEventManager, "callEventManager");
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("'capacity' must be a power of two.");
+		}
+
+		this.callEventManager = callEventManager;
+		this.multiProducer = multiProducer;
+		this.mask = capacity - 1;
+		this.roundShift = Integer.numberOfTrailingZeros(capacity);
+
+		this.starts = new boolean[capacity];
+		this.callers = new String[capacity];
+		this.callees = new String[capacity];
+		this.times = new long[capacity];
+		this.publishNanos = new long[capacity];
+		this.publishedRounds = new AtomicIntegerArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			publishedRounds.set(i, -1);
+		}
+
+		this.logStage = new LogStage();
+		this.handleStage = new HandleStage(logStage);
+		logStage.start("call-event-log");
+		handleStage.start("call-event-handler");
+	}
+
+	/**
+	 * Queues an incoming call event to be logged and handled.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the pipeline has been closed.
+	 */
+	public void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+		publish(event instanceof CallStart, event.getCaller(), event.getCallee(), event.time());
+	}
+
+	/**
+	 * Queues a call start event.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call started (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the pipeline has been closed.
+	 */
+	public void publishStart(String caller, String callee, long time) {
+		publish(true, caller, callee, time);
+	}
+
+	/**
+	 * Queues a call end event.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call ended (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the pipeline has been closed.
+	 */
+	public void publishEnd(String caller, String callee, long time) {
+		publish(false, caller, callee, time);
+	}
+
+	/**
+	 * Waits until every event published before the call has been handled.
+	 * @exception IllegalStateException Thrown if the wait is interrupted.
+	 */
+	public void awaitHandled() {
+		long target = multiProducer ? claimed.get() : published.get();
+		int tries = 0;
+		while (handleStage.sequence.get() < target && !handleStage.finished) {
+			if (Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for call events to be handled.");
+			}
+			tries = idle(tries);
+		}
+	}
+
+	/**
+	 * Gets the call logs for a particular customer, once every event published before the call has been handled.
+	 * @param caller The caller the get call logs for.
+	 * @return The list of calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public List<Call> getCallsForCustomer(String caller) {
+		AssertionHelper.NotNull(caller, "caller");
+		awaitHandled();
+		return callEventManager.getCallsForCustomer(caller);
+	}
+
+	/**
+	 * Clears all call logs, once every event published before the call has been handled.
+	 */
+	public void clearCallLogs() {
+		awaitHandled();
+		callEventManager.clearCallLogs();
+	}
+
+	/**
+	 * Gets the latency of the pipeline: the time from each event being published to it having been handled.
+	 * @return The histogram of latencies, in nanoseconds, which is updated as events are handled.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Gets the number of events the underlying call event manager did not accept.
+	 * @return The number of rejected events.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Stops accepting events, waits for every published event to be handled and stops the pipeline's threads.
+	 * Must only be called once all publishing threads have stopped publishing.
+	 * @exception IllegalStateException Thrown if the wait is interrupted.
+	 */
+	public void close() {
+		closed = true;
+		logStage.wake();
+		try {
+			logStage.thread.join();
+			handleStage.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for call events to be handled.", e);
+		}
+	}
+
+	/**
+	 * Claims the next slot of the ring buffer, waiting for it to be free, writes an event into it and publishes it.
+	 * @param start Whether the event is a call start.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time of the event.
+	 */
+	private void publish(boolean start, String caller, String callee, long time) {
+		AssertionHelper.NotNull(caller, "caller");
+		AssertionHelper.NotNull(callee, "callee");
+		if (closed) {
+			throw new IllegalStateException("Call event pipeline has been closed.");
+		}
+
+		long sequence = multiProducer ? claimed.incrementAndGet() : ++nextSequence;
+		long wrapPoint = sequence - (mask + 1);
+		int tries = 0;
+		while (wrapPoint > handleStage.sequence.get()) {
+			if (handleStage.finished) {
+				throw new IllegalStateException("Call event pipeline has been closed.");
+			}
+			tries = idle(tries);
+		}
+
+		int slot = (int)sequence & mask;
+		starts[slot] = start;
+		callers[slot] = caller;
+		callees[slot] = callee;
+		times[slot] = time;
+		publishNanos[slot] = System.nanoTime();
+		if (multiProducer) {
+			publishedRounds.lazySet(slot, (int)(sequence >>> roundShift));
+		} else {
+			published.lazySet(sequence);
+		}
+		logStage.wake();
+	}
+
+	/**
+	 * Gets the last sequence from which all events have been published.
+	 * @param next The first sequence which has not yet been processed by the first stage.
+	 * @return The last published sequence of the unbroken run starting at next, or next - 1 if next itself has not
+	 * been published.
+	 */
+	private long highestPublished(long next) {
+		if (!multiProducer) {
+			return published.get();
+		}
+		long last = claimed.get();
+		long sequence = next;
+		while (sequence <= last && publishedRounds.get((int)sequence & mask) == (int)(sequence >>> roundShift)) {
+			sequence++;
+		}
+		return sequence - 1;
+	}
+
+	/**
+	 * Backs off while waiting: spinning at first, then yielding, then parking.
+	 * @param tries The number of times the caller has already backed off.
+	 * @return The number of times the caller has backed off, including this one.
+	 */
+	private static int idle(int tries) {
+		if (tries >= SpinTries + YieldTries) {
+			LockSupport.parkNanos(ParkNanos);
+		} else if (tries >= SpinTries) {
+			Thread.yield();
+		}
+		return tries + 1;
+	}
+
+	/**
+	 * A stage of the pipeline, processing events on its own thread once the stage before it (or, for the first
+	 * stage, the publishers) has finished with them.
+	 */
+	private abstract class Stage implements Runnable {
+		// The last sequence processed by the stage.
+		private final Sequence sequence = new Sequence();
+		private final Stage previous;
+		private Stage follower;
+		private Thread thread;
+		private volatile boolean finished;
+		private volatile boolean sleeping;
+
+		/**
+		 * Constructor.
+		 * @param previous The stage before this one, or null for the first stage.
+		 */
+		protected Stage(Stage previous) {
+			this.previous = previous;
+			if (previous != null) {
+				previous.follower = this;
+			}
+		}
+
+		/**
+		 * Starts the stage's thread.
+		 * @param name The name of the thread.
+		 */
+		private void start(String name) {
+			thread = new Thread(this, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Processes events as they become available until the pipeline is closed and every event has been
+		 * processed.
+		 */
+		public void run() {
+			long next = 0;
+			int tries = 0;
+			while (true) {
+				// Read whether the pipeline is closing before what is available, so nothing published is missed.
+				boolean closing = previous == null ? closed : previous.finished;
+				long available = previous == null ? highestPublished(next) : previous.sequence.get();
+				if (available >= next) {
+					long last = Math.min(available, next + MaxBatchSize - 1);
+					try {
+						process(next, last);
+					} catch (RuntimeException e) {
+						failed(next, last, e);
+					}
+					sequence.set(last);
+					wakeFollower();
+					next = last + 1;
+					tries = 0;
+				} else if (closing) {
+					break;
+				} else if (tries < SpinTries + YieldTries) {
+					tries = idle(tries);
+				} else {
+					sleep(next);
+				}
+			}
+			finished = true;
+			wakeFollower();
+		}
+
+		/**
+		 * Wakes the stage if it is sleeping.
+		 */
+		private void wake() {
+			if (sleeping) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		/**
+		 * Wakes the stage after this one, if there is one.
+		 */
+		private void wakeFollower() {
+			if (follower != null) {
+				follower.wake();
+			}
+		}
+
+		/**
+		 * Sleeps until the stage is woken or the longest sleep has passed, unless an event has become available or
+		 * the pipeline is closing since the stage last looked.
+		 * @param next The first sequence which the stage has not yet processed.
+		 */
+		private void sleep(long next) {
+			sleeping = true;
+			boolean closing = previous == null ? closed : previous.finished;
+			long available = previous == null ? highestPublished(next) : previous.sequence.get();
+			if (available < next && !closing) {
+				LockSupport.parkNanos(this, MaxSleepNanos);
+			}
+			sleeping = false;
+		}
+
+		/**
+		 * Processes a run of events.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 */
+		protected abstract void process(long first, long last);
+
+		/**
+		 * Deals with a run of events which could not be processed.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 * @param e The exception thrown while processing them.
+		 */
+		protected abstract void failed(long first, long last, RuntimeException e);
+	}
+
+	/**
+	 * The first stage, which logs each event.
+	 */
+	private class LogStage extends Stage {
+
+		/**
+		 * Constructor.
+		 */
+		private LogStage() {
+			super(null);
+		}
+
+		/**
+		 * Logs a run of events.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 */
+		protected void process(long first, long last) {
+			if (!log.isLoggable(Level.INFO)) {
+				return;
+			}
+			for (long sequence = first; sequence <= last; sequence++) {
+				int slot = (int)sequence & mask;
+				log.logp(Level.INFO, SourceClass, starts[slot] ? "publishStart" : "publishEnd",
+						starts[slot] ? "Call from {0} to {1} initiated." : "Call from {0} to {1} completed.",
+						new Object[] { callers[slot], callees[slot] });
+			}
+		}
+
+		/**
+		 * Logs that a run of events could not be logged. The events are still handled.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 * @param e The exception thrown while logging them.
+		 */
+		protected void failed(long first, long last, RuntimeException e) {
+			log.logp(Level.SEVERE, SourceClass, "publish", "Failed to log call events.", e);
+		}
+	}
+
+	/**
+	 * The last stage, which hands events to the underlying call event manager as batches.
+	 */
+	private class HandleStage extends Stage {
+		private final CallEventBatch batch = new CallEventBatch(MaxBatchSize);
+
+		/**
+		 * Constructor.
+		 * @param previous The stage before this one.
+		 */
+		private HandleStage(Stage previous) {
+			super(previous);
+		}
+
+		/**
+		 * Hands a run of events to the call event manager as a batch and records their latency.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 */
+		protected void process(long first, long last) {
+			batch.clear();
+			for (long sequence = first; sequence <= last; sequence++) {
+				int slot = (int)sequence & mask;
+				if (starts[slot]) {
+					batch.addStart(callers[slot], callees[slot], times[slot]);
+				} else {
+					batch.addEnd(callers[slot], callees[slot], times[slot]);
+				}
+			}
+
+			CallEventBatchResult result = new CallEventBatchResult(batch.size());
+			batch.handleWith(callEventManager, result);
+			if (result.getRejectedCount() > 0) {
+				rejectedCount.addAndGet(result.getRejectedCount());
+				metrics.eventsRejected(result.getRejectedCount());
+				for (int i = 0; i < result.getRejectedCount(); i++) {
+					int event = result.getRejectedEvent(i);
+					log.logp(Level.WARNING, SourceClass, "handleEvents", "Call event from {0} to {1} rejected: {2}",
+							new Object[] { batch.getCaller(event), batch.getCallee(event), result.getRejectionReason(i) });
+				}
+			}
+			recordLatency(first, last);
+		}
+
+		/**
+		 * Counts every event in a run the call event manager failed on as rejected, since which of them it handled
+		 * before failing is unknown, and records their latency.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 * @param e The exception thrown while handling them.
+		 */
+		protected void failed(long first, long last, RuntimeException e) {
+			int count = (int)(last - first + 1);
+			rejectedCount.addAndGet(count);
+			metrics.eventsRejected(count);
+			log.logp(Level.SEVERE, SourceClass, "handleEvents", "Failed to handle run of " + count
+					+ " call events; all are counted as rejected.", e);
+			recordLatency(first, last);
+		}
+
+		/**
+		 * Records the latency of a run of events which have been dealt with.
+		 * @param first The sequence of the first event.
+		 * @param last The sequence of the last event.
+		 */
+		private void recordLatency(long first, long last) {
+			long now = System.nanoTime();
+			for (long sequence = first; sequence <= last; sequence++) {
+				latency.record(now - publishNanos[(int)sequence & mask]);
+			}
+		}
+	}
+
+	/**
+	 * A sequence number, padded so that sequences updated by different threads do not share a cache line.
+	 */
+	@SuppressWarnings("serial")
+	private static class Sequence extends AtomicLong {
+		protected long p1, p2, p3, p4, p5, p6, p7;
+
+		/**
+		 * Constructor. The sequence starts before the first event.
+		 */
+		private Sequence() {
+			super(-1);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.acmetelecom;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Class responsible for formatting call dates and durations for bills.
+ * Dates are formatted by a single shared formatter, and the string for each day is cached, so the calls made on the
+ * same day share one string. Durations are formatted by hand, and can be appended straight into an output buffer.
+ */
+public final class CallFormatter {
+
+	private static final DateTimeFormatter DateFormat = DateTimeFormat.forPattern("dd/MM/yyyy");
+
+	private static final long MillisPerDay = 24 * 60 * 60 * 1000;
+
+	// Number of days held in the date cache; must be a power of two.
+	private static final int DateCacheSize = 1024;
+
+	// Direct-mapped cache of formatted days, indexed by the low bits of the local day since the epoch.
+	private static final AtomicReferenceArray<CachedDate> dates = new AtomicReferenceArray<CachedDate>(DateCacheSize);
+
+	private CallFormatter() {
+	}
+
+	/**
+	 * Formats the date of an instant in the default time zone, as dd/MM/yyyy.
+	 * @param millis The instant in milliseconds since the epoch.
+	 * @return The formatted date.
+	 */
+	public static String formatDate(long millis) {
+		ZoneOffsetTable offsets = ZoneOffsetTable.forDefaultZone();
+		long day = TimeBandCalendar.floorDiv(millis + offsets.offsetAt(millis), MillisPerDay);
+		int slot = (int)day & (DateCacheSize - 1);
+
+		CachedDate cached = dates.get(slot);
+		if (cached == null || cached.day != day || cached.zone != offsets.getZone()) {
+			cached = new CachedDate(offsets.getZone(), day, DateFormat.withZone(offsets.getZone()).print(millis));
+			dates.set(slot, cached);
+		}
+		return cached.text;
+	}
+
+	/**
+	 * Formats a call duration as minutes and seconds, e.g. 2:05.
+	 * @param seconds The call duration in seconds.
+	 * @return The formatted duration.
+	 */
+	public static String formatDuration(int seconds) {
+		StringBuilder duration = new StringBuilder(8);
+		appendDuration(duration, seconds);
+		return duration.toString();
+	}
+
+	/**
+	 * Appends a call duration as minutes and seconds, e.g. 2:05, to a buffer.
+	 * @param buffer The buffer to append to.
+	 * @param seconds The call duration in seconds.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public static void appendDuration(StringBuilder buffer, int seconds) {
+		AssertionHelper.NotNull(buffer, "buffer");
+		int remainder = seconds % 60;
+		buffer.append(seconds / 60).append(':');
+		if (remainder >= 0 && remainder < 10) {
+			buffer.append('0');
+		}
+		buffer.append(remainder);
+	}
+
+	/**
+	 * The formatted date of a day in a time zone.
+	 */
+	private static class CachedDate {
+		private final DateTimeZone zone;
+		private final long day;
+		private final String text;
+
+		/**
+		 * Constructor.
+		 * @param zone The time zone the day is in.
+		 * @param day The local day, in days since the epoch.
+		 * @param text The formatted date.
+		 */
+		CachedDate(DateTimeZone zone, long day, String text) {
+			this.zone = zone;
+			this.day = day;
+			this.text = text;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.acmetelecom;
+
+/**
+ * Composite key identifying a call by its caller and callee, used to index calls in progress so that matching
+ * a CallEnd event to its CallStart event takes constant time.
+ */
+final class CallKey {
+
+	private final String caller;
+	private final String callee;
+	private final int hash;
+
+	/**
+	 * Constructor.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 */
+	CallKey(String caller, String callee) {
+		this.caller = caller;
+		this.callee = callee;
+		this.hash = 31 * caller.hashCode() + callee.hashCode();
+	}
+
+	/**
+	 * Creates the key identifying the call the specified event belongs to.
+	 * @param event The call event.
+	 * @return The key for the event's call.
+	 */
+	static CallKey of(CallEvent event) {
+		return new CallKey(event.getCaller(), event.getCallee());
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CallKey)) {
+			return false;
+		}
+		CallKey other = (CallKey)o;
+		return hash == other.hash && caller.equals(other.caller) && callee.equals(other.callee);
+	}
+}
@@ -0,0 +1,71 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+
+/**
+ * A growable, column-oriented buffer of completed calls made by a single caller. Each call takes up three longs
+ * (the encoded callee and the start and end times) instead of a Call and its two CallEvents.
+ */
+class CallRecordBuffer {
+
+	private static final int InitialCapacity = 8;
+
+	private long[] callees = new long[InitialCapacity];
+	private long[] startTimes = new long[InitialCapacity];
+	private long[] endTimes = new long[InitialCapacity];
+	private int size;
+
+	/**
+	 * Appends a call to the buffer.
+	 * @param callee The encoded callee phone number.
+	 * @param startTime The call start time (in milliseconds since the epoch).
+	 * @param endTime The call end time (in milliseconds since the epoch).
+	 */
+	void add(long callee, long startTime, long endTime) {
+		if (size == callees.length) {
+			int capacity = size + (size >> 1);
+			callees = Arrays.copyOf(callees, capacity);
+			startTimes = Arrays.copyOf(startTimes, capacity);
+			endTimes = Arrays.copyOf(endTimes, capacity);
+		}
+		callees[size] = callee;
+		startTimes[size] = startTime;
+		endTimes[size] = endTime;
+		size++;
+	}
+
+	/**
+	 * Gets the number of calls in the buffer.
+	 * @return The number of calls.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the encoded callee of a call.
+	 * @param i The index of the call.
+	 * @return The encoded callee phone number.
+	 */
+	long callee(int i) {
+		return callees[i];
+	}
+
+	/**
+	 * Gets the start time of a call.
+	 * @param i The index of the call.
+	 * @return The call start time (in milliseconds since the epoch).
+	 */
+	long startTime(int i) {
+		return startTimes[i];
+	}
+
+	/**
+	 * Gets the end time of a call.
+	 * @param i The index of the call.
+	 * @return The call end time (in milliseconds since the epoch).
+	 */
+	long endTime(int i) {
+		return endTimes[i];
+	}
+}
@@ -16,4 +16,14 @@ public class CallStart extends CallEvent {
     public CallStart(String caller, String callee, DateTime time) {
         super(caller, callee, time.getMillis());
     }
+    
+	/**
+	 * Constructor.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param timeStamp The time the event occurred (in milliseconds since the epoch).
+	 */
+    public CallStart(String caller, String callee, long timeStamp) {
+        super(caller, callee, timeStamp);
+    }
 }
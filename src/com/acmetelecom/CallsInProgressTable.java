@@ -0,0 +1,204 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+
+/**
+ * The start times of the calls in progress, keyed by the PhoneNumberDictionary ids of their caller and callee.
+ * Keys and times are held in primitive arrays with open addressing, so starting and ending a call creates neither a
+ * key nor a start event. Call event managers start and end calls through it, so that each matches ends to starts,
+ * and reports calls which cannot be matched, in the same way. Calls started, completed and cleared, duplicate starts
+ * and unmatched ends are counted in the default BillingMetrics, whichever manager the table belongs to.
+ */
+final class CallsInProgressTable {
+
+	/**
+	 * The start time returned by end when there is no call in progress to end.
+	 */
+	static final long NotInProgress = Long.MIN_VALUE;
+
+	private static final long Empty = -1;
+	private static final int InitialCapacity = 16;
+
+	private final BillingMetrics metrics = BillingMetrics.getDefault();
+
+	private long[] keys;
+	private long[] startTimes;
+	private int mask;
+	private int size;
+
+	/**
+	 * Constructor. Creates an empty table.
+	 */
+	CallsInProgressTable() {
+		allocate(InitialCapacity);
+	}
+
+	/**
+	 * Creates the warning logged for a call end event which matched no call in progress.
+	 * @param callEnd The call end event.
+	 * @return The warning message.
+	 */
+	static String noMatchingCallStartWarning(CallEvent callEnd) {
+		return "No matching CallStart event was found for CallEnd event with caller "
+				+ "= " + callEnd.getCaller() + ", callee = " + callEnd.getCallee();
+	}
+
+	/**
+	 * Starts a call, unless caller is already calling callee.
+	 * @param callerId The dictionary id of the caller.
+	 * @param calleeId The dictionary id of the callee.
+	 * @param startTime The time the call started.
+	 * @return True if the call was started, false if caller is already calling callee.
+	 */
+	boolean start(int callerId, int calleeId, long startTime) {
+		if (!add(keyOf(callerId, calleeId), startTime)) {
+			metrics.duplicateCallStart();
+			return false;
+		}
+		metrics.callStarted();
+		return true;
+	}
+
+	/**
+	 * Ends a call in progress, removing it from the table.
+	 * @param callerId The dictionary id of the caller, or -1 if the caller is not in the dictionary.
+	 * @param calleeId The dictionary id of the callee, or -1 if the callee is not in the dictionary.
+	 * @return The time the call started, or NotInProgress if caller is not calling callee.
+	 */
+	long end(int callerId, int calleeId) {
+		int slot = callerId < 0 || calleeId < 0 ? -1 : find(keyOf(callerId, calleeId));
+		if (slot < 0) {
+			metrics.unmatchedCallEnd();
+			return NotInProgress;
+		}
+		long startTime = startTimes[slot];
+		removeAt(slot);
+		metrics.callCompleted();
+		return startTime;
+	}
+
+	/**
+	 * Gets the number of calls in progress.
+	 * @return The number of calls.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all calls in progress.
+	 */
+	void clear() {
+		metrics.openCallsCleared(size);
+		allocate(InitialCapacity);
+	}
+
+	/**
+	 * Creates the key of a call.
+	 * @param callerId The dictionary id of the caller.
+	 * @param calleeId The dictionary id of the callee.
+	 * @return The call's key.
+	 */
+	private static long keyOf(int callerId, int calleeId) {
+		return ((long)callerId << 32) | (calleeId & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds a call in progress, unless a call with the same key is already in progress.
+	 * @param key The key of the call.
+	 * @param startTime The time the call started.
+	 * @return True if the call was added, false if a call with the key is already in progress.
+	 */
+	private boolean add(long key, long startTime) {
+		int slot = slotOf(key);
+		while (keys[slot] != Empty) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		startTimes[slot] = startTime;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a call in progress.
+	 * @param key The key of the call.
+	 * @return The slot holding the call, or -1 if no call with the key is in progress.
+	 */
+	private int find(long key) {
+		int slot = slotOf(key);
+		while (keys[slot] != Empty) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes a call found with find, moving back any calls displaced past it so that they can still be found.
+	 * @param slot The slot holding the call.
+	 */
+	private void removeAt(int slot) {
+		int hole = slot;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (keys[next] == Empty) {
+				break;
+			}
+			// The call in the next slot can fill the hole unless its home slot lies after the hole.
+			int home = slotOf(keys[next]);
+			boolean homeAfterHole = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+			if (!homeAfterHole) {
+				keys[hole] = keys[next];
+				startTimes[hole] = startTimes[next];
+				hole = next;
+			}
+		}
+		keys[hole] = Empty;
+		size--;
+	}
+
+	/**
+	 * Gets the slot a key would be in if there were no other keys.
+	 * @param key The key.
+	 * @return The key's home slot.
+	 */
+	private int slotOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+
+	/**
+	 * Doubles the capacity of the table, adding the calls back in their new slots.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldStartTimes = startTimes;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != Empty) {
+				add(oldKeys[i], oldStartTimes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the table with an empty one.
+	 * @param capacity The number of slots, a power of two.
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, Empty);
+		startTimes = new long[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+}
@@ -0,0 +1,95 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of importing a file of call detail records: how many records were read and imported, and which were
+ * rejected and why. Records are identified by their 1-based position in the file, which for CSV files is their line
+ * number. Rejections are listed in the order of the rejected records in the file.
+ */
+public class CdrImportResult {
+
+	private long recordCount;
+	private long[] rejectedRecords = new long[8];
+	private String[] rejectionReasons = new String[8];
+	private int rejectedCount;
+
+	/**
+	 * Gets the number of records read from the file.
+	 * @return The number of records.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Gets the number of records which were imported as call events.
+	 * @return The number of imported records.
+	 */
+	public long getImportedCount() {
+		return recordCount - rejectedCount;
+	}
+
+	/**
+	 * Gets the number of records which were rejected, either because they could not be parsed or because the call
+	 * event manager did not accept their event.
+	 * @return The number of rejected records.
+	 */
+	public int getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Gets the position in the file of a rejected record.
+	 * @param rejection The index of the rejection, from 0 to the number of rejected records.
+	 * @return The 1-based position of the rejected record (its line number in a CSV file).
+	 */
+	public long getRejectedRecord(int rejection) {
+		checkRejection(rejection);
+		return rejectedRecords[rejection];
+	}
+
+	/**
+	 * Gets the reason a record was rejected.
+	 * @param rejection The index of the rejection, from 0 to the number of rejected records.
+	 * @return The reason the record was rejected.
+	 */
+	public String getRejectionReason(int rejection) {
+		checkRejection(rejection);
+		return rejectionReasons[rejection];
+	}
+
+	/**
+	 * Records that records were read from the file.
+	 * @param count The number of records read.
+	 */
+	void addRecords(long count) {
+		recordCount += count;
+	}
+
+	/**
+	 * Records that a record was rejected. Records must be rejected in the order they appear in the file.
+	 * @param record The 1-based position of the rejected record.
+	 * @param reason The reason the record was rejected.
+	 */
+	void reject(long record, String reason) {
+		if (rejectedCount == rejectedRecords.length) {
+			rejectedRecords = Arrays.copyOf(rejectedRecords, rejectedCount * 2);
+			rejectionReasons = Arrays.copyOf(rejectionReasons, rejectedCount * 2);
+		}
+		rejectedRecords[rejectedCount] = record;
+		rejectionReasons[rejectedCount] = reason;
+		rejectedCount++;
+	}
+
+	/**
+	 * Checks a rejection index is within the rejections.
+	 * @param rejection The index of the rejection.
+	 * @exception IndexOutOfBoundsException If the index is outside the rejections.
+	 */
+	private void checkRejection(int rejection) {
+		if (rejection < 0 || rejection >= rejectedCount) {
+			throw new IndexOutOfBoundsException("Rejection " + rejection + " is outside " + rejectedCount + " rejections.");
+		}
+	}
+}
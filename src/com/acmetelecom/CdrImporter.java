@@ -0,0 +1,629 @@
+package com.acmetelecom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports historical call detail records (CDRs) from files into a call event manager, with each event keeping the
+ * time stamp recorded in the file rather than the time it is imported.
+ * Two formats are supported: CSV files with one event per line in the form "START,caller,callee,timeMillis" or
+ * "END,caller,callee,timeMillis" (optionally preceded by a CsvHeader line), and the fixed-width binary layout
+ * written by BinaryCdrWriter.
+ * Files are memory-mapped a chunk at a time and chunks are parsed on several threads straight from the mapped bytes;
+ * phone numbers are decoded into Strings through a per-chunk cache, so a number seen again within a chunk does not
+ * allocate a new String. Parsed chunks are handed to the call event manager strictly in file order, so the start of
+ * a call is always handled before its end even when the two fall in different chunks.
+ */
+public class CdrImporter {
+
+	/** The optional first line of a CSV file. */
+	public static final String CsvHeader = "event,caller,callee,time_millis";
+
+	/** The default number of bytes of a file parsed by a thread at a time. */
+	public static final int DefaultChunkSize = 8 * 1024 * 1024;
+
+	static final String MalformedLine = "Expected event, caller, callee and time fields.";
+	static final String UnknownEventType = "Event type must be START or END.";
+	static final String InvalidTime = "Time must be milliseconds since epoch.";
+	static final String InvalidPhoneNumber = "Phone number is not a valid encoded phone number.";
+	static final String TruncatedRecord = "Record is truncated.";
+
+	private static final Charset TextCharset = Charset.forName("UTF-8");
+	private static final int ProbeSize = 512;
+	private static final int PhoneCacheBits = 12;
+
+	private Logger log = FileLogger.create();
+
+	private static final String SourceClass = CdrImporter.class.getName();
+
+	private final ICallEventManager callEventManager;
+	private final int threads;
+	private final int chunkSize;
+
+	/**
+	 * Constructor. Files are parsed in chunks of DefaultChunkSize bytes.
+	 * @param callEventManager The call event manager to import events into.
+	 * @param threads The number of threads parsing chunks of a file (1 parses on the importing thread).
+	 * @exception IllegalArgumentException If any of arguments are null or the thread count is not positive.
+	 */
+	public CdrImporter(ICallEventManager callEventManager, int threads) {
+		this(callEventManager, threads, DefaultChunkSize);
+	}
+
+	/**
+	 * Constructor.
+	 * @param callEventManager The call event manager to import events into.
+	 * @param threads The number of threads parsing chunks of a file (1 parses on the importing thread).
+	 * @param chunkSize The number of bytes of a file parsed by a thread at a time.
+	 * @exception IllegalArgumentException If any of arguments are null or the counts are not positive.
+	 */
+	public CdrImporter(ICallEventManager callEventManager, int threads, int chunkSize) {
+		AssertionHelper.NotNull(callEventManager, "callEventManager");
+		if (threads <= 0) {
+			throw new IllegalArgumentException("'threads' must be positive.");
+		}
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("'chunkSize' must be positive.");
+		}
+		this.callEventManager = callEventManager;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Imports the call events in a CSV file. Blank lines are skipped; lines which cannot be parsed and events the
+	 * call event manager does not accept are rejected, identified by their line number, and the import carries on.
+	 * @param file The CSV file to import.
+	 * @return The result of the import.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be read or the import is interrupted.
+	 */
+	public CdrImportResult importCsv(Path file) {
+		AssertionHelper.NotNull(file, "file");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<Chunk> chunks = new ArrayList<Chunk>();
+			ByteBuffer probe = ByteBuffer.allocate(ProbeSize);
+			for (long start = 0; start < size; ) {
+				long end = start + chunkSize >= size ? size : lineEndAfter(channel, start + chunkSize - 1, size, probe);
+				chunks.add(new Chunk(start, end, true));
+				start = end;
+			}
+			CdrImportResult result = importChunks(channel, chunks);
+			logImport("importCsv", file, result);
+			return result;
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read call records from " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Imports the call events in a binary file written by BinaryCdrWriter. Records with an unknown event type or an
+	 * invalid phone number and events the call event manager does not accept are rejected, identified by their
+	 * 1-based record number, and the import carries on.
+	 * @param file The binary file to import.
+	 * @return The result of the import.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be read, is not a binary call record file or the
+	 * import is interrupted.
+	 */
+	public CdrImportResult importBinary(Path file) {
+		AssertionHelper.NotNull(file, "file");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(BinaryCdrWriter.HeaderSize);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+				// Keep reading until the header is complete or the file ends.
+			}
+			header.flip();
+			if (header.remaining() < BinaryCdrWriter.HeaderSize
+					|| header.getInt() != BinaryCdrWriter.Magic || header.getInt() != BinaryCdrWriter.Version) {
+				throw new IllegalStateException(file + " is not a binary call record file.");
+			}
+
+			long recordCount = (size - BinaryCdrWriter.HeaderSize) / BinaryCdrWriter.RecordSize;
+			long recordsPerChunk = Math.max(1, chunkSize / BinaryCdrWriter.RecordSize);
+			List<Chunk> chunks = new ArrayList<Chunk>();
+			for (long first = 0; first < recordCount; first += recordsPerChunk) {
+				long last = Math.min(recordCount, first + recordsPerChunk);
+				chunks.add(new Chunk(
+						BinaryCdrWriter.HeaderSize + first * BinaryCdrWriter.RecordSize,
+						BinaryCdrWriter.HeaderSize + last * BinaryCdrWriter.RecordSize,
+						false));
+			}
+
+			CdrImportResult result = importChunks(channel, chunks);
+			if (BinaryCdrWriter.HeaderSize + recordCount * BinaryCdrWriter.RecordSize < size) {
+				result.addRecords(1);
+				result.reject(recordCount + 1, TruncatedRecord);
+			}
+			logImport("importBinary", file, result);
+			return result;
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read call records from " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Parses chunks of a file, in parallel when more than one thread is used, and hands each parsed chunk to the
+	 * call event manager in file order. At most two chunks per thread are parsed ahead of the manager.
+	 * @param channel The file.
+	 * @param chunks The chunks of the file, in file order.
+	 * @return The result of the import.
+	 * @throws IOException Thrown if the file cannot be read.
+	 */
+	private CdrImportResult importChunks(FileChannel channel, List<Chunk> chunks) throws IOException {
+		CdrImportResult result = new CdrImportResult();
+		long firstRecord = 1;
+
+		if (threads == 1 || chunks.size() <= 1) {
+			for (Chunk chunk : chunks) {
+				firstRecord = handle(chunk.parse(channel), firstRecord, result);
+			}
+			return result;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ImportThreadFactory());
+		try {
+			ArrayDeque<Future<ParsedChunk>> parsing = new ArrayDeque<Future<ParsedChunk>>();
+			int next = 0;
+			while (next < chunks.size() || !parsing.isEmpty()) {
+				while (next < chunks.size() && parsing.size() < threads * 2) {
+					parsing.add(executor.submit(new ChunkParser(channel, chunks.get(next++))));
+				}
+				firstRecord = handle(parsing.remove().get(), firstRecord, result);
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while importing call records.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IllegalStateException("Failed to parse call records.", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Hands the events of a parsed chunk to the call event manager and records the chunk's rejected records, both
+	 * those which could not be parsed and those the manager did not accept, in file order.
+	 * @param parsed The parsed chunk.
+	 * @param firstRecord The 1-based position in the file of the chunk's first record.
+	 * @param result The result to record the chunk's records in.
+	 * @return The position in the file of the record following the chunk.
+	 */
+	private long handle(ParsedChunk parsed, long firstRecord, CdrImportResult result) {
+		CallEventBatchResult batchResult = new CallEventBatchResult(parsed.batch.size());
+		parsed.batch.handleWith(callEventManager, batchResult);
+		result.addRecords(parsed.recordCount);
+
+		int parseError = 0;
+		int rejection = 0;
+		while (parseError < parsed.errorCount || rejection < batchResult.getRejectedCount()) {
+			int rejectedRecord = rejection < batchResult.getRejectedCount()
+					? parsed.eventRecords[batchResult.getRejectedEvent(rejection)]
+					: Integer.MAX_VALUE;
+			if (parseError < parsed.errorCount && parsed.errorRecords[parseError] < rejectedRecord) {
+				result.reject(firstRecord + parsed.errorRecords[parseError], parsed.errorReasons[parseError]);
+				parseError++;
+			} else {
+				result.reject(firstRecord + rejectedRecord, batchResult.getRejectionReason(rejection));
+				rejection++;
+			}
+		}
+		return firstRecord + parsed.positionCount;
+	}
+
+	/**
+	 * Logs the outcome of an import.
+	 * @param sourceMethod The import method which imported the file.
+	 * @param file The imported file.
+	 * @param result The result of the import.
+	 */
+	private void logImport(String sourceMethod, Path file, CdrImportResult result) {
+		if (log.isLoggable(Level.INFO)) {
+			log.logp(Level.INFO, SourceClass, sourceMethod, "Imported {0} call records from {1}, {2} rejected.",
+					new Object[] { result.getRecordCount(), file, result.getRejectedCount() });
+		}
+	}
+
+	/**
+	 * Finds the end of the line containing a position in a file.
+	 * @param channel The file.
+	 * @param position The position in the file.
+	 * @param size The size of the file.
+	 * @param probe A buffer to read the file into.
+	 * @return The position following the line's '\n', or the size of the file if the line is the last one.
+	 * @throws IOException Thrown if the file cannot be read.
+	 */
+	private static long lineEndAfter(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+		while (position < size) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * A range of a file made up of whole lines or records.
+	 */
+	private static class Chunk {
+		private final long start;
+		private final long end;
+		private final boolean csv;
+
+		/**
+		 * Constructor.
+		 * @param start The position of the first byte of the chunk.
+		 * @param end The position following the last byte of the chunk.
+		 * @param csv Whether the chunk is of a CSV file.
+		 */
+		private Chunk(long start, long end, boolean csv) {
+			this.start = start;
+			this.end = end;
+			this.csv = csv;
+		}
+
+		/**
+		 * Maps the chunk into memory and parses it.
+		 * @param channel The file.
+		 * @return The parsed chunk.
+		 * @throws IOException Thrown if the chunk cannot be mapped.
+		 */
+		private ParsedChunk parse(FileChannel channel) throws IOException {
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			ParsedChunk parsed = new ParsedChunk();
+			if (csv) {
+				parsed.parseCsv(bytes, start == 0);
+			} else {
+				parsed.parseBinary(bytes);
+			}
+			return parsed;
+		}
+	}
+
+	/**
+	 * Parses a chunk on an import thread.
+	 */
+	private static class ChunkParser implements Callable<ParsedChunk> {
+		private final FileChannel channel;
+		private final Chunk chunk;
+
+		/**
+		 * Constructor.
+		 * @param channel The file.
+		 * @param chunk The chunk to parse.
+		 */
+		private ChunkParser(FileChannel channel, Chunk chunk) {
+			this.channel = channel;
+			this.chunk = chunk;
+		}
+
+		/**
+		 * Parses the chunk.
+		 * @return The parsed chunk.
+		 * @throws IOException Thrown if the chunk cannot be mapped.
+		 */
+		public ParsedChunk call() throws IOException {
+			return chunk.parse(channel);
+		}
+	}
+
+	/**
+	 * The events parsed from a chunk and the records of the chunk which could not be parsed. Records are identified
+	 * by their 0-based position in the chunk.
+	 */
+	private static class ParsedChunk {
+		private final CallEventBatch batch = new CallEventBatch();
+		private final PhoneNumberCache phoneNumbers = new PhoneNumberCache();
+
+		// The position of the record each event in the batch was parsed from.
+		private int[] eventRecords = new int[CallEventBatch.DefaultCapacity];
+
+		private int[] errorRecords = new int[8];
+		private String[] errorReasons = new String[8];
+		private int errorCount;
+
+		// The number of records in the chunk, and the number of positions they span, including blank lines.
+		private int recordCount;
+		private int positionCount;
+
+		private byte[] text = new byte[64];
+
+		/**
+		 * Parses a chunk of a CSV file.
+		 * @param bytes The chunk, made up of whole lines.
+		 * @param firstChunk Whether the chunk is the first of the file, whose first line may be a header.
+		 */
+		private void parseCsv(ByteBuffer bytes, boolean firstChunk) {
+			int limit = bytes.limit();
+			int lineStart = 0;
+			while (lineStart < limit) {
+				int lineEnd = lineStart;
+				while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				int next = lineEnd + 1;
+				if (lineEnd > lineStart && bytes.get(lineEnd - 1) == '\r') {
+					lineEnd--;
+				}
+
+				int line = positionCount++;
+				boolean header = firstChunk && line == 0 && matches(bytes, lineStart, lineEnd, CsvHeader);
+				if (lineEnd > lineStart && !header) {
+					recordCount++;
+					parseCsvLine(bytes, lineStart, lineEnd, line);
+				}
+				lineStart = next;
+			}
+		}
+
+		/**
+		 * Parses a line of a CSV file.
+		 * @param bytes The chunk containing the line.
+		 * @param start The position of the first byte of the line.
+		 * @param end The position following the last byte of the line.
+		 * @param line The position of the line in the chunk.
+		 */
+		private void parseCsvLine(ByteBuffer bytes, int start, int end, int line) {
+			int typeEnd = indexOfComma(bytes, start, end);
+			int callerEnd = indexOfComma(bytes, typeEnd + 1, end);
+			int calleeEnd = indexOfComma(bytes, callerEnd + 1, end);
+			if (calleeEnd >= end || indexOfComma(bytes, calleeEnd + 1, end) < end) {
+				error(line, MalformedLine);
+				return;
+			}
+
+			boolean startEvent;
+			if (matches(bytes, start, typeEnd, "START")) {
+				startEvent = true;
+			} else if (matches(bytes, start, typeEnd, "END")) {
+				startEvent = false;
+			} else {
+				error(line, UnknownEventType);
+				return;
+			}
+
+			String caller = phoneNumber(bytes, typeEnd + 1, callerEnd);
+			String callee = phoneNumber(bytes, callerEnd + 1, calleeEnd);
+			if (caller == null || callee == null) {
+				error(line, CallEventBatchResult.MissingPhoneNumber);
+				return;
+			}
+
+			int timeStart = calleeEnd + 1;
+			boolean negative = timeStart < end && bytes.get(timeStart) == '-';
+			if (negative) {
+				timeStart++;
+			}
+			// 18 digits cannot overflow a long.
+			if (timeStart == end || end - timeStart > 18) {
+				error(line, InvalidTime);
+				return;
+			}
+			long time = 0;
+			for (int i = timeStart; i < end; i++) {
+				int digit = bytes.get(i) - '0';
+				if (digit < 0 || digit > 9) {
+					error(line, InvalidTime);
+					return;
+				}
+				time = time * 10 + digit;
+			}
+
+			add(startEvent, caller, callee, negative ? -time : time, line);
+		}
+
+		/**
+		 * Parses a chunk of a binary file.
+		 * @param bytes The chunk, made up of whole records.
+		 */
+		private void parseBinary(ByteBuffer bytes) {
+			for (int offset = 0; offset + BinaryCdrWriter.RecordSize <= bytes.limit(); offset += BinaryCdrWriter.RecordSize) {
+				int record = positionCount++;
+				recordCount++;
+				long caller = bytes.getLong(offset);
+				long callee = bytes.getLong(offset + 8);
+				long time = bytes.getLong(offset + 16);
+				int type = bytes.getInt(offset + 24);
+				if (type != BinaryCdrWriter.StartType && type != BinaryCdrWriter.EndType) {
+					error(record, UnknownEventType);
+				} else if (!PhoneNumberCodec.canDecode(caller) || !PhoneNumberCodec.canDecode(callee)) {
+					error(record, InvalidPhoneNumber);
+				} else {
+					add(type == BinaryCdrWriter.StartType, phoneNumbers.decode(caller), phoneNumbers.decode(callee), time, record);
+				}
+			}
+		}
+
+		/**
+		 * Gets the phone number in a CSV field. Numbers of up to 17 digits, optionally prefixed with '+', are looked
+		 * up in the chunk's cache; any other number is decoded as UTF-8 text.
+		 * @param bytes The chunk containing the field.
+		 * @param start The position of the first byte of the field.
+		 * @param end The position following the last byte of the field.
+		 * @return The phone number, or null if the field is empty.
+		 */
+		private String phoneNumber(ByteBuffer bytes, int start, int end) {
+			if (start == end) {
+				return null;
+			}
+			boolean plus = bytes.get(start) == '+';
+			int digits = plus ? end - start - 1 : end - start;
+			if (digits >= 1 && digits <= PhoneNumberCodec.MaxDigits) {
+				long value = 0;
+				int i = plus ? start + 1 : start;
+				for (; i < end; i++) {
+					int digit = bytes.get(i) - '0';
+					if (digit < 0 || digit > 9) {
+						break;
+					}
+					value = value * 10 + digit;
+				}
+				if (i == end) {
+					return phoneNumbers.decode(PhoneNumberCodec.pack(plus, digits, value));
+				}
+			}
+
+			if (text.length < end - start) {
+				text = new byte[end - start];
+			}
+			for (int i = start; i < end; i++) {
+				text[i - start] = bytes.get(i);
+			}
+			return new String(text, 0, end - start, TextCharset);
+		}
+
+		/**
+		 * Adds a parsed event to the chunk's batch.
+		 * @param start Whether the event is a call start.
+		 * @param caller The caller's phone number.
+		 * @param callee The callee's phone number.
+		 * @param time The time of the event.
+		 * @param record The position of the event's record in the chunk.
+		 */
+		private void add(boolean start, String caller, String callee, long time, int record) {
+			int event = batch.size();
+			if (event == eventRecords.length) {
+				eventRecords = Arrays.copyOf(eventRecords, event * 2);
+			}
+			eventRecords[event] = record;
+			if (start) {
+				batch.addStart(caller, callee, time);
+			} else {
+				batch.addEnd(caller, callee, time);
+			}
+		}
+
+		/**
+		 * Records that a record of the chunk could not be parsed.
+		 * @param record The position of the record in the chunk.
+		 * @param reason The reason the record could not be parsed.
+		 */
+		private void error(int record, String reason) {
+			if (errorCount == errorRecords.length) {
+				errorRecords = Arrays.copyOf(errorRecords, errorCount * 2);
+				errorReasons = Arrays.copyOf(errorReasons, errorCount * 2);
+			}
+			errorRecords[errorCount] = record;
+			errorReasons[errorCount] = reason;
+			errorCount++;
+		}
+
+		/**
+		 * Finds the first comma in a range of a chunk.
+		 * @param bytes The chunk.
+		 * @param start The position to search from.
+		 * @param end The position to search to.
+		 * @return The position of the comma, or end if there is none.
+		 */
+		private static int indexOfComma(ByteBuffer bytes, int start, int end) {
+			int i = start;
+			while (i < end && bytes.get(i) != ',') {
+				i++;
+			}
+			return i;
+		}
+
+		/**
+		 * Checks whether a range of a chunk holds some ASCII text.
+		 * @param bytes The chunk.
+		 * @param start The position of the first byte of the range.
+		 * @param end The position following the last byte of the range.
+		 * @param text The text to compare with.
+		 * @return True if the range holds exactly the text.
+		 */
+		private static boolean matches(ByteBuffer bytes, int start, int end, String text) {
+			if (end - start != text.length()) {
+				return false;
+			}
+			for (int i = 0; i < text.length(); i++) {
+				if (bytes.get(start + i) != text.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A fixed size cache of decoded phone numbers keyed by their encoded form. A number which collides with another
+	 * replaces it, so the cache never grows, and a number seen again while it is cached does not allocate.
+	 */
+	private static class PhoneNumberCache {
+		private final long[] encoded = new long[1 << PhoneCacheBits];
+		private final String[] decoded = new String[1 << PhoneCacheBits];
+
+		/**
+		 * Decodes an encoded phone number.
+		 * @param number The encoded phone number.
+		 * @return The phone number.
+		 */
+		private String decode(long number) {
+			int slot = ((int)(number ^ (number >>> 32)) * 0x9E3779B9) >>> (32 - PhoneCacheBits);
+			String phoneNumber = decoded[slot];
+			if (phoneNumber == null || encoded[slot] != number) {
+				phoneNumber = PhoneNumberCodec.decode(number);
+				encoded[slot] = number;
+				decoded[slot] = phoneNumber;
+			}
+			return phoneNumber;
+		}
+	}
+
+	/**
+	 * Creates the daemon threads which parse call record files.
+	 */
+	private static class ImportThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		/**
+		 * Creates a new import thread.
+		 * @param r The task the thread should run.
+		 * @return The new thread.
+		 */
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "cdr-import-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+
+import com.acmetelecom.IPeakPeriod.DayPeriod;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+import com.acmetelecom.customer.TariffLibrary;
+
+/**
+ * Calculates call costs in closed form rather than by walking the call period by period. The number of seconds
+ * spent in each period is worked out arithmetically from the call's start and end times in epoch milliseconds
+ * (whole days contribute in a single multiplication, partial days at either end separately), so the cost of a
+ * call is independent of its length and no DateTime objects are created. Tariffs are compiled into fixed-point
+ * rate tables when the calculator is created, so rating a call needs no BigDecimal arithmetic.
+ * Calls are split at the default zone's offset transitions, so a call is charged for the seconds it actually lasted
+ * across daylight saving changes, each in the period of the local time it fell in.
+ * Produces the same results as CallCostCalculator in zones without daylight saving.
+ */
+public class ClosedFormCallCostCalculator implements ITariffCallCostCalculator {
+
+	private static final long MillisPerSecond = 1000;
+	private static final long SecondsPerDay = 24 * 60 * 60;
+
+	private TariffLibrary tariffDatabase;
+	private BillingMetrics metrics = BillingMetrics.getDefault();
+
+	// Rates of each tariff, compiled when the calculator is created.
+	private final EnumMap<Tariff, RateTable> rateTables = new EnumMap<Tariff, RateTable>(Tariff.class);
+
+	// Seconds into the day at which the peak period starts and ends.
+	private final long peakStartSecond;
+	private final long peakEndSecond;
+
+	/**
+	 * Constructor.
+	 * @param tariffDatabase The tariff database to use when looking up customer's tariffs.
+	 * @param peakPeriod The peak period containing information about period timings.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public ClosedFormCallCostCalculator(TariffLibrary tariffDatabase, IPeakPeriod peakPeriod) {
+		AssertionHelper.NotNull(tariffDatabase, "tariffDatabase");
+		AssertionHelper.NotNull(peakPeriod, "peakPeriod");
+		this.tariffDatabase = tariffDatabase;
+		for (Tariff tariff : Tariff.values()) {
+			rateTables.put(tariff, RateTable.compile(peakPeriod, tariff));
+		}
+		this.peakStartSecond = peakPeriod.getSecondInDayAtEndOfPeriod(DayPeriod.PrePeak);
+		this.peakEndSecond = peakPeriod.getSecondInDayAtEndOfPeriod(DayPeriod.Peak);
+	}
+
+	/**
+	 * Calculates the cost of a the specified call for the specified customer.
+	 * @param customer The customer to calculate the call cost for (cost depends on which tariff they are on).
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal calculateCallCost(Customer customer, Call call) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(call, "call");
+		return calculateCallCostOnTariff(tariffFor(customer), call);
+	}
+
+	/**
+	 * Looks up the tariff of the specified customer in the tariff database.
+	 * @param customer The customer to get the tariff for.
+	 * @return The customer's tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Tariff tariffFor(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		return tariffDatabase.tarriffFor(customer);
+	}
+
+	/**
+	 * Calculates the cost of a the specified call on the specified tariff. The call, and for a sample of calls how long it
+	 * took to rate, are recorded in the default BillingMetrics.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal calculateCallCostOnTariff(Tariff tariff, Call call) {
+		AssertionHelper.NotNull(tariff, "tariff");
+		AssertionHelper.NotNull(call, "call");
+		long startNanos = metrics.startRating();
+		BigDecimal cost = costOf(tariff, call);
+		metrics.callRated(startNanos);
+		return cost;
+	}
+
+	/**
+	 * Calculates the cost of a call on a tariff.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 */
+	private BigDecimal costOf(Tariff tariff, Call call) {
+		ZoneOffsetTable offsets = ZoneOffsetTable.forDefaultZone();
+		long startMillis = call.startMillis();
+		long endMillis = call.endMillis();
+
+		assert(startMillis <= endMillis);
+
+		long prePeakSeconds = 0;
+		long peakSeconds = 0;
+		long totalSeconds = 0;
+
+		// Counts each stretch of the call between offset transitions on the local time line of that stretch.
+		long from = startMillis;
+		while (from < endMillis) {
+			long to = Math.min(endMillis, offsets.nextTransition(from));
+			int offset = offsets.offsetAt(from);
+			long start = floorDiv(from + offset, MillisPerSecond);
+			long end = floorDiv(to + offset, MillisPerSecond);
+
+			long prePeak = secondsBefore(end, peakStartSecond) - secondsBefore(start, peakStartSecond);
+			prePeakSeconds += prePeak;
+			peakSeconds += secondsBefore(end, peakEndSecond) - secondsBefore(start, peakEndSecond) - prePeak;
+			totalSeconds += end - start;
+			from = to;
+		}
+
+		long postPeakSeconds = totalSeconds - prePeakSeconds - peakSeconds;
+		return rateTables.get(tariff).cost(prePeakSeconds, peakSeconds, postPeakSeconds);
+	}
+
+	/**
+	 * Counts the seconds from the epoch up to (but excluding) the specified local second which fall before the
+	 * specified second of their day.
+	 * @param localSecond The local time in whole seconds.
+	 * @param secondOfDay The second of the day bounding the counted seconds of each day.
+	 * @return The number of seconds counted.
+	 */
+	private static long secondsBefore(long localSecond, long secondOfDay) {
+		long day = floorDiv(localSecond, SecondsPerDay);
+		long secondInDay = localSecond - day * SecondsPerDay;
+		return day * secondOfDay + Math.min(secondInDay, secondOfDay);
+	}
+
+	/**
+	 * Divides rounding towards negative infinity.
+	 * @param x The dividend.
+	 * @param y The (positive) divisor.
+	 * @return The floor of x / y.
+	 */
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		if (x % y != 0 && x < 0) {
+			q--;
+		}
+		return q;
+	}
+}
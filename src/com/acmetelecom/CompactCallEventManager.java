@@ -0,0 +1,94 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A CallEventManager which stores completed calls compactly: each caller's calls are kept in primitive columns
+ * holding the callee as an encoded long and the start and end times as epoch milliseconds, rather than as Call
+ * objects. Call objects are only created when a customer's calls are requested for billing.
+ * Callee phone numbers must be encodable by PhoneNumberCodec.
+ */
+public class CompactCallEventManager implements ICallEventManager {
+
+	private Logger log = FileLogger.create();
+
+	private static final String SourceClass = CompactCallEventManager.class.getName();
+	
+	// Hash map of completed calls, indexed by caller phone number.
+	private HashMap<String, CallRecordBuffer> callLog = new HashMap<String, CallRecordBuffer>();
+	
+	// Dictionary ids of the phone numbers of calls in progress.
+	private final PhoneNumberDictionary phoneNumbers = new PhoneNumberDictionary();
+
+	// Start times of calls in progress, indexed by caller and callee phone numbers.
+	// N.B. Assumes that single caller can be making several calls at same time, but not to same callee.
+	private CallsInProgressTable callsInProgress = new CallsInProgressTable();
+	
+	/**
+	 * Handles incoming call events. If finds a start and end event for a particular call then stores the call in
+	 * the caller's call records.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null or the callee cannot be encoded.
+	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously.
+	 */
+	public void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+		
+		if (event instanceof CallStart) {
+			if (!PhoneNumberCodec.canEncode(event.getCallee())) {
+				throw new IllegalArgumentException("'" + event.getCallee() + "' is not a valid callee phone number.");
+			}
+			
+			if (!callsInProgress.start(phoneNumbers.idOf(event.getCaller()), phoneNumbers.idOf(event.getCallee()), event.time())) {
+				throw new IllegalStateException(CallEventBatchResult.CallAlreadyInProgress);
+			}
+		}
+		else if (event instanceof CallEnd) {
+			long startMillis = callsInProgress.end(phoneNumbers.find(event.getCaller()), phoneNumbers.find(event.getCallee()));
+			if (startMillis == CallsInProgressTable.NotInProgress) {
+				log.logp(Level.WARNING, SourceClass, "handleEvent", CallsInProgressTable.noMatchingCallStartWarning(event));
+				return;
+			}
+			
+			CallRecordBuffer calls = callLog.get(event.getCaller());
+			if (calls == null) {
+				calls = new CallRecordBuffer();
+				callLog.put(event.getCaller(), calls);
+			}
+			calls.add(PhoneNumberCodec.encode(event.getCallee()), startMillis, event.time());
+		}
+	}
+	
+	/**
+	 * Gets the call logs for a particular customer, creating Call objects from the stored call records.
+	 * @param caller The caller the get call logs for.
+	 * @return The list of calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public List<Call> getCallsForCustomer(String caller) {
+		AssertionHelper.NotNull(caller, "caller");
+		CallRecordBuffer records = callLog.get(caller);
+		if (records == null) {
+			return new ArrayList<Call>();
+		}
+		
+		List<Call> calls = new ArrayList<Call>(records.size());
+		for (int i = 0; i < records.size(); i++) {
+			String callee = PhoneNumberCodec.decode(records.callee(i));
+			calls.add(new Call(caller, callee, records.startTime(i), records.endTime(i)));
+		}
+		return calls;
+	}
+	
+	/**
+	 * Clears all call logs.
+	 */
+	public void clearCallLogs() {
+		callLog.clear();
+		callsInProgress.clear();
+	}
+}
@@ -0,0 +1,49 @@
+package com.acmetelecom;
+
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Sends each bill to several bill generators, e.g. printing it as HTML while also exporting it for analytics.
+ */
+public class CompositeBillGenerator implements IBillGenerator {
+
+	private final IBillGenerator[] generators;
+
+	/**
+	 * Constructor.
+	 * @param generators The bill generators to send bills to, in order.
+	 * @exception IllegalArgumentException If any of arguments are null or no generators are given.
+	 */
+	public CompositeBillGenerator(IBillGenerator... generators) {
+		AssertionHelper.NotNull(generators, "generators");
+		if (generators.length == 0) {
+			throw new IllegalArgumentException("At least one bill generator is required.");
+		}
+		for (IBillGenerator generator : generators) {
+			AssertionHelper.NotNull(generator, "generator");
+		}
+		this.generators = generators.clone();
+	}
+
+	/**
+	 * Sends the specified bill to each generator in turn.
+	 * @param customer The customer to generate the bill for.
+	 * @param items The list of items to put in the bill.
+	 * @param totalBill The total bill charge.
+	 * @return The bill generated by the first generator.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Bill sendBill(Customer customer, List<LineItem> items, String totalBill) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(items, "items");
+		AssertionHelper.NotNull(totalBill, "totalBill");
+
+		Bill bill = generators[0].sendBill(customer, items, totalBill);
+		for (int i = 1; i < generators.length; i++) {
+			generators[i].sendBill(customer, items, totalBill);
+		}
+		return bill;
+	}
+}
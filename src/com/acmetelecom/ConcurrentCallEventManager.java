@@ -0,0 +1,170 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread-safe CallEventManager which can be fed call events from many threads at once.
+ * Calls in progress are held in lock-striped tables (a caller always maps to the same stripe), so events for
+ * different callers rarely contend, while completed calls are appended to lock-free per-caller queues.
+ */
+public class ConcurrentCallEventManager implements ICallEventManager {
+
+	private static final int StripesPerProcessor = 4;
+
+	private Logger log = FileLogger.create();
+
+	private static final String SourceClass = ConcurrentCallEventManager.class.getName();
+
+	// Map of completed calls, indexed by caller phone number.
+	private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Call>> callLog =
+			new ConcurrentHashMap<String, ConcurrentLinkedQueue<Call>>();
+
+	// Dictionary ids of the phone numbers of calls in progress, shared by every stripe.
+	private final PhoneNumberDictionary phoneNumbers = new PhoneNumberDictionary();
+
+	// Stripes holding the calls in progress. Each stripe is guarded by its own lock.
+	private final Stripe[] stripes;
+	private final int stripeMask;
+
+	/**
+	 * Constructor. Uses a number of stripes proportional to the number of available processors.
+	 */
+	public ConcurrentCallEventManager() {
+		this(Runtime.getRuntime().availableProcessors() * StripesPerProcessor);
+	}
+
+	/**
+	 * Constructor.
+	 * @param concurrencyLevel The estimated number of threads feeding events concurrently. Rounded up to a power of two.
+	 * @exception IllegalArgumentException If the concurrency level is not positive.
+	 */
+	public ConcurrentCallEventManager(int concurrencyLevel) {
+		if (concurrencyLevel <= 0) {
+			throw new IllegalArgumentException("'concurrencyLevel' must be positive.");
+		}
+
+		int stripeCount = 1;
+		while (stripeCount < concurrencyLevel) {
+			stripeCount <<= 1;
+		}
+
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.stripeMask = stripeCount - 1;
+	}
+
+	/**
+	 * Handles incoming call events. If finds a start and end event for a particular call then groups them together into
+	 * a single Call object and stores it in call logs. May be called concurrently from multiple threads.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously.
+	 */
+	public void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+		String caller = event.getCaller();
+		Stripe stripe = stripeFor(caller);
+
+		if (event instanceof CallStart) {
+			int callerId = phoneNumbers.idOf(caller);
+			int calleeId = phoneNumbers.idOf(event.getCallee());
+			boolean started;
+			synchronized (stripe) {
+				started = stripe.callsInProgress.start(callerId, calleeId, event.time());
+			}
+
+			if (!started) {
+				throw new IllegalStateException(CallEventBatchResult.CallAlreadyInProgress);
+			}
+		}
+		else if (event instanceof CallEnd) {
+			int callerId = phoneNumbers.find(caller);
+			int calleeId = phoneNumbers.find(event.getCallee());
+			long startMillis;
+			synchronized (stripe) {
+				startMillis = stripe.callsInProgress.end(callerId, calleeId);
+			}
+
+			if (startMillis == CallsInProgressTable.NotInProgress) {
+				log.logp(Level.WARNING, SourceClass, "handleEvent", CallsInProgressTable.noMatchingCallStartWarning(event));
+				return;
+			}
+
+			addCallToLog(new Call(caller, event.getCallee(), startMillis, event.time()));
+		}
+	}
+
+	/**
+	 * Gets the call logs for a particular customer.
+	 * @param caller The caller the get call logs for.
+	 * @return A snapshot of the calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public List<Call> getCallsForCustomer(String caller) {
+		AssertionHelper.NotNull(caller, "caller");
+		ConcurrentLinkedQueue<Call> calls = callLog.get(caller);
+		if (calls == null) {
+			return new ArrayList<Call>();
+		}
+
+		return new ArrayList<Call>(calls);
+	}
+
+	/**
+	 * Clears all call logs. Events handled concurrently with this call may or may not be cleared.
+	 */
+	public void clearCallLogs() {
+		callLog.clear();
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.callsInProgress.clear();
+			}
+		}
+	}
+
+	/**
+	 * Gets the stripe responsible for the specified caller.
+	 * @param caller The caller's phone number.
+	 * @return The stripe holding the caller's calls in progress.
+	 */
+	private Stripe stripeFor(String caller) {
+		int h = caller.hashCode();
+		h ^= (h >>> 16);
+		return stripes[h & stripeMask];
+	}
+
+	/**
+	 * Adds the specified Call to the call log.
+	 * @param call The Call to add to the call log.
+	 */
+	private void addCallToLog(Call call) {
+		String caller = call.caller();
+		ConcurrentLinkedQueue<Call> calls = callLog.get(caller);
+		if (calls == null) {
+			ConcurrentLinkedQueue<Call> newCalls = new ConcurrentLinkedQueue<Call>();
+			calls = callLog.putIfAbsent(caller, newCalls);
+			if (calls == null) {
+				calls = newCalls;
+			}
+		}
+
+		calls.add(call);
+	}
+
+	/**
+	 * A partition of the calls in progress. All access must be made while holding the stripe's lock.
+	 */
+	private static class Stripe {
+
+		// Start times of calls in progress, indexed by caller and callee phone numbers.
+		// N.B. Assumes that single caller can be making several calls at same time, but not to same callee.
+		private final CallsInProgressTable callsInProgress = new CallsInProgressTable();
+	}
+}
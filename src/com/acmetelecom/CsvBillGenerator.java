@@ -0,0 +1,161 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Responsible for exporting bills as CSV, for loading into analytics tools. Each bill is exported as a call record
+ * for each line item, with its cost in pence, followed by one bill record holding the bill's total as printed on the
+ * bill, so that bills with no calls are exported too. The first column names the type of record; columns which do
+ * not apply to it are left empty.
+ * Rows are streamed to the file as bills are generated; each thread renders a bill's rows into its own buffer, and
+ * the rows of a bill are written together so bills exported from several threads do not interleave.
+ */
+public class CsvBillGenerator implements IBillGenerator, Closeable {
+
+	/** The header row naming the columns. */
+	public static final String Header =
+			"record,phone_number,customer_name,price_plan,start_millis,end_millis,callee,duration_seconds,cost,total";
+
+	/** The record type of the rows exporting a bill's line items. */
+	public static final String CallRecord = "call";
+	/** The record type of the row exporting a bill's total. */
+	public static final String BillRecord = "bill";
+
+	private static final int InitialBufferSize = 8 * 1024;
+
+	private final Writer out;
+	private boolean closed;
+
+	// The buffer each thread renders bills' rows into.
+	private final ThreadLocal<StringBuilder> rows = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(InitialBufferSize);
+		}
+	};
+
+	/**
+	 * Constructor. Creates the export file, replacing any existing file, and writes the header row.
+	 * @param file The file to export bills to.
+	 * @param charset The character set to encode the file with.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the file cannot be created.
+	 */
+	public CsvBillGenerator(Path file, Charset charset) {
+		AssertionHelper.NotNull(file, "file");
+		AssertionHelper.NotNull(charset, "charset");
+		try {
+			this.out = Files.newBufferedWriter(file, charset);
+			out.write(Header);
+			out.write('\n');
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create bill export " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Exports a call record for each line item of the specified bill, followed by a bill record with its total.
+	 * @param customer The customer to generate the bill for.
+	 * @param items The list of items to put in the bill.
+	 * @param totalBill The total bill charge.
+	 * @return The generated bill.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the generator has been closed or the rows cannot be written.
+	 */
+	public Bill sendBill(Customer customer, List<LineItem> items, String totalBill) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(items, "items");
+		AssertionHelper.NotNull(totalBill, "totalBill");
+
+		StringBuilder csv = rows.get();
+		csv.setLength(0);
+		for (LineItem item : items) {
+			Call call = item.call();
+			appendCustomer(csv, CallRecord, customer);
+			csv.append(call.startMillis()).append(',');
+			csv.append(call.endMillis()).append(',');
+			appendField(csv, call.callee()).append(',');
+			csv.append(call.durationSeconds()).append(',');
+			csv.append(item.cost().toPlainString()).append(",\n");
+		}
+		appendCustomer(csv, BillRecord, customer).append(",,,,,");
+		appendField(csv, totalBill).append('\n');
+
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("Bill export has been closed.");
+			}
+			try {
+				out.append(csv);
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to write bill.", e);
+			}
+		}
+		return new Bill(customer, items, totalBill);
+	}
+
+	/**
+	 * Flushes any buffered rows and closes the export file.
+	 * @exception IllegalStateException Thrown if the rows cannot be written.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write bill export.", e);
+		}
+	}
+
+	/**
+	 * Appends the record type and customer fields which start each row.
+	 * @param csv The buffer to append to.
+	 * @param record The record type.
+	 * @param customer The customer the bill is for.
+	 * @return The buffer.
+	 */
+	private static StringBuilder appendCustomer(StringBuilder csv, String record, Customer customer) {
+		csv.append(record).append(',');
+		appendField(csv, customer.getPhoneNumber()).append(',');
+		appendField(csv, customer.getFullName()).append(',');
+		return appendField(csv, customer.getPricePlan()).append(',');
+	}
+
+	/**
+	 * Appends a text field, quoting it if it contains a separator, quote or line break.
+	 * @param csv The buffer to append to.
+	 * @param value The field value.
+	 * @return The buffer.
+	 */
+	private static StringBuilder appendField(StringBuilder csv, String value) {
+		boolean quoted = false;
+		for (int i = 0; i < value.length() && !quoted; i++) {
+			char c = value.charAt(i);
+			quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quoted) {
+			return csv.append(value);
+		}
+
+		csv.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				csv.append('"');
+			}
+			csv.append(c);
+		}
+		return csv.append('"');
+	}
+}
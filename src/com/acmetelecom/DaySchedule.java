@@ -0,0 +1,152 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The time bands of a single day, as a list of consecutive segments covering the whole day. Schedules are immutable;
+ * withBand returns a new schedule with part of the day changed to another band.
+ */
+public final class DaySchedule {
+
+	/** The number of seconds in a day. */
+	public static final int SecondsPerDay = 24 * 60 * 60;
+
+	// Second of the day at which each segment starts, in ascending order starting from zero.
+	private final int[] segmentStarts;
+	private final TimeBand[] segmentBands;
+
+	/**
+	 * Constructor. Creates a schedule with the same band all day.
+	 * @param band The band for the whole day.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public DaySchedule(TimeBand band) {
+		AssertionHelper.NotNull(band, "band");
+		this.segmentStarts = new int[] { 0 };
+		this.segmentBands = new TimeBand[] { band };
+	}
+
+	/**
+	 * Constructor.
+	 * @param segmentStarts The second of the day at which each segment starts.
+	 * @param segmentBands The band of each segment.
+	 */
+	private DaySchedule(int[] segmentStarts, TimeBand[] segmentBands) {
+		this.segmentStarts = segmentStarts;
+		this.segmentBands = segmentBands;
+	}
+
+	/**
+	 * Creates a copy of this schedule in which part of the day is charged in another band.
+	 * @param startSecond The second of the day the band starts at.
+	 * @param endSecond The second of the day the band ends at (exclusive), which may be the end of the day.
+	 * @param band The band.
+	 * @return The new schedule.
+	 * @exception IllegalArgumentException If any of arguments are null or the range is empty or not within a day.
+	 */
+	public DaySchedule withBand(int startSecond, int endSecond, TimeBand band) {
+		AssertionHelper.NotNull(band, "band");
+		if (startSecond < 0 || endSecond > SecondsPerDay || startSecond >= endSecond) {
+			throw new IllegalArgumentException("Band must cover a non-empty range of seconds within the day.");
+		}
+
+		List<Integer> starts = new ArrayList<Integer>();
+		List<TimeBand> bands = new ArrayList<TimeBand>();
+		for (int i = 0; i < segmentStarts.length; i++) {
+			int segmentStart = segmentStarts[i];
+			int segmentEnd = segmentEnd(i);
+			if (segmentStart < startSecond) {
+				addSegment(starts, bands, segmentStart, segmentBands[i]);
+			}
+			if (segmentStart <= startSecond && startSecond < segmentEnd) {
+				addSegment(starts, bands, startSecond, band);
+			}
+			if (segmentStart < endSecond && endSecond < segmentEnd) {
+				addSegment(starts, bands, endSecond, segmentBands[i]);
+			}
+			if (segmentStart >= endSecond) {
+				addSegment(starts, bands, segmentStart, segmentBands[i]);
+			}
+		}
+
+		int[] newStarts = new int[starts.size()];
+		for (int i = 0; i < newStarts.length; i++) {
+			newStarts[i] = starts.get(i);
+		}
+		return new DaySchedule(newStarts, bands.toArray(new TimeBand[bands.size()]));
+	}
+
+	/**
+	 * Gets the number of segments in the day.
+	 * @return The number of segments.
+	 */
+	public int getSegmentCount() {
+		return segmentStarts.length;
+	}
+
+	/**
+	 * Gets the second of the day at which a segment starts.
+	 * @param segment The index of the segment.
+	 * @return The start of the segment.
+	 */
+	public int getSegmentStart(int segment) {
+		return segmentStarts[segment];
+	}
+
+	/**
+	 * Gets the second of the day at which a segment ends.
+	 * @param segment The index of the segment.
+	 * @return The end of the segment (exclusive).
+	 */
+	public int getSegmentEnd(int segment) {
+		return segmentEnd(segment);
+	}
+
+	/**
+	 * Gets the band of a segment.
+	 * @param segment The index of the segment.
+	 * @return The band of the segment.
+	 */
+	public TimeBand getSegmentBand(int segment) {
+		return segmentBands[segment];
+	}
+
+	/**
+	 * Describes the schedule as a list of segments.
+	 * @return The description of the schedule.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < segmentStarts.length; i++) {
+			description.append(i == 0 ? "" : ", ").append(segmentStarts[i]).append('-').append(segmentEnd(i))
+				.append(' ').append(segmentBands[i]);
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Gets the second of the day at which a segment ends.
+	 * @param segment The index of the segment.
+	 * @return The end of the segment (exclusive).
+	 */
+	private int segmentEnd(int segment) {
+		return segment + 1 < segmentStarts.length ? segmentStarts[segment + 1] : SecondsPerDay;
+	}
+
+	/**
+	 * Appends a segment, merging it into the previous segment if that has the same band.
+	 * @param starts The segment starts.
+	 * @param bands The segment bands.
+	 * @param start The start of the segment to add.
+	 * @param band The band of the segment to add.
+	 */
+	private static void addSegment(List<Integer> starts, List<TimeBand> bands, int start, TimeBand band) {
+		if (!bands.isEmpty() && bands.get(bands.size() - 1) == band) {
+			return;
+		}
+		starts.add(start);
+		bands.add(band);
+	}
+}
@@ -0,0 +1,58 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Responsible for generating bills in HTML form, writing each customer's bill to its own file.
+ * Unlike HtmlBillGenerator, bills are not serialised through a shared printer, so bills generated from several
+ * threads are rendered concurrently. The generator must be closed once the bill run has finished.
+ */
+public class FileBillGenerator implements IBillGenerator, Closeable {
+
+	private FileBillPrinter printer;
+	
+	/**
+	 * Constructor.
+	 * @param printer The printer to use when generating the bill.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public FileBillGenerator(FileBillPrinter printer) {
+		AssertionHelper.NotNull(printer, "printer");
+		this.printer = printer;
+	}
+	
+	/**
+	 * Generates the specified bill in HTML form and queues it to be written to the customer's bill file.
+	 * @param customer The customer to generate the bill for.
+	 * @param items The list of items to put in the bill.
+	 * @param totalBill The total bill charge.
+	 * @return The generated bill.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if a previous bill could not be written.
+	 */
+	public Bill sendBill(Customer customer, List<LineItem> items, String totalBill) {
+		AssertionHelper.NotNull(customer, "customer");
+		AssertionHelper.NotNull(items, "items");
+		AssertionHelper.NotNull(totalBill, "totalBill");
+		
+		printer.printHeading(customer.getFullName(), customer.getPhoneNumber(), customer.getPricePlan());
+		
+		for (LineItem call : items) {
+			printer.printItem(call.date(), call.callee(), call.durationSeconds(), MoneyFormatter.penceToPounds(call.cost()));
+		}
+		
+		printer.printTotal(totalBill);
+		return new Bill(customer, items, totalBill);
+	}
+	
+	/**
+	 * Waits for all generated bills to be written to disk.
+	 * @exception IllegalStateException Thrown if any bill could not be written.
+	 */
+	public void close() {
+		printer.close();
+	}
+}
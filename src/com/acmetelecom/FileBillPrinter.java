@@ -0,0 +1,359 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Responsible for printing bills in HTML form, each to its own file. Bills are sharded across sub-directories of a
+ * bill directory by the last digits of the customer's phone number (e.g. bills/43/447711232343.html).
+ * Each thread renders the bill it is printing into its own buffers, so bills can be printed from several threads at
+ * once. Completed bills are written by a bounded pool of writer threads using a single gathered FileChannel write per
+ * bill; when the pool falls behind, the printing thread writes the bill itself.
+ * The printer must be closed once all bills have been printed to wait for the outstanding writes.
+ */
+public class FileBillPrinter implements IDurationBillPrinter, Closeable {
+
+	private static final String BillFileExtension = ".html";
+	private static final Charset FileNameCharset = Charset.forName("UTF-8");
+	private static final char[] HexDigits = "0123456789ABCDEF".toCharArray();
+	private static final int InitialBufferSize = 8 * 1024;
+	private static final int QueuedBillsPerWriter = 64;
+
+	private final Path billDirectory;
+	private final int shardCount;
+	private final Charset charset;
+	private final ThreadPoolExecutor writers;
+
+	// First failure reported by a writer thread.
+	private final AtomicReference<IOException> writeFailure = new AtomicReference<IOException>();
+
+	// The bill being printed by each thread.
+	private final ThreadLocal<PendingBill> pendingBill = new ThreadLocal<PendingBill>() {
+		@Override
+		protected PendingBill initialValue() {
+			return new PendingBill();
+		}
+	};
+
+	/**
+	 * Constructor. Creates the bill directory and its shard sub-directories if they do not already exist.
+	 * @param billDirectory The directory to write bills to.
+	 * @param shardCount The number of sub-directories to spread bills across (1 writes all bills to one sub-directory).
+	 * @param writerThreads The number of threads writing bills to disk.
+	 * @param charset The character set to encode bills with.
+	 * @exception IllegalArgumentException If any of arguments are null or the counts are not positive.
+	 * @exception IllegalStateException Thrown if the bill directories cannot be created.
+	 */
+	public FileBillPrinter(Path billDirectory, int shardCount, int writerThreads, Charset charset) {
+		AssertionHelper.NotNull(billDirectory, "billDirectory");
+		AssertionHelper.NotNull(charset, "charset");
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("'shardCount' must be positive.");
+		}
+		if (writerThreads <= 0) {
+			throw new IllegalArgumentException("'writerThreads' must be positive.");
+		}
+
+		this.billDirectory = billDirectory;
+		this.shardCount = shardCount;
+		this.charset = charset;
+
+		try {
+			for (int shard = 0; shard < shardCount; shard++) {
+				Files.createDirectories(billDirectory.resolve(shardName(shard)));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot create bill directory " + billDirectory + ".", e);
+		}
+
+		this.writers = new ThreadPoolExecutor(
+				writerThreads,
+				writerThreads,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(writerThreads * QueuedBillsPerWriter),
+				new WriterThreadFactory(),
+				new WriteOnCallerUnlessClosed());
+	}
+
+	/**
+	 * Starts a new bill for the calling thread with the bill heading.
+	 * @param name The customer name to include in the heading.
+	 * @param phoneNumber The customer's phone number, which also names the bill file.
+	 * @param pricePlan The customer's price plan/tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printHeading(String name, String phoneNumber, String pricePlan) {
+		AssertionHelper.NotNull(name, "name");
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		AssertionHelper.NotNull(pricePlan, "pricePlan");
+
+		PendingBill bill = pendingBill.get();
+		bill.phoneNumber = phoneNumber;
+		bill.heading.setLength(0);
+		bill.items.setLength(0);
+		HtmlBillMarkup.appendHeading(bill.heading, name, phoneNumber, pricePlan);
+	}
+
+	/**
+	 * Adds the specified call information to the calling thread's bill as a HTML table entry.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param duration The call duration.
+	 * @param cost The call cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printItem(String time, String callee, String duration, String cost) {
+		AssertionHelper.NotNull(time, "time");
+		AssertionHelper.NotNull(callee, "callee");
+		AssertionHelper.NotNull(duration, "duration");
+		AssertionHelper.NotNull(cost, "cost");
+
+		HtmlBillMarkup.appendItem(pendingBill.get().items, time, callee, duration, cost);
+	}
+
+	/**
+	 * Adds the specified call information to the calling thread's bill as a HTML table entry.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param durationSeconds The call duration in seconds.
+	 * @param cost The call cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void printItem(String time, String callee, int durationSeconds, String cost) {
+		AssertionHelper.NotNull(time, "time");
+		AssertionHelper.NotNull(callee, "callee");
+		AssertionHelper.NotNull(cost, "cost");
+
+		HtmlBillMarkup.appendItem(pendingBill.get().items, time, callee, durationSeconds, cost);
+	}
+
+	/**
+	 * Adds the total cost to the bottom of the calling thread's bill and queues the bill to be written to its file.
+	 * @param total The bill total cost.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the printer has been closed or a previous bill could not be written.
+	 */
+	public void printTotal(String total) {
+		AssertionHelper.NotNull(total, "total");
+		checkNotClosed();
+		checkNoWriteFailure();
+
+		PendingBill bill = pendingBill.get();
+		StringBuilder footer = new StringBuilder();
+		HtmlBillMarkup.appendTotal(footer, total);
+
+		final Path file = billFileFor(bill.phoneNumber);
+		final ByteBuffer[] parts = {
+				charset.encode(CharBuffer.wrap(bill.heading)),
+				charset.encode(CharBuffer.wrap(bill.items)),
+				charset.encode(CharBuffer.wrap(footer)) };
+
+		writers.execute(new Runnable() {
+			public void run() {
+				try {
+					writeBill(file, parts);
+				} catch (IOException e) {
+					writeFailure.compareAndSet(null, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for all queued bills to be written and stops the writer threads.
+	 * @exception IllegalStateException Thrown if any bill could not be written or the wait is interrupted.
+	 */
+	public void close() {
+		writers.shutdown();
+		try {
+			while (!writers.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Keep waiting for the outstanding writes.
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for bills to be written.", e);
+		}
+		checkNoWriteFailure();
+	}
+
+	/**
+	 * Gets the file the bill for the specified phone number is written to. Digits, lower case letters, '+', '_' and
+	 * '-' are kept in the file name and every other character is escaped as '%' followed by the hex digits of its
+	 * UTF-8 bytes, so different phone numbers always have different bill files, even on file systems which ignore
+	 * case.
+	 * @param phoneNumber The customer's phone number.
+	 * @return The path of the bill file.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public Path billFileFor(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		return billDirectory.resolve(shardName(shardOf(phoneNumber))).resolve(fileNameOf(phoneNumber) + BillFileExtension);
+	}
+
+	/**
+	 * Escapes a phone number for use as a file name.
+	 * @param phoneNumber The phone number.
+	 * @return The escaped phone number, which is the phone number itself if no character needs escaping.
+	 */
+	private static String fileNameOf(String phoneNumber) {
+		int first = 0;
+		while (first < phoneNumber.length() && isFileNameChar(phoneNumber.charAt(first))) {
+			first++;
+		}
+		if (first == phoneNumber.length()) {
+			return phoneNumber;
+		}
+
+		StringBuilder name = new StringBuilder(phoneNumber.length() + 16);
+		name.append(phoneNumber, 0, first);
+		for (byte b : phoneNumber.substring(first).getBytes(FileNameCharset)) {
+			char c = (char)(b & 0xFF);
+			if (isFileNameChar(c)) {
+				name.append(c);
+			} else {
+				name.append('%').append(HexDigits[(b >> 4) & 0xF]).append(HexDigits[b & 0xF]);
+			}
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Determines whether a character is kept in a file name without escaping.
+	 * @param c The character.
+	 * @return True if the character is a digit, lower case letter, '+', '_' or '-'.
+	 */
+	private static boolean isFileNameChar(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '+' || c == '_' || c == '-';
+	}
+
+	/**
+	 * Writes the parts of a bill to the specified file with gathered writes, replacing any existing file.
+	 * @param file The file to write to.
+	 * @param parts The encoded parts of the bill.
+	 * @throws IOException Thrown if the bill cannot be written.
+	 */
+	private static void writeBill(Path file, ByteBuffer[] parts) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (parts[parts.length - 1].hasRemaining()) {
+				channel.write(parts);
+			}
+		}
+	}
+
+	/**
+	 * Throws if the printer has been closed, so no more bills can be written.
+	 * @exception IllegalStateException Thrown if the printer is closed.
+	 */
+	private void checkNotClosed() {
+		if (writers.isShutdown()) {
+			throw new IllegalStateException("Cannot print bill: bill printer is closed.");
+		}
+	}
+
+	/**
+	 * Throws if a writer thread has failed to write a bill.
+	 * @exception IllegalStateException Thrown if a bill could not be written.
+	 */
+	private void checkNoWriteFailure() {
+		IOException failure = writeFailure.get();
+		if (failure != null) {
+			throw new IllegalStateException("Failed to write bill.", failure);
+		}
+	}
+
+	/**
+	 * Gets the shard a phone number's bill is stored in, based on the trailing digits of the number.
+	 * @param phoneNumber The customer's phone number.
+	 * @return The shard index.
+	 */
+	private int shardOf(String phoneNumber) {
+		long suffix = 0;
+		long scale = 1;
+		for (int i = phoneNumber.length() - 1; i >= 0 && scale <= shardCount; i--) {
+			char c = phoneNumber.charAt(i);
+			if (c >= '0' && c <= '9') {
+				suffix += (c - '0') * scale;
+				scale *= 10;
+			}
+		}
+		return (int)(suffix % shardCount);
+	}
+
+	/**
+	 * Gets the name of a shard sub-directory.
+	 * @param shard The shard index.
+	 * @return The sub-directory name, zero padded so that all shard names have the same length.
+	 */
+	private String shardName(int shard) {
+		int width = String.valueOf(shardCount - 1).length();
+		StringBuilder name = new StringBuilder(String.valueOf(shard));
+		while (name.length() < width) {
+			name.insert(0, '0');
+		}
+		return name.toString();
+	}
+
+	/**
+	 * The bill a thread is currently printing.
+	 */
+	private static class PendingBill {
+		private String phoneNumber;
+		private final StringBuilder heading = new StringBuilder();
+		private final StringBuilder items = new StringBuilder(InitialBufferSize);
+	}
+
+	/**
+	 * Handles a bill the writer threads cannot take: when they have fallen behind the printing thread writes the bill
+	 * itself, but once the printer is closed the bill is refused rather than silently discarded.
+	 */
+	private static class WriteOnCallerUnlessClosed implements RejectedExecutionHandler {
+
+		/**
+		 * Writes a bill on the calling thread, unless the writer pool has been shut down.
+		 * @param r The task writing the bill.
+		 * @param executor The writer pool.
+		 * @exception IllegalStateException Thrown if the printer has been closed.
+		 */
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new IllegalStateException("Cannot print bill: bill printer is closed.");
+			}
+			r.run();
+		}
+	}
+
+	/**
+	 * Creates the daemon threads which write bills to disk.
+	 */
+	private static class WriterThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		/**
+		 * Creates a new bill writer thread.
+		 * @param r The task the thread should run.
+		 * @return The new thread.
+		 */
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "bill-writer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -18,6 +18,9 @@ public class FileLogger {
 	private static final String logFileExtension = ".log";
 	
 	private static Logger logger;
+	private static FileHandler fileHandler;
+	private static AsyncLogHandler asyncHandler;
+	private static boolean shutdownHookAdded;
 	
 	/**
 	 * Creates a new logger which appends to a log file or returns existing logger if already created.
@@ -34,15 +37,15 @@ public class FileLogger {
 			file.createNewFile();
 			
 			logger = Logger.getLogger("logger");
-			FileHandler fh = new FileHandler(file.getPath(), true);
-			fh.setFormatter(new SimpleFormatter());
-			logger.addHandler(fh);
+			fileHandler = new FileHandler(file.getPath(), true);
+			fileHandler.setFormatter(new SimpleFormatter());
+			logger.addHandler(fileHandler);
 			logger.setUseParentHandlers(false);
 		} catch (SecurityException | IOException e) {
 			e.printStackTrace();
 		}
 		
-		logger.info("Logger initialised.");
+		logger.logp(Level.INFO, FileLogger.class.getName(), "create", "Logger initialised.");
 		
 		return logger;
 	}
@@ -57,4 +60,47 @@ public class FileLogger {
 			else logger.setLevel(Level.OFF);
 		}
 	}
+	
+	/**
+	 * Switches the logger to asynchronous mode, in which records are written to the log file by a background thread
+	 * rather than by the thread doing the logging. Records still buffered at shutdown are written before exit.
+	 * @param capacity The maximum number of records waiting to be written.
+	 * @param overflowPolicy What to do with records logged while the buffer is full.
+	 * @exception IllegalArgumentException If any of arguments are null or the capacity is not positive.
+	 */
+	public static synchronized void enableAsync(int capacity, AsyncLogHandler.OverflowPolicy overflowPolicy) {
+		AssertionHelper.NotNull(overflowPolicy, "overflowPolicy");
+		create();
+		if (fileHandler == null) {
+			return;
+		}
+		
+		disableAsync();
+		asyncHandler = new AsyncLogHandler(fileHandler, capacity, overflowPolicy);
+		logger.removeHandler(fileHandler);
+		logger.addHandler(asyncHandler);
+		
+		if (!shutdownHookAdded) {
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					disableAsync();
+				}
+			}));
+			shutdownHookAdded = true;
+		}
+	}
+	
+	/**
+	 * Switches the logger back to writing records synchronously, once any buffered records have been written.
+	 */
+	public static synchronized void disableAsync() {
+		if (asyncHandler == null) {
+			return;
+		}
+		
+		logger.removeHandler(asyncHandler);
+		logger.addHandler(fileHandler);
+		asyncHandler.stop();
+		asyncHandler = null;
+	}
 }
@@ -10,6 +10,7 @@ import com.acmetelecom.customer.Customer;
 public class HtmlBillGenerator implements IBillGenerator {
 
 	private IBillPrinter printer;
+	private BillingMetrics metrics = BillingMetrics.getDefault();
 	
 	/**
 	 * Constructor.
@@ -22,7 +23,10 @@ public class HtmlBillGenerator implements IBillGenerator {
 	}
 	
 	/**
-	 * Generates the specified bill in HTML form and prints it out.
+	 * Generates the specified bill in HTML form and prints it out. Bills generated concurrently from several threads
+	 * are printed one at a time, so their output does not interleave; the dates, durations and costs are formatted
+	 * before the printer is locked, so only the printing itself is serialised. The bill and how long it took to send,
+	 * including any wait for another bill to finish printing, are recorded in the default BillingMetrics.
 	 * @param customer The customer to generate the bill for.
 	 * @param items The list of items to put in the bill.
 	 * @param totalBill The total bill charge.
@@ -33,14 +37,43 @@ public class HtmlBillGenerator implements IBillGenerator {
     	AssertionHelper.NotNull(customer, "customer");
     	AssertionHelper.NotNull(items, "items");
     	AssertionHelper.NotNull(totalBill, "totalBill");
+    	long startNanos = metrics.startTimer();
     	
-        printer.printHeading(customer.getFullName(), customer.getPhoneNumber(), customer.getPricePlan());
-        
-        for (LineItem call : items) {
-            printer.printItem(call.date(), call.callee(), call.durationMinutes(), MoneyFormatter.penceToPounds(call.cost()));
-        }
-        
-        printer.printTotal(totalBill);
+    	// Printers which format durations themselves are given them in seconds, saving a String per item.
+    	IDurationBillPrinter durationPrinter = printer instanceof IDurationBillPrinter ? (IDurationBillPrinter)printer : null;
+    	int itemCount = items.size();
+    	String[] dates = new String[itemCount];
+    	String[] callees = new String[itemCount];
+    	String[] durations = durationPrinter == null ? new String[itemCount] : null;
+    	int[] durationSeconds = durationPrinter != null ? new int[itemCount] : null;
+    	String[] costs = new String[itemCount];
+    	int i = 0;
+    	for (LineItem call : items) {
+    		dates[i] = call.date();
+    		callees[i] = call.callee();
+    		if (durationPrinter != null) {
+    			durationSeconds[i] = call.durationSeconds();
+    		}
+    		else {
+    			durations[i] = call.durationMinutes();
+    		}
+    		costs[i] = MoneyFormatter.penceToPounds(call.cost());
+    		i++;
+    	}
+    	
+    	synchronized (printer) {
+    		printer.printHeading(customer.getFullName(), customer.getPhoneNumber(), customer.getPricePlan());
+    		for (i = 0; i < itemCount; i++) {
+    			if (durationPrinter != null) {
+    				durationPrinter.printItem(dates[i], callees[i], durationSeconds[i], costs[i]);
+    			}
+    			else {
+    				printer.printItem(dates[i], callees[i], durations[i], costs[i]);
+    			}
+    		}
+    		printer.printTotal(totalBill);
+    	}
+    	metrics.billSent(startNanos);
         return new Bill(customer, items, totalBill);
     }
 }
@@ -0,0 +1,78 @@
+package com.acmetelecom;
+
+/**
+ * Appends the parts of a HTML bill to a buffer. Produces the same markup, line for line, as HtmlBillPrinter.
+ */
+final class HtmlBillMarkup {
+
+	private static final String NewLine = System.lineSeparator();
+
+	private HtmlBillMarkup() {
+	}
+
+	/**
+	 * Appends the HTML bill header, the bill heading and the start of the calls table.
+	 * @param html The buffer to append to.
+	 * @param name The customer name to include in the heading.
+	 * @param phoneNumber The customer's phone number.
+	 * @param pricePlan The customer's price plan/tariff.
+	 */
+	static void appendHeading(StringBuilder html, String name, String phoneNumber, String pricePlan) {
+		html.append("<html>").append(NewLine)
+			.append("<head></head>").append(NewLine)
+			.append("<body>").append(NewLine)
+			.append("<h1>").append(NewLine)
+			.append("Acme Telecom").append(NewLine)
+			.append("</h1>").append(NewLine);
+		html.append("<h2>").append(name).append('/').append(phoneNumber)
+			.append(" - Price Plan: ").append(pricePlan).append("</h2>").append(NewLine);
+		html.append("<table border=\"1\">").append(NewLine)
+			.append("<tr><th width=\"160\">Time</th><th width=\"160\">Number</th>")
+			.append("<th width=\"160\">Duration</th><th width=\"160\">Cost</th></tr>").append(NewLine);
+	}
+
+	/**
+	 * Appends the specified call information as a HTML table row.
+	 * @param html The buffer to append to.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param duration The call duration.
+	 * @param cost The call cost.
+	 */
+	static void appendItem(StringBuilder html, String time, String callee, String duration, String cost) {
+		html.append("<tr><td>").append(time)
+			.append("</td><td>").append(callee)
+			.append("</td><td>").append(duration)
+			.append("</td><td>").append(cost)
+			.append("</td></tr>").append(NewLine);
+	}
+
+	/**
+	 * Appends the specified call information as a HTML table row, formatting the duration into the buffer.
+	 * @param html The buffer to append to.
+	 * @param time The start time of the call.
+	 * @param callee The receiver's phone number.
+	 * @param durationSeconds The call duration in seconds.
+	 * @param cost The call cost.
+	 */
+	static void appendItem(StringBuilder html, String time, String callee, int durationSeconds, String cost) {
+		html.append("<tr><td>").append(time)
+			.append("</td><td>").append(callee)
+			.append("</td><td>");
+		CallFormatter.appendDuration(html, durationSeconds);
+		html.append("</td><td>").append(cost)
+			.append("</td></tr>").append(NewLine);
+	}
+
+	/**
+	 * Appends the end of the calls table, the bill total and the HTML bill footer.
+	 * @param html The buffer to append to.
+	 * @param total The bill total cost.
+	 */
+	static void appendTotal(StringBuilder html, String total) {
+		html.append("</table>").append(NewLine)
+			.append("<h2>Total: ").append(total).append("</h2>").append(NewLine)
+			.append("</body>").append(NewLine)
+			.append("</html>").append(NewLine);
+	}
+}
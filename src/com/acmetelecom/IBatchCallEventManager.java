@@ -0,0 +1,18 @@
+package com.acmetelecom;
+
+/**
+ * A call event manager which can handle a batch of call events at once, e.g. taking its lock once for the whole
+ * batch, and which reports each event it cannot accept rather than stopping at the first one.
+ */
+public interface IBatchCallEventManager extends ICallEventManager {
+
+	/**
+	 * Handles a batch of call events in order. Events with a null caller or callee, starts of calls already in
+	 * progress, and ends of calls which are not in progress are rejected; all other events are handled as by
+	 * handleEvent.
+	 * @param batch The batch of events to handle.
+	 * @param result The result to record rejected events in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	void handleEvents(CallEventBatch batch, CallEventBatchResult result);
+}
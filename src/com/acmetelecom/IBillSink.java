@@ -0,0 +1,14 @@
+package com.acmetelecom;
+
+/**
+ * Receives bills from a streaming bill run as soon as each one is created.
+ */
+public interface IBillSink {
+
+	/**
+	 * Receives a created bill. Bills are received one at a time, in the order the customers are listed in the
+	 * customer database.
+	 * @param bill The created bill.
+	 */
+	void accept(Bill bill);
+}
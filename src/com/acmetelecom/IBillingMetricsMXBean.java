@@ -0,0 +1,91 @@
+package com.acmetelecom;
+
+/**
+ * The management interface through which BillingMetrics are published over JMX. Latencies are in nanoseconds.
+ */
+public interface IBillingMetricsMXBean {
+
+	/**
+	 * Gets the number of call events reported to the billing system, one at a time or in batches.
+	 * @return The number of events.
+	 */
+	long getEventsReceived();
+
+	/**
+	 * Gets the number of call events in batches, or handled by a CallEventPipeline, which the call event manager
+	 * rejected.
+	 * @return The number of events.
+	 */
+	long getEventsRejected();
+
+	/**
+	 * Gets the number of calls started.
+	 * @return The number of calls.
+	 */
+	long getCallsStarted();
+
+	/**
+	 * Gets the number of calls completed, i.e. whose end was matched to their start.
+	 * @return The number of calls.
+	 */
+	long getCallsCompleted();
+
+	/**
+	 * Gets the number of call starts for a call already in progress.
+	 * @return The number of call starts.
+	 */
+	long getDuplicateCallStarts();
+
+	/**
+	 * Gets the number of call ends which matched no call in progress.
+	 * @return The number of call ends.
+	 */
+	long getUnmatchedCallEnds();
+
+	/**
+	 * Gets the number of calls currently in progress.
+	 * @return The number of calls.
+	 */
+	long getOpenCalls();
+
+	/**
+	 * Gets the number of calls rated.
+	 * @return The number of calls.
+	 */
+	long getCallsRated();
+
+	/**
+	 * Gets the number of bills sent.
+	 * @return The number of bills.
+	 */
+	long getBillsSent();
+
+	/**
+	 * Gets the latency of rating a call, sampled from one in every BillingMetrics.RatingSampleInterval calls rated.
+	 * @return The count and percentiles of rating latencies.
+	 */
+	LatencySnapshot getRatingLatency();
+
+	/**
+	 * Gets the latency of sending a bill.
+	 * @return The count and percentiles of bill send latencies.
+	 */
+	LatencySnapshot getBillSendLatency();
+
+	/**
+	 * Gets whether counts and latencies are being recorded.
+	 * @return True if metrics are being recorded.
+	 */
+	boolean isActive();
+
+	/**
+	 * Turns recording of counts and latencies on or off.
+	 * @param active Indicates whether metrics should be recorded.
+	 */
+	void setActive(boolean active);
+
+	/**
+	 * Sets every count and latency to 0, except the number of calls in progress.
+	 */
+	void reset();
+}
@@ -21,9 +21,25 @@ public interface IBillingSystem {
      */
     void callCompleted(String caller, String callee);
 
+    /**
+     * Handles a batch of call events, each with its own time stamp, in order. Events which cannot be accepted are
+     * reported in the result rather than stopping the batch.
+     * @param batch The batch of events to handle.
+     * @return Which events were rejected and why.
+     */
+    CallEventBatchResult handleEvents(CallEventBatch batch);
+
     /**
      * Creates bills for all customers, prints them out and returns them as a list of type Bill.
      * @return ArrayList<Bill> The list of created bills, one per customer.
      */
     ArrayList<Bill> createCustomerBills();
+
+    /**
+     * Creates bills for all customers, prints them out and passes each one to a sink as soon as it is created,
+     * without holding all the bills in memory.
+     * @param sink The sink to pass the created bills to.
+     * @return The number of bills created.
+     */
+    int createCustomerBills(IBillSink sink);
 }
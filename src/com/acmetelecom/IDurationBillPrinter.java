@@ -0,0 +1,17 @@
+package com.acmetelecom;
+
+/**
+ * A bill printer which can format call durations itself, appending them straight into its output rather than
+ * being given each one as a String.
+ */
+public interface IDurationBillPrinter extends IBillPrinter {
+
+    /**
+     * Prints the specified call information.
+     * @param time The start time of the call.
+     * @param callee The receiver's phone number.
+     * @param durationSeconds The call duration in seconds.
+     * @param cost The call cost.
+     */
+    void printItem(String time, String callee, int durationSeconds, String cost);
+}
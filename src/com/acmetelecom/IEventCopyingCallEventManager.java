@@ -0,0 +1,14 @@
+package com.acmetelecom;
+
+/**
+ * A call event manager which copies what it needs out of each call event it handles and never keeps the event
+ * itself, so a caller reporting many events may reuse one event object rather than creating one per event.
+ */
+public interface IEventCopyingCallEventManager extends ICallEventManager {
+
+	/**
+	 * Gets the dictionary the manager shares phone numbers through.
+	 * @return The manager's phone number dictionary.
+	 */
+	PhoneNumberDictionary getPhoneNumbers();
+}
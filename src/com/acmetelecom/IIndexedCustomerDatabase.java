@@ -0,0 +1,18 @@
+package com.acmetelecom;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.CustomerDatabase;
+
+/**
+ * A customer database which can look up a single customer by phone number, so a customer can be found without
+ * listing every customer.
+ */
+public interface IIndexedCustomerDatabase extends CustomerDatabase {
+
+	/**
+	 * Gets the customer with a phone number.
+	 * @param phoneNumber The phone number.
+	 * @return The customer with the phone number, or null if no customer has it.
+	 */
+	Customer getCustomer(String phoneNumber);
+}
@@ -0,0 +1,21 @@
+package com.acmetelecom;
+
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.CustomerDatabase;
+
+/**
+ * A customer database which can list its customers a page at a time, so a bill run does not need to hold every
+ * customer in memory at once.
+ */
+public interface IPagedCustomerDatabase extends CustomerDatabase {
+
+	/**
+	 * Gets a page of customers, in the same order as getCustomers lists them.
+	 * @param firstCustomer The index of the first customer of the page.
+	 * @param pageSize The maximum number of customers to get.
+	 * @return The customers of the page; fewer than the page size only once the last customer is reached.
+	 */
+	List<Customer> getCustomerPage(int firstCustomer, int pageSize);
+}
@@ -0,0 +1,36 @@
+package com.acmetelecom;
+
+/**
+ * A call event manager which queues call events to be logged and handled on its own threads, so that the thread
+ * reporting an event does not wait for it to be handled. Events can be published from their parts without creating
+ * an event object. Because events are handled later, events which cannot be accepted (e.g. the end of a call which is
+ * not in progress) are counted and logged rather than thrown to the thread which reported them.
+ */
+public interface IPipelinedCallEventManager extends ICallEventManager {
+
+	/**
+	 * Queues a call start event.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call started (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the manager has been closed.
+	 */
+	void publishStart(String caller, String callee, long time);
+
+	/**
+	 * Queues a call end event.
+	 * @param caller The caller's phone number.
+	 * @param callee The callee's phone number.
+	 * @param time The time the call ended (in milliseconds since epoch).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if the manager has been closed.
+	 */
+	void publishEnd(String caller, String callee, long time);
+
+	/**
+	 * Waits until every event queued before the call has been handled.
+	 * @exception IllegalStateException Thrown if the wait is interrupted.
+	 */
+	void awaitHandled();
+}
@@ -0,0 +1,29 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.acmetelecom.customer.Customer;
+
+/**
+ * The interface implemented by call event managers which rate each call as soon as it completes, keeping a running
+ * total of each customer's spend.
+ */
+public interface IRatingCallEventManager extends ICallEventManager {
+
+	/**
+	 * Gets the rated calls for a particular customer.
+	 * @param customer The customer to get the rated calls for.
+	 * @return The line items for the customer's completed calls, in the order the calls completed.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	List<LineItem> getLineItemsForCustomer(Customer customer);
+
+	/**
+	 * Gets the total cost of a particular customer's completed calls.
+	 * @param customer The customer to get the spend for.
+	 * @return The customer's current spend (in pence).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	BigDecimal getCurrentSpend(Customer customer);
+}
@@ -0,0 +1,30 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * The interface implemented by call cost calculators which can calculate call costs for an already resolved tariff,
+ * so that a customer's tariff need only be looked up once for all of their calls.
+ */
+public interface ITariffCallCostCalculator extends ICallCostCalculator {
+
+	/**
+	 * Looks up the tariff of the specified customer.
+	 * @param customer The customer to get the tariff for.
+	 * @return The customer's tariff.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	Tariff tariffFor(Customer customer);
+
+	/**
+	 * Calculates the cost of a the specified call on the specified tariff.
+	 * @param tariff The tariff to calculate the call cost with.
+	 * @param call The call to calculate the cost of.
+	 * @return The call cost, rounded to the nearest penny.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	BigDecimal calculateCallCostOnTariff(Tariff tariff, Call call);
+}
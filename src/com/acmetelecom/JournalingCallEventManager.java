@@ -0,0 +1,89 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A CallEventManager which records each call event in a write-ahead journal before acknowledging it, so that calls
+ * in progress survive a restart. Each event is written to the journal before it is passed to the underlying call
+ * event manager, under one lock, so the manager never holds an event the journal does not and the journal records
+ * events in the order the manager handled them. The journal is the source of truth: events the manager rejects are
+ * also rejected when the journal is replayed. Waiting for an event to be forced to disk happens outside the lock, so
+ * events from several threads are forced together.
+ * When created, the calls in progress recovered from the journal are replayed into the underlying call event manager,
+ * so their end events are matched as normal. Completed calls are only as durable as the underlying call event manager.
+ */
+public class JournalingCallEventManager implements ICallEventManager, Closeable {
+
+	private final ICallEventManager callEventManager;
+	private final CallEventJournal journal;
+
+	/**
+	 * Constructor. Replays the calls in progress recovered by the journal into the call event manager.
+	 * @param callEventManager The call event manager to pass call events on to.
+	 * @param journal The journal to record call events in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public JournalingCallEventManager(ICallEventManager callEventManager, CallEventJournal journal) {
+		AssertionHelper.NotNull(callEventManager, "callEventManager");
+		AssertionHelper.NotNull(journal, "journal");
+		this.callEventManager = callEventManager;
+		this.journal = journal;
+
+		for (CallStart start : journal.getOpenCalls()) {
+			callEventManager.handleEvent(start);
+		}
+	}
+
+	/**
+	 * Handles incoming call events, recording them in the journal before passing them to the call event manager,
+	 * and returning once they have been forced to disk as the journal's sync policy requires.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously, or if the
+	 * event cannot be journalled, in which case it is not passed to the call event manager.
+	 */
+	public void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+		long position;
+		synchronized (this) {
+			position = journal.write(event);
+			// If the manager rejects the event, replaying the journal rejects it the same way.
+			callEventManager.handleEvent(event);
+		}
+		journal.awaitSynced(position);
+	}
+
+	/**
+	 * Gets the call logs for a particular customer.
+	 * @param caller The caller the get call logs for.
+	 * @return The list of calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public List<Call> getCallsForCustomer(String caller) {
+		return callEventManager.getCallsForCustomer(caller);
+	}
+
+	/**
+	 * Clears all call logs, including the calls in progress recorded in the journal.
+	 */
+	public synchronized void clearCallLogs() {
+		journal.clear();
+		callEventManager.clearCallLogs();
+	}
+
+	/**
+	 * Forces all journalled events to disk and closes the journal and, if closeable, the call event manager.
+	 */
+	public void close() {
+		journal.close();
+		if (callEventManager instanceof Closeable) {
+			try {
+				((Closeable)callEventManager).close();
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot close call event manager.", e);
+			}
+		}
+	}
+}
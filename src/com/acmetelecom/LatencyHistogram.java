@@ -0,0 +1,155 @@
+package com.acmetelecom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies (or any other non-negative values) with a fixed relative precision, in the style of
+ * HdrHistogram. Each power of two range of values is split into 32 buckets of equal width, so any recorded value is
+ * reported to within about 3% and the histogram takes the same, small, amount of memory whatever is recorded.
+ * Recording is an atomic increment of the value's bucket and of a striped total, so values can be recorded from several
+ * threads at once without locking or contending on one counter.
+ */
+public class LatencyHistogram {
+
+	private static final int SubBucketBits = 5;
+	private static final int SubBucketCount = 1 << SubBucketBits;
+	private static final int BucketCount = (64 - SubBucketBits) * SubBucketCount;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+	private final StripedCounter totalCount = new StripedCounter();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * @param value The value to record, e.g. a latency in nanoseconds.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(bucketOf(value));
+		totalCount.increment();
+		long max = maxValue.get();
+		while (value > max && !maxValue.compareAndSet(max, value)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Gets the number of values recorded.
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 * @return The largest value, or 0 if no values have been recorded.
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Gets the value at a percentile of the recorded values, i.e. the value which the percentage of recorded values
+	 * are less than or equal to. The value is reported as the largest value its bucket holds, so it is never below
+	 * the true value and at most about 3% above it.
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return The value at the percentile, or 0 if no values have been recorded.
+	 * @exception IllegalArgumentException If the percentile is outside 0 to 100.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("'percentile' must be from 0 to 100.");
+		}
+		long total = 0;
+		long[] snapshot = new long[BucketCount];
+		for (int i = 0; i < BucketCount; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BucketCount; i++) {
+			seen += snapshot[i];
+			if (seen >= target) {
+				return Math.min(highestValueIn(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Takes a snapshot of the count, maximum and commonly reported percentiles of the recorded values.
+	 * @return The snapshot.
+	 */
+	public LatencySnapshot snapshot() {
+		return new LatencySnapshot(getCount(), getValueAtPercentile(50), getValueAtPercentile(90),
+				getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+	}
+
+	/**
+	 * Adds the values recorded in another histogram to this histogram.
+	 * @param other The histogram to add.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public void add(LatencyHistogram other) {
+		AssertionHelper.NotNull(other, "other");
+		for (int i = 0; i < BucketCount; i++) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+				totalCount.add(count);
+			}
+		}
+		long max = maxValue.get();
+		long otherMax = other.getMax();
+		while (otherMax > max && !maxValue.compareAndSet(max, otherMax)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Removes all recorded values. Values recorded while the histogram is being reset may or may not be kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BucketCount; i++) {
+			counts.set(i, 0);
+		}
+		totalCount.reset();
+		maxValue.set(0);
+	}
+
+	/**
+	 * Gets the bucket a value is counted in.
+	 * @param value The non-negative value.
+	 * @return The index of the bucket.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SubBucketCount) {
+			return (int)value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SubBucketBits;
+		return (shift + 1) * SubBucketCount + (int)((value >>> shift) - SubBucketCount);
+	}
+
+	/**
+	 * Gets the largest value counted in a bucket.
+	 * @param bucket The index of the bucket.
+	 * @return The largest value of the bucket.
+	 */
+	private static long highestValueIn(int bucket) {
+		if (bucket < SubBucketCount) {
+			return bucket;
+		}
+		int shift = bucket / SubBucketCount - 1;
+		long subBucket = bucket % SubBucketCount + SubBucketCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,94 @@
+package com.acmetelecom;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The count, maximum and commonly reported percentiles of the values in a LatencyHistogram at one moment.
+ * Percentiles are reported to the histogram's precision, i.e. never below the true value and at most about 3% above it.
+ * Snapshots are published over JMX as composite data with one item per getter.
+ */
+public final class LatencySnapshot {
+
+	private final long count;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	/**
+	 * Constructor.
+	 * @param count The number of values recorded.
+	 * @param p50 The median value.
+	 * @param p90 The value at the 90th percentile.
+	 * @param p99 The value at the 99th percentile.
+	 * @param p999 The value at the 99.9th percentile.
+	 * @param max The largest value recorded.
+	 */
+	@ConstructorProperties({ "count", "p50", "p90", "p99", "p999", "max" })
+	public LatencySnapshot(long count, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	/**
+	 * Gets the number of values recorded.
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the median value.
+	 * @return The median, or 0 if no values were recorded.
+	 */
+	public long getP50() {
+		return p50;
+	}
+
+	/**
+	 * Gets the value at the 90th percentile.
+	 * @return The value, or 0 if no values were recorded.
+	 */
+	public long getP90() {
+		return p90;
+	}
+
+	/**
+	 * Gets the value at the 99th percentile.
+	 * @return The value, or 0 if no values were recorded.
+	 */
+	public long getP99() {
+		return p99;
+	}
+
+	/**
+	 * Gets the value at the 99.9th percentile.
+	 * @return The value, or 0 if no values were recorded.
+	 */
+	public long getP999() {
+		return p999;
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 * @return The largest value, or 0 if no values were recorded.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Formats the snapshot for logging.
+	 * @return The count and percentiles of the snapshot.
+	 */
+	@Override
+	public String toString() {
+		return "count=" + count + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99 + ", p99.9=" + p999 + ", max=" + max;
+	}
+}
@@ -22,6 +22,14 @@ public class LineItem {
         this.callCost = callCost;
     }
 
+    /**
+     * Gets the call this item charges for.
+     * @return The call.
+     */
+    public Call call() {
+        return call;
+    }
+
     /**
      * Gets the date the call was started on.
      * @return The date the call was started on as a String.
@@ -38,12 +46,20 @@ public class LineItem {
         return call.callee();
     }
 
+    /**
+     * Gets the call duration in seconds.
+     * @return The call duration in seconds.
+     */
+    public int durationSeconds() {
+        return call.durationSeconds();
+    }
+
     /**
      * Gets the call duration in minutes and seconds as a formatted String.
      * @return The call duration as a formatted String.
      */
     public String durationMinutes() {
-        return "" + call.durationSeconds() / 60 + ":" + String.format("%02d", call.durationSeconds() % 60);
+        return CallFormatter.formatDuration(call.durationSeconds());
     }
 
     /**
@@ -0,0 +1,342 @@
+package com.acmetelecom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A CallEventManager which keeps completed calls off the heap in memory-mapped, append-only segment files, so that
+ * the call log survives a restart and its size is bounded by disk rather than by the heap. Each completed call is a
+ * fixed-width record (encoded caller, encoded callee, start time, end time). Only an index of record positions by
+ * caller is held on the heap, and it is rebuilt from the segment files when the manager is created.
+ * Phone numbers must be encodable by PhoneNumberCodec. The manager is not thread-safe.
+ */
+public class MappedCallEventManager implements ICallEventManager, Closeable {
+
+	/** The default number of call records in each segment file. */
+	public static final int DefaultRecordsPerSegment = 1 << 20;
+
+	private static final int Magic = 0x41434D45;
+	private static final int Version = 1;
+	private static final int HeaderSize = 16;
+	private static final int CountOffset = 8;
+	private static final int RecordSize = 32;
+
+	/** The largest number of call records in each segment file, as a segment is mapped into a single buffer. */
+	public static final int MaxRecordsPerSegment = (Integer.MAX_VALUE - HeaderSize) / RecordSize;
+	private static final String SegmentPrefix = "calls-";
+	private static final String SegmentExtension = ".seg";
+
+	private Logger log = FileLogger.create();
+
+	private static final String SourceClass = MappedCallEventManager.class.getName();
+
+	private final Path directory;
+	private final int recordsPerSegment;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+	// Index of the segment currently being appended to.
+	private int activeSegment;
+
+	// Positions of each caller's call records, indexed by encoded caller phone number.
+	private HashMap<Long, RecordPositions> callLog = new HashMap<Long, RecordPositions>();
+
+	// Dictionary ids of the phone numbers of calls in progress.
+	private final PhoneNumberDictionary phoneNumbers = new PhoneNumberDictionary();
+
+	// Start times of calls in progress, indexed by caller and callee phone numbers.
+	// N.B. Assumes that single caller can be making several calls at same time, but not to same callee.
+	private CallsInProgressTable callsInProgress = new CallsInProgressTable();
+
+	/**
+	 * Constructor. Opens the call log in the specified directory, creating it if it does not exist, and rebuilds the
+	 * index of any calls already stored there.
+	 * @param directory The directory holding the segment files.
+	 * @param recordsPerSegment The number of call records in each new segment file.
+	 * @exception IllegalArgumentException If any of arguments are null or the segment size is not positive or is more
+	 * than MaxRecordsPerSegment.
+	 * @exception IllegalStateException Thrown if the segment files cannot be opened or are not valid.
+	 */
+	public MappedCallEventManager(Path directory, int recordsPerSegment) {
+		AssertionHelper.NotNull(directory, "directory");
+		if (recordsPerSegment <= 0) {
+			throw new IllegalArgumentException("'recordsPerSegment' must be positive.");
+		}
+		if (recordsPerSegment > MaxRecordsPerSegment) {
+			throw new IllegalArgumentException("'recordsPerSegment' must be at most " + MaxRecordsPerSegment + ".");
+		}
+		this.directory = directory;
+		this.recordsPerSegment = recordsPerSegment;
+
+		try {
+			Files.createDirectories(directory);
+			for (Path file : existingSegmentFiles()) {
+				segments.add(mapSegment(file, false));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open call log in " + directory + ".", e);
+		}
+
+		rebuildIndex();
+	}
+
+	/**
+	 * Handles incoming call events. If finds a start and end event for a particular call then appends the call to
+	 * the call log.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null or the phone numbers cannot be encoded.
+	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously,
+	 * or if the call cannot be stored.
+	 */
+	public void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+
+		if (event instanceof CallStart) {
+			if (!PhoneNumberCodec.canEncode(event.getCaller()) || !PhoneNumberCodec.canEncode(event.getCallee())) {
+				throw new IllegalArgumentException("Call from '" + event.getCaller() + "' to '" + event.getCallee()
+						+ "' does not have valid phone numbers.");
+			}
+
+			if (!callsInProgress.start(phoneNumbers.idOf(event.getCaller()), phoneNumbers.idOf(event.getCallee()), event.time())) {
+				throw new IllegalStateException(CallEventBatchResult.CallAlreadyInProgress);
+			}
+		}
+		else if (event instanceof CallEnd) {
+			long startMillis = callsInProgress.end(phoneNumbers.find(event.getCaller()), phoneNumbers.find(event.getCallee()));
+			if (startMillis == CallsInProgressTable.NotInProgress) {
+				log.logp(Level.WARNING, SourceClass, "handleEvent", CallsInProgressTable.noMatchingCallStartWarning(event));
+				return;
+			}
+
+			appendCall(PhoneNumberCodec.encode(event.getCaller()), PhoneNumberCodec.encode(event.getCallee()),
+					startMillis, event.time());
+		}
+	}
+
+	/**
+	 * Gets the call logs for a particular customer, reading the calls from the segment files.
+	 * @param caller The caller the get call logs for.
+	 * @return The list of calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public List<Call> getCallsForCustomer(String caller) {
+		AssertionHelper.NotNull(caller, "caller");
+		RecordPositions positions = PhoneNumberCodec.canEncode(caller)
+				? callLog.get(PhoneNumberCodec.encode(caller))
+				: null;
+		if (positions == null) {
+			return new ArrayList<Call>();
+		}
+
+		List<Call> calls = new ArrayList<Call>(positions.size);
+		for (int i = 0; i < positions.size; i++) {
+			long position = positions.positions[i];
+			MappedByteBuffer segment = segments.get((int)(position / recordsPerSegment));
+			int offset = (int)recordOffset(position % recordsPerSegment);
+			String callee = PhoneNumberCodec.decode(segment.getLong(offset + 8));
+			calls.add(new Call(caller, callee, segment.getLong(offset + 16), segment.getLong(offset + 24)));
+		}
+		return calls;
+	}
+
+	/**
+	 * Clears all call logs. The segment files are kept and reused for subsequent calls.
+	 */
+	public void clearCallLogs() {
+		for (MappedByteBuffer segment : segments) {
+			segment.putLong(CountOffset, 0);
+		}
+		activeSegment = 0;
+		callLog.clear();
+		callsInProgress.clear();
+	}
+
+	/**
+	 * Forces all stored calls to be written to disk.
+	 */
+	public void flush() {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	/**
+	 * Forces all stored calls to be written to disk. Calls in progress are not stored.
+	 */
+	public void close() {
+		flush();
+	}
+
+	/**
+	 * Appends a call record to the active segment, starting a new segment if it is full. The record only becomes
+	 * part of the log once the segment's record count has been updated, after the record itself has been written.
+	 * @param caller The encoded caller phone number.
+	 * @param callee The encoded callee phone number.
+	 * @param startTime The call start time (in milliseconds since the epoch).
+	 * @param endTime The call end time (in milliseconds since the epoch).
+	 * @exception IllegalStateException Thrown if a new segment file cannot be created.
+	 */
+	private void appendCall(long caller, long callee, long startTime, long endTime) {
+		while (activeSegment < segments.size() && recordCount(segments.get(activeSegment)) == recordsPerSegment) {
+			activeSegment++;
+		}
+		if (activeSegment == segments.size()) {
+			try {
+				segments.add(mapSegment(directory.resolve(segmentFileName(activeSegment)), true));
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot create call log segment in " + directory + ".", e);
+			}
+		}
+
+		MappedByteBuffer segment = segments.get(activeSegment);
+		int slot = (int)recordCount(segment);
+		int offset = (int)recordOffset(slot);
+		segment.putLong(offset, caller);
+		segment.putLong(offset + 8, callee);
+		segment.putLong(offset + 16, startTime);
+		segment.putLong(offset + 24, endTime);
+		segment.putLong(CountOffset, slot + 1);
+
+		indexRecord(caller, (long)activeSegment * recordsPerSegment + slot);
+	}
+
+	/**
+	 * Rebuilds the caller index from the records in all segments and finds the segment to append to.
+	 */
+	private void rebuildIndex() {
+		activeSegment = segments.size();
+		for (int s = 0; s < segments.size(); s++) {
+			MappedByteBuffer segment = segments.get(s);
+			long count = recordCount(segment);
+			for (int slot = 0; slot < count; slot++) {
+				indexRecord(segment.getLong((int)recordOffset(slot)), (long)s * recordsPerSegment + slot);
+			}
+			if (count < recordsPerSegment && activeSegment == segments.size()) {
+				activeSegment = s;
+			}
+		}
+	}
+
+	/**
+	 * Adds a record position to the caller index.
+	 * @param caller The encoded caller phone number.
+	 * @param position The position of the record in the log.
+	 */
+	private void indexRecord(long caller, long position) {
+		RecordPositions positions = callLog.get(caller);
+		if (positions == null) {
+			positions = new RecordPositions();
+			callLog.put(caller, positions);
+		}
+		positions.add(position);
+	}
+
+	/**
+	 * Lists the existing segment files in the call log directory, in order.
+	 * @return The segment files.
+	 * @throws IOException Thrown if the directory cannot be read.
+	 */
+	private List<Path> existingSegmentFiles() throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SegmentPrefix + "*" + SegmentExtension)) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files);
+
+		for (int i = 0; i < files.size(); i++) {
+			if (!files.get(i).getFileName().toString().equals(segmentFileName(i))) {
+				throw new IllegalStateException("Call log segment " + segmentFileName(i) + " is missing.");
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Maps a segment file into memory.
+	 * @param file The segment file.
+	 * @param create Whether to create a new, empty segment.
+	 * @return The mapped segment.
+	 * @throws IOException Thrown if the file cannot be mapped.
+	 * @exception IllegalStateException Thrown if an existing file is not a valid segment.
+	 */
+	private MappedByteBuffer mapSegment(Path file, boolean create) throws IOException {
+		try (FileChannel channel = create
+				? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = create ? recordOffset(recordsPerSegment) : channel.size();
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (create) {
+				segment.putInt(0, Magic);
+				segment.putInt(4, Version);
+				segment.putLong(CountOffset, 0);
+			}
+			else if (size != recordOffset(recordsPerSegment) || segment.getInt(0) != Magic || segment.getInt(4) != Version
+					|| recordCount(segment) < 0 || recordCount(segment) > recordsPerSegment) {
+				throw new IllegalStateException("'" + file + "' is not a valid call log segment of "
+						+ recordsPerSegment + " records.");
+			}
+			return segment;
+		}
+	}
+
+	/**
+	 * Gets the number of records stored in a segment.
+	 * @param segment The segment.
+	 * @return The number of records.
+	 */
+	private static long recordCount(MappedByteBuffer segment) {
+		return segment.getLong(CountOffset);
+	}
+
+	/**
+	 * Gets the offset of a record within its segment. Worked out in long, so the offset just past the last slot of
+	 * the largest segment does not overflow.
+	 * @param slot The record's slot in the segment.
+	 * @return The byte offset of the record.
+	 */
+	private static long recordOffset(long slot) {
+		return HeaderSize + slot * RecordSize;
+	}
+
+	/**
+	 * Gets the file name of a segment.
+	 * @param segment The segment index.
+	 * @return The segment file name.
+	 */
+	private static String segmentFileName(int segment) {
+		return String.format("%s%05d%s", SegmentPrefix, segment, SegmentExtension);
+	}
+
+	/**
+	 * A growable list of record positions.
+	 */
+	private static class RecordPositions {
+		private long[] positions = new long[4];
+		private int size;
+
+		/**
+		 * Appends a record position.
+		 * @param position The record position.
+		 */
+		void add(long position) {
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+			positions[size++] = position;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.acmetelecom;
+
+/**
+ * The counts and latencies of a BillingMetrics at one moment. Each value is read separately, so values recorded while
+ * the snapshot is taken may be included in some values and not others. Latencies are in nanoseconds.
+ */
+public final class MetricsSnapshot {
+
+	private final long eventsReceived;
+	private final long eventsRejected;
+	private final long callsStarted;
+	private final long callsCompleted;
+	private final long duplicateCallStarts;
+	private final long unmatchedCallEnds;
+	private final long openCalls;
+	private final long callsRated;
+	private final long billsSent;
+	private final LatencySnapshot ratingLatency;
+	private final LatencySnapshot billSendLatency;
+
+	/**
+	 * Constructor.
+	 * @param metrics The metrics to take a snapshot of.
+	 */
+	MetricsSnapshot(BillingMetrics metrics) {
+		eventsReceived = metrics.getEventsReceived();
+		eventsRejected = metrics.getEventsRejected();
+		callsStarted = metrics.getCallsStarted();
+		callsCompleted = metrics.getCallsCompleted();
+		duplicateCallStarts = metrics.getDuplicateCallStarts();
+		unmatchedCallEnds = metrics.getUnmatchedCallEnds();
+		openCalls = metrics.getOpenCalls();
+		callsRated = metrics.getCallsRated();
+		billsSent = metrics.getBillsSent();
+		ratingLatency = metrics.getRatingLatency();
+		billSendLatency = metrics.getBillSendLatency();
+	}
+
+	/**
+	 * Gets the number of call events reported to the billing system.
+	 * @return The number of events.
+	 */
+	public long getEventsReceived() {
+		return eventsReceived;
+	}
+
+	/**
+	 * Gets the number of call events in batches which the call event manager rejected.
+	 * @return The number of events.
+	 */
+	public long getEventsRejected() {
+		return eventsRejected;
+	}
+
+	/**
+	 * Gets the number of calls started.
+	 * @return The number of calls.
+	 */
+	public long getCallsStarted() {
+		return callsStarted;
+	}
+
+	/**
+	 * Gets the number of calls completed.
+	 * @return The number of calls.
+	 */
+	public long getCallsCompleted() {
+		return callsCompleted;
+	}
+
+	/**
+	 * Gets the number of call starts for a call already in progress.
+	 * @return The number of call starts.
+	 */
+	public long getDuplicateCallStarts() {
+		return duplicateCallStarts;
+	}
+
+	/**
+	 * Gets the number of call ends which matched no call in progress.
+	 * @return The number of call ends.
+	 */
+	public long getUnmatchedCallEnds() {
+		return unmatchedCallEnds;
+	}
+
+	/**
+	 * Gets the number of calls in progress.
+	 * @return The number of calls.
+	 */
+	public long getOpenCalls() {
+		return openCalls;
+	}
+
+	/**
+	 * Gets the number of calls rated.
+	 * @return The number of calls.
+	 */
+	public long getCallsRated() {
+		return callsRated;
+	}
+
+	/**
+	 * Gets the number of bills sent.
+	 * @return The number of bills.
+	 */
+	public long getBillsSent() {
+		return billsSent;
+	}
+
+	/**
+	 * Gets the latency of rating a call.
+	 * @return The count and percentiles of rating latencies.
+	 */
+	public LatencySnapshot getRatingLatency() {
+		return ratingLatency;
+	}
+
+	/**
+	 * Gets the latency of sending a bill.
+	 * @return The count and percentiles of bill send latencies.
+	 */
+	public LatencySnapshot getBillSendLatency() {
+		return billSendLatency;
+	}
+
+	/**
+	 * Formats the snapshot for logging.
+	 * @return Every count and latency of the snapshot.
+	 */
+	@Override
+	public String toString() {
+		return "events received " + eventsReceived + ", rejected " + eventsRejected
+				+ "; calls started " + callsStarted + ", completed " + callsCompleted + ", in progress " + openCalls
+				+ "; duplicate starts " + duplicateCallStarts + ", unmatched ends " + unmatchedCallEnds
+				+ "; calls rated " + callsRated + " (ns: " + ratingLatency + ")"
+				+ "; bills sent " + billsSent + " (ns: " + billSendLatency + ")";
+	}
+}
@@ -1,21 +1,63 @@
 package com.acmetelecom;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 /**
  * Class responsible for money formatting operations.
+ * Amounts are formatted in fixed point, digit by digit, so any amount is formatted exactly, always with a '.'
+ * separating pounds from pence, and without going through floating point.
  */
 public class MoneyFormatter {
-	
+
 	/**
 	 * Converts pence, in BigDecimal form, to pounds, in String form.
+	 * Fractions of a penny are rounded to the nearest penny, with halves rounded away from zero.
 	 * @param pence The pence to convert.
 	 * @return The converted pounds value as a String.
 	 * @exception IllegalArgumentException If any of arguments are null.
 	 */
     public static String penceToPounds(BigDecimal pence) {
     	AssertionHelper.NotNull(pence, "pence");
-        BigDecimal pounds = pence.divide(new BigDecimal(100));
-        return String.format("%.2f", pounds.doubleValue());
+    	BigDecimal wholePence = pence.setScale(0, RoundingMode.HALF_UP);
+    	// Any amount of up to 18 digits fits in a long.
+    	if (wholePence.precision() <= 18) {
+    		return penceToPounds(wholePence.longValue());
+    	}
+    	return wholePence.movePointLeft(2).toPlainString();
+    }
+
+	/**
+	 * Converts whole pence to pounds, in String form.
+	 * @param pence The pence to convert.
+	 * @return The converted pounds value as a String.
+	 */
+    public static String penceToPounds(long pence) {
+    	StringBuilder pounds = new StringBuilder(24);
+    	appendPounds(pounds, pence);
+    	return pounds.toString();
+    }
+
+	/**
+	 * Appends whole pence as pounds to a buffer.
+	 * @param buffer The buffer to append to.
+	 * @param pence The pence to append.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+    public static void appendPounds(StringBuilder buffer, long pence) {
+    	AssertionHelper.NotNull(buffer, "buffer");
+
+    	// Works with the amount negated, so that Long.MIN_VALUE needs no special case.
+    	long negated = pence < 0 ? pence : -pence;
+    	if (pence < 0) {
+    		buffer.append('-');
+    	}
+    	long pounds = -(negated / 100);
+    	int penceOfPound = (int)-(negated % 100);
+    	buffer.append(pounds).append('.');
+    	if (penceOfPound < 10) {
+    		buffer.append('0');
+    	}
+    	buffer.append(penceOfPound);
     }
 }
@@ -0,0 +1,111 @@
+package com.acmetelecom;
+
+/**
+ * Encodes phone numbers as longs so that they can be stored without a String per number. E.164 numbers (up to 15
+ * digits, optionally prefixed with '+') and other numbers of up to 17 digits are supported. The number of digits is
+ * kept alongside the value so leading zeros survive a round trip.
+ */
+public class PhoneNumberCodec {
+
+	/** The maximum number of digits in an encodable phone number. */
+	public static final int MaxDigits = 17;
+
+	private static final int LengthShift = 57;
+	private static final long ValueMask = (1L << LengthShift) - 1;
+	private static final long PlusFlag = 1L << 62;
+
+	/**
+	 * Checks whether a phone number can be encoded.
+	 * @param phoneNumber The phone number.
+	 * @return True if the number is made up of 1 to 17 digits, optionally prefixed with '+'.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public static boolean canEncode(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		int first = phoneNumber.startsWith("+") ? 1 : 0;
+		int digits = phoneNumber.length() - first;
+		if (digits < 1 || digits > MaxDigits) {
+			return false;
+		}
+		for (int i = first; i < phoneNumber.length(); i++) {
+			char c = phoneNumber.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes a phone number as a long.
+	 * @param phoneNumber The phone number to encode.
+	 * @return The encoded phone number.
+	 * @exception IllegalArgumentException If the number is null or cannot be encoded.
+	 */
+	public static long encode(String phoneNumber) {
+		if (!canEncode(phoneNumber)) {
+			throw new IllegalArgumentException("'" + phoneNumber + "' is not a phone number which can be encoded.");
+		}
+
+		boolean plus = phoneNumber.charAt(0) == '+';
+		long value = 0;
+		for (int i = plus ? 1 : 0; i < phoneNumber.length(); i++) {
+			value = value * 10 + (phoneNumber.charAt(i) - '0');
+		}
+
+		return pack(plus, plus ? phoneNumber.length() - 1 : phoneNumber.length(), value);
+	}
+
+	/**
+	 * Checks whether a long is a phone number encoded with encode.
+	 * @param encoded The long to check.
+	 * @return True if the long holds 1 to 17 digits and its value fits in them.
+	 */
+	public static boolean canDecode(long encoded) {
+		if ((encoded & ~(PlusFlag | (0x1FL << LengthShift) | ValueMask)) != 0) {
+			return false;
+		}
+		int digits = (int)((encoded & ~PlusFlag) >>> LengthShift);
+		if (digits < 1 || digits > MaxDigits) {
+			return false;
+		}
+		long value = encoded & ValueMask;
+		for (int i = 0; i < digits; i++) {
+			value /= 10;
+		}
+		return value == 0;
+	}
+
+	/**
+	 * Packs the parts of a phone number already validated by the caller into its encoded form.
+	 * @param plus Whether the number is prefixed with '+'.
+	 * @param digits The number of digits in the number, from 1 to 17.
+	 * @param value The value of the digits.
+	 * @return The encoded phone number.
+	 */
+	static long pack(boolean plus, int digits, long value) {
+		return (plus ? PlusFlag : 0) | ((long)digits << LengthShift) | value;
+	}
+
+	/**
+	 * Decodes a phone number encoded with encode.
+	 * @param encoded The encoded phone number.
+	 * @return The phone number.
+	 */
+	public static String decode(long encoded) {
+		boolean plus = (encoded & PlusFlag) != 0;
+		int digits = (int)((encoded & ~PlusFlag) >>> LengthShift);
+		long value = encoded & ValueMask;
+
+		int length = plus ? digits + 1 : digits;
+		char[] chars = new char[length];
+		for (int i = length - 1; i >= length - digits; i--) {
+			chars[i] = (char)('0' + value % 10);
+			value /= 10;
+		}
+		if (plus) {
+			chars[0] = '+';
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,101 @@
+package com.acmetelecom;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of phone numbers which gives each distinct number a small int id, and keeps one String instance per
+ * number. Call event managers use the ids to index calls without creating keys, and the single instance of each
+ * number is shared by every Call and LineItem for it, so a number reported a million times is stored once.
+ * The first instance of a number added to the dictionary is the one kept. Numbers are never removed, so the
+ * dictionary grows with the number of distinct numbers seen, not the number of calls.
+ * Numbers can be looked up and added from several threads at once; looking up a number already in the dictionary
+ * does not lock or allocate.
+ */
+public final class PhoneNumberDictionary {
+
+	private static final int InitialCapacity = 64;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+	// The number with each id. Replaced, never modified below size, when the dictionary grows.
+	private volatile String[] numbers = new String[InitialCapacity];
+	private int size;
+
+	/**
+	 * Gets the id of a phone number, adding the number to the dictionary if it is not already in it.
+	 * @param phoneNumber The phone number.
+	 * @return The number's id, from 0 to the number of numbers in the dictionary.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public int idOf(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		Integer id = ids.get(phoneNumber);
+		return id != null ? id : add(phoneNumber);
+	}
+
+	/**
+	 * Gets the id of a phone number without adding it to the dictionary.
+	 * @param phoneNumber The phone number.
+	 * @return The number's id, or -1 if the number is not in the dictionary.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public int find(String phoneNumber) {
+		AssertionHelper.NotNull(phoneNumber, "phoneNumber");
+		Integer id = ids.get(phoneNumber);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Gets the phone number with an id.
+	 * @param id The id of the number.
+	 * @return The instance of the number kept by the dictionary.
+	 * @exception IllegalArgumentException If no number has the id.
+	 */
+	public String numberOf(int id) {
+		String[] current = numbers;
+		String phoneNumber = id >= 0 && id < current.length ? current[id] : null;
+		if (phoneNumber == null) {
+			throw new IllegalArgumentException("No phone number has id " + id + ".");
+		}
+		return phoneNumber;
+	}
+
+	/**
+	 * Gets the instance of a phone number kept by the dictionary, adding the number if it is not already in it.
+	 * @param phoneNumber The phone number.
+	 * @return The dictionary's instance of the number.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public String intern(String phoneNumber) {
+		return numberOf(idOf(phoneNumber));
+	}
+
+	/**
+	 * Gets the number of phone numbers in the dictionary.
+	 * @return The number of phone numbers.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a phone number to the dictionary, unless another thread has just added it.
+	 * @param phoneNumber The phone number.
+	 * @return The number's id.
+	 */
+	private synchronized int add(String phoneNumber) {
+		Integer id = ids.get(phoneNumber);
+		if (id != null) {
+			return id;
+		}
+
+		// The number must be in the array before its id can be looked up.
+		if (size == numbers.length) {
+			numbers = Arrays.copyOf(numbers, size * 2);
+		}
+		numbers[size] = phoneNumber;
+		ids.put(phoneNumber, size);
+		return size++;
+	}
+}
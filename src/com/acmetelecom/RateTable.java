@@ -0,0 +1,218 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+import com.acmetelecom.IPeakPeriod.DayPeriod;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * The per-second rates of a tariff (e.g. in each period or band of the day), compiled into fixed-point integers so
+ * that call costs can be worked out with long arithmetic alone. Each rate is held exactly as a whole number of 2^-shift pence, the
+ * form in which rates derived from doubles are exact, so a cost is the sum of seconds times rate units (kept as a
+ * 96 bit value in two longs) rounded half up on the final shift, giving the same result as multiplying and summing
+ * the BigDecimal rates and rounding half up.
+ * Rates which cannot be held exactly in this form, and calls too long for the fixed-point sum, fall back to
+ * BigDecimal arithmetic.
+ */
+final class RateTable {
+
+	private static final int MaxShift = 63;
+	private static final long MaxSeconds = Integer.MAX_VALUE;
+	private static final long LowMask = 0xFFFFFFFFL;
+
+	private final BigDecimal[] rates;
+
+	// Whether all rates are held exactly as fixed-point units.
+	private final boolean exact;
+
+	// Each rate in units of 2^-shift pence per second.
+	private final long[] units;
+	private final int shift;
+
+	/**
+	 * Constructor.
+	 * @param rates The rates.
+	 * @param units The fixed-point rates, or null if they cannot be held exactly.
+	 * @param shift The number of fractional bits in the fixed-point rates.
+	 */
+	private RateTable(BigDecimal[] rates, long[] units, int shift) {
+		this.rates = rates;
+		this.exact = units != null;
+		this.units = units;
+		this.shift = shift;
+	}
+
+	/**
+	 * Compiles the rates a tariff charges in each period of the day.
+	 * @param peakPeriod The peak period defining the rate of each period.
+	 * @param tariff The tariff to compile.
+	 * @return The compiled rate table, indexed by period ordinal.
+	 */
+	static RateTable compile(IPeakPeriod peakPeriod, Tariff tariff) {
+		DayPeriod[] periods = DayPeriod.values();
+		BigDecimal[] rates = new BigDecimal[periods.length];
+		for (DayPeriod period : periods) {
+			rates[period.ordinal()] = peakPeriod.getPeriodRate(period, tariff);
+		}
+		return compile(rates);
+	}
+
+	/**
+	 * Compiles a list of per-second rates.
+	 * @param rates The rates to compile.
+	 * @return The compiled rate table, indexed in the same order as the rates.
+	 */
+	static RateTable compile(BigDecimal[] rates) {
+		rates = rates.clone();
+		int shift = 0;
+		for (BigDecimal rate : rates) {
+			int rateShift = binaryShift(rate);
+			if (rateShift < 0) {
+				return new RateTable(rates, null, 0);
+			}
+			shift = Math.max(shift, rateShift);
+		}
+
+		long[] units = new long[rates.length];
+		BigDecimal scale = new BigDecimal(BigInteger.ONE.shiftLeft(shift));
+		for (int i = 0; i < rates.length; i++) {
+			BigInteger scaled = rates[i].multiply(scale).toBigIntegerExact();
+			if (scaled.signum() < 0 || scaled.bitLength() > 62) {
+				return new RateTable(rates, null, 0);
+			}
+			units[i] = scaled.longValue();
+		}
+		return new RateTable(rates, units, shift);
+	}
+
+	/**
+	 * Calculates the cost of the seconds charged at each rate.
+	 * @param seconds The seconds charged at each rate, indexed in the same order as the rates.
+	 * @return The cost, rounded half up to the nearest penny.
+	 */
+	BigDecimal cost(long[] seconds) {
+		if (exact) {
+			long totalSeconds = 0;
+			for (long s : seconds) {
+				if (s < 0) {
+					totalSeconds = -1;
+					break;
+				}
+				totalSeconds += s;
+			}
+			if (totalSeconds >= 0 && totalSeconds <= MaxSeconds) {
+				long high = 0;
+				long low = 0;
+				for (int i = 0; i < seconds.length; i++) {
+					long product = seconds[i] * (units[i] & LowMask);
+					high += seconds[i] * (units[i] >>> 32) + (product >>> 32);
+					low += product & LowMask;
+				}
+				long pence = roundHalfUp(high, low);
+				if (pence >= 0) {
+					return BigDecimal.valueOf(pence);
+				}
+			}
+		}
+
+		BigDecimal cost = BigDecimal.ZERO;
+		for (int i = 0; i < seconds.length; i++) {
+			cost = cost.add(BigDecimal.valueOf(seconds[i]).multiply(rates[i]));
+		}
+		return cost.setScale(0, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Calculates the cost of the seconds spent in each period of the day.
+	 * @param prePeakSeconds The seconds spent in the pre-peak period.
+	 * @param peakSeconds The seconds spent in the peak period.
+	 * @param postPeakSeconds The seconds spent in the post-peak period.
+	 * @return The cost, rounded half up to the nearest penny.
+	 */
+	BigDecimal cost(long prePeakSeconds, long peakSeconds, long postPeakSeconds) {
+		if (exact && prePeakSeconds >= 0 && peakSeconds >= 0 && postPeakSeconds >= 0
+				&& prePeakSeconds + peakSeconds + postPeakSeconds <= MaxSeconds) {
+			long pence = fixedPointCost(prePeakSeconds, peakSeconds, postPeakSeconds);
+			if (pence >= 0) {
+				return BigDecimal.valueOf(pence);
+			}
+		}
+
+		return BigDecimal.valueOf(prePeakSeconds).multiply(rates[DayPeriod.PrePeak.ordinal()])
+				.add(BigDecimal.valueOf(peakSeconds).multiply(rates[DayPeriod.Peak.ordinal()]))
+				.add(BigDecimal.valueOf(postPeakSeconds).multiply(rates[DayPeriod.PostPeak.ordinal()]))
+				.setScale(0, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Calculates a cost with fixed-point arithmetic. The sum of seconds times rate units is accumulated as
+	 * high * 2^32 + low, which cannot overflow while the total seconds fit in an int and each rate unit in 62 bits.
+	 * @param prePeakSeconds The seconds spent in the pre-peak period.
+	 * @param peakSeconds The seconds spent in the peak period.
+	 * @param postPeakSeconds The seconds spent in the post-peak period.
+	 * @return The cost in pence, rounded half up, or -1 if the cost does not fit in a long.
+	 */
+	private long fixedPointCost(long prePeakSeconds, long peakSeconds, long postPeakSeconds) {
+		long high = 0;
+		long low = 0;
+
+		long rate = units[DayPeriod.PrePeak.ordinal()];
+		long product = prePeakSeconds * (rate & LowMask);
+		high += prePeakSeconds * (rate >>> 32) + (product >>> 32);
+		low += product & LowMask;
+
+		rate = units[DayPeriod.Peak.ordinal()];
+		product = peakSeconds * (rate & LowMask);
+		high += peakSeconds * (rate >>> 32) + (product >>> 32);
+		low += product & LowMask;
+
+		rate = units[DayPeriod.PostPeak.ordinal()];
+		product = postPeakSeconds * (rate & LowMask);
+		high += postPeakSeconds * (rate >>> 32) + (product >>> 32);
+		low += product & LowMask;
+
+		return roundHalfUp(high, low);
+	}
+
+	/**
+	 * Divides a fixed-point sum by 2^shift, adding one if the most significant discarded bit is set (i.e. rounding
+	 * half up).
+	 * @param high The sum divided by 2^32.
+	 * @param low The sum modulo 2^32, which may carry into the high part.
+	 * @return The cost in pence, or -1 if the cost does not fit in a long.
+	 */
+	private long roundHalfUp(long high, long low) {
+		high += low >>> 32;
+		low &= LowMask;
+
+		if (shift >= 32) {
+			long pence = high >>> (shift - 32);
+			long halfBit = shift == 32 ? low >>> 31 : (high >>> (shift - 33)) & 1;
+			return pence + halfBit;
+		}
+		if (high >>> (31 + shift) != 0) {
+			return -1;
+		}
+		long pence = (high << (32 - shift)) | (low >>> shift);
+		long halfBit = shift == 0 ? 0 : (low >>> (shift - 1)) & 1;
+		return pence + halfBit;
+	}
+
+	/**
+	 * Finds the number of binary fractional bits needed to hold a rate exactly.
+	 * @param rate The rate.
+	 * @return The smallest shift such that rate * 2^shift is a whole number, or -1 if there is none within range.
+	 */
+	private static int binaryShift(BigDecimal rate) {
+		BigDecimal scaled = rate;
+		for (int shift = 0; shift <= MaxShift; shift++) {
+			if (scaled.signum() == 0 || scaled.stripTrailingZeros().scale() <= 0) {
+				return shift;
+			}
+			scaled = scaled.multiply(BigDecimal.valueOf(2));
+		}
+		return -1;
+	}
+}
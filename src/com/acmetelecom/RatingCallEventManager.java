@@ -0,0 +1,263 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.CustomerDatabase;
+
+/**
+ * A CallEventManager which rates each call as soon as its start and end events have been paired, keeping the rated
+ * line items and a running total for each customer. Bill runs then only need to render the already rated calls,
+ * and a customer's current spend can be queried at any time.
+ * If the customer database is an IIndexedCustomerDatabase, the customer making each call is looked up by phone number
+ * when the call completes, through a CachingCustomerLookup so that the manager holds at most a bounded number of
+ * customers. The database is never scanned: calls whose customer cannot be looked up that way, or is not in the
+ * database, are rated when their customer's line items or spend are first requested.
+ * All methods are synchronized, so spend can be queried while events are being handled.
+ * Phone numbers are stored once each in a PhoneNumberDictionary, and calls in progress are kept as start times keyed
+ * by the dictionary ids of their caller and callee, which counts calls started, completed and in progress, and events
+ * which could not be matched, in the default BillingMetrics.
+ */
+public class RatingCallEventManager implements IRatingCallEventManager, IBatchCallEventManager, IEventCopyingCallEventManager {
+
+	private Logger log = FileLogger.create();
+
+	private static final String SourceClass = RatingCallEventManager.class.getName();
+
+	private final ICallCostCalculator callCostCalculator;
+
+	// Looks up the customer making each call as it completes, or null if the database cannot look customers up.
+	private final CachingCustomerLookup customers;
+	private final PhoneNumberDictionary phoneNumbers;
+
+	// Completed calls and their ratings, indexed by the dictionary id of the caller phone number.
+	private ArrayList<CustomerCalls> callLog = new ArrayList<CustomerCalls>();
+
+	// Start times of calls in progress, indexed by caller and callee phone numbers.
+	// N.B. Assumes that single caller can be making several calls at same time, but not to same callee.
+	private CallsInProgressTable callsInProgress = new CallsInProgressTable();
+
+	/**
+	 * Constructor. Creates a manager with its own phone number dictionary.
+	 * @param callCostCalculator The call cost calculator to rate calls with.
+	 * @param customerDatabase The customer database to look up the customer making each call in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public RatingCallEventManager(ICallCostCalculator callCostCalculator, CustomerDatabase customerDatabase) {
+		this(callCostCalculator, customerDatabase, new PhoneNumberDictionary());
+	}
+
+	/**
+	 * Constructor.
+	 * @param callCostCalculator The call cost calculator to rate calls with.
+	 * @param customerDatabase The customer database to look up the customer making each call in.
+	 * @param phoneNumbers The dictionary to store phone numbers in, which may be shared with other managers.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public RatingCallEventManager(ICallCostCalculator callCostCalculator, CustomerDatabase customerDatabase,
+			PhoneNumberDictionary phoneNumbers) {
+		AssertionHelper.NotNull(callCostCalculator, "callCostCalculator");
+		AssertionHelper.NotNull(customerDatabase, "customerDatabase");
+		AssertionHelper.NotNull(phoneNumbers, "phoneNumbers");
+		this.callCostCalculator = callCostCalculator;
+		this.customers = customerDatabase instanceof IIndexedCustomerDatabase
+				? new CachingCustomerLookup((IIndexedCustomerDatabase)customerDatabase)
+				: null;
+		this.phoneNumbers = phoneNumbers;
+	}
+
+	/**
+	 * Handles incoming call events. If finds a start and end event for a particular call then groups them together into
+	 * a single Call object, rates it and adds it to the caller's running total.
+	 * @param event The incoming call event to handle.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 * @exception IllegalStateException Thrown if caller starts two calls with same callee simultaneously.
+	 */
+	public synchronized void handleEvent(CallEvent event) {
+		AssertionHelper.NotNull(event, "event");
+
+		if (event instanceof CallStart) {
+			// If caller has started call to same callee twice without hanging up first throw exception.
+			String rejection = startCall(event.getCaller(), event.getCallee(), event.time());
+			if (rejection != null) {
+				throw new IllegalStateException(rejection);
+			}
+		}
+		else if (event instanceof CallEnd) {
+			if (endCall(event.getCaller(), event.getCallee(), event.time()) != null) {
+				log.logp(Level.WARNING, SourceClass, "handleEvent", CallsInProgressTable.noMatchingCallStartWarning(event));
+			}
+		}
+	}
+
+	/**
+	 * Handles a batch of call events in order, holding the lock once for the whole batch. Events with a null caller
+	 * or callee, starts of calls already in progress, and ends of calls which are not in progress are rejected.
+	 * @param batch The batch of events to handle.
+	 * @param result The result to record rejected events in.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public synchronized void handleEvents(CallEventBatch batch, CallEventBatchResult result) {
+		AssertionHelper.NotNull(batch, "batch");
+		AssertionHelper.NotNull(result, "result");
+
+		for (int i = 0; i < batch.size(); i++) {
+			String caller = batch.getCaller(i);
+			String callee = batch.getCallee(i);
+			if (caller == null || callee == null) {
+				result.reject(i, CallEventBatchResult.MissingPhoneNumber);
+				continue;
+			}
+
+			String rejection = batch.isStart(i)
+					? startCall(caller, callee, batch.getTime(i))
+					: endCall(caller, callee, batch.getTime(i));
+			if (rejection != null) {
+				result.reject(i, rejection);
+			}
+		}
+	}
+
+	/**
+	 * Gets the call logs for a particular customer.
+	 * @param caller The caller the get call logs for.
+	 * @return The list of calls for the specified customer or an empty list if no records found for the customer.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public synchronized List<Call> getCallsForCustomer(String caller) {
+		AssertionHelper.NotNull(caller, "caller");
+		CustomerCalls calls = callsOf(phoneNumbers.find(caller));
+		if (calls == null) {
+			return new ArrayList<Call>();
+		}
+		return new ArrayList<Call>(calls.calls);
+	}
+
+	/**
+	 * Gets the rated calls for a particular customer, rating any calls not yet rated.
+	 * @param customer The customer to get the rated calls for.
+	 * @return The line items for the customer's completed calls, in the order the calls completed.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public synchronized List<LineItem> getLineItemsForCustomer(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		CustomerCalls calls = callsOf(phoneNumbers.find(customer.getPhoneNumber()));
+		if (calls == null) {
+			return new ArrayList<LineItem>();
+		}
+		calls.rateOutstanding(customer);
+		return new ArrayList<LineItem>(calls.items);
+	}
+
+	/**
+	 * Gets the total cost of a particular customer's completed calls, rating any calls not yet rated.
+	 * @param customer The customer to get the spend for.
+	 * @return The customer's current spend (in pence).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public synchronized BigDecimal getCurrentSpend(Customer customer) {
+		AssertionHelper.NotNull(customer, "customer");
+		CustomerCalls calls = callsOf(phoneNumbers.find(customer.getPhoneNumber()));
+		if (calls == null) {
+			return BigDecimal.ZERO;
+		}
+		calls.rateOutstanding(customer);
+		return calls.total;
+	}
+
+	/**
+	 * Clears all call logs and running totals. Phone numbers are kept in the dictionary.
+	 */
+	public synchronized void clearCallLogs() {
+		callLog.clear();
+		callsInProgress.clear();
+	}
+
+	/**
+	 * Gets the dictionary the manager stores phone numbers in.
+	 * @return The manager's phone number dictionary.
+	 */
+	public PhoneNumberDictionary getPhoneNumbers() {
+		return phoneNumbers;
+	}
+
+	/**
+	 * Starts a call, adding it to the calls in progress.
+	 * @param caller The caller phone number.
+	 * @param callee The callee phone number.
+	 * @param startMillis The time the call started.
+	 * @return Null if the call was started, or the reason it was rejected if caller is already calling callee.
+	 */
+	private String startCall(String caller, String callee, long startMillis) {
+		if (!callsInProgress.start(phoneNumbers.idOf(caller), phoneNumbers.idOf(callee), startMillis)) {
+			return CallEventBatchResult.CallAlreadyInProgress;
+		}
+		return null;
+	}
+
+	/**
+	 * Ends a call in progress, adding it to its caller's calls and rating it if the caller is a known customer.
+	 * @param caller The caller phone number.
+	 * @param callee The callee phone number.
+	 * @param endMillis The time the call ended.
+	 * @return Null if the call was ended, or the reason it was rejected if there is no call in progress to end.
+	 */
+	private String endCall(String caller, String callee, long endMillis) {
+		int callerId = phoneNumbers.find(caller);
+		int calleeId = phoneNumbers.find(callee);
+		long startMillis = callsInProgress.end(callerId, calleeId);
+		if (startMillis == CallsInProgressTable.NotInProgress) {
+			return CallEventBatchResult.NoMatchingCallStart;
+		}
+
+		while (callLog.size() <= callerId) {
+			callLog.add(null);
+		}
+		CustomerCalls calls = callLog.get(callerId);
+		if (calls == null) {
+			calls = new CustomerCalls();
+			callLog.set(callerId, calls);
+		}
+		calls.calls.add(new Call(phoneNumbers.numberOf(callerId), phoneNumbers.numberOf(calleeId), startMillis, endMillis));
+		Customer customer = customers != null ? customers.customerFor(phoneNumbers.numberOf(callerId)) : null;
+		if (customer != null) {
+			calls.rateOutstanding(customer);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the completed calls of a caller.
+	 * @param callerId The dictionary id of the caller phone number, or -1 if the number is not in the dictionary.
+	 * @return The caller's completed calls, or null if the caller has none.
+	 */
+	private CustomerCalls callsOf(int callerId) {
+		return callerId >= 0 && callerId < callLog.size() ? callLog.get(callerId) : null;
+	}
+
+	/**
+	 * The completed calls of a customer, the line items for those which have been rated and their total cost.
+	 */
+	private class CustomerCalls {
+		private final List<Call> calls = new ArrayList<Call>();
+		private final List<LineItem> items = new ArrayList<LineItem>();
+		private BigDecimal total = BigDecimal.ZERO;
+
+		/**
+		 * Rates the calls which have not yet been rated and adds them to the running total.
+		 * @param customer The customer who made the calls.
+		 */
+		void rateOutstanding(Customer customer) {
+			for (int i = items.size(); i < calls.size(); i++) {
+				Call call = calls.get(i);
+				BigDecimal callCost = callCostCalculator.calculateCallCost(customer, call);
+				total = total.add(callCost);
+				items.add(new LineItem(call, callCost));
+			}
+		}
+	}
+}
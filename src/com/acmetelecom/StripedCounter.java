@@ -0,0 +1,81 @@
+package com.acmetelecom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which can be added to from many threads at once without them contending for one memory location.
+ * The count is split over several cells, each on its own cache line, and each thread adds to the cell its id
+ * hashes to; reading the count sums the cells. Adding is a single uncontended atomic add in the common case, so it
+ * is cheap enough to do on every call event. Counts may go down as well as up, so the counter can also be used as a
+ * gauge.
+ */
+public final class StripedCounter {
+
+	// Longs between the cells in use, so that no two cells share a cache line (or an adjacent line prefetched with it).
+	private static final int Stride = 16;
+	private static final int MaxCells = 64;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	/**
+	 * Constructor. Creates a counter with enough cells for the number of processors.
+	 */
+	public StripedCounter() {
+		int cellCount = 1;
+		int processors = Runtime.getRuntime().availableProcessors();
+		while (cellCount < processors * 2 && cellCount < MaxCells) {
+			cellCount *= 2;
+		}
+		cells = new AtomicLongArray(cellCount * Stride);
+		mask = cellCount - 1;
+	}
+
+	/**
+	 * Adds one to the count.
+	 * @return The new value of the cell the calling thread added to, which a thread can use to act on every nth
+	 * increment without any further shared state.
+	 */
+	public long increment() {
+		return cells.incrementAndGet(cellOf(Thread.currentThread()) * Stride);
+	}
+
+	/**
+	 * Adds to the count.
+	 * @param value The value to add, which may be negative.
+	 */
+	public void add(long value) {
+		cells.getAndAdd(cellOf(Thread.currentThread()) * Stride, value);
+	}
+
+	/**
+	 * Gets the count. Values added while the count is being read may or may not be included.
+	 * @return The sum of every value added since the counter was created or last reset.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += Stride) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Sets the count to 0. Values added while the counter is being reset may or may not be kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < cells.length(); i += Stride) {
+			cells.set(i, 0);
+		}
+	}
+
+	/**
+	 * Gets the cell a thread adds to.
+	 * @param thread The thread.
+	 * @return The index of the cell.
+	 */
+	private int cellOf(Thread thread) {
+		long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+		return (int)(hash >>> 32) & mask;
+	}
+}
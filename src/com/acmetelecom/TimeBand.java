@@ -0,0 +1,109 @@
+package com.acmetelecom;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.acmetelecom.IPeakPeriod.DayPeriod;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * A band of time within a day which is charged at its own per-second rate on each tariff (e.g. peak, off-peak or a
+ * shoulder band between them).
+ */
+public final class TimeBand {
+
+	private final String name;
+	private final EnumMap<Tariff, BigDecimal> rates;
+
+	/**
+	 * Constructor.
+	 * @param name The name of the band.
+	 * @param rates The per-second rate of the band on each tariff, which must include every tariff.
+	 * @exception IllegalArgumentException If any of arguments are null or a tariff has no rate.
+	 */
+	public TimeBand(String name, Map<Tariff, BigDecimal> rates) {
+		AssertionHelper.NotNull(name, "name");
+		AssertionHelper.NotNull(rates, "rates");
+		this.name = name;
+		this.rates = new EnumMap<Tariff, BigDecimal>(Tariff.class);
+		for (Tariff tariff : Tariff.values()) {
+			BigDecimal rate = rates.get(tariff);
+			if (rate == null) {
+				throw new IllegalArgumentException("Band '" + name + "' has no rate for tariff " + tariff + ".");
+			}
+			this.rates.put(tariff, rate);
+		}
+	}
+
+	/**
+	 * Creates a band charged at each tariff's peak rate.
+	 * @param name The name of the band.
+	 * @return The band.
+	 */
+	public static TimeBand peak(String name) {
+		EnumMap<Tariff, BigDecimal> rates = new EnumMap<Tariff, BigDecimal>(Tariff.class);
+		for (Tariff tariff : Tariff.values()) {
+			rates.put(tariff, tariff.peakRate());
+		}
+		return new TimeBand(name, rates);
+	}
+
+	/**
+	 * Creates a band charged at each tariff's off-peak rate.
+	 * @param name The name of the band.
+	 * @return The band.
+	 */
+	public static TimeBand offPeak(String name) {
+		EnumMap<Tariff, BigDecimal> rates = new EnumMap<Tariff, BigDecimal>(Tariff.class);
+		for (Tariff tariff : Tariff.values()) {
+			rates.put(tariff, tariff.offPeakRate());
+		}
+		return new TimeBand(name, rates);
+	}
+
+	/**
+	 * Creates a band charged at the rates a peak period charges in one of its periods.
+	 * @param peakPeriod The peak period.
+	 * @param period The period of the day whose rates the band charges.
+	 * @return The band, named after the period.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public static TimeBand fromPeriod(IPeakPeriod peakPeriod, DayPeriod period) {
+		AssertionHelper.NotNull(peakPeriod, "peakPeriod");
+		AssertionHelper.NotNull(period, "period");
+		EnumMap<Tariff, BigDecimal> rates = new EnumMap<Tariff, BigDecimal>(Tariff.class);
+		for (Tariff tariff : Tariff.values()) {
+			rates.put(tariff, peakPeriod.getPeriodRate(period, tariff));
+		}
+		return new TimeBand(period.toString(), rates);
+	}
+
+	/**
+	 * Gets the name of the band.
+	 * @return The name of the band.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the per-second rate of the band on a tariff.
+	 * @param tariff The tariff.
+	 * @return The rate (in pence per second).
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public BigDecimal getRate(Tariff tariff) {
+		AssertionHelper.NotNull(tariff, "tariff");
+		return rates.get(tariff);
+	}
+
+	/**
+	 * Gets the name of the band.
+	 * @return The name of the band.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,249 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+import com.acmetelecom.IPeakPeriod.DayPeriod;
+
+/**
+ * A calendar of the time bands calls are charged in: one schedule of bands for weekdays, one for weekends, and
+ * schedules for individual holidays which override them. Each schedule is compiled into a lookup array from second
+ * of the day to band segment, so finding the band at any time takes constant time, and the seconds a call spends in
+ * each band are counted segment by segment without creating any objects.
+ * Times are on the local time line, i.e. in seconds since the epoch with the zone offset already applied.
+ */
+public class TimeBandCalendar {
+
+	private static final long SecondsPerDay = DaySchedule.SecondsPerDay;
+
+	// Every distinct band in the calendar; a band's index in this list identifies it when counting seconds.
+	private final List<TimeBand> bands = new ArrayList<TimeBand>();
+
+	private final CompiledDay weekday;
+	private final CompiledDay weekend;
+
+	// Holidays as days since the epoch, in ascending order, and the schedule of each.
+	private final long[] holidays;
+	private final CompiledDay[] holidaySchedules;
+
+	/**
+	 * Constructor.
+	 * @param weekday The schedule of Monday to Friday.
+	 * @param weekend The schedule of Saturday and Sunday.
+	 * @param holidays The schedules of days which are charged differently to other days of the same day of the week.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public TimeBandCalendar(DaySchedule weekday, DaySchedule weekend, Map<LocalDate, DaySchedule> holidays) {
+		AssertionHelper.NotNull(weekday, "weekday");
+		AssertionHelper.NotNull(weekend, "weekend");
+		AssertionHelper.NotNull(holidays, "holidays");
+		this.weekday = compile(weekday);
+		this.weekend = compile(weekend);
+
+		TreeMap<Long, DaySchedule> sortedHolidays = new TreeMap<Long, DaySchedule>();
+		for (Map.Entry<LocalDate, DaySchedule> holiday : holidays.entrySet()) {
+			AssertionHelper.NotNull(holiday.getValue(), "holiday schedule");
+			sortedHolidays.put(holiday.getKey().toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis()
+					/ DateTimeConstants.MILLIS_PER_DAY, holiday.getValue());
+		}
+		this.holidays = new long[sortedHolidays.size()];
+		this.holidaySchedules = new CompiledDay[sortedHolidays.size()];
+		int i = 0;
+		for (Map.Entry<Long, DaySchedule> holiday : sortedHolidays.entrySet()) {
+			this.holidays[i] = holiday.getKey();
+			this.holidaySchedules[i] = compile(holiday.getValue());
+			i++;
+		}
+	}
+
+	/**
+	 * Creates a calendar which charges every day in the periods of a peak period.
+	 * @param peakPeriod The peak period.
+	 * @return The calendar, with a band for each period of the day.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public static TimeBandCalendar fromPeakPeriod(IPeakPeriod peakPeriod) {
+		AssertionHelper.NotNull(peakPeriod, "peakPeriod");
+		DaySchedule day = new DaySchedule(TimeBand.fromPeriod(peakPeriod, DayPeriod.PrePeak))
+				.withBand(
+						peakPeriod.getSecondInDayAtEndOfPeriod(DayPeriod.PrePeak),
+						peakPeriod.getSecondInDayAtEndOfPeriod(DayPeriod.Peak),
+						TimeBand.fromPeriod(peakPeriod, DayPeriod.Peak))
+				.withBand(
+						peakPeriod.getSecondInDayAtEndOfPeriod(DayPeriod.Peak),
+						DaySchedule.SecondsPerDay,
+						TimeBand.fromPeriod(peakPeriod, DayPeriod.PostPeak));
+		return new TimeBandCalendar(day, day, Collections.<LocalDate, DaySchedule>emptyMap());
+	}
+
+	/**
+	 * Gets every distinct band in the calendar.
+	 * @return The bands, in the order of their indexes.
+	 */
+	public List<TimeBand> getBands() {
+		return Collections.unmodifiableList(bands);
+	}
+
+	/**
+	 * Gets the band a time falls in.
+	 * @param time The time.
+	 * @return The band at the time.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public TimeBand getBandAt(DateTime time) {
+		AssertionHelper.NotNull(time, "time");
+		long localSecond = floorDiv(time.getMillis() + time.getZone().getOffset(time), 1000);
+		long day = floorDiv(localSecond, SecondsPerDay);
+		return bands.get(scheduleOf(day).bandAt((int)(localSecond - day * SecondsPerDay)));
+	}
+
+	/**
+	 * Adds the seconds between two local times spent in each band to a running count.
+	 * @param startLocalSecond The start time, in local seconds since the epoch.
+	 * @param endLocalSecond The end time (exclusive), in local seconds since the epoch.
+	 * @param secondsPerBand The seconds counted in each band so far, indexed by band index.
+	 */
+	void countSeconds(long startLocalSecond, long endLocalSecond, long[] secondsPerBand) {
+		if (endLocalSecond <= startLocalSecond) {
+			return;
+		}
+
+		long startDay = floorDiv(startLocalSecond, SecondsPerDay);
+		long endDay = floorDiv(endLocalSecond, SecondsPerDay);
+		int startSecond = (int)(startLocalSecond - startDay * SecondsPerDay);
+		int endSecond = (int)(endLocalSecond - endDay * SecondsPerDay);
+
+		if (startDay == endDay) {
+			scheduleOf(startDay).count(startSecond, endSecond, secondsPerBand);
+			return;
+		}
+
+		scheduleOf(startDay).count(startSecond, DaySchedule.SecondsPerDay, secondsPerBand);
+		for (long day = startDay + 1; day < endDay; day++) {
+			scheduleOf(day).count(0, DaySchedule.SecondsPerDay, secondsPerBand);
+		}
+		if (endSecond > 0) {
+			scheduleOf(endDay).count(0, endSecond, secondsPerBand);
+		}
+	}
+
+	/**
+	 * Gets the schedule of a day.
+	 * @param day The day, in days since the epoch.
+	 * @return The day's schedule.
+	 */
+	private CompiledDay scheduleOf(long day) {
+		if (holidays.length > 0) {
+			int holiday = Arrays.binarySearch(holidays, day);
+			if (holiday >= 0) {
+				return holidaySchedules[holiday];
+			}
+		}
+
+		// The epoch was a Thursday.
+		long dayOfWeek = floorMod(day + DateTimeConstants.THURSDAY - 1, 7) + 1;
+		return dayOfWeek >= DateTimeConstants.SATURDAY ? weekend : weekday;
+	}
+
+	/**
+	 * Compiles a schedule, adding any bands not yet in the calendar.
+	 * @param schedule The schedule.
+	 * @return The compiled schedule.
+	 */
+	private CompiledDay compile(DaySchedule schedule) {
+		int segments = schedule.getSegmentCount();
+		if (segments > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Day schedule has too many segments.");
+		}
+
+		CompiledDay day = new CompiledDay(segments);
+		for (int segment = 0; segment < segments; segment++) {
+			TimeBand band = schedule.getSegmentBand(segment);
+			int index = bands.indexOf(band);
+			if (index < 0) {
+				index = bands.size();
+				bands.add(band);
+			}
+
+			day.segmentStarts[segment] = schedule.getSegmentStart(segment);
+			day.segmentEnds[segment] = schedule.getSegmentEnd(segment);
+			day.segmentBands[segment] = index;
+			Arrays.fill(day.segmentOfSecond, day.segmentStarts[segment], day.segmentEnds[segment], (short)segment);
+		}
+		return day;
+	}
+
+	/**
+	 * Divides rounding towards negative infinity.
+	 * @param x The dividend.
+	 * @param y The (positive) divisor.
+	 * @return The floor of x / y.
+	 */
+	static long floorDiv(long x, long y) {
+		long q = x / y;
+		if (x % y != 0 && x < 0) {
+			q--;
+		}
+		return q;
+	}
+
+	/**
+	 * Gets the remainder of floored division.
+	 * @param x The dividend.
+	 * @param y The (positive) divisor.
+	 * @return The remainder, between zero and y - 1.
+	 */
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+	/**
+	 * A schedule compiled into segment arrays and a lookup from second of the day to segment.
+	 */
+	private static class CompiledDay {
+		private final short[] segmentOfSecond = new short[DaySchedule.SecondsPerDay];
+		private final int[] segmentStarts;
+		private final int[] segmentEnds;
+		private final int[] segmentBands;
+
+		/**
+		 * Constructor.
+		 * @param segments The number of segments in the day.
+		 */
+		CompiledDay(int segments) {
+			segmentStarts = new int[segments];
+			segmentEnds = new int[segments];
+			segmentBands = new int[segments];
+		}
+
+		/**
+		 * Gets the band a second of the day falls in.
+		 * @param second The second of the day.
+		 * @return The band index.
+		 */
+		int bandAt(int second) {
+			return segmentBands[segmentOfSecond[second]];
+		}
+
+		/**
+		 * Adds the seconds between two seconds of the day spent in each band to a running count.
+		 * @param from The first second of the day to count.
+		 * @param to The second of the day to stop counting at (exclusive).
+		 * @param secondsPerBand The seconds counted in each band so far, indexed by band index.
+		 */
+		void count(int from, int to, long[] secondsPerBand) {
+			for (int segment = segmentOfSecond[from]; segment < segmentStarts.length && segmentStarts[segment] < to; segment++) {
+				secondsPerBand[segmentBands[segment]] += Math.min(to, segmentEnds[segment]) - Math.max(from, segmentStarts[segment]);
+			}
+		}
+	}
+}
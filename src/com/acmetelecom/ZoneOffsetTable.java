@@ -0,0 +1,148 @@
+package com.acmetelecom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * The offsets from UTC of a time zone, precomputed as a table of offset transitions so that converting an instant to
+ * local time is a binary search over a small array rather than a time zone calculation. Transitions are precomputed
+ * for instants between 1900 and 2100; outside that range the zone itself is consulted.
+ * Tables are immutable and shared between all users of the same zone.
+ */
+public final class ZoneOffsetTable {
+
+	private static final long FirstInstant = -2208988800000L; // 1900-01-01T00:00:00Z
+	private static final long LastInstant = 4102444800000L; // 2100-01-01T00:00:00Z
+
+	private static final ConcurrentHashMap<DateTimeZone, ZoneOffsetTable> tables =
+			new ConcurrentHashMap<DateTimeZone, ZoneOffsetTable>();
+
+	// The table of the default zone when it was last asked for, so the common case is a single field read.
+	private static volatile ZoneOffsetTable defaultTable;
+
+	private final DateTimeZone zone;
+
+	// Instants at which the offset changes, in ascending order, and the offset from each one onwards.
+	// offsets[0] applies before the first transition.
+	private final long[] transitions;
+	private final int[] offsets;
+
+	/**
+	 * Constructor.
+	 * @param zone The time zone.
+	 */
+	private ZoneOffsetTable(DateTimeZone zone) {
+		this.zone = zone;
+
+		List<Long> instants = new ArrayList<Long>();
+		long instant = zone.nextTransition(FirstInstant);
+		while (instant > FirstInstant && instant < LastInstant) {
+			instants.add(instant);
+			long next = zone.nextTransition(instant);
+			if (next == instant) {
+				break;
+			}
+			instant = next;
+		}
+
+		this.transitions = new long[instants.size()];
+		this.offsets = new int[instants.size() + 1];
+		this.offsets[0] = zone.getOffset(FirstInstant);
+		for (int i = 0; i < transitions.length; i++) {
+			transitions[i] = instants.get(i);
+			offsets[i + 1] = zone.getOffset(transitions[i]);
+		}
+	}
+
+	/**
+	 * Gets the offset table of a time zone, creating it the first time the zone is used.
+	 * @param zone The time zone.
+	 * @return The zone's offset table.
+	 * @exception IllegalArgumentException If any of arguments are null.
+	 */
+	public static ZoneOffsetTable forZone(DateTimeZone zone) {
+		AssertionHelper.NotNull(zone, "zone");
+		ZoneOffsetTable table = tables.get(zone);
+		if (table == null) {
+			table = new ZoneOffsetTable(zone);
+			ZoneOffsetTable existing = tables.putIfAbsent(zone, table);
+			if (existing != null) {
+				table = existing;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the offset table of the current default time zone.
+	 * @return The default zone's offset table.
+	 */
+	public static ZoneOffsetTable forDefaultZone() {
+		DateTimeZone zone = DateTimeZone.getDefault();
+		ZoneOffsetTable table = defaultTable;
+		if (table == null || table.zone != zone) {
+			table = forZone(zone);
+			defaultTable = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the time zone of the table.
+	 * @return The time zone.
+	 */
+	public DateTimeZone getZone() {
+		return zone;
+	}
+
+	/**
+	 * Gets the offset from UTC in effect at an instant.
+	 * @param millis The instant in milliseconds since the epoch.
+	 * @return The offset in milliseconds, to add to the instant to get local time.
+	 */
+	public int offsetAt(long millis) {
+		if (millis < FirstInstant || millis >= LastInstant) {
+			return zone.getOffset(millis);
+		}
+		return offsets[periodOf(millis)];
+	}
+
+	/**
+	 * Gets the first instant after an instant at which the offset changes.
+	 * @param millis The instant in milliseconds since the epoch.
+	 * @return The next transition, or Long.MAX_VALUE if the offset never changes again.
+	 */
+	public long nextTransition(long millis) {
+		if (millis >= FirstInstant && millis < LastInstant) {
+			int period = periodOf(millis);
+			if (period < transitions.length) {
+				return transitions[period];
+			}
+		}
+		long next = zone.nextTransition(millis);
+		return next > millis ? next : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Converts an instant to whole seconds since the epoch on the local time line.
+	 * @param millis The instant in milliseconds since the epoch.
+	 * @return The local time in whole seconds.
+	 */
+	public long localSecond(long millis) {
+		return TimeBandCalendar.floorDiv(millis + offsetAt(millis), 1000);
+	}
+
+	/**
+	 * Finds the period between transitions an instant falls in.
+	 * @param millis The instant in milliseconds since the epoch.
+	 * @return The number of transitions at or before the instant.
+	 */
+	private int periodOf(long millis) {
+		int index = Arrays.binarySearch(transitions, millis);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+}
@@ -2,8 +2,10 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,16 +17,19 @@ import org.junit.Test;
 
 import com.acmetelecom.Bill;
 import com.acmetelecom.BillingSystem;
+import com.acmetelecom.BufferedHtmlBillPrinter;
 import com.acmetelecom.CallCostCalculator;
 import com.acmetelecom.CallEventManager;
 import com.acmetelecom.DaytimePeakPeriod;
 import com.acmetelecom.FileLogger;
 import com.acmetelecom.HtmlBillGenerator;
 import com.acmetelecom.HtmlBillPrinter;
+import com.acmetelecom.IBillSink;
 import com.acmetelecom.IBillingSystem;
 import com.acmetelecom.IPeakPeriod.DayPeriod;
 import com.acmetelecom.LineItem;
 import com.acmetelecom.MoneyFormatter;
+import com.acmetelecom.RatingCallEventManager;
 import com.acmetelecom.customer.Customer;
 import com.acmetelecom.customer.CustomerDatabase;
 import com.acmetelecom.customer.Tariff;
@@ -273,6 +278,193 @@ public class AcceptanceTests {
 		assertTrue(callsMade == callsLogged);
 	}
 	
+	/**
+	 * Tests that creating bills in parallel gives the same bills, in the same order, as creating them sequentially.
+	 */
+	@Test
+	public void billsCreatedInParallelMatchBillsCreatedSequentially() {
+		IBillingSystem parallelBillingSystem = new BillingSystem(
+				new CallEventManager(),
+				new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod()),
+				new HtmlBillGenerator(new HtmlBillPrinter()),
+				customerDatabase,
+				clock,
+				8);
+		
+		for (int i = 0; i < 500; i++) {
+			Customer c1 = getRandomCustomer();
+			Customer c2 = getRandomCustomer();
+			DateTime callStartTime = getRandomDate();
+			DateTime callEndTime = callStartTime.plusMinutes(rand.nextInt(48*60));
+			
+			simulateCall(c1, c2, callStartTime, callEndTime);
+			clock.setTime(callStartTime);
+			parallelBillingSystem.callInitiated(c1.getPhoneNumber(), c2.getPhoneNumber());
+			clock.setTime(callEndTime);
+			parallelBillingSystem.callCompleted(c1.getPhoneNumber(), c2.getPhoneNumber());
+		}
+		
+		ArrayList<Bill> sequentialBills = billingSystem.createCustomerBills();
+		ArrayList<Bill> parallelBills = parallelBillingSystem.createCustomerBills();
+		
+		assertTrue(parallelBills.size() == sequentialBills.size());
+		for (int i = 0; i < sequentialBills.size(); i++) {
+			Bill sequentialBill = sequentialBills.get(i);
+			Bill parallelBill = parallelBills.get(i);
+			assertTrue(parallelBill.getCustomer() == sequentialBill.getCustomer());
+			assertTrue(parallelBill.getItems().size() == sequentialBill.getItems().size());
+			assertTrue(parallelBill.getTotalBill().equals(sequentialBill.getTotalBill()));
+		}
+	}
+	
+	/**
+	 * Tests that rating calls as they complete gives the same bills as rating them during the bill run, and that the
+	 * current spend matches the bill total before the bill run.
+	 */
+	@Test
+	public void billsRatedAtCallCompletionMatchBillsRatedDuringBillRun() {
+		CallCostCalculator callCostCalculator = new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		BillingSystem ratingBillingSystem = new BillingSystem(
+				new RatingCallEventManager(callCostCalculator, customerDatabase),
+				callCostCalculator,
+				new HtmlBillGenerator(new HtmlBillPrinter()),
+				customerDatabase,
+				clock);
+		
+		for (int i = 0; i < 500; i++) {
+			Customer c1 = getRandomCustomer();
+			Customer c2 = getRandomCustomer();
+			DateTime callStartTime = getRandomDate();
+			DateTime callEndTime = callStartTime.plusMinutes(rand.nextInt(48*60));
+			
+			simulateCall(c1, c2, callStartTime, callEndTime);
+			clock.setTime(callStartTime);
+			ratingBillingSystem.callInitiated(c1.getPhoneNumber(), c2.getPhoneNumber());
+			clock.setTime(callEndTime);
+			ratingBillingSystem.callCompleted(c1.getPhoneNumber(), c2.getPhoneNumber());
+		}
+		
+		List<BigDecimal> currentSpend = new ArrayList<BigDecimal>();
+		for (Customer customer : customerDatabase.getCustomers()) {
+			currentSpend.add(ratingBillingSystem.getCurrentSpend(customer));
+		}
+		
+		ArrayList<Bill> expectedBills = billingSystem.createCustomerBills();
+		ArrayList<Bill> ratedBills = ratingBillingSystem.createCustomerBills();
+		
+		assertTrue(ratedBills.size() == expectedBills.size());
+		for (int i = 0; i < expectedBills.size(); i++) {
+			Bill expectedBill = expectedBills.get(i);
+			Bill ratedBill = ratedBills.get(i);
+			assertTrue(ratedBill.getCustomer() == expectedBill.getCustomer());
+			assertTrue(ratedBill.getItems().size() == expectedBill.getItems().size());
+			assertTrue(ratedBill.getTotalBill().equals(expectedBill.getTotalBill()));
+			assertTrue(MoneyFormatter.penceToPounds(currentSpend.get(i)).equals(expectedBill.getTotalBill()));
+		}
+	}
+	
+	/**
+	 * Tests that each customer's tariff is looked up once per bill run, however many calls they made.
+	 */
+	@Test
+	public void tariffIsLookedUpOncePerCustomerPerBillRun() {
+		final int[] lookups = new int[1];
+		TariffLibrary countingTariffDatabase = new TariffLibrary() {
+			@Override
+			public Tariff tarriffFor(Customer customer) {
+				lookups[0]++;
+				return tariffDatabase.tarriffFor(customer);
+			}
+		};
+		IBillingSystem countingBillingSystem = new BillingSystem(
+				new CallEventManager(),
+				new CallCostCalculator(countingTariffDatabase, new DaytimePeakPeriod()),
+				new HtmlBillGenerator(new HtmlBillPrinter()),
+				customerDatabase,
+				clock);
+		
+		Customer c1 = getRandomCustomer();
+		Customer c2 = getRandomCustomer();
+		DateTime callStartTime = new DateTime(2013, 11, 4, 12, 0);
+		for (int i = 0; i < 50; i++) {
+			clock.setTime(callStartTime.plusMinutes(2 * i));
+			countingBillingSystem.callInitiated(c1.getPhoneNumber(), c2.getPhoneNumber());
+			clock.setTime(callStartTime.plusMinutes(2 * i + 1));
+			countingBillingSystem.callCompleted(c1.getPhoneNumber(), c2.getPhoneNumber());
+		}
+		
+		countingBillingSystem.createCustomerBills();
+		assertTrue(lookups[0] == 1);
+	}
+	
+	/**
+	 * Tests that a streaming bill run over a paged customer database passes every bill to the sink in customer
+	 * order, sequentially and in parallel, with the same bills as a bill run over the whole customer list.
+	 */
+	@Test
+	public void streamedBillsFromPagedDatabaseMatchBillsCreatedFromWholeList() {
+		HashMap<Customer, Tariff> manyCustomers = new HashMap<Customer, Tariff>();
+		List<Customer> customerList = new ArrayList<Customer>();
+		for (int i = 0; i < 2500; i++) {
+			Tariff tariff = getRandomTariff();
+			Customer customer = new Customer(dummyCustomerName + i, dummyPhoneNumber + i, tariff.toString());
+			manyCustomers.put(customer, tariff);
+			customerList.add(customer);
+		}
+		TariffLibrary manyTariffs = new DummyTariffDatabase(manyCustomers);
+		
+		for (int parallelism = 1; parallelism <= 8; parallelism *= 8) {
+			DummyPagedCustomerDatabase pagedDatabase = new DummyPagedCustomerDatabase(customerList);
+			BillingSystem streamingBillingSystem = new BillingSystem(
+					new CallEventManager(),
+					new CallCostCalculator(manyTariffs, new DaytimePeakPeriod()),
+					new HtmlBillGenerator(new BufferedHtmlBillPrinter(new ByteArrayOutputStream(), Charset.defaultCharset())),
+					pagedDatabase,
+					clock,
+					parallelism);
+			IBillingSystem listBillingSystem = new BillingSystem(
+					new CallEventManager(),
+					new CallCostCalculator(manyTariffs, new DaytimePeakPeriod()),
+					new HtmlBillGenerator(new BufferedHtmlBillPrinter(new ByteArrayOutputStream(), Charset.defaultCharset())),
+					new DummyCustomerDatabase(manyCustomers),
+					clock);
+			
+			for (int i = 0; i < 500; i++) {
+				Customer c1 = customerList.get(rand.nextInt(customerList.size()));
+				Customer c2 = customerList.get(rand.nextInt(customerList.size()));
+				DateTime callStartTime = getRandomDate();
+				DateTime callEndTime = callStartTime.plusMinutes(rand.nextInt(48*60));
+				for (IBillingSystem system : new IBillingSystem[] { streamingBillingSystem, listBillingSystem }) {
+					clock.setTime(callStartTime);
+					system.callInitiated(c1.getPhoneNumber(), c2.getPhoneNumber());
+					clock.setTime(callEndTime);
+					system.callCompleted(c1.getPhoneNumber(), c2.getPhoneNumber());
+				}
+			}
+			
+			final List<Bill> streamedBills = new ArrayList<Bill>();
+			int billed = streamingBillingSystem.createCustomerBills(new IBillSink() {
+				public void accept(Bill bill) {
+					streamedBills.add(bill);
+				}
+			});
+			HashMap<Customer, Bill> expectedBills = new HashMap<Customer, Bill>();
+			for (Bill bill : listBillingSystem.createCustomerBills()) {
+				expectedBills.put(bill.getCustomer(), bill);
+			}
+			
+			assertTrue(billed == customerList.size());
+			assertTrue(pagedDatabase.getPagesRequested() == 3);
+			for (int i = 0; i < customerList.size(); i++) {
+				Bill streamedBill = streamedBills.get(i);
+				Bill expectedBill = expectedBills.get(customerList.get(i));
+				assertTrue(streamedBill.getCustomer() == customerList.get(i));
+				assertTrue(streamedBill.getItems().size() == expectedBill.getItems().size());
+				assertTrue(streamedBill.getTotalBill().equals(expectedBill.getTotalBill()));
+			}
+		}
+	}
+	
 	/**
 	 * Simulates a single call and checks the bill against the expected call cost and duration.
 	 * @param c1 The caller.
@@ -0,0 +1,167 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.AsyncLogHandler;
+import com.acmetelecom.AsyncLogHandler.OverflowPolicy;
+import com.acmetelecom.FileLogger;
+
+/**
+ * Tests behaviour of AsyncLogHandler in an isolated context.
+ */
+public class AsyncLogHandlerTests {
+	final int capacity = 4;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private RecordingHandler target;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		target = new RecordingHandler();
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Tests that passing null parameters in to AsyncLogHandler constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateHandlerWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new AsyncLogHandler(null, capacity, null);
+	}
+
+	/**
+	 * Tests that passing a non-positive capacity in to AsyncLogHandler constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateHandlerWithNonPositiveCapacityThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new AsyncLogHandler(target, 0, OverflowPolicy.Drop);
+	}
+
+	/**
+	 * Tests that all published records are passed on to the target handler, in order, by the time the handler is closed.
+	 */
+	@Test
+	public void publishedRecordsArePassedToTargetInOrderBeforeClose() {
+		AsyncLogHandler handler = new AsyncLogHandler(target, capacity, OverflowPolicy.Block);
+		for (int i = 0; i < 100; i++) {
+			handler.publish(new LogRecord(Level.INFO, "message " + i));
+		}
+		handler.close();
+
+		assertTrue(target.records.size() == 100);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(target.records.get(i).getMessage().equals("message " + i));
+		}
+		assertTrue(target.closed);
+	}
+
+	/**
+	 * Tests that records keep the source they were logged with when written on the writer thread.
+	 */
+	@Test
+	public void recordsKeepSourceTheyWereLoggedWith() {
+		AsyncLogHandler handler = new AsyncLogHandler(target, capacity, OverflowPolicy.Block);
+		Logger logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+		logger.addHandler(handler);
+		logger.logp(Level.INFO, AsyncLogHandlerTests.class.getName(), "recordsKeepSourceTheyWereLoggedWith", "message");
+		handler.close();
+
+		assertTrue(target.records.get(0).getSourceClassName().equals(AsyncLogHandlerTests.class.getName()));
+		assertTrue(target.records.get(0).getSourceMethodName().equals("recordsKeepSourceTheyWereLoggedWith"));
+	}
+
+	/**
+	 * Tests that with the drop policy records logged while the buffer is full are dropped and counted.
+	 */
+	@Test
+	public void recordsAreDroppedWhenBufferIsFullWithDropPolicy() throws InterruptedException {
+		target.blockWrites();
+		AsyncLogHandler handler = new AsyncLogHandler(target, capacity, OverflowPolicy.Drop);
+
+		// Wait until the writer is stuck writing the first record, then overfill the buffer.
+		handler.publish(new LogRecord(Level.INFO, "first"));
+		target.writeStarted.await();
+		int published = 50;
+		for (int i = 0; i < published; i++) {
+			handler.publish(new LogRecord(Level.INFO, "message " + i));
+		}
+
+		assertTrue(handler.getDroppedRecords() == published - capacity);
+		target.unblockWrites();
+		handler.close();
+		assertTrue(target.records.size() == capacity + 1);
+	}
+
+	/**
+	 * A handler which records the log records passed to it and can be made to block writes.
+	 */
+	private static class RecordingHandler extends Handler {
+		private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+		private volatile CountDownLatch gate = new CountDownLatch(0);
+		private final CountDownLatch writeStarted = new CountDownLatch(1);
+		private volatile boolean closed;
+
+		/**
+		 * Makes subsequent writes wait until unblocked.
+		 */
+		void blockWrites() {
+			gate = new CountDownLatch(1);
+		}
+
+		/**
+		 * Lets blocked writes continue.
+		 */
+		void unblockWrites() {
+			gate.countDown();
+		}
+
+		/**
+		 * Records the log record, once writes are unblocked.
+		 * @param record The log record.
+		 */
+		@Override
+		public void publish(LogRecord record) {
+			writeStarted.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			records.add(record);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		/**
+		 * Marks the handler as closed.
+		 */
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
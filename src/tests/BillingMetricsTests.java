@@ -0,0 +1,245 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acmetelecom.BillingMetrics;
+import com.acmetelecom.BillingSystem;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventBatch;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallEventPipeline;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.HtmlBillPrinter;
+import com.acmetelecom.MetricsSnapshot;
+import com.acmetelecom.RatingCallEventManager;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests that the billing system and its components record into the default BillingMetrics, and that the metrics can
+ * be read through a snapshot and over JMX.
+ */
+public class BillingMetricsTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final long firstCallTime = 1384000000000L;
+
+	private BillingMetrics metrics;
+	private DummyClock clock;
+	private CallEventManager callEventManager;
+
+	// Instance across which tests are to be applied.
+	private BillingSystem billingSystem;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		FileLogger.setActive(false);
+		metrics = BillingMetrics.getDefault();
+		metrics.setActive(true);
+		metrics.reset();
+
+		HashMap<Customer, Tariff> tariffs = new HashMap<Customer, Tariff>();
+		tariffs.put(new Customer(dummyCustomerName, dummyCallerNumber, Tariff.Standard.toString()), Tariff.Standard);
+		clock = new DummyClock();
+		callEventManager = new CallEventManager();
+		billingSystem = new BillingSystem(
+				callEventManager,
+				new CallCostCalculator(new DummyTariffDatabase(tariffs), new DaytimePeakPeriod()),
+				new HtmlBillGenerator(new HtmlBillPrinter()),
+				new DummyCustomerDatabase(tariffs),
+				clock);
+	}
+
+	/**
+	 * Leaves the default metrics recording after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		metrics.setActive(true);
+		BillingMetrics.unregisterMBean();
+	}
+
+	/**
+	 * Tests that events, calls, unmatched ends, rated calls and sent bills are counted, and that the calls in progress
+	 * go back down as calls complete or the call logs are cleared.
+	 */
+	@Test
+	public void eventsCallsAndBillsAreCounted() {
+		long openCalls = metrics.getOpenCalls();
+		reportCall(dummyCallerNumber, dummyCalleeNumber, firstCallTime, firstCallTime + 60000);
+		clock.setTime(new DateTime(firstCallTime + 120000));
+		billingSystem.callCompleted(dummyCallerNumber, dummyCalleeNumber);
+		billingSystem.callInitiated(dummyCallerNumber, dummyCalleeNumber + "2");
+		assertTrue(metrics.getOpenCalls() == openCalls + 1);
+
+		billingSystem.createCustomerBills();
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		assertTrue(snapshot.getEventsReceived() == 4);
+		assertTrue(snapshot.getCallsStarted() == 2);
+		assertTrue(snapshot.getCallsCompleted() == 1);
+		assertTrue(snapshot.getUnmatchedCallEnds() == 1);
+		assertTrue(snapshot.getOpenCalls() == openCalls);
+		assertTrue(snapshot.getCallsRated() == 1);
+		assertTrue(snapshot.getBillsSent() == 1);
+		assertTrue(snapshot.getBillSendLatency().getCount() == 1);
+		assertTrue(snapshot.getBillSendLatency().getMax() > 0);
+	}
+
+	/**
+	 * Tests that events in a batch are counted, along with the events the call event manager rejected.
+	 */
+	@Test
+	public void batchedEventsAndRejectionsAreCounted() {
+		CallEventBatch batch = new CallEventBatch(4);
+		batch.addStart(dummyCallerNumber, dummyCalleeNumber, firstCallTime);
+		batch.addStart(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 1000);
+		batch.addEnd(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 2000);
+		batch.addEnd(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 3000);
+		billingSystem.handleEvents(batch);
+
+		assertTrue(metrics.getEventsReceived() == 4);
+		assertTrue(metrics.getEventsRejected() == 2);
+		assertTrue(metrics.getDuplicateCallStarts() == 1);
+		assertTrue(metrics.getUnmatchedCallEnds() == 1);
+		assertTrue(metrics.getCallsCompleted() == 1);
+	}
+
+	/**
+	 * Tests that events rejected by the call event manager behind a pipeline are counted, along with why they were
+	 * rejected.
+	 */
+	@Test
+	public void pipelineRejectionsAreCounted() {
+		CallEventPipeline pipeline = new CallEventPipeline(new CallEventManager());
+		try {
+			pipeline.publishStart(dummyCallerNumber, dummyCalleeNumber, firstCallTime);
+			pipeline.publishStart(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 1000);
+			pipeline.publishEnd(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 2000);
+			pipeline.publishEnd(dummyCallerNumber, dummyCalleeNumber, firstCallTime + 3000);
+			pipeline.awaitHandled();
+		} finally {
+			pipeline.close();
+		}
+
+		assertTrue(metrics.getEventsRejected() == 2);
+		assertTrue(metrics.getDuplicateCallStarts() == 1);
+		assertTrue(metrics.getUnmatchedCallEnds() == 1);
+		assertTrue(metrics.getCallsCompleted() == 1);
+	}
+
+	/**
+	 * Tests that calls in progress and calls which could not be matched are counted when calls are rated as they
+	 * complete.
+	 */
+	@Test
+	public void ratingCallEventManagerCountsCalls() {
+		HashMap<Customer, Tariff> tariffs = new HashMap<Customer, Tariff>();
+		tariffs.put(new Customer(dummyCustomerName, dummyCallerNumber, Tariff.Standard.toString()), Tariff.Standard);
+		RatingCallEventManager ratingManager = new RatingCallEventManager(
+				new CallCostCalculator(new DummyTariffDatabase(tariffs), new DaytimePeakPeriod()),
+				new DummyCustomerDatabase(tariffs));
+		long openCalls = metrics.getOpenCalls();
+
+		ratingManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, new DateTime(firstCallTime)));
+		assertTrue(metrics.getOpenCalls() == openCalls + 1);
+		ratingManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, new DateTime(firstCallTime + 60000)));
+		ratingManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, new DateTime(firstCallTime + 120000)));
+
+		assertTrue(metrics.getCallsStarted() == 1);
+		assertTrue(metrics.getCallsCompleted() == 1);
+		assertTrue(metrics.getUnmatchedCallEnds() == 1);
+		assertTrue(metrics.getOpenCalls() == openCalls);
+	}
+
+	/**
+	 * Tests that every call rated is counted, but only one in every sample interval is timed.
+	 */
+	@Test
+	public void everyCallRatedIsCountedAndSampleIsTimed() {
+		int sampledCalls = 4;
+		for (int i = 0; i < sampledCalls * BillingMetrics.RatingSampleInterval; i++) {
+			reportCall(dummyCallerNumber, dummyCalleeNumber, firstCallTime + i * 120000L, firstCallTime + i * 120000L + 60000);
+		}
+		billingSystem.createCustomerBills();
+
+		assertTrue(metrics.getCallsRated() == sampledCalls * BillingMetrics.RatingSampleInterval);
+		assertTrue(metrics.getRatingLatency().getCount() == sampledCalls);
+	}
+
+	/**
+	 * Tests that events are not counted while the metrics are not active, but calls in progress still are.
+	 */
+	@Test
+	public void inactiveMetricsStillTrackCallsInProgress() {
+		long openCalls = metrics.getOpenCalls();
+		metrics.setActive(false);
+		clock.setTime(new DateTime(firstCallTime));
+		billingSystem.callInitiated(dummyCallerNumber, dummyCalleeNumber);
+		metrics.setActive(true);
+		clock.setTime(new DateTime(firstCallTime + 60000));
+		billingSystem.callCompleted(dummyCallerNumber, dummyCalleeNumber);
+
+		assertTrue(metrics.getEventsReceived() == 1);
+		assertTrue(metrics.getCallsStarted() == 1);
+		assertTrue(metrics.getCallsCompleted() == 1);
+		assertTrue(metrics.getOpenCalls() == openCalls);
+	}
+
+	/**
+	 * Tests that the registered metrics can be read and reset over JMX.
+	 */
+	@Test
+	public void registeredMetricsCanBeReadAndResetOverJmx() throws Exception {
+		reportCall(dummyCallerNumber, dummyCalleeNumber, firstCallTime, firstCallTime + 60000);
+		billingSystem.createCustomerBills();
+
+		BillingMetrics.registerMBean();
+		BillingMetrics.registerMBean();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(BillingMetrics.MBeanName);
+		assertTrue(((Long)server.getAttribute(name, "CallsCompleted")) == 1);
+		CompositeData latency = (CompositeData)server.getAttribute(name, "BillSendLatency");
+		assertTrue(((Long)latency.get("count")) == 1);
+
+		server.invoke(name, "reset", new Object[0], new String[0]);
+		assertTrue(metrics.getCallsCompleted() == 0);
+
+		BillingMetrics.unregisterMBean();
+		assertTrue(!server.isRegistered(name));
+	}
+
+	/**
+	 * Reports the start and end of a call to the billing system.
+	 * @param caller The caller phone number.
+	 * @param callee The callee phone number.
+	 * @param start The time the call started.
+	 * @param end The time the call ended.
+	 */
+	private void reportCall(String caller, String callee, long start, long end) {
+		clock.setTime(new DateTime(start));
+		billingSystem.callInitiated(caller, callee);
+		clock.setTime(new DateTime(end));
+		billingSystem.callCompleted(caller, callee);
+	}
+}
@@ -0,0 +1,287 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Bill;
+import com.acmetelecom.BinaryBillGenerator;
+import com.acmetelecom.BinaryBillReader;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.LineItem;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Tests behaviour of BinaryBillGenerator and BinaryBillReader exporting bills to a temporary file.
+ */
+public class BinaryBillGeneratorTests {
+	final String dummyCallerNumber = "440000000042";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final String dummyTotalBill = "7.60";
+	final String dummyTariff = "Standard";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path exportFile;
+
+	// Instance across which tests are to be applied.
+	private BinaryBillGenerator binaryBillGenerator;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		exportFile = Files.createTempFile("bills", ".bin");
+		binaryBillGenerator = new BinaryBillGenerator(exportFile);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the export file after each unit test.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		binaryBillGenerator.close();
+		Files.deleteIfExists(exportFile);
+	}
+
+	/**
+	 * Tests that passing null parameters in to BinaryBillGenerator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateBinaryBillGeneratorWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new BinaryBillGenerator(null);
+	}
+
+	/**
+	 * Tests that passing null parameters while generating bill throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToGenerateBillWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		binaryBillGenerator.sendBill(null, null, null);
+	}
+
+	/**
+	 * Tests that generating a bill after the generator is closed throws IllegalStateException.
+	 */
+	@Test
+	public void attemptingToGenerateBillAfterCloseThrowsIllegalStateException() {
+		binaryBillGenerator.close();
+		exception.expect(IllegalStateException.class);
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(1), dummyTotalBill);
+	}
+
+	/**
+	 * Tests that reading a file which was not completely exported throws IllegalStateException.
+	 */
+	@Test
+	public void attemptingToReadIncompleteExportThrowsIllegalStateException() {
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(1), dummyTotalBill);
+		exception.expect(IllegalStateException.class);
+		new BinaryBillReader(exportFile);
+	}
+
+	/**
+	 * Tests that reading a file whose index claims more bills than the file holds throws IllegalStateException.
+	 */
+	@Test
+	public void attemptingToReadExportWithCorruptIndexThrowsIllegalStateException() throws IOException {
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(1), dummyTotalBill);
+		binaryBillGenerator.close();
+		overwriteInt(Files.size(exportFile) - 8, Integer.MAX_VALUE);
+
+		exception.expect(IllegalStateException.class);
+		new BinaryBillReader(exportFile);
+	}
+
+	/**
+	 * Tests that reading a bill whose record length runs past the bills in the file throws IllegalStateException.
+	 */
+	@Test
+	public void attemptingToReadBillWithCorruptLengthThrowsIllegalStateException() throws IOException {
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(1), dummyTotalBill);
+		binaryBillGenerator.close();
+		overwriteInt(8, Integer.MAX_VALUE);
+
+		try (BinaryBillReader reader = new BinaryBillReader(exportFile)) {
+			exception.expect(IllegalStateException.class);
+			reader.readBill(dummyCallerNumber);
+		}
+	}
+
+	/**
+	 * Tests that reading a bill whose line item count runs past its record throws IllegalStateException.
+	 */
+	@Test
+	public void attemptingToReadBillWithCorruptItemCountThrowsIllegalStateException() throws IOException {
+		Customer customer = customer(dummyCallerNumber);
+		binaryBillGenerator.sendBill(customer, createItems(1), dummyTotalBill);
+		binaryBillGenerator.close();
+		int itemCountOffset = 8 + 4 + 2 + customer.getPhoneNumber().length() + 2 + customer.getFullName().length()
+				+ 2 + customer.getPricePlan().length() + 2 + dummyTotalBill.length();
+		overwriteInt(itemCountOffset, 2);
+
+		try (BinaryBillReader reader = new BinaryBillReader(exportFile)) {
+			exception.expect(IllegalStateException.class);
+			reader.readBill(dummyCallerNumber);
+		}
+	}
+
+	/**
+	 * Tests that each exported bill is read back with the same customer, total and line items, and that customers
+	 * without bills are not found.
+	 */
+	@Test
+	public void exportedBillsAreReadBackBySeekingToCustomer() {
+		for (int i = 0; i < 100; i++) {
+			binaryBillGenerator.sendBill(customer(dummyCallerNumber + i), createItems(i % 7), i + ".00");
+		}
+		binaryBillGenerator.close();
+
+		try (BinaryBillReader reader = new BinaryBillReader(exportFile)) {
+			assertTrue(reader.getPhoneNumbers().size() == 100);
+			for (int i = 99; i >= 0; i--) {
+				Bill bill = reader.readBill(dummyCallerNumber + i);
+				assertTrue(bill.getCustomer().getPhoneNumber().equals(dummyCallerNumber + i));
+				assertTrue(bill.getCustomer().getFullName().equals(dummyCustomerName));
+				assertTrue(bill.getCustomer().getPricePlan().equals(dummyTariff));
+				assertTrue(bill.getTotalBill().equals(i + ".00"));
+				assertSameItems(bill.getItems(), createItems(i % 7));
+			}
+			assertTrue(reader.readBill(dummyCalleeNumber) == null);
+		}
+	}
+
+	/**
+	 * Tests that when a customer is billed more than once, the last bill is the one read back.
+	 */
+	@Test
+	public void lastBillOfCustomerIsReadBack() {
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(3), "1.00");
+		binaryBillGenerator.sendBill(customer(dummyCallerNumber), createItems(5), "2.00");
+		binaryBillGenerator.close();
+
+		try (BinaryBillReader reader = new BinaryBillReader(exportFile)) {
+			Bill bill = reader.readBill(dummyCallerNumber);
+			assertTrue(bill.getTotalBill().equals("2.00"));
+			assertTrue(bill.getItems().size() == 5);
+		}
+	}
+
+	/**
+	 * Tests that bills exported from several threads at once are all read back intact.
+	 */
+	@Test
+	public void billsExportedConcurrentlyAreAllReadBack() throws InterruptedException {
+		final int threads = 4;
+		final int billsPerThread = 250;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int i = 0; i < billsPerThread; i++) {
+						binaryBillGenerator.sendBill(customer(dummyCallerNumber + thread + "_" + i), createItems(i % 11), dummyTotalBill);
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		binaryBillGenerator.close();
+
+		try (BinaryBillReader reader = new BinaryBillReader(exportFile)) {
+			assertTrue(reader.getPhoneNumbers().size() == threads * billsPerThread);
+			for (int t = 0; t < threads; t++) {
+				for (int i = 0; i < billsPerThread; i++) {
+					assertSameItems(reader.readBill(dummyCallerNumber + t + "_" + i).getItems(), createItems(i % 11));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks two lists of line items are for the same calls and costs.
+	 * @param actual The line items read back.
+	 * @param expected The line items exported.
+	 */
+	private void assertSameItems(List<LineItem> actual, List<LineItem> expected) {
+		assertTrue(actual.size() == expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Call actualCall = actual.get(i).call();
+			Call expectedCall = expected.get(i).call();
+			assertTrue(actualCall.callee().equals(expectedCall.callee()));
+			assertTrue(actualCall.startMillis() == expectedCall.startMillis());
+			assertTrue(actualCall.endMillis() == expectedCall.endMillis());
+			assertTrue(actual.get(i).cost().equals(expected.get(i).cost()));
+		}
+	}
+
+	/**
+	 * Creates a customer.
+	 * @param phoneNumber The customer's phone number.
+	 * @return The customer.
+	 */
+	private Customer customer(String phoneNumber) {
+		return new Customer(dummyCustomerName, phoneNumber, dummyTariff);
+	}
+
+	/**
+	 * Creates a list of line items.
+	 * @param count The number of line items to create.
+	 * @return The list of line items.
+	 */
+	private List<LineItem> createItems(int count) {
+		List<LineItem> items = new ArrayList<LineItem>();
+		DateTime startTime = new DateTime(2013, 11, 5, 12, 0);
+		for (int i = 0; i < count; i++) {
+			items.add(new LineItem(
+					new Call(
+						new CallStart(dummyCallerNumber, dummyCalleeNumber + i, startTime),
+						new CallEnd(dummyCallerNumber, dummyCalleeNumber + i, startTime.plusMinutes(i))),
+					new BigDecimal(i * 37)));
+		}
+		return items;
+	}
+
+	/**
+	 * Overwrites an int in the export file, to corrupt it.
+	 * @param offset The offset of the int in the file.
+	 * @param value The value to write.
+	 * @throws IOException Thrown if the file cannot be written.
+	 */
+	private void overwriteInt(long offset, int value) throws IOException {
+		try (FileChannel channel = FileChannel.open(exportFile, StandardOpenOption.WRITE)) {
+			ByteBuffer bytes = ByteBuffer.allocate(4);
+			bytes.putInt(value);
+			bytes.flip();
+			channel.write(bytes, offset);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillPrinter;
+import com.acmetelecom.IBillPrinter;
+
+/**
+ * Tests behaviour of BufferedHtmlBillPrinter in an isolated context.
+ */
+public class BufferedHtmlBillPrinterTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final String dummyTotalBill = "7.60";
+	final String dummyTariff = "Standard";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private ByteArrayOutputStream output;
+
+	// Instance across which tests are to be applied.
+	private BufferedHtmlBillPrinter bufferedHtmlBillPrinter;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		output = new ByteArrayOutputStream();
+		bufferedHtmlBillPrinter = new BufferedHtmlBillPrinter(output, Charset.defaultCharset());
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Tests that passing null parameters in to BufferedHtmlBillPrinter constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreatePrinterWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new BufferedHtmlBillPrinter(null, null);
+	}
+
+	/**
+	 * Tests that attempting to print heading with null parameters throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToPrintHeadingWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		bufferedHtmlBillPrinter.printHeading(null, null, null);
+	}
+
+	/**
+	 * Tests that attempting to print item with null parameters throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToPrintItemWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		bufferedHtmlBillPrinter.printItem(null, null, null, null);
+	}
+
+	/**
+	 * Tests that attempting to print total with null parameter throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToPrintTotalWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		bufferedHtmlBillPrinter.printTotal(null);
+	}
+
+	/**
+	 * Tests that nothing is written until the bill total is printed.
+	 */
+	@Test
+	public void billIsNotWrittenUntilTotalIsPrinted() {
+		bufferedHtmlBillPrinter.printHeading(dummyCustomerName, dummyCallerNumber, dummyTariff);
+		bufferedHtmlBillPrinter.printItem("05/11/2013", dummyCalleeNumber, "1:00", "0.25");
+		assertTrue(output.size() == 0);
+
+		bufferedHtmlBillPrinter.printTotal(dummyTotalBill);
+		assertTrue(output.size() > 0);
+	}
+
+	/**
+	 * Tests that consecutive bills are printed with exactly the same markup as HtmlBillPrinter prints.
+	 */
+	@Test
+	public void billsArePrintedWithSameMarkupAsHtmlBillPrinter() {
+		PrintStream standardOut = System.out;
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(expected));
+		try {
+			printBills(new HtmlBillPrinter());
+		} finally {
+			System.setOut(standardOut);
+		}
+
+		printBills(bufferedHtmlBillPrinter);
+		assertTrue(output.toString().equals(expected.toString()));
+	}
+
+	/**
+	 * Tests that items printed with their duration in seconds have the same markup as items printed with the
+	 * duration already formatted.
+	 */
+	@Test
+	public void itemsPrintedWithDurationInSecondsHaveSameMarkup() {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		BufferedHtmlBillPrinter expectedPrinter = new BufferedHtmlBillPrinter(expected, Charset.defaultCharset());
+		int[] durations = { 0, 5, 60, 65, 599, 3600, 100000 };
+
+		expectedPrinter.printHeading(dummyCustomerName, dummyCallerNumber, dummyTariff);
+		bufferedHtmlBillPrinter.printHeading(dummyCustomerName, dummyCallerNumber, dummyTariff);
+		for (int duration : durations) {
+			expectedPrinter.printItem("05/11/2013", dummyCalleeNumber, duration / 60 + ":" + String.format("%02d", duration % 60), "0.25");
+			bufferedHtmlBillPrinter.printItem("05/11/2013", dummyCalleeNumber, duration, "0.25");
+		}
+		expectedPrinter.printTotal(dummyTotalBill);
+		bufferedHtmlBillPrinter.printTotal(dummyTotalBill);
+		assertTrue(output.toString().equals(expected.toString()));
+	}
+
+	/**
+	 * Prints two bills with the specified printer.
+	 * @param printer The printer to print with.
+	 */
+	private void printBills(IBillPrinter printer) {
+		for (int bill = 0; bill < 2; bill++) {
+			printer.printHeading(dummyCustomerName + bill, dummyCallerNumber, dummyTariff);
+			for (int i = 0; i < 5; i++) {
+				printer.printItem("05/11/2013", dummyCalleeNumber + i, i + ":00", "0." + i + "0");
+			}
+			printer.printTotal(dummyTotalBill);
+		}
+	}
+}
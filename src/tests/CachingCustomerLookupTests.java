@@ -0,0 +1,164 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.CachingCustomerLookup;
+import com.acmetelecom.IIndexedCustomerDatabase;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of CachingCustomerLookup in an isolated context.
+ */
+public class CachingCustomerLookupTests {
+	final String dummyPhoneNumber = "44000000000";
+	final String dummyCustomerName = "DummyName";
+	final int maxEntries = 3;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private CountingCustomerDatabase customerDatabase;
+
+	// Instance across which tests are to be applied.
+	private CachingCustomerLookup customerLookup;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		customerDatabase = new CountingCustomerDatabase();
+		for (int i = 0; i < maxEntries * 2; i++) {
+			customerDatabase.customers.add(customer(i));
+		}
+		customerLookup = new CachingCustomerLookup(customerDatabase, maxEntries);
+	}
+
+	/**
+	 * Tests that passing null parameters in to CachingCustomerLookup constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateLookupWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CachingCustomerLookup(null);
+	}
+
+	/**
+	 * Tests that passing a non-positive size in to CachingCustomerLookup constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateLookupWithNonPositiveSizeThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CachingCustomerLookup(customerDatabase, 0);
+	}
+
+	/**
+	 * Tests that repeated lookups for the same number only go to the database once, and the database is never
+	 * listed.
+	 */
+	@Test
+	public void repeatedLookupsAreAnsweredFromCache() {
+		for (int i = 0; i < 100; i++) {
+			assertTrue(customerLookup.customerFor(dummyPhoneNumber + 1).getFullName().equals(dummyCustomerName + 1));
+		}
+		assertTrue(customerDatabase.lookups == 1);
+		assertTrue(customerDatabase.listings == 0);
+		assertTrue(customerLookup.getMisses() == 1);
+		assertTrue(customerLookup.getHits() == 99);
+	}
+
+	/**
+	 * Tests that numbers which are not customers are cached too.
+	 */
+	@Test
+	public void numbersWhichAreNotCustomersAreCached() {
+		assertTrue(customerLookup.customerFor("unknown") == null);
+		assertTrue(customerLookup.customerFor("unknown") == null);
+		assertTrue(customerDatabase.lookups == 1);
+	}
+
+	/**
+	 * Tests that the least recently used customer is evicted when the cache is full.
+	 */
+	@Test
+	public void leastRecentlyUsedCustomerIsEvictedWhenCacheIsFull() {
+		for (int i = 0; i < maxEntries; i++) {
+			customerLookup.customerFor(dummyPhoneNumber + i);
+		}
+		customerLookup.customerFor(dummyPhoneNumber + 0);
+		customerLookup.customerFor(dummyPhoneNumber + maxEntries);
+
+		// Customer 1 was least recently used so has been evicted; customer 0 has not.
+		customerLookup.customerFor(dummyPhoneNumber + 0);
+		assertTrue(customerDatabase.lookups == maxEntries + 1);
+		customerLookup.customerFor(dummyPhoneNumber + 1);
+		assertTrue(customerDatabase.lookups == maxEntries + 2);
+	}
+
+	/**
+	 * Tests that customers added to the database are found once the cache has been invalidated.
+	 */
+	@Test
+	public void invalidatingCachePicksUpNewCustomers() {
+		String newNumber = dummyPhoneNumber + maxEntries * 2;
+		assertTrue(customerLookup.customerFor(newNumber) == null);
+
+		customerDatabase.customers.add(customer(maxEntries * 2));
+		assertTrue(customerLookup.customerFor(newNumber) == null);
+		customerLookup.invalidateAll();
+		assertTrue(customerLookup.customerFor(newNumber).getFullName().equals(dummyCustomerName + maxEntries * 2));
+	}
+
+	/**
+	 * Creates a dummy customer.
+	 * @param i The index of the customer.
+	 * @return The customer.
+	 */
+	private Customer customer(int i) {
+		return new Customer(dummyCustomerName + i, dummyPhoneNumber + i, Tariff.Business.toString());
+	}
+
+	/**
+	 * A customer database which counts how many times customers are looked up and listed.
+	 */
+	private static class CountingCustomerDatabase implements IIndexedCustomerDatabase {
+		private final List<Customer> customers = new ArrayList<Customer>();
+		private int lookups;
+		private int listings;
+
+		/**
+		 * Returns a list of all customers in the database.
+		 * @return The list of all customers.
+		 */
+		@Override
+		public List<Customer> getCustomers() {
+			listings++;
+			return new ArrayList<Customer>(customers);
+		}
+
+		/**
+		 * Gets the customer with a phone number.
+		 * @param phoneNumber The phone number.
+		 * @return The customer with the phone number, or null if no customer has it.
+		 */
+		@Override
+		public Customer getCustomer(String phoneNumber) {
+			lookups++;
+			for (Customer customer : customers) {
+				if (customer.getPhoneNumber().equals(phoneNumber)) {
+					return customer;
+				}
+			}
+			return null;
+		}
+	}
+}
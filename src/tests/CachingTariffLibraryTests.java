@@ -0,0 +1,138 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.CachingTariffLibrary;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+import com.acmetelecom.customer.TariffLibrary;
+
+/**
+ * Tests behaviour of CachingTariffLibrary in an isolated context.
+ */
+public class CachingTariffLibraryTests {
+	final String dummyPhoneNumber = "44000000000";
+	final String dummyCustomerName = "DummyName";
+	final int maxEntries = 3;
+	final long timeToLiveMillis = 60000;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private CountingTariffLibrary tariffLibrary;
+	private DummyClock clock;
+
+	// Instance across which tests are to be applied.
+	private CachingTariffLibrary cachingTariffLibrary;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		tariffLibrary = new CountingTariffLibrary();
+		clock = new DummyClock();
+		clock.setTime(new DateTime(2013, 11, 4, 12, 0));
+		cachingTariffLibrary = new CachingTariffLibrary(tariffLibrary, maxEntries, timeToLiveMillis, clock);
+	}
+
+	/**
+	 * Tests that passing null parameters in to CachingTariffLibrary constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateLibraryWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CachingTariffLibrary(null);
+	}
+
+	/**
+	 * Tests that passing a non-positive size in to CachingTariffLibrary constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateLibraryWithNonPositiveSizeThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CachingTariffLibrary(tariffLibrary, 0, timeToLiveMillis, clock);
+	}
+
+	/**
+	 * Tests that repeated lookups for the same customer only go to the underlying library once.
+	 */
+	@Test
+	public void repeatedLookupsAreAnsweredFromCache() {
+		Customer customer = customer(0);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(cachingTariffLibrary.tarriffFor(customer) == Tariff.Business);
+		}
+		assertTrue(tariffLibrary.lookups == 1);
+		assertTrue(cachingTariffLibrary.getMisses() == 1);
+		assertTrue(cachingTariffLibrary.getHits() == 99);
+	}
+
+	/**
+	 * Tests that cached tariffs are looked up again once they have expired.
+	 */
+	@Test
+	public void expiredTariffsAreLookedUpAgain() {
+		Customer customer = customer(0);
+		cachingTariffLibrary.tarriffFor(customer);
+		clock.setTime(clock.now().plusMillis((int)timeToLiveMillis - 1));
+		cachingTariffLibrary.tarriffFor(customer);
+		assertTrue(tariffLibrary.lookups == 1);
+
+		clock.setTime(clock.now().plusMillis(1));
+		cachingTariffLibrary.tarriffFor(customer);
+		assertTrue(tariffLibrary.lookups == 2);
+	}
+
+	/**
+	 * Tests that the least recently used tariff is evicted when the cache is full.
+	 */
+	@Test
+	public void leastRecentlyUsedTariffIsEvictedWhenCacheIsFull() {
+		for (int i = 0; i < maxEntries; i++) {
+			cachingTariffLibrary.tarriffFor(customer(i));
+		}
+		cachingTariffLibrary.tarriffFor(customer(0));
+		cachingTariffLibrary.tarriffFor(customer(maxEntries));
+		assertTrue(cachingTariffLibrary.getEvictions() == 1);
+
+		// Customer 1 was least recently used so has been evicted; customer 0 has not.
+		cachingTariffLibrary.tarriffFor(customer(0));
+		assertTrue(tariffLibrary.lookups == maxEntries + 1);
+		cachingTariffLibrary.tarriffFor(customer(1));
+		assertTrue(tariffLibrary.lookups == maxEntries + 2);
+	}
+
+	/**
+	 * Creates a dummy customer.
+	 * @param i The index of the customer.
+	 * @return The customer.
+	 */
+	private Customer customer(int i) {
+		return new Customer(dummyCustomerName + i, dummyPhoneNumber + i, Tariff.Business.toString());
+	}
+
+	/**
+	 * A tariff library which puts every customer on the business tariff and counts its lookups.
+	 */
+	private static class CountingTariffLibrary implements TariffLibrary {
+		private int lookups;
+
+		/**
+		 * Gets the tariff for a specified customer.
+		 * @param customer The customer to get the tariff for.
+		 * @return The business tariff.
+		 */
+		@Override
+		public Tariff tarriffFor(Customer customer) {
+			lookups++;
+			return Tariff.Business;
+		}
+	}
+}
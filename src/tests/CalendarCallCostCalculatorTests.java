@@ -0,0 +1,195 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.CalendarCallCostCalculator;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ClosedFormCallCostCalculator;
+import com.acmetelecom.DaySchedule;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.TimeBand;
+import com.acmetelecom.TimeBandCalendar;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of CalendarCallCostCalculator, including differentially against the iterative CallCostCalculator.
+ */
+public class CalendarCallCostCalculatorTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final int randomCallCount = 20000;
+	final int maxCallLengthSeconds = 7 * 24 * 60 * 60;
+	final int hour = 60 * 60;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private HashMap<Customer, Tariff> customers;
+	private DummyTariffDatabase tariffDatabase;
+	private DateTimeZone defaultZone;
+	private Random rand;
+
+	// Reference implementation the results are compared against.
+	private CallCostCalculator referenceCalculator;
+
+	// Instance across which tests are to be applied.
+	private CalendarCallCostCalculator callCostCalculator;
+
+	/**
+	 * Setup which is run before each unit test.
+	 * The reference implementation assumes no daylight saving transitions, so tests run in UTC.
+	 */
+	@Before
+	public void setup() {
+		defaultZone = DateTimeZone.getDefault();
+		DateTimeZone.setDefault(DateTimeZone.UTC);
+
+		customers = new HashMap<Customer, Tariff>();
+		for (Tariff tariff : Tariff.values()) {
+			customers.put(new Customer(dummyCustomerName, dummyCallerNumber, tariff.toString()), tariff);
+		}
+
+		tariffDatabase = new DummyTariffDatabase(customers);
+		referenceCalculator = new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		callCostCalculator = new CalendarCallCostCalculator(tariffDatabase, TimeBandCalendar.fromPeakPeriod(new DaytimePeakPeriod()));
+		rand = new Random(1234);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Restores the default time zone after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		DateTimeZone.setDefault(defaultZone);
+	}
+
+	/**
+	 * Tests that passing null parameters in to CalendarCallCostCalculator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateCalculatorWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CalendarCallCostCalculator(null, null);
+	}
+
+	/**
+	 * Tests that randomly generated calls of up to a week are charged the same as by the reference implementation
+	 * when the calendar is created from the same peak period.
+	 */
+	@Test
+	public void randomCallsAreChargedSameAsReferenceImplementation() {
+		long firstStart = new DateTime(2013, 1, 1, 0, 0).getMillis();
+		long lastStart = new DateTime(2013, 12, 31, 23, 59).getMillis();
+		for (int i = 0; i < randomCallCount; i++) {
+			long start = firstStart + (long)(rand.nextDouble() * (lastStart - firstStart));
+			long length = rand.nextBoolean()
+					? rand.nextInt(60 * 60 * 1000)
+					: (long)rand.nextInt(maxCallLengthSeconds) * 1000 + rand.nextInt(1000);
+			Call call = call(new DateTime(start), new DateTime(start + length));
+			for (Customer customer : customers.keySet()) {
+				assertTrue(callCostCalculator.calculateCallCost(customer, call).equals(referenceCalculator.calculateCallCost(customer, call)));
+			}
+		}
+	}
+
+	/**
+	 * Tests that calls are charged in the bands of the weekday, weekend and holiday schedules they fall in.
+	 */
+	@Test
+	public void callsAreChargedInBandsOfWeekdaysWeekendsAndHolidays() {
+		TimeBand offPeak = TimeBand.offPeak("OffPeak");
+		TimeBand peak = TimeBand.peak("Peak");
+		Map<Tariff, BigDecimal> shoulderRates = new HashMap<Tariff, BigDecimal>();
+		for (Tariff tariff : Tariff.values()) {
+			shoulderRates.put(tariff, new BigDecimal("0.35"));
+		}
+		TimeBand shoulder = new TimeBand("Shoulder", shoulderRates);
+		DaySchedule weekday = new DaySchedule(offPeak).withBand(6 * hour, 20 * hour, shoulder).withBand(8 * hour, 18 * hour, peak);
+		DaySchedule weekend = new DaySchedule(offPeak);
+		Map<LocalDate, DaySchedule> holidays = new HashMap<LocalDate, DaySchedule>();
+		holidays.put(new LocalDate(2013, 12, 25), weekend);
+		callCostCalculator = new CalendarCallCostCalculator(tariffDatabase, new TimeBandCalendar(weekday, weekend, holidays));
+
+		for (Customer customer : customers.keySet()) {
+			Tariff tariff = customers.get(customer);
+
+			// Monday 07:00 to 09:00 is an hour of shoulder then an hour of peak.
+			BigDecimal expected = new BigDecimal(hour).multiply(new BigDecimal("0.35"))
+					.add(new BigDecimal(hour).multiply(tariff.peakRate())).setScale(0, RoundingMode.HALF_UP);
+			DateTime monday = new DateTime(2013, 11, 4, 7, 0);
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(monday, monday.plusHours(2))).equals(expected));
+
+			// Saturday and Christmas Day (a Wednesday) are off-peak all day.
+			expected = new BigDecimal(2 * hour).multiply(tariff.offPeakRate()).setScale(0, RoundingMode.HALF_UP);
+			DateTime saturday = new DateTime(2013, 11, 9, 7, 0);
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(saturday, saturday.plusHours(2))).equals(expected));
+			DateTime christmas = new DateTime(2013, 12, 25, 7, 0);
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(christmas, christmas.plusHours(2))).equals(expected));
+
+			// A whole week is five weekdays and two weekend days.
+			expected = new BigDecimal(5 * 10 * hour).multiply(tariff.peakRate())
+					.add(new BigDecimal(5 * 4 * hour).multiply(new BigDecimal("0.35")))
+					.add(new BigDecimal((5 * 10 + 2 * 24) * hour).multiply(tariff.offPeakRate()))
+					.setScale(0, RoundingMode.HALF_UP);
+			DateTime week = new DateTime(2013, 11, 4, 0, 0);
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(week, week.plusWeeks(1))).equals(expected));
+		}
+	}
+
+	/**
+	 * Tests that randomly generated calls in zones with daylight saving are charged the same as by
+	 * ClosedFormCallCostCalculator, which splits calls at offset transitions independently.
+	 */
+	@Test
+	public void randomCallsInZonesWithDaylightSavingAreChargedSameAsClosedForm() {
+		ClosedFormCallCostCalculator closedFormCalculator = new ClosedFormCallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		String[] zones = { "Europe/London", "America/New_York", "Australia/Sydney" };
+		for (String zone : zones) {
+			DateTimeZone.setDefault(DateTimeZone.forID(zone));
+			long firstStart = new DateTime(2013, 1, 1, 0, 0).getMillis();
+			long lastStart = new DateTime(2013, 12, 31, 23, 59).getMillis();
+			for (int i = 0; i < randomCallCount / zones.length; i++) {
+				long start = firstStart + (long)(rand.nextDouble() * (lastStart - firstStart));
+				long length = (long)rand.nextInt(maxCallLengthSeconds) * 1000 + rand.nextInt(1000);
+				Call call = call(new DateTime(start), new DateTime(start + length));
+				for (Customer customer : customers.keySet()) {
+					assertTrue(callCostCalculator.calculateCallCost(customer, call).equals(closedFormCalculator.calculateCallCost(customer, call)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a call between the specified times.
+	 * @param start The call start time.
+	 * @param end The call end time.
+	 * @return The call.
+	 */
+	private Call call(DateTime start, DateTime end) {
+		return new Call(
+				new CallStart(dummyCallerNumber, dummyCalleeNumber, start),
+				new CallEnd(dummyCallerNumber, dummyCalleeNumber, end));
+	}
+}
@@ -0,0 +1,216 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Bill;
+import com.acmetelecom.BillingSystem;
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEventBatch;
+import com.acmetelecom.CallEventBatchResult;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.ConcurrentCallEventManager;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.ICallEventManager;
+import com.acmetelecom.RatingCallEventManager;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of CallEventBatch and of handling batches of call events through BillingSystem.
+ */
+public class CallEventBatchTests {
+	final int customerCount = 50;
+	final String dummyPhoneNumber = "44000000000";
+	final String dummyCustomerName = "DummyName";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private HashMap<Customer, Tariff> customers;
+	private List<Customer> customerList;
+	private DummyCustomerDatabase customerDatabase;
+	private DummyTariffDatabase tariffDatabase;
+	private DummyClock clock;
+	private Random rand;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		customers = new HashMap<Customer, Tariff>();
+		customerList = new ArrayList<Customer>();
+		for (int i = 0; i < customerCount; i++) {
+			Tariff tariff = Tariff.values()[i % Tariff.values().length];
+			Customer customer = new Customer(dummyCustomerName + i, dummyPhoneNumber + i, tariff.toString());
+			customers.put(customer, tariff);
+			customerList.add(customer);
+		}
+		customerDatabase = new DummyCustomerDatabase(customers);
+		tariffDatabase = new DummyTariffDatabase(customers);
+		clock = new DummyClock();
+		rand = new Random(1234);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Tests that creating a batch without room for any events throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateBatchWithoutCapacityThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CallEventBatch(0);
+	}
+
+	/**
+	 * Tests that passing a null batch in to handleEvents throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleNullBatchThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		createBillingSystem(new CallEventManager()).handleEvents(null);
+	}
+
+	/**
+	 * Tests that a batch grows beyond its initial capacity and can be cleared and refilled.
+	 */
+	@Test
+	public void batchGrowsAndCanBeReused() {
+		CallEventBatch batch = new CallEventBatch(2);
+		for (int i = 0; i < 5; i++) {
+			batch.addStart("caller" + i, "callee", i);
+		}
+		batch.addEnd("caller0", "callee", 10);
+		assertTrue(batch.size() == 6);
+		assertTrue(batch.isStart(4) && batch.getCaller(4).equals("caller4") && batch.getTime(4) == 4);
+		assertTrue(!batch.isStart(5) && batch.getCallee(5).equals("callee") && batch.getTime(5) == 10);
+
+		batch.clear();
+		assertTrue(batch.size() == 0);
+		batch.addEnd("caller", "callee", 20);
+		assertTrue(batch.size() == 1 && !batch.isStart(0));
+	}
+
+	/**
+	 * Tests that invalid events are rejected with a reason, in batch order, without stopping the rest of the batch,
+	 * by call event managers which handle batches themselves.
+	 */
+	@Test
+	public void invalidEventsAreRejectedWithoutStoppingBatch() {
+		ICallEventManager[] managers = {
+				new CallEventManager(),
+				new RatingCallEventManager(new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod()), customerDatabase) };
+		for (ICallEventManager manager : managers) {
+			BillingSystem billingSystem = createBillingSystem(manager);
+			String caller = customerList.get(0).getPhoneNumber();
+			long start = new DateTime(2013, 11, 4, 12, 0).getMillis();
+
+			CallEventBatch batch = new CallEventBatch();
+			batch.addStart(caller, "callee", start);
+			batch.addStart(caller, "callee", start + 1000);
+			batch.addStart(null, "callee", start + 2000);
+			batch.addEnd(caller, "other", start + 3000);
+			batch.addEnd(caller, "callee", start + 60000);
+			CallEventBatchResult result = billingSystem.handleEvents(batch);
+
+			assertTrue(result.getEventCount() == 5);
+			assertTrue(result.getAcceptedCount() == 2);
+			assertTrue(result.getRejectedCount() == 3);
+			assertTrue(result.getRejectedEvent(0) == 1);
+			assertTrue(result.getRejectionReason(0).contains("twice simultaneously"));
+			assertTrue(result.getRejectedEvent(1) == 2);
+			assertTrue(result.getRejectionReason(1).contains("required"));
+			assertTrue(result.getRejectedEvent(2) == 3);
+			assertTrue(result.getRejectionReason(2).contains("No matching CallStart"));
+			assertTrue(manager.getCallsForCustomer(caller).size() == 1);
+			assertTrue(manager.getCallsForCustomer(caller).get(0).durationSeconds() == 60);
+		}
+	}
+
+	/**
+	 * Tests that call event managers which do not handle batches themselves have the events they throw on rejected.
+	 */
+	@Test
+	public void eventsAreRejectedOneAtATimeByOtherCallEventManagers() {
+		BillingSystem billingSystem = createBillingSystem(new ConcurrentCallEventManager());
+		CallEventBatch batch = new CallEventBatch();
+		batch.addStart("caller", "callee", 0);
+		batch.addStart("caller", "callee", 1000);
+		batch.addStart("caller", null, 2000);
+		batch.addEnd("caller", "callee", 3000);
+		CallEventBatchResult result = billingSystem.handleEvents(batch);
+
+		assertTrue(result.getAcceptedCount() == 2);
+		assertTrue(result.getRejectedEvent(0) == 1);
+		assertTrue(result.getRejectedEvent(1) == 2);
+	}
+
+	/**
+	 * Tests that handling random calls in batches gives the same bills as handling each event as it happens.
+	 */
+	@Test
+	public void batchedEventsGiveSameBillsAsSingleEvents() {
+		BillingSystem singleBillingSystem = createBillingSystem(new CallEventManager());
+		BillingSystem batchBillingSystem = createBillingSystem(new CallEventManager());
+		CallEventBatch batch = new CallEventBatch(16);
+
+		DateTime time = new DateTime(2013, 11, 4, 0, 0);
+		for (int i = 0; i < 2000; i++) {
+			String caller = customerList.get(rand.nextInt(customerCount)).getPhoneNumber();
+			String callee = customerList.get(rand.nextInt(customerCount)).getPhoneNumber();
+			DateTime start = time.plusMinutes(rand.nextInt(7 * 24 * 60));
+			DateTime end = start.plusSeconds(rand.nextInt(3 * 60 * 60));
+
+			clock.setTime(start);
+			singleBillingSystem.callInitiated(caller, callee);
+			clock.setTime(end);
+			singleBillingSystem.callCompleted(caller, callee);
+
+			batch.addStart(caller, callee, start.getMillis());
+			batch.addEnd(caller, callee, end.getMillis());
+			if (batch.size() == 100) {
+				assertTrue(batchBillingSystem.handleEvents(batch).getRejectedCount() == 0);
+				batch.clear();
+			}
+		}
+		assertTrue(batchBillingSystem.handleEvents(batch).getRejectedCount() == 0);
+
+		List<Bill> expectedBills = singleBillingSystem.createCustomerBills();
+		List<Bill> batchBills = batchBillingSystem.createCustomerBills();
+		assertTrue(batchBills.size() == expectedBills.size());
+		for (int i = 0; i < expectedBills.size(); i++) {
+			assertTrue(batchBills.get(i).getItems().size() == expectedBills.get(i).getItems().size());
+			assertTrue(batchBills.get(i).getTotalBill().equals(expectedBills.get(i).getTotalBill()));
+		}
+	}
+
+	/**
+	 * Creates a billing system with the specified call event manager.
+	 * @param callEventManager The call event manager.
+	 * @return The billing system.
+	 */
+	private BillingSystem createBillingSystem(ICallEventManager callEventManager) {
+		return new BillingSystem(
+				callEventManager,
+				new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod()),
+				new HtmlBillGenerator(new BufferedHtmlBillPrinter(new ByteArrayOutputStream(), Charset.defaultCharset())),
+				customerDatabase,
+				clock);
+	}
+}
@@ -2,7 +2,10 @@ package tests;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.joda.time.DateTime;
 import org.junit.Before;
@@ -15,6 +18,7 @@ import com.acmetelecom.CallEnd;
 import com.acmetelecom.CallEventManager;
 import com.acmetelecom.CallStart;
 import com.acmetelecom.FileLogger;
+import com.acmetelecom.PhoneNumberDictionary;
 
 /**
  * Tests behaviour of CallEventManager in an isolated context.
@@ -130,6 +134,28 @@ public class CallEventManagerTests {
 		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber+"1", DateTime.now()));		
 	}
 	
+	/**
+	 * Tests that call events are matched on the value of the phone numbers rather than on String identity
+	 * (e.g. numbers parsed from wire input).
+	 */
+	@Test
+	public void callEventsWithEqualButDistinctPhoneNumberStringsAreMatched() {
+		callEventManager.handleEvent(new CallStart(new String(dummyCallerNumber), new String(dummyCalleeNumber), DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(new String(dummyCallerNumber), new String(dummyCalleeNumber), DateTime.now().plusMinutes(5)));
+		
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 1);
+	}
+	
+	/**
+	 * Tests that a call end event with no matching call start event is ignored.
+	 */
+	@Test
+	public void callEndWithoutMatchingCallStartIsIgnored() {
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+	
 	/**
 	 * Tests that clearing the call logs clears out the call logs.
 	 */
@@ -142,4 +168,56 @@ public class CallEventManagerTests {
 		callEventManager.clearCallLogs();
 		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
 	}
+	
+	/**
+	 * Tests that many calls in progress at once are each matched to their own end, whatever order they end in.
+	 */
+	@Test
+	public void manyCallsInProgressEndedInAnyOrderAreAllMatched() {
+		int callCount = 5000;
+		long startMillis = DateTime.now().getMillis();
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < callCount; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber + (i % 50), dummyCalleeNumber + i, startMillis + i));
+			order.add(i);
+		}
+		Collections.shuffle(order, new Random(1234));
+		for (int i : order) {
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber + (i % 50), dummyCalleeNumber + i, startMillis + callCount + i));
+		}
+		
+		for (int caller = 0; caller < 50; caller++) {
+			List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber + caller);
+			assertTrue(calls.size() == callCount / 50);
+			for (Call call : calls) {
+				int i = Integer.parseInt(call.callee().substring(dummyCalleeNumber.length()));
+				assertTrue(call.startMillis() == startMillis + i);
+				assertTrue(call.endMillis() == startMillis + callCount + i);
+			}
+		}
+	}
+	
+	/**
+	 * Tests that calls to the same number share one instance of the number, the first one reported, and that
+	 * managers can share a phone number dictionary.
+	 */
+	@Test
+	public void callsShareFirstReportedInstanceOfEachPhoneNumber() {
+		PhoneNumberDictionary phoneNumbers = new PhoneNumberDictionary();
+		callEventManager = new CallEventManager(phoneNumbers);
+		String firstCallee = new String(dummyCalleeNumber);
+		for (int i = 0; i < 3; i++) {
+			String callee = i == 0 ? firstCallee : new String(dummyCalleeNumber);
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, callee, DateTime.now()));
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber, new String(dummyCalleeNumber), DateTime.now().plusMinutes(5)));
+		}
+		
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 3);
+		for (Call call : calls) {
+			assertTrue(call.callee() == firstCallee);
+		}
+		assertTrue(phoneNumbers.size() == 2);
+		assertTrue(new CallEventManager(phoneNumbers).getPhoneNumbers().intern(new String(dummyCalleeNumber)) == firstCallee);
+	}
 }
@@ -0,0 +1,261 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.BillingSystem;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventBatch;
+import com.acmetelecom.CallEventBatchResult;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallEventPipeline;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ConcurrentCallEventManager;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.HtmlBillPrinter;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of CallEventPipeline, including publishing to it through BillingSystem.
+ */
+public class CallEventPipelineTests {
+	final int callerCount = 50;
+	final String dummyPhoneNumber = "44000000000";
+	final String dummyCustomerName = "DummyName";
+	final long firstCallTime = 1384000000000L;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Random rand;
+
+	// Instance across which tests are to be applied.
+	private CallEventPipeline pipeline;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		rand = new Random(1234);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Stops the pipeline's threads after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		if (pipeline != null) {
+			pipeline.close();
+		}
+	}
+
+	/**
+	 * Tests that passing null parameters in to CallEventPipeline constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreatePipelineWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CallEventPipeline(null);
+	}
+
+	/**
+	 * Tests that creating a pipeline whose capacity is not a power of two throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreatePipelineWithCapacityNotPowerOfTwoThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CallEventPipeline(new CallEventManager(), 1000, false);
+	}
+
+	/**
+	 * Tests that calls reported to a billing system through a single-producer pipeline, small enough to fill up,
+	 * are logged the same as calls reported directly, and that the latency of every event is recorded.
+	 */
+	@Test
+	public void callsReportedThroughPipelineAreLoggedSameAsCallsReportedDirectly() {
+		List<Customer> customers = new ArrayList<Customer>();
+		HashMap<Customer, Tariff> tariffs = new HashMap<Customer, Tariff>();
+		for (int i = 0; i < callerCount; i++) {
+			Customer customer = new Customer(dummyCustomerName + i, dummyPhoneNumber + i, Tariff.Standard.toString());
+			customers.add(customer);
+			tariffs.put(customer, Tariff.Standard);
+		}
+		DummyClock clock = new DummyClock();
+		CallEventManager expected = new CallEventManager();
+		pipeline = new CallEventPipeline(new CallEventManager(), 64, false);
+		BillingSystem billingSystem = new BillingSystem(
+				pipeline,
+				new CallCostCalculator(new DummyTariffDatabase(tariffs), new DaytimePeakPeriod()),
+				new HtmlBillGenerator(new HtmlBillPrinter()),
+				new DummyCustomerDatabase(tariffs),
+				clock);
+
+		int callCount = 5000;
+		long time = firstCallTime;
+		for (int i = 0; i < callCount; i++) {
+			String caller = customers.get(rand.nextInt(callerCount)).getPhoneNumber();
+			String callee = customers.get(rand.nextInt(callerCount)).getPhoneNumber();
+			long end = time + rand.nextInt(60 * 60 * 1000);
+			expected.handleEvent(new CallStart(caller, callee, time));
+			expected.handleEvent(new CallEnd(caller, callee, end));
+			clock.setTime(new DateTime(time));
+			billingSystem.callInitiated(caller, callee);
+			clock.setTime(new DateTime(end));
+			billingSystem.callCompleted(caller, callee);
+			time = end + 1;
+		}
+
+		for (Customer customer : customers) {
+			assertSameCalls(expected.getCallsForCustomer(customer.getPhoneNumber()), pipeline.getCallsForCustomer(customer.getPhoneNumber()));
+		}
+		assertTrue(pipeline.getLatency().getCount() == 2 * callCount);
+		assertTrue(pipeline.getRejectedCount() == 0);
+		assertTrue(billingSystem.createCustomerBills().size() == callerCount);
+	}
+
+	/**
+	 * Tests that events published from several threads at once through a small pipeline are all handled, in the
+	 * order each thread published them.
+	 */
+	@Test
+	public void eventsPublishedFromSeveralThreadsAreAllHandledInOrderPerThread() throws InterruptedException {
+		final int threadCount = 4;
+		final int callsPerThread = 5000;
+		pipeline = new CallEventPipeline(new ConcurrentCallEventManager(), 16, true);
+
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final String caller = dummyPhoneNumber + t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < callsPerThread; i++) {
+						String callee = dummyPhoneNumber + (i % callerCount);
+						pipeline.publishStart(caller, callee, firstCallTime + 2 * i);
+						pipeline.publishEnd(caller, callee, firstCallTime + 2 * i + 1);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (int t = 0; t < threadCount; t++) {
+			List<Call> calls = pipeline.getCallsForCustomer(dummyPhoneNumber + t);
+			assertTrue(calls.size() == callsPerThread);
+			for (int i = 0; i < callsPerThread; i++) {
+				assertTrue(calls.get(i).startMillis() == firstCallTime + 2 * i);
+				assertTrue(calls.get(i).endMillis() == firstCallTime + 2 * i + 1);
+			}
+		}
+		assertTrue(pipeline.getLatency().getCount() == 2 * threadCount * callsPerThread);
+		assertTrue(pipeline.getRejectedCount() == 0);
+	}
+
+	/**
+	 * Tests that events the call event manager does not accept are counted without stopping later events from being
+	 * handled.
+	 */
+	@Test
+	public void rejectedEventsAreCountedWithoutStoppingPipeline() {
+		pipeline = new CallEventPipeline(new CallEventManager(), 16, false);
+		String caller = dummyPhoneNumber + "1";
+		String callee = dummyPhoneNumber + "2";
+		pipeline.publishEnd(caller, callee, firstCallTime);
+		pipeline.publishStart(caller, callee, firstCallTime + 1000);
+		pipeline.publishStart(caller, callee, firstCallTime + 2000);
+		pipeline.publishEnd(caller, callee, firstCallTime + 3000);
+
+		assertTrue(pipeline.getCallsForCustomer(caller).size() == 1);
+		assertTrue(pipeline.getRejectedCount() == 2);
+	}
+
+	/**
+	 * Tests that every event in a run the call event manager fails on is counted as rejected, and later events are
+	 * still handled.
+	 */
+	@Test
+	public void eventsInRunManagerFailsOnAreCountedAsRejected() {
+		final String failingCallee = dummyPhoneNumber + "9";
+		pipeline = new CallEventPipeline(new CallEventManager() {
+			@Override
+			public void handleEvents(CallEventBatch batch, CallEventBatchResult result) {
+				if (batch.getCallee(0).equals(failingCallee)) {
+					throw new UnsupportedOperationException();
+				}
+				super.handleEvents(batch, result);
+			}
+		}, 16, false);
+		String caller = dummyPhoneNumber + "1";
+		pipeline.publishStart(caller, failingCallee, firstCallTime);
+		pipeline.awaitHandled();
+		assertTrue(pipeline.getRejectedCount() == 1);
+
+		pipeline.publishStart(caller, dummyPhoneNumber + "2", firstCallTime + 1000);
+		pipeline.publishEnd(caller, dummyPhoneNumber + "2", firstCallTime + 2000);
+		assertTrue(pipeline.getCallsForCustomer(caller).size() == 1);
+		assertTrue(pipeline.getRejectedCount() == 1);
+	}
+
+	/**
+	 * Tests that events published after the pipeline's stages have gone to sleep are handled.
+	 */
+	@Test
+	public void eventsPublishedToIdlePipelineAreHandled() throws InterruptedException {
+		pipeline = new CallEventPipeline(new CallEventManager(), 16, true);
+		Thread.sleep(100);
+		pipeline.publishStart(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime);
+		pipeline.publishEnd(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime + 1000);
+		assertTrue(pipeline.getCallsForCustomer(dummyPhoneNumber).size() == 1);
+	}
+
+	/**
+	 * Tests that publishing to a closed pipeline throws IllegalStateException, after every earlier event has been
+	 * handled.
+	 */
+	@Test
+	public void publishingToClosedPipelineThrowsIllegalStateException() {
+		CallEventManager callEventManager = new CallEventManager();
+		pipeline = new CallEventPipeline(callEventManager, 16, false);
+		pipeline.publishStart(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime);
+		pipeline.publishEnd(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime + 1000);
+		pipeline.close();
+		assertTrue(callEventManager.getCallsForCustomer(dummyPhoneNumber).size() == 1);
+
+		exception.expect(IllegalStateException.class);
+		pipeline.publishStart(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime + 2000);
+	}
+
+	/**
+	 * Asserts that two lists of calls hold the same calls.
+	 * @param expected The expected calls.
+	 * @param actual The actual calls.
+	 */
+	private void assertSameCalls(List<Call> expected, List<Call> actual) {
+		assertTrue(expected.size() == actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(expected.get(i).callee().equals(actual.get(i).callee()));
+			assertTrue(expected.get(i).startMillis() == actual.get(i).startMillis());
+			assertTrue(expected.get(i).endMillis() == actual.get(i).endMillis());
+		}
+	}
+}
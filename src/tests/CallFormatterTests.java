@@ -0,0 +1,86 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acmetelecom.CallFormatter;
+
+/**
+ * Tests behaviour of CallFormatter, against the formatting it replaces.
+ */
+public class CallFormatterTests {
+	final String[] zoneIds = { "UTC", "Europe/London", "America/New_York", "Australia/Sydney" };
+	final int randomInstantCount = 20000;
+
+	private DateTimeZone defaultZone;
+	private Random rand;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		defaultZone = DateTimeZone.getDefault();
+		rand = new Random(1234);
+	}
+
+	/**
+	 * Restores the default time zone after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		DateTimeZone.setDefault(defaultZone);
+	}
+
+	/**
+	 * Tests that dates of random instants are formatted the same as by a dd/MM/yyyy formatter in the default zone,
+	 * including after the default zone changes.
+	 */
+	@Test
+	public void datesAreFormattedSameAsFormatterInDefaultZone() {
+		DateTimeFormatter formatter = DateTimeFormat.forPattern("dd/MM/yyyy");
+		long first = new DateTime(1960, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+		long last = new DateTime(2040, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+		for (String zoneId : zoneIds) {
+			DateTimeZone.setDefault(DateTimeZone.forID(zoneId));
+			for (int i = 0; i < randomInstantCount; i++) {
+				long millis = first + (long)(rand.nextDouble() * (last - first));
+				assertTrue(CallFormatter.formatDate(millis).equals(formatter.print(millis)));
+			}
+		}
+	}
+
+	/**
+	 * Tests that calls on the same local day share the same date string, and calls on different days do not.
+	 */
+	@Test
+	public void datesOnSameDayShareSameString() {
+		DateTimeZone london = DateTimeZone.forID("Europe/London");
+		DateTimeZone.setDefault(london);
+		DateTime morning = new DateTime(2013, 6, 5, 0, 0, london);
+		DateTime evening = new DateTime(2013, 6, 5, 23, 59, 59, london);
+		assertTrue(CallFormatter.formatDate(morning.getMillis()) == CallFormatter.formatDate(evening.getMillis()));
+		assertTrue(CallFormatter.formatDate(evening.plusSeconds(1).getMillis()).equals("06/06/2013"));
+	}
+
+	/**
+	 * Tests that durations are formatted the same as minutes followed by two-digit seconds.
+	 */
+	@Test
+	public void durationsAreFormattedAsMinutesAndTwoDigitSeconds() {
+		for (int seconds = -200; seconds < 100000; seconds++) {
+			String expected = "" + seconds / 60 + ":" + String.format("%02d", seconds % 60);
+			assertTrue(CallFormatter.formatDuration(seconds).equals(expected));
+		}
+		assertTrue(CallFormatter.formatDuration(Integer.MAX_VALUE).equals(Integer.MAX_VALUE / 60 + ":07"));
+	}
+}
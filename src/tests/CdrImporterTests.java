@@ -0,0 +1,232 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.BinaryCdrWriter;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.CdrImportResult;
+import com.acmetelecom.CdrImporter;
+import com.acmetelecom.ConcurrentCallEventManager;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.ICallEventManager;
+
+/**
+ * Tests behaviour of CdrImporter and BinaryCdrWriter.
+ */
+public class CdrImporterTests {
+	final int callerCount = 20;
+	final int callCount = 2000;
+	final String dummyPhoneNumber = "44000000000";
+	final long firstCallTime = 1384000000000L;
+	final Charset charset = Charset.forName("UTF-8");
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path cdrFile;
+	private Random rand;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		cdrFile = Files.createTempFile("calls", ".cdr");
+		rand = new Random(1234);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the call record file after each unit test.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(cdrFile);
+	}
+
+	/**
+	 * Tests that passing null parameters in to CdrImporter constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateImporterWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CdrImporter(null, 1);
+	}
+
+	/**
+	 * Tests that creating an importer without any threads throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateImporterWithoutThreadsThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CdrImporter(new CallEventManager(), 0);
+	}
+
+	/**
+	 * Tests that importing a CSV file split into many small chunks across several threads logs the same calls, with
+	 * their original times, as handling the same events directly.
+	 */
+	@Test
+	public void importingCsvFileLogsSameCallsAsHandlingEventsDirectly() throws IOException {
+		CallEventManager expected = new CallEventManager();
+		try (Writer writer = Files.newBufferedWriter(cdrFile, charset)) {
+			writer.write(CdrImporter.CsvHeader + "\r\n");
+			long time = firstCallTime;
+			for (int i = 0; i < callCount; i++) {
+				String caller = dummyPhoneNumber + rand.nextInt(callerCount);
+				String callee = "+" + dummyPhoneNumber + rand.nextInt(callerCount);
+				long end = time + rand.nextInt(60 * 60 * 1000);
+				expected.handleEvent(new CallStart(caller, callee, time));
+				expected.handleEvent(new CallEnd(caller, callee, end));
+				writer.write("START," + caller + "," + callee + "," + time + "\r\n");
+				writer.write("END," + caller + "," + callee + "," + end + "\n");
+				time = end + 1;
+			}
+		}
+
+		CallEventManager imported = new CallEventManager();
+		CdrImportResult result = new CdrImporter(imported, 4, 100).importCsv(cdrFile);
+		assertTrue(result.getRecordCount() == 2 * callCount);
+		assertTrue(result.getImportedCount() == 2 * callCount);
+		assertTrue(result.getRejectedCount() == 0);
+		assertSameCalls(expected, imported);
+	}
+
+	/**
+	 * Tests that importing a binary file split into many small chunks across several threads logs the same calls as
+	 * handling the same events directly, including through a call event manager which does not handle batches.
+	 */
+	@Test
+	public void importingBinaryFileLogsSameCallsAsHandlingEventsDirectly() {
+		CallEventManager expected = new CallEventManager();
+		BinaryCdrWriter writer = new BinaryCdrWriter(cdrFile);
+		long time = firstCallTime;
+		for (int i = 0; i < callCount; i++) {
+			String caller = "0" + dummyPhoneNumber + rand.nextInt(callerCount);
+			String callee = dummyPhoneNumber + rand.nextInt(callerCount);
+			long end = time + rand.nextInt(60 * 60 * 1000);
+			expected.handleEvent(new CallStart(caller, callee, time));
+			expected.handleEvent(new CallEnd(caller, callee, end));
+			writer.writeStart(caller, callee, time);
+			writer.writeEnd(caller, callee, end);
+			time = end + 1;
+		}
+		writer.close();
+
+		CallEventManager imported = new CallEventManager();
+		CdrImportResult result = new CdrImporter(imported, 4, 100).importBinary(cdrFile);
+		assertTrue(result.getRecordCount() == 2 * callCount);
+		assertTrue(result.getRejectedCount() == 0);
+		assertSameCalls(expected, imported);
+
+		ConcurrentCallEventManager unbatched = new ConcurrentCallEventManager();
+		result = new CdrImporter(unbatched, 2, 1000).importBinary(cdrFile);
+		assertTrue(result.getImportedCount() == 2 * callCount);
+		assertSameCalls(expected, unbatched);
+	}
+
+	/**
+	 * Tests that lines which cannot be parsed and events the call event manager does not accept are rejected by
+	 * line number, in file order, and that the rest of the file is still imported.
+	 */
+	@Test
+	public void invalidCsvLinesAreRejectedByLineNumberInFileOrder() throws IOException {
+		String caller = dummyPhoneNumber + "1";
+		String callee = dummyPhoneNumber + "2";
+		try (Writer writer = Files.newBufferedWriter(cdrFile, charset)) {
+			writer.write("START," + caller + "," + callee + "," + firstCallTime + "\n");
+			writer.write("\n");
+			writer.write("PAUSE," + caller + "," + callee + "," + firstCallTime + "\n");
+			writer.write("END," + caller + "," + callee + ",soon\n");
+			writer.write("END," + caller + "," + callee + "\n");
+			writer.write("END,," + callee + "," + firstCallTime + "\n");
+			writer.write("END," + callee + "," + caller + "," + (firstCallTime + 1000) + "\n");
+			writer.write("END," + caller + "," + callee + "," + (firstCallTime + 1000));
+		}
+
+		for (int threads = 1; threads <= 2; threads++) {
+			CallEventManager manager = new CallEventManager();
+			CdrImportResult result = new CdrImporter(manager, threads, 16).importCsv(cdrFile);
+			assertTrue(result.getRecordCount() == 7);
+			assertTrue(result.getImportedCount() == 2);
+			assertTrue(result.getRejectedCount() == 5);
+			long[] rejectedLines = { 3, 4, 5, 6, 7 };
+			for (int i = 0; i < rejectedLines.length; i++) {
+				assertTrue(result.getRejectedRecord(i) == rejectedLines[i]);
+			}
+			assertTrue(result.getRejectionReason(4).equals("No matching CallStart event was found."));
+
+			List<Call> calls = manager.getCallsForCustomer(caller);
+			assertTrue(calls.size() == 1);
+			assertTrue(calls.get(0).startMillis() == firstCallTime);
+			assertTrue(calls.get(0).endMillis() == firstCallTime + 1000);
+		}
+	}
+
+	/**
+	 * Tests that a truncated final record of a binary file is rejected and the records before it are imported.
+	 */
+	@Test
+	public void truncatedBinaryRecordIsRejected() throws IOException {
+		BinaryCdrWriter writer = new BinaryCdrWriter(cdrFile);
+		writer.writeStart(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime);
+		writer.writeEnd(dummyPhoneNumber, dummyPhoneNumber + "1", firstCallTime + 1000);
+		writer.close();
+		Files.write(cdrFile, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		CallEventManager manager = new CallEventManager();
+		CdrImportResult result = new CdrImporter(manager, 1).importBinary(cdrFile);
+		assertTrue(result.getRecordCount() == 3);
+		assertTrue(result.getImportedCount() == 2);
+		assertTrue(result.getRejectedRecord(0) == 3);
+		assertTrue(manager.getCallsForCustomer(dummyPhoneNumber).size() == 1);
+	}
+
+	/**
+	 * Tests that importing a file which is not a binary call record file throws IllegalStateException.
+	 */
+	@Test
+	public void importingFileWhichIsNotBinaryCallRecordFileThrowsIllegalStateException() throws IOException {
+		Files.write(cdrFile, "START,1,2,3\n".getBytes(charset));
+		exception.expect(IllegalStateException.class);
+		new CdrImporter(new CallEventManager(), 1).importBinary(cdrFile);
+	}
+
+	/**
+	 * Asserts that two call event managers have logged the same calls for each caller.
+	 * @param expected The manager the events were handled by directly.
+	 * @param actual The manager the events were imported into.
+	 */
+	private void assertSameCalls(ICallEventManager expected, ICallEventManager actual) {
+		for (int i = 0; i < callerCount; i++) {
+			for (String caller : new String[] { dummyPhoneNumber + i, "0" + dummyPhoneNumber + i }) {
+				List<Call> expectedCalls = expected.getCallsForCustomer(caller);
+				List<Call> actualCalls = actual.getCallsForCustomer(caller);
+				assertTrue(expectedCalls.size() == actualCalls.size());
+				for (int j = 0; j < expectedCalls.size(); j++) {
+					assertTrue(expectedCalls.get(j).callee().equals(actualCalls.get(j).callee()));
+					assertTrue(expectedCalls.get(j).startMillis() == actualCalls.get(j).startMillis());
+					assertTrue(expectedCalls.get(j).endMillis() == actualCalls.get(j).endMillis());
+				}
+			}
+		}
+	}
+}
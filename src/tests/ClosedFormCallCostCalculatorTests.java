@@ -0,0 +1,250 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallCostCalculator;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ClosedFormCallCostCalculator;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of ClosedFormCallCostCalculator, differentially against the iterative CallCostCalculator.
+ */
+public class ClosedFormCallCostCalculatorTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final int randomCallCount = 20000;
+	final int maxCallLengthSeconds = 7 * 24 * 60 * 60;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private HashMap<Customer, Tariff> customers;
+	private DateTimeZone defaultZone;
+	private Random rand;
+
+	// Reference implementation the results are compared against.
+	private CallCostCalculator referenceCalculator;
+
+	// Instance across which tests are to be applied.
+	private ClosedFormCallCostCalculator callCostCalculator;
+
+	/**
+	 * Setup which is run before each unit test.
+	 * The reference implementation assumes no daylight saving transitions, so tests run in UTC.
+	 */
+	@Before
+	public void setup() {
+		defaultZone = DateTimeZone.getDefault();
+		DateTimeZone.setDefault(DateTimeZone.UTC);
+
+		customers = new HashMap<Customer, Tariff>();
+		for (Tariff tariff : Tariff.values()) {
+			customers.put(new Customer(dummyCustomerName, dummyCallerNumber, tariff.toString()), tariff);
+		}
+
+		DummyTariffDatabase tariffDatabase = new DummyTariffDatabase(customers);
+		referenceCalculator = new CallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		callCostCalculator = new ClosedFormCallCostCalculator(tariffDatabase, new DaytimePeakPeriod());
+		rand = new Random(1234);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Restores the default time zone after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		DateTimeZone.setDefault(defaultZone);
+	}
+
+	/**
+	 * Tests that passing null parameters in to ClosedFormCallCostCalculator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateCalculatorWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new ClosedFormCallCostCalculator(null, null);
+	}
+
+	/**
+	 * Tests that passing null parameters in to calculateCallCost function throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCalculateCallCostWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callCostCalculator.calculateCallCost(null, null);
+	}
+
+	/**
+	 * Tests that calls starting or ending exactly on period and day boundaries are charged the same as by the
+	 * reference implementation, and that zero-length calls, which the reference implementation does not accept, are
+	 * charged nothing.
+	 */
+	@Test
+	public void callsOnPeriodBoundariesAreChargedSameAsReferenceImplementation() {
+		int[] boundaryHours = { 0, 7, 19, 24 };
+		DateTime day = new DateTime(2013, 11, 4, 0, 0);
+		for (int startHour : boundaryHours) {
+			for (int endHour : boundaryHours) {
+				for (int days = 0; days < 3; days++) {
+					DateTime start = day.plusHours(startHour);
+					DateTime end = day.plusDays(days).plusHours(endHour);
+					if (end.isAfter(start)) {
+						assertSameCostAsReference(start.getMillis(), end.getMillis());
+					} else if (end.isEqual(start)) {
+						assertNoCost(start.getMillis());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that randomly generated calls of a millisecond up to a week, including calls spanning the year end, are charged the
+	 * same as by the reference implementation.
+	 */
+	@Test
+	public void randomCallsAreChargedSameAsReferenceImplementation() {
+		long firstStart = new DateTime(2013, 1, 1, 0, 0).getMillis();
+		long lastStart = new DateTime(2013, 12, 31, 23, 59).getMillis();
+		for (int i = 0; i < randomCallCount; i++) {
+			long start = firstStart + (long)(rand.nextDouble() * (lastStart - firstStart));
+			long length = 1 + (rand.nextBoolean()
+					? rand.nextInt(60 * 60 * 1000)
+					: (long)rand.nextInt(maxCallLengthSeconds) * 1000 + rand.nextInt(1000));
+			assertSameCostAsReference(start, start + length);
+		}
+	}
+
+	/**
+	 * Tests that every call length within each period is charged the exact BigDecimal rate rounded half up, so the
+	 * fixed-point rate tables round exactly as BigDecimal arithmetic does.
+	 */
+	@Test
+	public void everyCallLengthWithinEachPeriodIsRoundedHalfUpExactly() {
+		DaytimePeakPeriod peakPeriod = new DaytimePeakPeriod();
+		DateTime day = new DateTime(2013, 11, 4, 0, 0);
+		int[] periodStartHours = { 0, peakPeriod.getPeakStart(), peakPeriod.getPeakEnd() };
+		for (int startHour : periodStartHours) {
+			long start = day.plusHours(startHour).getMillis();
+			for (int seconds = 0; seconds < 5 * 60 * 60; seconds++) {
+				Call call = new Call(
+						new CallStart(dummyCallerNumber, dummyCalleeNumber, start),
+						new CallEnd(dummyCallerNumber, dummyCalleeNumber, start + seconds * 1000L));
+				for (Customer customer : customers.keySet()) {
+					Tariff tariff = customers.get(customer);
+					BigDecimal rate = startHour == peakPeriod.getPeakStart() ? tariff.peakRate() : tariff.offPeakRate();
+					BigDecimal expected = new BigDecimal(seconds).multiply(rate).setScale(0, RoundingMode.HALF_UP);
+					assertTrue(callCostCalculator.calculateCallCost(customer, call).equals(expected));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that calls spanning a whole year and more, which end on the same day of the year they started on, are
+	 * charged the same as by the reference implementation.
+	 */
+	@Test
+	public void callsLongerThanAYearAreChargedSameAsReferenceImplementation() {
+		DateTime start = new DateTime(2012, 12, 31, 10, 0);
+		assertSameCostAsReference(start.getMillis(), start.plusYears(1).plusHours(2).getMillis());
+		assertSameCostAsReference(start.getMillis(), start.plusYears(1).plusDays(1).getMillis());
+	}
+
+	/**
+	 * Tests that calls across daylight saving changes are charged for the seconds they actually lasted, rather than
+	 * the difference between their local start and end times.
+	 */
+	@Test
+	public void callsAcrossDaylightSavingChangesAreChargedForSecondsTheyLasted() {
+		DateTimeZone london = DateTimeZone.forID("Europe/London");
+		DateTimeZone.setDefault(london);
+
+		// Clocks went forward from 01:00 to 02:00 on 31st March 2013, and back from 02:00 to 01:00 on 27th October.
+		DateTime springStart = new DateTime(2013, 3, 31, 0, 30, london);
+		DateTime springEnd = new DateTime(2013, 3, 31, 3, 30, london);
+		DateTime autumnStart = new DateTime(2013, 10, 27, 0, 30, london);
+		DateTime autumnEnd = new DateTime(2013, 10, 27, 2, 30, london);
+		for (Customer customer : customers.keySet()) {
+			BigDecimal rate = customers.get(customer).offPeakRate();
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(springStart, springEnd))
+					.equals(new BigDecimal(2 * 60 * 60).multiply(rate).setScale(0, RoundingMode.HALF_UP)));
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(autumnStart, autumnEnd))
+					.equals(new BigDecimal(3 * 60 * 60).multiply(rate).setScale(0, RoundingMode.HALF_UP)));
+		}
+
+		// A day-long call from peak to peak across the change is charged the peak period of each local day.
+		DaytimePeakPeriod peakPeriod = new DaytimePeakPeriod();
+		DateTime dayStart = new DateTime(2013, 10, 26, 12, 0, london);
+		DateTime dayEnd = new DateTime(2013, 10, 27, 12, 0, london);
+		long peakSeconds = ((peakPeriod.getPeakEnd() - 12) + (12 - peakPeriod.getPeakStart())) * 60 * 60;
+		long offPeakSeconds = 25 * 60 * 60 - peakSeconds;
+		for (Customer customer : customers.keySet()) {
+			Tariff tariff = customers.get(customer);
+			BigDecimal expected = new BigDecimal(peakSeconds).multiply(tariff.peakRate())
+					.add(new BigDecimal(offPeakSeconds).multiply(tariff.offPeakRate()))
+					.setScale(0, RoundingMode.HALF_UP);
+			assertTrue(callCostCalculator.calculateCallCost(customer, call(dayStart, dayEnd)).equals(expected));
+		}
+	}
+
+	/**
+	 * Creates a call between the specified times.
+	 * @param start The call start time.
+	 * @param end The call end time.
+	 * @return The call.
+	 */
+	private Call call(DateTime start, DateTime end) {
+		return new Call(
+				new CallStart(dummyCallerNumber, dummyCalleeNumber, start),
+				new CallEnd(dummyCallerNumber, dummyCalleeNumber, end));
+	}
+
+	/**
+	 * Checks the call between the specified times is charged the same as by the reference implementation for all tariffs.
+	 * @param startMillis The call start time.
+	 * @param endMillis The call end time.
+	 */
+	private void assertSameCostAsReference(long startMillis, long endMillis) {
+		Call call = new Call(
+				new CallStart(dummyCallerNumber, dummyCalleeNumber, new DateTime(startMillis)),
+				new CallEnd(dummyCallerNumber, dummyCalleeNumber, new DateTime(endMillis)));
+		for (Customer customer : customers.keySet()) {
+			BigDecimal expected = referenceCalculator.calculateCallCost(customer, call);
+			BigDecimal actual = callCostCalculator.calculateCallCost(customer, call);
+			assertTrue(actual.equals(expected));
+		}
+	}
+
+	/**
+	 * Checks a zero-length call at the specified time is charged nothing for all tariffs.
+	 * @param millis The call start and end time.
+	 */
+	private void assertNoCost(long millis) {
+		Call call = new Call(dummyCallerNumber, dummyCalleeNumber, millis, millis);
+		for (Customer customer : customers.keySet()) {
+			assertTrue(callCostCalculator.calculateCallCost(customer, call).compareTo(BigDecimal.ZERO) == 0);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.CompactCallEventManager;
+import com.acmetelecom.FileLogger;
+
+/**
+ * Tests behaviour of CompactCallEventManager in an isolated context.
+ */
+public class CompactCallEventManagerTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+	
+	// Instance across which tests are to be applied.
+	private CompactCallEventManager callEventManager;
+	
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		callEventManager = new CompactCallEventManager();
+		FileLogger.setActive(false);
+	}
+	
+	/**
+	 * Tests that handling event with null parameter throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleEventWithNullParameterThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(null);
+	}
+	
+	/**
+	 * Tests that starting a call to a callee which is not a phone number throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToStartCallToInvalidCalleeThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, "not a number", DateTime.now()));
+	}
+	
+	/**
+	 * Tests that completed calls are returned with the same caller, callee, times and duration as were received.
+	 */
+	@Test
+	public void completedCallsAreReturnedWithOriginalDetails() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0, 1, 500);
+		for (int i = 0; i < 20; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, "0" + i, startTime.plusMinutes(i)));
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(2 * i)));
+		}
+		
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 20);
+		for (int i = 0; i < 20; i++) {
+			Call call = calls.get(i);
+			assertTrue(call.caller().equals(dummyCallerNumber));
+			assertTrue(call.callee().equals("0" + i));
+			assertTrue(call.startTime().equals(startTime.plusMinutes(i)));
+			assertTrue(call.endTime().equals(startTime.plusMinutes(2 * i)));
+			assertTrue(call.durationSeconds() == i * 60);
+		}
+	}
+	
+	/**
+	 * Tests that only completed calls are stored in a customers log.
+	 */
+	@Test
+	public void onlyStoredCompletedCallsInCallLogForCustomer() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber + "1", DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber + "2", DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber + "1", DateTime.now().plusMinutes(5)));
+		
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).callee().equals(dummyCalleeNumber + "1"));
+	}
+	
+	/**
+	 * Tests that if a customer starts a call to same callee twice without hanging up in between then an IllegalStateException
+	 * is thrown.
+	 */
+	@Test
+	public void ifCustomerStartsCallToSameCalleeTwiceWithoutHangingUpInbetweenIllegalStateExceptionThrown() {
+		exception.expect(IllegalStateException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+	}
+	
+	/**
+	 * Tests that clearing the call logs clears out the call logs.
+	 */
+	@Test
+	public void clearingCallLogsClearsCallLogs() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now().plusMinutes(5)));
+		
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 1);
+		callEventManager.clearCallLogs();
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+}
@@ -0,0 +1,170 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.ConcurrentCallEventManager;
+import com.acmetelecom.FileLogger;
+
+/**
+ * Tests behaviour of ConcurrentCallEventManager in an isolated context and under concurrent load.
+ */
+public class ConcurrentCallEventManagerTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final int threadCount = 16;
+	final int callersPerThread = 50;
+	final int callsPerCaller = 200;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	// Instance across which tests are to be applied.
+	private ConcurrentCallEventManager callEventManager;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		callEventManager = new ConcurrentCallEventManager();
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Tests that creating the manager with a non-positive concurrency level throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateManagerWithNonPositiveConcurrencyLevelThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new ConcurrentCallEventManager(0);
+	}
+
+	/**
+	 * Tests that handling event with null parameter throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleEventWithNullParameterThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(null);
+	}
+
+	/**
+	 * Tests that if a call start and end event is received for the same call then the call is stored in
+	 * the customer's log.
+	 */
+	@Test
+	public void ifStartAndEndEventsReceivedForSameCallStoresCallInCallLogForCustomer() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now().plusMinutes(5)));
+
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).callee().equals(dummyCalleeNumber));
+	}
+
+	/**
+	 * Tests that a call end event with no matching call start is ignored rather than failing.
+	 */
+	@Test
+	public void callEndWithoutMatchingCallStartIsIgnored() {
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+
+	/**
+	 * Tests that if a customer starts a call to same callee twice without hanging up in between then an IllegalStateException
+	 * is thrown.
+	 */
+	@Test
+	public void ifCustomerStartsCallToSameCalleeTwiceWithoutHangingUpInbetweenIllegalStateExceptionThrown() {
+		exception.expect(IllegalStateException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, new String(dummyCalleeNumber), DateTime.now()));
+	}
+
+	/**
+	 * Tests that clearing the call logs clears out the call logs and the calls in progress.
+	 */
+	@Test
+	public void clearingCallLogsClearsCallLogsAndCallsInProgress() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now().plusMinutes(5)));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+
+		callEventManager.clearCallLogs();
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now().plusMinutes(5)));
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+
+	/**
+	 * Tests that when many threads feed events at once, both for their own callers and for a caller shared between
+	 * all threads, every call is logged exactly once.
+	 */
+	@Test
+	public void allCallsAreLoggedWhenManyThreadsHandleEventsConcurrently() throws Exception {
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final CountDownLatch doneSignal = new CountDownLatch(threadCount);
+		final AtomicInteger failures = new AtomicInteger();
+		final DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+
+		for (int t = 0; t < threadCount; t++) {
+			final int threadId = t;
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						startSignal.await();
+						for (int call = 0; call < callsPerCaller; call++) {
+							for (int c = 0; c < callersPerThread; c++) {
+								String caller = "44" + threadId + "_" + c;
+								String callee = "44callee" + call;
+								callEventManager.handleEvent(new CallStart(caller, callee, startTime));
+								callEventManager.handleEvent(new CallEnd(caller, callee, startTime.plusMinutes(1)));
+							}
+
+							// All threads also share a single caller, each calling its own callee.
+							String sharedCallee = "44shared" + threadId;
+							callEventManager.handleEvent(new CallStart(dummyCallerNumber, sharedCallee, startTime));
+							callEventManager.handleEvent(new CallEnd(dummyCallerNumber, sharedCallee, startTime.plusMinutes(1)));
+						}
+					} catch (Throwable e) {
+						failures.incrementAndGet();
+					} finally {
+						doneSignal.countDown();
+					}
+				}
+			}).start();
+		}
+
+		startSignal.countDown();
+		doneSignal.await();
+
+		assertTrue(failures.get() == 0);
+		for (int t = 0; t < threadCount; t++) {
+			for (int c = 0; c < callersPerThread; c++) {
+				List<Call> calls = callEventManager.getCallsForCustomer("44" + t + "_" + c);
+				assertTrue(calls.size() == callsPerCaller);
+				HashSet<String> callees = new HashSet<String>();
+				for (Call call : calls) {
+					callees.add(call.callee());
+				}
+				assertTrue(callees.size() == callsPerCaller);
+			}
+		}
+
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == threadCount * callsPerCaller);
+	}
+}
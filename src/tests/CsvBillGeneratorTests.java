@@ -0,0 +1,157 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Bill;
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.CompositeBillGenerator;
+import com.acmetelecom.CsvBillGenerator;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.LineItem;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Tests behaviour of CsvBillGenerator, and of CompositeBillGenerator exporting alongside HTML.
+ */
+public class CsvBillGeneratorTests {
+	final String dummyCallerNumber = "440000000042";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final String dummyTotalBill = "7.60";
+	final String dummyTariff = "Standard";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path exportFile;
+
+	// Instance across which tests are to be applied.
+	private CsvBillGenerator csvBillGenerator;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		exportFile = Files.createTempFile("bills", ".csv");
+		csvBillGenerator = new CsvBillGenerator(exportFile, Charset.forName("UTF-8"));
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the export file after each unit test.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		csvBillGenerator.close();
+		Files.deleteIfExists(exportFile);
+	}
+
+	/**
+	 * Tests that passing null parameters in to CsvBillGenerator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateCsvBillGeneratorWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CsvBillGenerator(null, null);
+	}
+
+	/**
+	 * Tests that passing no generators in to CompositeBillGenerator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateCompositeBillGeneratorWithoutGeneratorsThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new CompositeBillGenerator();
+	}
+
+	/**
+	 * Tests that a call record is written for each line item and a bill record for each bill, after the header row,
+	 * with text fields quoted as needed.
+	 */
+	@Test
+	public void recordIsWrittenForEachLineItemAndBillWithFieldsQuotedAsNeeded() throws IOException {
+		csvBillGenerator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), createItems(2), dummyTotalBill);
+		csvBillGenerator.sendBill(new Customer("Smith, \"Jo\"", dummyCalleeNumber, dummyTariff), createItems(1), dummyTotalBill);
+		csvBillGenerator.close();
+
+		long start = new DateTime(2013, 11, 5, 12, 0).getMillis();
+		List<String> lines = Files.readAllLines(exportFile, Charset.forName("UTF-8"));
+		assertTrue(lines.size() == 6);
+		assertTrue(lines.get(0).equals(CsvBillGenerator.Header));
+		assertTrue(lines.get(1).equals("call," + dummyCallerNumber + ",DummyName,Standard," + start + "," + start + "," + dummyCalleeNumber + "0,0,0,"));
+		assertTrue(lines.get(2).equals("call," + dummyCallerNumber + ",DummyName,Standard," + start + "," + (start + 60000) + "," + dummyCalleeNumber + "1,60,37,"));
+		assertTrue(lines.get(3).equals("bill," + dummyCallerNumber + ",DummyName,Standard,,,,,," + dummyTotalBill));
+		assertTrue(lines.get(4).startsWith("call," + dummyCalleeNumber + ",\"Smith, \"\"Jo\"\"\",Standard,"));
+		assertTrue(lines.get(5).startsWith("bill," + dummyCalleeNumber + ",\"Smith, \"\"Jo\"\"\",Standard,"));
+	}
+
+	/**
+	 * Tests that a customer who made no calls is exported as a bill record with their total.
+	 */
+	@Test
+	public void customerWithNoCallsIsExportedAsBillRecord() throws IOException {
+		csvBillGenerator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), createItems(0), "0.00");
+		csvBillGenerator.close();
+
+		List<String> lines = Files.readAllLines(exportFile, Charset.forName("UTF-8"));
+		assertTrue(lines.size() == 2);
+		assertTrue(lines.get(1).equals("bill," + dummyCallerNumber + ",DummyName,Standard,,,,,,0.00"));
+		assertTrue(lines.get(1).split(",", -1).length == CsvBillGenerator.Header.split(",").length);
+	}
+
+	/**
+	 * Tests that a composite generator prints the HTML bill, exports the bill, and returns the HTML generator's bill.
+	 */
+	@Test
+	public void compositeGeneratorSendsBillToEachGenerator() throws IOException {
+		ByteArrayOutputStream html = new ByteArrayOutputStream();
+		HtmlBillGenerator htmlBillGenerator = new HtmlBillGenerator(new BufferedHtmlBillPrinter(html, Charset.defaultCharset()));
+		CompositeBillGenerator generator = new CompositeBillGenerator(htmlBillGenerator, csvBillGenerator);
+
+		Bill bill = generator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), createItems(3), dummyTotalBill);
+		csvBillGenerator.close();
+
+		assertTrue(bill.getTotalBill().equals(dummyTotalBill));
+		assertTrue(html.toString().contains("<h2>Total: " + dummyTotalBill + "</h2>"));
+		assertTrue(Files.readAllLines(exportFile, Charset.forName("UTF-8")).size() == 5);
+	}
+
+	/**
+	 * Creates a list of line items.
+	 * @param count The number of line items to create.
+	 * @return The list of line items.
+	 */
+	private List<LineItem> createItems(int count) {
+		List<LineItem> items = new ArrayList<LineItem>();
+		DateTime startTime = new DateTime(2013, 11, 5, 12, 0);
+		for (int i = 0; i < count; i++) {
+			items.add(new LineItem(
+					new Call(
+						new CallStart(dummyCallerNumber, dummyCalleeNumber + i, startTime),
+						new CallEnd(dummyCallerNumber, dummyCalleeNumber + i, startTime.plusMinutes(i))),
+					new BigDecimal(i * 37)));
+		}
+		return items;
+	}
+}
@@ -4,15 +4,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.acmetelecom.IIndexedCustomerDatabase;
 import com.acmetelecom.customer.Customer;
-import com.acmetelecom.customer.CustomerDatabase;
 import com.acmetelecom.customer.Tariff;
 
 /**
  * A dummy implementation of a customer database for testing purposes.
  *
  */
-class DummyCustomerDatabase implements CustomerDatabase {
+class DummyCustomerDatabase implements IIndexedCustomerDatabase {
 
 	private HashMap<Customer, Tariff> customers;
 	
@@ -34,4 +34,19 @@ class DummyCustomerDatabase implements CustomerDatabase {
 		customerList.addAll(customers.keySet());
 		return customerList;
 	}
+	
+	/**
+	 * Gets the customer in the dummy database with a phone number.
+	 * @param phoneNumber The phone number.
+	 * @return The customer with the phone number, or null if no customer has it.
+	 */
+	@Override
+	public Customer getCustomer(String phoneNumber) {
+		for (Customer customer : customers.keySet()) {
+			if (customer.getPhoneNumber().equals(phoneNumber)) {
+				return customer;
+			}
+		}
+		return null;
+	}
 }
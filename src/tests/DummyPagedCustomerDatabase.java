@@ -0,0 +1,54 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acmetelecom.IPagedCustomerDatabase;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * A dummy implementation of a paged customer database for testing purposes, which counts the pages asked for.
+ */
+class DummyPagedCustomerDatabase implements IPagedCustomerDatabase {
+
+	private List<Customer> customers;
+	private int pagesRequested;
+	
+	/**
+	 * Constructor.
+	 * @param customers The customers in the database, in order.
+	 */
+	public DummyPagedCustomerDatabase(List<Customer> customers) {
+		this.customers = customers;
+	}
+	
+	/**
+	 * Returns a list of all customers in the dummy database.
+	 * @return The list of all customers.
+	 */
+	@Override
+	public List<Customer> getCustomers() {
+		return new ArrayList<Customer>(customers);
+	}
+	
+	/**
+	 * Returns a page of customers in the dummy database.
+	 * @param firstCustomer The index of the first customer of the page.
+	 * @param pageSize The maximum number of customers to get.
+	 * @return The customers of the page.
+	 */
+	@Override
+	public List<Customer> getCustomerPage(int firstCustomer, int pageSize) {
+		pagesRequested++;
+		int end = Math.min(customers.size(), firstCustomer + pageSize);
+		return new ArrayList<Customer>(customers.subList(Math.min(firstCustomer, end), end));
+	}
+	
+	/**
+	 * Gets the number of pages asked for so far.
+	 * @return The number of pages asked for.
+	 */
+	public int getPagesRequested() {
+		return pagesRequested;
+	}
+}
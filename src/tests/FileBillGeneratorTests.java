@@ -0,0 +1,183 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.BufferedHtmlBillPrinter;
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.FileBillGenerator;
+import com.acmetelecom.FileBillPrinter;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.HtmlBillGenerator;
+import com.acmetelecom.LineItem;
+import com.acmetelecom.customer.Customer;
+
+/**
+ * Tests behaviour of FileBillGenerator and FileBillPrinter writing bills to a temporary directory.
+ */
+public class FileBillGeneratorTests {
+	final String dummyCallerNumber = "440000000042";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+	final String dummyTotalBill = "7.60";
+	final String dummyTariff = "Standard";
+	final int shardCount = 100;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path billDirectory;
+	private FileBillPrinter fileBillPrinter;
+
+	// Instance across which tests are to be applied.
+	private FileBillGenerator fileBillGenerator;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		billDirectory = Files.createTempDirectory("bills");
+		fileBillPrinter = new FileBillPrinter(billDirectory, shardCount, 2, Charset.defaultCharset());
+		fileBillGenerator = new FileBillGenerator(fileBillPrinter);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the bill directory after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		fileBillGenerator.close();
+		delete(billDirectory.toFile());
+	}
+
+	/**
+	 * Tests that passing null parameters in to FileBillGenerator constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateFileBillGeneratorWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new FileBillGenerator(null);
+	}
+
+	/**
+	 * Tests that passing null parameters while generating bill throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToGenerateBillWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		fileBillGenerator.sendBill(null, null, null);
+	}
+
+	/**
+	 * Tests that bills are sharded by the trailing digits of the customer's phone number.
+	 */
+	@Test
+	public void billFileIsShardedByTrailingDigitsOfPhoneNumber() {
+		Path billFile = fileBillPrinter.billFileFor(dummyCallerNumber);
+		assertTrue(billFile.getParent().getFileName().toString().equals("42"));
+		assertTrue(billFile.getFileName().toString().equals(dummyCallerNumber + ".html"));
+	}
+
+	/**
+	 * Tests that phone numbers which differ only in characters that are not kept in file names have different bill
+	 * files.
+	 */
+	@Test
+	public void phoneNumbersWithEscapedCharactersHaveDifferentBillFiles() {
+		String[] phoneNumbers = { "44 1234", "44_1234", "44%201234", "44/1234", "44A1234", "44a1234", "44\u00e91234" };
+		for (int i = 0; i < phoneNumbers.length; i++) {
+			String fileName = fileBillPrinter.billFileFor(phoneNumbers[i]).getFileName().toString();
+			for (int j = 0; j < i; j++) {
+				assertTrue(!fileName.equalsIgnoreCase(fileBillPrinter.billFileFor(phoneNumbers[j]).getFileName().toString()));
+			}
+		}
+		assertTrue(fileBillPrinter.billFileFor("44 1234").getFileName().toString().equals("44%201234.html"));
+		assertTrue(fileBillPrinter.billFileFor("44%201234").getFileName().toString().equals("44%25201234.html"));
+	}
+
+	/**
+	 * Tests that each customer's bill is written to its own file with the same markup as a buffered HTML bill.
+	 */
+	@Test
+	public void eachBillIsWrittenToItsOwnFileWithSameMarkupAsHtmlBill() throws IOException {
+		List<LineItem> items = createItems(5);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new HtmlBillGenerator(new BufferedHtmlBillPrinter(expected, Charset.defaultCharset()))
+			.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), items, dummyTotalBill);
+
+		for (int i = 0; i < 10; i++) {
+			fileBillGenerator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber + i, dummyTariff), items, dummyTotalBill);
+		}
+		fileBillGenerator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), items, dummyTotalBill);
+		fileBillGenerator.close();
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(Files.exists(fileBillPrinter.billFileFor(dummyCallerNumber + i)));
+		}
+		byte[] written = Files.readAllBytes(fileBillPrinter.billFileFor(dummyCallerNumber));
+		assertTrue(new String(written).equals(expected.toString()));
+	}
+
+	/**
+	 * Tests that sending a bill after the generator has been closed throws IllegalStateException rather than
+	 * silently dropping the bill.
+	 */
+	@Test
+	public void sendingBillAfterCloseThrowsIllegalStateException() {
+		fileBillGenerator.close();
+		exception.expect(IllegalStateException.class);
+		fileBillGenerator.sendBill(new Customer(dummyCustomerName, dummyCallerNumber, dummyTariff), createItems(1), dummyTotalBill);
+	}
+
+	/**
+	 * Creates a list of line items.
+	 * @param count The number of line items to create.
+	 * @return The list of line items.
+	 */
+	private List<LineItem> createItems(int count) {
+		List<LineItem> items = new ArrayList<LineItem>();
+		DateTime startTime = new DateTime(2013, 11, 5, 12, 0);
+		for (int i = 0; i < count; i++) {
+			items.add(new LineItem(
+					new Call(
+						new CallStart(dummyCallerNumber, dummyCalleeNumber + i, startTime),
+						new CallEnd(dummyCallerNumber, dummyCalleeNumber + i, startTime.plusMinutes(i))),
+					new BigDecimal(i)));
+		}
+		return items;
+	}
+
+	/**
+	 * Deletes a file or directory tree.
+	 * @param file The file or directory to delete.
+	 */
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
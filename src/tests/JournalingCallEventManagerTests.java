@@ -0,0 +1,309 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallEventJournal;
+import com.acmetelecom.CallEventJournal.SyncPolicy;
+import com.acmetelecom.CallEventManager;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.JournalingCallEventManager;
+
+/**
+ * Tests behaviour of JournalingCallEventManager and CallEventJournal recovering calls from a temporary journal file.
+ */
+public class JournalingCallEventManagerTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path journalFile;
+
+	// Instance across which tests are to be applied.
+	private JournalingCallEventManager callEventManager;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		journalFile = Files.createTempDirectory("journal").resolve("calls.journal");
+		callEventManager = open(SyncPolicy.Always);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the journal after each unit test.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		callEventManager.close();
+		Files.deleteIfExists(journalFile);
+		Files.deleteIfExists(journalFile.getParent());
+	}
+
+	/**
+	 * Tests that passing null parameters in to JournalingCallEventManager constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateManagerWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new JournalingCallEventManager(null, null);
+	}
+
+	/**
+	 * Tests that handling event with null parameter throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleEventWithNullParameterThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(null);
+	}
+
+	/**
+	 * Tests that a call started before a restart is completed by its end event after the restart, with its
+	 * original start time.
+	 */
+	@Test
+	public void callInProgressIsCompletedAfterRestart() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+		callEventManager.close();
+
+		callEventManager = open(SyncPolicy.Always);
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusMinutes(5)));
+
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).startTime().equals(startTime));
+		assertTrue(calls.get(0).durationSeconds() == 300);
+	}
+
+	/**
+	 * Tests that only calls still in progress are recovered, whichever sync policy the journal was written with.
+	 */
+	@Test
+	public void onlyCallsStillInProgressAreRecoveredWithEachSyncPolicy() {
+		for (SyncPolicy policy : SyncPolicy.values()) {
+			callEventManager.close();
+			callEventManager = open(policy);
+			callEventManager.clearCallLogs();
+
+			DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+			for (int i = 0; i < 1000; i++) {
+				callEventManager.handleEvent(new CallStart(dummyCallerNumber, "0" + i, startTime));
+				if (i % 10 != 0) {
+					callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(1)));
+				}
+			}
+			callEventManager.close();
+
+			CallEventJournal journal = new CallEventJournal(journalFile, policy);
+			List<CallStart> openCalls = journal.getOpenCalls();
+			journal.close();
+			assertTrue(openCalls.size() == 100);
+			for (int i = 0; i < 100; i++) {
+				assertTrue(openCalls.get(i).getCallee().equals("0" + (i * 10)));
+			}
+		}
+	}
+
+	/**
+	 * Tests that a torn record at the end of the journal is discarded and the records before it are recovered.
+	 */
+	@Test
+	public void tornRecordAtEndOfJournalIsDiscarded() throws IOException {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCallerNumber, startTime));
+		callEventManager.close();
+
+		try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		callEventManager = open(SyncPolicy.Always);
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusMinutes(1)));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCallerNumber, startTime.plusMinutes(1)));
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).callee().equals(dummyCalleeNumber));
+	}
+
+	/**
+	 * Tests that clearing the call logs also discards the journalled calls in progress.
+	 */
+	@Test
+	public void clearingCallLogsDiscardsJournalledCallsInProgress() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.clearCallLogs();
+		callEventManager.close();
+
+		callEventManager = open(SyncPolicy.Always);
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+
+	/**
+	 * Tests that an event appended with the batched sync policy has been written to the journal file when append
+	 * returns, so that it survives the process stopping without the journal being closed.
+	 */
+	@Test
+	public void batchedEventIsWrittenToFileBeforeAppendReturns() throws IOException {
+		callEventManager.close();
+		callEventManager = open(SyncPolicy.Batched);
+		long size = Files.size(journalFile);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		assertTrue(Files.size(journalFile) > size);
+	}
+
+	/**
+	 * Tests that events appended from several threads at once with the batched sync policy are all recovered.
+	 */
+	@Test
+	public void batchedEventsFromSeveralThreadsAreAllRecovered() throws InterruptedException {
+		callEventManager.close();
+		callEventManager = open(SyncPolicy.Batched);
+		final int threadCount = 4;
+		final int callsPerThread = 500;
+		final DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final String caller = dummyCallerNumber + t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < callsPerThread; i++) {
+						callEventManager.handleEvent(new CallStart(caller, "0" + i, startTime));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		callEventManager.close();
+
+		CallEventJournal journal = new CallEventJournal(journalFile, SyncPolicy.Batched);
+		List<CallStart> openCalls = journal.getOpenCalls();
+		journal.close();
+		assertTrue(openCalls.size() == threadCount * callsPerThread);
+	}
+
+	/**
+	 * Tests that a call start the call event manager rejects is rejected the same way when the journal is replayed,
+	 * so the call recovered is the one the manager held.
+	 */
+	@Test
+	public void eventRejectedByManagerIsRejectedOnReplay() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+		try {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime.plusMinutes(1)));
+			assertTrue(false);
+		} catch (IllegalStateException e) {
+			// Expected: the call is already in progress.
+		}
+		callEventManager.close();
+
+		callEventManager = open(SyncPolicy.Always);
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusMinutes(5)));
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).startTime().equals(startTime));
+	}
+
+	/**
+	 * Tests that a journal much larger than the buffer it is replayed through is recovered completely.
+	 */
+	@Test
+	public void journalLargerThanReadBufferIsRecovered() throws IOException {
+		callEventManager.close();
+		callEventManager = open(SyncPolicy.Never);
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		for (int i = 0; i < 20000; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, "0" + i, startTime));
+			if (i % 10 != 0) {
+				callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(1)));
+			}
+		}
+		callEventManager.close();
+		assertTrue(Files.size(journalFile) > 1024 * 1024);
+
+		CallEventJournal journal = new CallEventJournal(journalFile, SyncPolicy.Never);
+		List<CallStart> openCalls = journal.getOpenCalls();
+		journal.close();
+		assertTrue(openCalls.size() == 2000);
+		for (int i = 0; i < 2000; i++) {
+			assertTrue(openCalls.get(i).getCallee().equals("0" + (i * 10)));
+		}
+	}
+
+	/**
+	 * Tests that a journal past its compaction threshold is compacted while open, so its size follows the calls in
+	 * progress rather than the events appended, and that the calls in progress are still recovered.
+	 */
+	@Test
+	public void journalIsCompactedWhileOpenOnceItPassesThreshold() throws IOException {
+		callEventManager.close();
+		callEventManager = new JournalingCallEventManager(new CallEventManager(),
+				new CallEventJournal(journalFile, SyncPolicy.Batched, CallEventJournal.DefaultMaxBatchEvents,
+						CallEventJournal.DefaultMaxBatchDelayMillis, 4096));
+
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		for (int i = 0; i < 10000; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, "0" + i, startTime));
+			if (i % 1000 != 0) {
+				callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(1)));
+			}
+			assertTrue(Files.size(journalFile) <= 4096 + 64);
+		}
+		callEventManager.close();
+
+		callEventManager = open(SyncPolicy.Always);
+		for (int i = 0; i < 10000; i += 1000) {
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(2)));
+		}
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 10);
+		assertTrue(calls.get(9).callee().equals("09000"));
+		assertTrue(calls.get(9).durationSeconds() == 120);
+	}
+
+	/**
+	 * Tests that appending to a closed journal throws an IllegalStateException.
+	 */
+	@Test
+	public void appendingToClosedJournalThrowsIllegalStateException() {
+		callEventManager.close();
+		exception.expect(IllegalStateException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+	}
+
+	/**
+	 * Opens a journalling call event manager over the test journal file.
+	 * @param policy The sync policy to use.
+	 * @return The call event manager.
+	 */
+	private JournalingCallEventManager open(SyncPolicy policy) {
+		return new JournalingCallEventManager(new CallEventManager(), new CallEventJournal(journalFile, policy));
+	}
+}
@@ -0,0 +1,92 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.LatencyHistogram;
+
+/**
+ * Tests behaviour of LatencyHistogram in an isolated context.
+ */
+public class LatencyHistogramTests {
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	// Instance across which tests are to be applied.
+	private LatencyHistogram histogram;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		histogram = new LatencyHistogram();
+	}
+
+	/**
+	 * Tests that asking for a percentile outside 0 to 100 throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToGetPercentileOutsideRangeThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		histogram.getValueAtPercentile(101);
+	}
+
+	/**
+	 * Tests that an empty histogram reports 0 for every percentile.
+	 */
+	@Test
+	public void emptyHistogramReportsZero() {
+		assertTrue(histogram.getCount() == 0);
+		assertTrue(histogram.getValueAtPercentile(50) == 0);
+		assertTrue(histogram.getMax() == 0);
+	}
+
+	/**
+	 * Tests that percentiles are reported at or above the true value and within the histogram's precision, for
+	 * small values, which are recorded exactly, and large ones.
+	 */
+	@Test
+	public void percentilesAreReportedWithinPrecision() {
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertTrue(histogram.getCount() == 100000);
+		assertTrue(histogram.getMax() == 100000000);
+		double[] percentiles = { 0, 1, 50, 90, 99, 99.9, 100 };
+		for (double percentile : percentiles) {
+			long exact = Math.max(1, (long)Math.ceil(percentile * 1000)) * 1000;
+			long reported = histogram.getValueAtPercentile(percentile);
+			assertTrue(reported >= exact);
+			assertTrue(reported <= exact + exact / 32);
+		}
+
+		histogram.reset();
+		for (int value = 0; value < 32; value++) {
+			histogram.record(value);
+		}
+		assertTrue(histogram.getValueAtPercentile(50) == 15);
+		assertTrue(histogram.getValueAtPercentile(100) == 31);
+	}
+
+	/**
+	 * Tests that adding one histogram to another combines their counts and maximums.
+	 */
+	@Test
+	public void addingHistogramsCombinesCountsAndMaximums() {
+		LatencyHistogram other = new LatencyHistogram();
+		histogram.record(10);
+		other.record(20);
+		other.record(Long.MAX_VALUE);
+		histogram.add(other);
+		assertTrue(histogram.getCount() == 3);
+		assertTrue(histogram.getMax() == Long.MAX_VALUE);
+		assertTrue(histogram.getValueAtPercentile(50) == 20);
+		assertTrue(histogram.getValueAtPercentile(100) == Long.MAX_VALUE);
+	}
+}
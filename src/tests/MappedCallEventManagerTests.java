@@ -0,0 +1,214 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.MappedCallEventManager;
+
+/**
+ * Tests behaviour of MappedCallEventManager storing calls in a temporary directory.
+ */
+public class MappedCallEventManagerTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final int recordsPerSegment = 8;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Path logDirectory;
+
+	// Instance across which tests are to be applied.
+	private MappedCallEventManager callEventManager;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() throws IOException {
+		logDirectory = Files.createTempDirectory("calls");
+		callEventManager = new MappedCallEventManager(logDirectory, recordsPerSegment);
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Removes the call log directory after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		callEventManager.close();
+		File[] files = logDirectory.toFile().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		logDirectory.toFile().delete();
+	}
+
+	/**
+	 * Tests that passing null parameters in to MappedCallEventManager constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateManagerWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new MappedCallEventManager(null, recordsPerSegment);
+	}
+
+	/**
+	 * Tests that creating a manager whose segments would be too large to map throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateManagerWithTooManyRecordsPerSegmentThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new MappedCallEventManager(logDirectory, MappedCallEventManager.MaxRecordsPerSegment + 1);
+	}
+
+	/**
+	 * Tests that handling event with null parameter throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleEventWithNullParameterThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(null);
+	}
+
+	/**
+	 * Tests that starting a call to a callee which is not a phone number throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToStartCallToInvalidCalleeThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, "not a number", DateTime.now()));
+	}
+
+	/**
+	 * Tests that completed calls spanning several segments are returned with the details that were received.
+	 */
+	@Test
+	public void completedCallsAreReturnedWithOriginalDetailsAcrossSegments() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0, 1, 500);
+		addCalls(startTime, 3 * recordsPerSegment + 1);
+
+		assertCallsMatch(callEventManager.getCallsForCustomer(dummyCallerNumber), startTime, 3 * recordsPerSegment + 1);
+		assertTrue(callEventManager.getCallsForCustomer(dummyCalleeNumber).size() == 0);
+	}
+
+	/**
+	 * Tests that completed calls are still available after the call log is closed and reopened.
+	 */
+	@Test
+	public void completedCallsSurviveReopeningCallLog() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0, 1, 500);
+		addCalls(startTime, 2 * recordsPerSegment + 3);
+		callEventManager.close();
+
+		callEventManager = new MappedCallEventManager(logDirectory, recordsPerSegment);
+		assertCallsMatch(callEventManager.getCallsForCustomer(dummyCallerNumber), startTime, 2 * recordsPerSegment + 3);
+
+		// New calls are appended after the reloaded ones.
+		callEventManager.handleEvent(new CallStart(dummyCalleeNumber, dummyCallerNumber, startTime));
+		callEventManager.handleEvent(new CallEnd(dummyCalleeNumber, dummyCallerNumber, startTime.plusMinutes(1)));
+		assertTrue(callEventManager.getCallsForCustomer(dummyCalleeNumber).size() == 1);
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 2 * recordsPerSegment + 3);
+	}
+
+	/**
+	 * Tests that only completed calls are stored in a customers log.
+	 */
+	@Test
+	public void onlyStoredCompletedCallsInCallLogForCustomer() {
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber + "1", DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber + "2", DateTime.now()));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber + "1", DateTime.now().plusMinutes(5)));
+
+		List<Call> calls = callEventManager.getCallsForCustomer(dummyCallerNumber);
+		assertTrue(calls.size() == 1);
+		assertTrue(calls.get(0).callee().equals(dummyCalleeNumber + "1"));
+	}
+
+	/**
+	 * Tests that if a customer starts a call to same callee twice without hanging up in between then an IllegalStateException
+	 * is thrown.
+	 */
+	@Test
+	public void ifCustomerStartsCallToSameCalleeTwiceWithoutHangingUpInbetweenIllegalStateExceptionThrown() {
+		exception.expect(IllegalStateException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+	}
+
+	/**
+	 * Tests that clearing the call logs clears out the call logs, including after reopening, and reuses the segments.
+	 */
+	@Test
+	public void clearingCallLogsClearsCallLogs() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		addCalls(startTime, 2 * recordsPerSegment);
+		callEventManager.clearCallLogs();
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+
+		addCalls(startTime, 1);
+		callEventManager.close();
+		callEventManager = new MappedCallEventManager(logDirectory, recordsPerSegment);
+		assertCallsMatch(callEventManager.getCallsForCustomer(dummyCallerNumber), startTime, 1);
+		assertTrue(logDirectory.toFile().listFiles().length == 2);
+	}
+
+	/**
+	 * Tests that opening a call log with a different segment size throws an IllegalStateException.
+	 */
+	@Test
+	public void openingCallLogWithDifferentSegmentSizeThrowsIllegalStateException() {
+		addCalls(new DateTime(2013, 11, 4, 12, 0), 1);
+		callEventManager.close();
+
+		exception.expect(IllegalStateException.class);
+		new MappedCallEventManager(logDirectory, recordsPerSegment * 2);
+	}
+
+	/**
+	 * Adds completed calls from the dummy caller, the i-th lasting i minutes.
+	 * @param startTime The start time of the first call.
+	 * @param count The number of calls to add.
+	 */
+	private void addCalls(DateTime startTime, int count) {
+		for (int i = 0; i < count; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, "0" + i, startTime.plusMinutes(i)));
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber, "0" + i, startTime.plusMinutes(2 * i)));
+		}
+	}
+
+	/**
+	 * Asserts that calls match those added by addCalls.
+	 * @param calls The calls to check.
+	 * @param startTime The start time of the first call.
+	 * @param count The number of calls expected.
+	 */
+	private void assertCallsMatch(List<Call> calls, DateTime startTime, int count) {
+		assertTrue(calls.size() == count);
+		for (int i = 0; i < count; i++) {
+			Call call = calls.get(i);
+			assertTrue(call.caller().equals(dummyCallerNumber));
+			assertTrue(call.callee().equals("0" + i));
+			assertTrue(call.startTime().equals(startTime.plusMinutes(i)));
+			assertTrue(call.endTime().equals(startTime.plusMinutes(2 * i)));
+		}
+	}
+}
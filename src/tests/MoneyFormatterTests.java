@@ -0,0 +1,84 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.MoneyFormatter;
+
+/**
+ * Tests behaviour of MoneyFormatter, including against the floating point formatting it replaces.
+ */
+public class MoneyFormatterTests {
+	final int randomAmountCount = 20000;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	/**
+	 * Tests that passing a null amount in to penceToPounds throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToFormatNullAmountThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		MoneyFormatter.penceToPounds(null);
+	}
+
+	/**
+	 * Tests that amounts small enough to be exact as doubles are formatted the same as by the floating point
+	 * formatting previously used, whether given as a long or a BigDecimal.
+	 */
+	@Test
+	public void smallAmountsAreFormattedSameAsFloatingPointFormatting() {
+		Random rand = new Random(1234);
+		for (int i = 0; i < randomAmountCount; i++) {
+			long pence = i < randomAmountCount / 2 ? i - randomAmountCount / 4 : rand.nextLong() >> 20;
+			String expected = String.format(Locale.UK, "%.2f", new BigDecimal(pence).divide(new BigDecimal(100)).doubleValue());
+			assertTrue(MoneyFormatter.penceToPounds(pence).equals(expected));
+			assertTrue(MoneyFormatter.penceToPounds(new BigDecimal(pence)).equals(expected));
+		}
+	}
+
+	/**
+	 * Tests that amounts too large to be exact as doubles, including amounts beyond the range of a long, are
+	 * formatted exactly.
+	 */
+	@Test
+	public void largeAmountsAreFormattedExactly() {
+		assertTrue(MoneyFormatter.penceToPounds(Long.MAX_VALUE).equals("92233720368547758.07"));
+		assertTrue(MoneyFormatter.penceToPounds(Long.MIN_VALUE).equals("-92233720368547758.08"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal(Long.MAX_VALUE)).equals("92233720368547758.07"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("123456789012345678901234567"))
+				.equals("1234567890123456789012345.67"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("-123456789012345678901234501"))
+				.equals("-1234567890123456789012345.01"));
+	}
+
+	/**
+	 * Tests that fractions of a penny are rounded to the nearest penny, with halves rounded away from zero.
+	 */
+	@Test
+	public void fractionsOfPennyAreRoundedHalfUp() {
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("12.49")).equals("0.12"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("12.5")).equals("0.13"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("-12.5")).equals("-0.13"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("-0.4")).equals("0.00"));
+		assertTrue(MoneyFormatter.penceToPounds(new BigDecimal("1E+3")).equals("10.00"));
+	}
+
+	/**
+	 * Tests that pounds are appended to the end of a buffer.
+	 */
+	@Test
+	public void poundsAreAppendedToBuffer() {
+		StringBuilder buffer = new StringBuilder("Total: ");
+		MoneyFormatter.appendPounds(buffer, -5);
+		assertTrue(buffer.toString().equals("Total: -0.05"));
+	}
+}
@@ -0,0 +1,93 @@
+package tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.PhoneNumberCodec;
+
+/**
+ * Tests behaviour of PhoneNumberCodec in an isolated context.
+ */
+public class PhoneNumberCodecTests {
+	
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+	
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		FileLogger.setActive(false);
+	}
+	
+	/**
+	 * Tests that encoding a null phone number throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToEncodeNullPhoneNumberThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		PhoneNumberCodec.encode(null);
+	}
+	
+	/**
+	 * Tests that encoding a phone number containing non-digit characters throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToEncodeNonNumericPhoneNumberThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		PhoneNumberCodec.encode("44abc");
+	}
+	
+	/**
+	 * Tests that only numbers of 1 to 17 digits, optionally prefixed with '+', can be encoded.
+	 */
+	@Test
+	public void onlyNumbersOfUpToSeventeenDigitsCanBeEncoded() {
+		assertTrue(PhoneNumberCodec.canEncode("447711232343"));
+		assertTrue(PhoneNumberCodec.canEncode("+447711232343"));
+		assertTrue(PhoneNumberCodec.canEncode("12345678901234567"));
+		assertFalse(PhoneNumberCodec.canEncode("123456789012345678"));
+		assertFalse(PhoneNumberCodec.canEncode(""));
+		assertFalse(PhoneNumberCodec.canEncode("+"));
+		assertFalse(PhoneNumberCodec.canEncode("44 7711"));
+	}
+	
+	/**
+	 * Tests that phone numbers, including those with leading zeros or a '+' prefix, survive a round trip.
+	 */
+	@Test
+	public void encodedPhoneNumbersDecodeToOriginalNumbers() {
+		String[] numbers = { "447711232343", "+447711232343", "07711232343", "0", "000", "+0044", "99999999999999999" };
+		for (String number : numbers) {
+			assertTrue(PhoneNumberCodec.decode(PhoneNumberCodec.encode(number)).equals(number));
+		}
+	}
+	
+	/**
+	 * Tests that numbers differing only in leading zeros or prefix are encoded differently.
+	 */
+	@Test
+	public void numbersDifferingOnlyInLeadingZerosOrPrefixAreEncodedDifferently() {
+		assertTrue(PhoneNumberCodec.encode("7711") != PhoneNumberCodec.encode("07711"));
+		assertTrue(PhoneNumberCodec.encode("7711") != PhoneNumberCodec.encode("+7711"));
+	}
+	
+	/**
+	 * Tests that only longs produced by encode can be decoded.
+	 */
+	@Test
+	public void onlyEncodedPhoneNumbersCanBeDecoded() {
+		assertTrue(PhoneNumberCodec.canDecode(PhoneNumberCodec.encode("+447711232343")));
+		assertTrue(PhoneNumberCodec.canDecode(PhoneNumberCodec.encode("99999999999999999")));
+		assertTrue(!PhoneNumberCodec.canDecode(0));
+		assertTrue(!PhoneNumberCodec.canDecode(-1));
+		assertTrue(!PhoneNumberCodec.canDecode(PhoneNumberCodec.encode("99") + 1));
+	}
+}
@@ -0,0 +1,103 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.PhoneNumberDictionary;
+
+/**
+ * Tests behaviour of PhoneNumberDictionary in an isolated context.
+ */
+public class PhoneNumberDictionaryTests {
+	final String dummyPhoneNumber = "44000000000";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	// Instance across which tests are to be applied.
+	private PhoneNumberDictionary phoneNumbers;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		phoneNumbers = new PhoneNumberDictionary();
+	}
+
+	/**
+	 * Tests that passing a null phone number throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToAddNullPhoneNumberThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		phoneNumbers.idOf(null);
+	}
+
+	/**
+	 * Tests that asking for the number with an unused id throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToGetNumberWithUnusedIdThrowsIllegalArgumentException() {
+		phoneNumbers.idOf(dummyPhoneNumber);
+		exception.expect(IllegalArgumentException.class);
+		phoneNumbers.numberOf(1);
+	}
+
+	/**
+	 * Tests that distinct numbers are given consecutive ids, that equal numbers are given the same id, and that the
+	 * first instance of each number is the one kept.
+	 */
+	@Test
+	public void equalNumbersShareIdAndFirstInstance() {
+		String[] first = new String[1000];
+		for (int i = 0; i < first.length; i++) {
+			first[i] = dummyPhoneNumber + i;
+			assertTrue(phoneNumbers.idOf(first[i]) == i);
+		}
+		for (int i = 0; i < first.length; i++) {
+			String equal = new String(first[i]);
+			assertTrue(phoneNumbers.idOf(equal) == i);
+			assertTrue(phoneNumbers.find(equal) == i);
+			assertTrue(phoneNumbers.intern(equal) == first[i]);
+			assertTrue(phoneNumbers.numberOf(i) == first[i]);
+		}
+		assertTrue(phoneNumbers.size() == first.length);
+		assertTrue(phoneNumbers.find("0" + dummyPhoneNumber) == -1);
+	}
+
+	/**
+	 * Tests that numbers added from several threads at once are each given exactly one id.
+	 */
+	@Test
+	public void numbersAddedFromSeveralThreadsAreGivenOneIdEach() throws InterruptedException {
+		final int numberCount = 5000;
+		final AtomicInteger mismatches = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < numberCount; i++) {
+						String number = dummyPhoneNumber + i;
+						if (!phoneNumbers.numberOf(phoneNumbers.idOf(number)).equals(number)) {
+							mismatches.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(mismatches.get() == 0);
+		assertTrue(phoneNumbers.size() == numberCount);
+	}
+}
@@ -0,0 +1,175 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.Call;
+import com.acmetelecom.CallEnd;
+import com.acmetelecom.CallStart;
+import com.acmetelecom.FileLogger;
+import com.acmetelecom.ICallCostCalculator;
+import com.acmetelecom.LineItem;
+import com.acmetelecom.RatingCallEventManager;
+import com.acmetelecom.customer.Customer;
+import com.acmetelecom.customer.Tariff;
+
+/**
+ * Tests behaviour of RatingCallEventManager in an isolated context.
+ */
+public class RatingCallEventManagerTests {
+	final String dummyCallerNumber = "440000000000";
+	final String dummyCalleeNumber = "440000000001";
+	final String dummyCustomerName = "DummyName";
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private Customer customer;
+	private CountingCallCostCalculator callCostCalculator;
+
+	// Instance across which tests are to be applied.
+	private RatingCallEventManager callEventManager;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		customer = new Customer(dummyCustomerName, dummyCallerNumber, Tariff.Standard.toString());
+		HashMap<Customer, Tariff> customers = new HashMap<Customer, Tariff>();
+		customers.put(customer, Tariff.Standard);
+
+		callCostCalculator = new CountingCallCostCalculator();
+		callEventManager = new RatingCallEventManager(callCostCalculator, new DummyCustomerDatabase(customers));
+		FileLogger.setActive(false);
+	}
+
+	/**
+	 * Tests that passing null parameters in to RatingCallEventManager constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateManagerWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new RatingCallEventManager(null, null);
+	}
+
+	/**
+	 * Tests that handling event with null parameter throws an IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToHandleEventWithNullParameterThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		callEventManager.handleEvent(null);
+	}
+
+	/**
+	 * Tests that each call is rated once, when it completes, and added to the customer's running total.
+	 */
+	@Test
+	public void callsAreRatedOnceWhenTheyComplete() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		for (int i = 1; i <= 10; i++) {
+			callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+			callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusSeconds(i)));
+			assertTrue(callCostCalculator.callsRated == i);
+			assertTrue(callEventManager.getCurrentSpend(customer).equals(new BigDecimal(i * (i + 1) / 2)));
+		}
+
+		List<LineItem> items = callEventManager.getLineItemsForCustomer(customer);
+		assertTrue(items.size() == 10);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(items.get(i).cost().equals(new BigDecimal(i + 1)));
+		}
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 10);
+		assertTrue(callCostCalculator.callsRated == 10);
+	}
+
+	/**
+	 * Tests that calls from numbers not in the customer database are rated when their customer's line items are
+	 * requested.
+	 */
+	@Test
+	public void callsFromUnknownCustomersAreRatedWhenRequested() {
+		Customer newCustomer = new Customer(dummyCustomerName, dummyCalleeNumber, Tariff.Standard.toString());
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCalleeNumber, dummyCallerNumber, startTime));
+		callEventManager.handleEvent(new CallEnd(dummyCalleeNumber, dummyCallerNumber, startTime.plusSeconds(30)));
+		assertTrue(callCostCalculator.callsRated == 0);
+
+		assertTrue(callEventManager.getCurrentSpend(newCustomer).equals(new BigDecimal(30)));
+		assertTrue(callEventManager.getLineItemsForCustomer(newCustomer).size() == 1);
+		assertTrue(callCostCalculator.callsRated == 1);
+	}
+
+	/**
+	 * Tests that when the customer database cannot look customers up by phone number, calls are not rated as they
+	 * complete and the database is not scanned, but the calls are rated when their customer's spend is requested.
+	 */
+	@Test
+	public void callsAreRatedWhenRequestedIfCustomersCannotBeLookedUp() {
+		DummyPagedCustomerDatabase customerDatabase = new DummyPagedCustomerDatabase(Collections.singletonList(customer));
+		callEventManager = new RatingCallEventManager(callCostCalculator, customerDatabase);
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusSeconds(30)));
+		assertTrue(callCostCalculator.callsRated == 0);
+		assertTrue(customerDatabase.getPagesRequested() == 0);
+
+		assertTrue(callEventManager.getCurrentSpend(customer).equals(new BigDecimal(30)));
+		assertTrue(callCostCalculator.callsRated == 1);
+	}
+
+	/**
+	 * Tests that clearing the call logs resets the running totals.
+	 */
+	@Test
+	public void clearingCallLogsResetsRunningTotals() {
+		DateTime startTime = new DateTime(2013, 11, 4, 12, 0);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, startTime));
+		callEventManager.handleEvent(new CallEnd(dummyCallerNumber, dummyCalleeNumber, startTime.plusSeconds(30)));
+		callEventManager.clearCallLogs();
+
+		assertTrue(callEventManager.getCurrentSpend(customer).equals(BigDecimal.ZERO));
+		assertTrue(callEventManager.getLineItemsForCustomer(customer).size() == 0);
+		assertTrue(callEventManager.getCallsForCustomer(dummyCallerNumber).size() == 0);
+	}
+
+	/**
+	 * Tests that if a customer starts a call to same callee twice without hanging up in between then an IllegalStateException
+	 * is thrown.
+	 */
+	@Test
+	public void ifCustomerStartsCallToSameCalleeTwiceWithoutHangingUpInbetweenIllegalStateExceptionThrown() {
+		exception.expect(IllegalStateException.class);
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+		callEventManager.handleEvent(new CallStart(dummyCallerNumber, dummyCalleeNumber, DateTime.now()));
+	}
+
+	/**
+	 * A call cost calculator which charges a penny per second and counts the calls it rates.
+	 */
+	private static class CountingCallCostCalculator implements ICallCostCalculator {
+		private int callsRated;
+
+		/**
+		 * Calculates the cost of a call as one penny per second.
+		 * @param customer The customer who made the call.
+		 * @param call The call.
+		 * @return The call cost.
+		 */
+		public BigDecimal calculateCallCost(Customer customer, Call call) {
+			callsRated++;
+			return new BigDecimal(call.durationSeconds());
+		}
+	}
+}
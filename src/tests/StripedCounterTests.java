@@ -0,0 +1,65 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acmetelecom.StripedCounter;
+
+/**
+ * Tests behaviour of StripedCounter in an isolated context.
+ */
+public class StripedCounterTests {
+
+	// Instance across which tests are to be applied.
+	private StripedCounter counter;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		counter = new StripedCounter();
+	}
+
+	/**
+	 * Tests that the count is the sum of every value added, including negative values, and is 0 after a reset.
+	 */
+	@Test
+	public void countIsSumOfValuesAddedUntilReset() {
+		assertTrue(counter.sum() == 0);
+		counter.increment();
+		counter.add(41);
+		counter.add(-2);
+		assertTrue(counter.sum() == 40);
+
+		counter.reset();
+		assertTrue(counter.sum() == 0);
+	}
+
+	/**
+	 * Tests that no values are lost when added from several threads at once.
+	 */
+	@Test
+	public void valuesAddedFromSeveralThreadsAreAllCounted() throws InterruptedException {
+		final int threadCount = 8;
+		final int addsPerThread = 100000;
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < addsPerThread; i++) {
+						counter.increment();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(counter.sum() == (long)threadCount * addsPerThread);
+	}
+}
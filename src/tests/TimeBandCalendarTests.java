@@ -0,0 +1,127 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.DaySchedule;
+import com.acmetelecom.DaytimePeakPeriod;
+import com.acmetelecom.TimeBand;
+import com.acmetelecom.TimeBandCalendar;
+
+/**
+ * Tests behaviour of TimeBandCalendar and DaySchedule in an isolated context.
+ */
+public class TimeBandCalendarTests {
+	final int hour = 60 * 60;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private TimeBand offPeak;
+	private TimeBand shoulder;
+	private TimeBand peak;
+	private DaySchedule weekday;
+	private DaySchedule weekend;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		offPeak = TimeBand.offPeak("OffPeak");
+		shoulder = TimeBand.offPeak("Shoulder");
+		peak = TimeBand.peak("Peak");
+		weekday = new DaySchedule(offPeak)
+			.withBand(6 * hour, 20 * hour, shoulder)
+			.withBand(8 * hour, 18 * hour, peak);
+		weekend = new DaySchedule(offPeak);
+	}
+
+	/**
+	 * Tests that passing null parameters in to TimeBandCalendar constructor throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToCreateCalendarWithNullParametersThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		new TimeBandCalendar(null, null, null);
+	}
+
+	/**
+	 * Tests that adding a band outside of the day throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToAddBandOutsideDayThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		weekday.withBand(23 * hour, 25 * hour, peak);
+	}
+
+	/**
+	 * Tests that bands added to a schedule split and replace the segments they overlap.
+	 */
+	@Test
+	public void addedBandsSplitAndReplaceOverlappedSegments() {
+		assertTrue(weekday.getSegmentCount() == 5);
+		int[] starts = { 0, 6 * hour, 8 * hour, 18 * hour, 20 * hour };
+		TimeBand[] bands = { offPeak, shoulder, peak, shoulder, offPeak };
+		for (int i = 0; i < starts.length; i++) {
+			assertTrue(weekday.getSegmentStart(i) == starts[i]);
+			assertTrue(weekday.getSegmentBand(i) == bands[i]);
+		}
+		assertTrue(weekday.getSegmentEnd(4) == DaySchedule.SecondsPerDay);
+
+		// Replacing the whole peak and shoulders with off-peak merges the day back into one segment.
+		assertTrue(weekday.withBand(6 * hour, 20 * hour, offPeak).getSegmentCount() == 1);
+	}
+
+	/**
+	 * Tests that the band at a time depends on the time of day, the day of the week and holidays.
+	 */
+	@Test
+	public void bandAtTimeDependsOnTimeOfDayDayOfWeekAndHolidays() {
+		LocalDate holiday = new LocalDate(2013, 12, 25);
+		Map<LocalDate, DaySchedule> holidays = new HashMap<LocalDate, DaySchedule>();
+		holidays.put(holiday, weekend);
+		TimeBandCalendar calendar = new TimeBandCalendar(weekday, weekend, holidays);
+
+		// 4th November 2013 was a Monday.
+		DateTime monday = new DateTime(2013, 11, 4, 0, 0, DateTimeZone.UTC);
+		assertTrue(calendar.getBandAt(monday.plusHours(5)) == offPeak);
+		assertTrue(calendar.getBandAt(monday.plusHours(6)) == shoulder);
+		assertTrue(calendar.getBandAt(monday.plusHours(8).minusSeconds(1)) == shoulder);
+		assertTrue(calendar.getBandAt(monday.plusHours(8)) == peak);
+		assertTrue(calendar.getBandAt(monday.plusHours(19)) == shoulder);
+		assertTrue(calendar.getBandAt(monday.plusDays(4).plusHours(12)) == peak);
+		assertTrue(calendar.getBandAt(monday.plusDays(5).plusHours(12)) == offPeak);
+		assertTrue(calendar.getBandAt(monday.plusDays(6).plusHours(12)) == offPeak);
+		assertTrue(calendar.getBandAt(monday.plusDays(7).plusHours(12)) == peak);
+		assertTrue(calendar.getBandAt(holiday.toDateTimeAtStartOfDay(DateTimeZone.UTC).plusHours(12)) == offPeak);
+		assertTrue(calendar.getBandAt(holiday.toDateTimeAtStartOfDay(DateTimeZone.UTC).plusDays(1).plusHours(12)) == peak);
+	}
+
+	/**
+	 * Tests that a calendar created from the daytime peak period has a band for each period, every day.
+	 */
+	@Test
+	public void calendarFromPeakPeriodHasBandForEachPeriod() {
+		DaytimePeakPeriod peakPeriod = new DaytimePeakPeriod();
+		TimeBandCalendar calendar = TimeBandCalendar.fromPeakPeriod(peakPeriod);
+		assertTrue(calendar.getBands().size() == 3);
+
+		DateTime saturday = new DateTime(2013, 11, 9, 0, 0, DateTimeZone.UTC);
+		assertTrue(calendar.getBandAt(saturday.plusHours(peakPeriod.getPeakStart()).minusSeconds(1)).getName().equals("PrePeak"));
+		assertTrue(calendar.getBandAt(saturday.plusHours(peakPeriod.getPeakStart())).getName().equals("Peak"));
+		assertTrue(calendar.getBandAt(saturday.plusHours(peakPeriod.getPeakEnd())).getName().equals("PostPeak"));
+		assertTrue(new TimeBandCalendar(weekday, weekend, Collections.<LocalDate, DaySchedule>emptyMap()).getBands().size() == 3);
+	}
+}
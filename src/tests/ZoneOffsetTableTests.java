@@ -0,0 +1,111 @@
+package tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.acmetelecom.ZoneOffsetTable;
+
+/**
+ * Tests behaviour of ZoneOffsetTable, differentially against the time zones it is built from.
+ */
+public class ZoneOffsetTableTests {
+	final String[] zoneIds = { "UTC", "Europe/London", "America/New_York", "Australia/Sydney", "Asia/Kolkata" };
+	final int randomInstantCount = 20000;
+
+	@Rule
+	public ExpectedException exception = ExpectedException.none();
+
+	private DateTimeZone defaultZone;
+	private Random rand;
+
+	/**
+	 * Setup which is run before each unit test.
+	 */
+	@Before
+	public void setup() {
+		defaultZone = DateTimeZone.getDefault();
+		rand = new Random(1234);
+	}
+
+	/**
+	 * Restores the default time zone after each unit test.
+	 */
+	@After
+	public void tearDown() {
+		DateTimeZone.setDefault(defaultZone);
+	}
+
+	/**
+	 * Tests that passing a null zone in to forZone throws IllegalArgumentException.
+	 */
+	@Test
+	public void attemptingToGetTableForNullZoneThrowsIllegalArgumentException() {
+		exception.expect(IllegalArgumentException.class);
+		ZoneOffsetTable.forZone(null);
+	}
+
+	/**
+	 * Tests that the offsets and transitions at random instants, inside and outside the precomputed range, are the
+	 * same as the zone's.
+	 */
+	@Test
+	public void offsetsAndTransitionsAtRandomInstantsAreSameAsZone() {
+		long first = new DateTime(1850, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+		long last = new DateTime(2150, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+		for (String zoneId : zoneIds) {
+			DateTimeZone zone = DateTimeZone.forID(zoneId);
+			ZoneOffsetTable table = ZoneOffsetTable.forZone(zone);
+			for (int i = 0; i < randomInstantCount; i++) {
+				long millis = first + (long)(rand.nextDouble() * (last - first));
+				assertTrue(table.offsetAt(millis) == zone.getOffset(millis));
+				long next = zone.nextTransition(millis);
+				assertTrue(table.nextTransition(millis) == (next > millis ? next : Long.MAX_VALUE));
+			}
+		}
+	}
+
+	/**
+	 * Tests that the offset changes exactly at each transition of a year.
+	 */
+	@Test
+	public void offsetChangesExactlyAtTransitions() {
+		DateTimeZone london = DateTimeZone.forID("Europe/London");
+		ZoneOffsetTable table = ZoneOffsetTable.forZone(london);
+
+		long spring = table.nextTransition(new DateTime(2013, 1, 1, 0, 0, london).getMillis());
+		assertTrue(spring == new DateTime(2013, 3, 31, 1, 0, DateTimeZone.UTC).getMillis());
+		assertTrue(table.offsetAt(spring - 1) == 0);
+		assertTrue(table.offsetAt(spring) == 60 * 60 * 1000);
+
+		long autumn = table.nextTransition(spring);
+		assertTrue(autumn == new DateTime(2013, 10, 27, 1, 0, DateTimeZone.UTC).getMillis());
+		assertTrue(table.offsetAt(autumn - 1) == 60 * 60 * 1000);
+		assertTrue(table.offsetAt(autumn) == 0);
+		assertTrue(table.localSecond(autumn) == table.localSecond(autumn - 60 * 60 * 1000));
+
+		assertTrue(ZoneOffsetTable.forZone(DateTimeZone.UTC).nextTransition(spring) == Long.MAX_VALUE);
+	}
+
+	/**
+	 * Tests that tables are shared between users of the same zone and follow changes to the default zone.
+	 */
+	@Test
+	public void tablesAreSharedAndFollowDefaultZone() {
+		DateTimeZone london = DateTimeZone.forID("Europe/London");
+		assertTrue(ZoneOffsetTable.forZone(london) == ZoneOffsetTable.forZone(london));
+
+		DateTimeZone.setDefault(london);
+		assertTrue(ZoneOffsetTable.forDefaultZone() == ZoneOffsetTable.forZone(london));
+		DateTimeZone.setDefault(DateTimeZone.UTC);
+		assertTrue(ZoneOffsetTable.forDefaultZone().getZone() == DateTimeZone.UTC);
+	}
+}